@@ -24,13 +24,12 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Vector;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 import alma.acs.gui.util.threadsupport.EDTExecutor;
@@ -38,6 +37,7 @@ import alma.acs.logging.table.reduction.LogProcessor;
 
 import com.cosylab.logging.LoggingClient;
 import com.cosylab.logging.client.cache.LogCache;
+import com.cosylab.logging.client.cache.LogCacheIndexes;
 import com.cosylab.logging.client.cache.LogCacheException;
 import com.cosylab.logging.engine.audience.Audience.AudienceInfo;
 import com.cosylab.logging.engine.log.ILogEntry;
@@ -64,12 +64,22 @@ import com.cosylab.logging.engine.log.LogField;
  * <P>
  * To reduce the overload refreshing the content of the table when a lot of logs
  * have been added or removed, the refresh is triggered only after a certain amount
- * of time by a dedicated thread (see {@link #run()}).
+ * of time or when enough logs are waiting, by a dedicated thread (see {@link #run()}).
+ * The waiting logs are stored in the cache outside of the EDT; inside the EDT their keys 
+ * are appended to {@link #rows} and the table is notified with <code>fireTableRowsInserted</code>
+ * in chunks of at most {@link #MAX_ROWS_PER_EVENT} rows: the <code>TableRowSorter</code> 
+ * inserts small chunks in order in the already sorted view instead of sorting 
+ * all the rows again.
+ * The number of logs waiting to be added is bounded by {@link #MAX_PENDING_LOGS}: 
+ * when the table can't keep the pace, {@link #appendLog(ILogEntry)} waits 
+ * (but never blocks the EDT).
  * <P>
  * When a log is deleted, it key is immediately removed from the List of logs ({@link #rows} 
  * but the key is still in the cache ({@link #allLogs}). A dedicated thread, {@link KeysDeleter}, 
  * is in charge of removing unused keys. This operation can be safely done in a non-EDT
  * thread.
+ * The oldest logs exceeding the max number of logs are removed with a single range removal
+ * and notified with <code>fireTableRowsDeleted</code>.
  * <P>
  * <CODE>LogEntryTableModelBase</CODE> can be reused by log tables with basic functionalities 
  * like the error browsers.
@@ -97,12 +107,14 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		private volatile boolean closed=false;
 		
 		/**
-		 * The cache of keys to be deleted by the thread.
+		 * The keys to be deleted by the thread.
 		 * <P>
-		 * {@link ArrayList} seems the best choice considering that we need only 3
-		 * operations: add, get and clear.
+		 * The thread replaces the list with a new one when it deletes the keys
+		 * so that the keys are never copied.
+		 * <P>
+		 * Access to this list is guarded by <code>this</code>.
 		 */
-		private final List<Integer> keysToDelete = Collections.synchronizedList(new ArrayList<Integer>());
+		private List<Integer> keysToDelete = new ArrayList<Integer>();
 		
 		/**
 		 * Invalidate the list that will be cleared.
@@ -112,8 +124,8 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		 * 
 		 * @see LogEntryTableModelBase#clearAll()
 		 */
-		public void invalidate() {
-			keysToDelete.clear();
+		public synchronized void invalidate() {
+			keysToDelete = new ArrayList<Integer>();
 		}
 		
 		/**
@@ -121,7 +133,7 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		 * 
 		 * @param key The not <code>null</code> key to delete
 		 */
-		public void scheduleForDeletion(Integer key) {
+		public synchronized void scheduleForDeletion(Integer key) {
 			if (key==null) {
 				throw new IllegalArgumentException("Adding a null key is not allowed");
 			}
@@ -137,7 +149,7 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		 * 
 		 * @param keys The not <code>null</code> keys to delete
 		 */
-		public void scheduleForDeletion(List<Integer> keys) {
+		public synchronized void scheduleForDeletion(List<Integer> keys) {
 			if (keys==null) {
 				throw new IllegalArgumentException("Adding a null key is not allowed");
 			}
@@ -148,7 +160,11 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		}
 
 		/**
-		 * The thread to remove the keys
+		 * The thread to remove the keys.
+		 * <P>
+		 * The keys are deleted in chunks of {@link LogEntryTableModelBase#KEY_DELETION_CHUNK} keys:
+		 * the cache is locked once per chunk instead of once per key 
+		 * but never for too long to avoid blocking the EDT.
 		 */
 		@Override
 		public void run() {
@@ -158,28 +174,27 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 				} catch (InterruptedException ie) {
 					continue;
 				}
-				if (keysToDelete.isEmpty()) {
-					continue;
-				}
-				// Make a local copy to avoid blocking the EDT
 				List<Integer> temp;
-				synchronized(keysToDelete) {
-					temp= new ArrayList<Integer>(keysToDelete);
-					keysToDelete.clear();
+				synchronized (this) {
+					if (keysToDelete.isEmpty()) {
+						continue;
+					}
+					temp=keysToDelete;
+					keysToDelete=new ArrayList<Integer>();
 				}
-				for (Integer keyToRemove: temp) {
+				for (int t=0; t<temp.size() && !closed; t+=KEY_DELETION_CHUNK) {
+					List<Integer> chunk=temp.subList(t, Math.min(temp.size(), t+KEY_DELETION_CHUNK));
 					try {
-						allLogs.deleteLog(keyToRemove);
-					} catch (Throwable t) {
-						// An exception removing the key:
+						allLogs.deleteLogs(chunk);
+					} catch (Throwable th) {
+						// An exception removing the keys:
 						// there is nothing to do so we print out a message and continue
-						System.err.println("Error deleting a key from the cache of logs "+keyToRemove);
-						t.printStackTrace(System.err);
+						System.err.println("Error deleting keys from the cache of logs "+chunk.get(0)+"..."+chunk.get(chunk.size()-1));
+						th.printStackTrace(System.err);
 					}
 				}
-				temp.clear();
 			}
-			keysToDelete.clear();
+			invalidate();
 		}
 		
 		/**
@@ -208,14 +223,55 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	 */
 	private static final int KEY_DELETION_INTERVAL = 60000; 
 	
+	/**
+	 * The max number of keys deleted from the cache in one shot
+	 * 
+	 * @see KeysDeleter
+	 */
+	private static final int KEY_DELETION_CHUNK = 1024;
+	
+	/**
+	 * The number of logs waiting in {@link #rowsToAdd} that triggers
+	 * a refresh before the {@link #UPDATE_INTERVAL} elapses
+	 */
+	private static final int FLUSH_THRESHOLD = 2048;
+	
+	/**
+	 * The max number of logs waiting in {@link #rowsToAdd}
+	 */
+	public static final int MAX_PENDING_LOGS = 32768;
+	
+	/**
+	 * The max number of rows notified by each <code>fireTableRowsInserted</code>
+	 */
+	private static final int MAX_ROWS_PER_EVENT = 512;
+	
 	/**
 	 * The vector of logs to add in the rows.
 	 * <P>
 	 * Newly arrived logs are appended to this vector and flushed into 
 	 * <code>rows</code> by the <code>TableUpdater</code> thread.
 	 * <P>Newest logs are in the tail; oldest logs in the head.
+	 * <P>
+	 * Access to this list is guarded by the list itself that is also used
+	 * to wake up the <code>TableUpdater</code> thread and the threads waiting 
+	 * in {@link #appendLog(ILogEntry)}.
+	 */
+	private final List<ILogEntry> rowsToAdd = new ArrayList<ILogEntry>();
+	
+	/**
+	 * The lock to add the logs to the cache outside of the EDT
+	 * without interfering with {@link #clearAll()} 
 	 */
-	private final List<ILogEntry> rowsToAdd = Collections.synchronizedList(new Vector<ILogEntry>());
+	private final Object cacheLock = new Object();
+	
+	/**
+	 * Incremented each time the cache is cleared (inside the EDT).
+	 * <P>
+	 * It allows to discard the keys of the logs added to the cache
+	 * before it has been cleared.
+	 */
+	private int cacheGeneration=0;
 		
 	/**
 	 * The processor to reduce the logs
@@ -343,6 +399,14 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		return allLogs.getFilesSize();
 	}
 
+	/**
+	 * @return The secondary indexes of the logs in the cache
+	 * @see LogCache#getIndexes()
+	 */
+	public LogCacheIndexes getCacheIndexes() {
+		return allLogs.getIndexes();
+	}
+
 	/**
 	 * @see javax.swing.table.TableModel#getRowCount()
 	 */
@@ -428,11 +492,17 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		// Remove the logs waiting to be inserted
 		EDTExecutor.instance().execute(new Runnable() {
 			public void run() {
-				rowsToAdd.clear();
+				synchronized (rowsToAdd) {
+					rowsToAdd.clear();
+					rowsToAdd.notifyAll();
+				}
 				rows.clear();
 				keysDeleter.invalidate();
 				try {
-					allLogs.clear();		
+					synchronized (cacheLock) {
+						cacheGeneration++;
+						allLogs.clear();
+					}
 				} catch (Throwable t) {
 					System.err.println("Exception caught clearing the cache: "+t.getMessage());
 					t.printStackTrace(System.err);
@@ -566,6 +636,10 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		keysDeleter.close();
 		
 		closed=true;
+		synchronized (rowsToAdd) {
+			// Release the threads waiting in appendLog
+			rowsToAdd.notifyAll();
+		}
 		if (tableUpdater!=null) {
 			tableUpdater.interrupt();
 			if (sync) {
@@ -597,12 +671,13 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	 * Adds a log to {@link TableUpdater#rowsToAdd} ready to be flushed
 	 * in the table at the next iteration.
 	 * <P>
-	 * To avoid updating the table very frequently, the logs to add are immediately 
-	 * inserted in the <code>LogCache</code> but their insertion in the table is delayed 
-	 * and done by the <code>TableUpdater</code> thread.
-	 * <BR>
-	 * For this reason each log is inserted in the temporary vector <code>rowsToAdd</code> 
-	 * that will be flushed into <code>rows</code> by the thread.
+	 * To avoid updating the table very frequently, the logs to add are 
+	 * inserted in the temporary vector <code>rowsToAdd</code> 
+	 * that will be flushed into the cache and into <code>rows</code> by the thread.
+	 * <P>
+	 * If there are already {@link #MAX_PENDING_LOGS} logs waiting to be flushed,
+	 * this method waits until the thread flushes them unless it is executed
+	 * inside the EDT.
 	 * 
 	 * @param log The log to add
 	 */
@@ -610,8 +685,29 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		if (log==null) {
 			throw new IllegalArgumentException("Can't append a null log to the table model");
 		}
-		if (!closed) {
+		if (closed) {
+			return;
+		}
+		synchronized (rowsToAdd) {
+			if (rowsToAdd.size()>=MAX_PENDING_LOGS && !SwingUtilities.isEventDispatchThread()) {
+				rowsToAdd.notifyAll();
+				while (rowsToAdd.size()>=MAX_PENDING_LOGS && !closed) {
+					try {
+						rowsToAdd.wait(UPDATE_INTERVAL);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			if (closed) {
+				return;
+			}
 			rowsToAdd.add(log);
+			if (rowsToAdd.size()==FLUSH_THRESHOLD) {
+				// Wake up the thread
+				rowsToAdd.notifyAll();
+			}
 		}
 	}
 	
@@ -620,10 +716,8 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	 * <P>
 	 * New logs are appended in the temporary vector <code>rowsToAdd</code> to limit 
 	 * the frequency of updating the table model.
-	 * This method flushes the logs from the temporary vector into the model vector 
-	 * (<code>rows</code>).
-	 * 
-	 * @return <code>true</code> if at least one log has been added to the model
+	 * This method adds the logs to the cache from the calling thread and then, inside the EDT, 
+	 * appends their keys to the model vector (<code>rows</code>).
 	 */
 	private void flushLogs() {
 		
@@ -644,30 +738,47 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 				System.err.println("Exception caught ("+t.getMessage()+")while reducing logs: reduction disabled this time");
 				t.printStackTrace(System.err);
 			}
-			temp=new Vector<ILogEntry>(rowsToAdd);
+			temp=new ArrayList<ILogEntry>(rowsToAdd);
 			rowsToAdd.clear();
+			// Wake up the threads waiting in appendLog
+			rowsToAdd.notifyAll();
 		}
-			
-		// Add the reduced logs into the model (from inside the EDT)
+		
+		// Add the logs to the cache (outside of the EDT)
+		final int[] keys = new int[temp.size()];
+		int numOfKeys=0;
+		final int generation;
+		synchronized (cacheLock) {
+			generation=cacheGeneration;
+			for (int t=temp.size()-1; t>=0; t--) {
+				try {
+					keys[numOfKeys]=allLogs.add(temp.get(t));
+					numOfKeys++;
+				} catch (LogCacheException lce) {
+					System.err.println("Exception caught while inserting a new log entry in cache:");
+					System.err.println(lce.getLocalizedMessage());
+					lce.printStackTrace(System.err);
+				}
+			}
+		}
+		temp.clear();
+		final int size=numOfKeys;
+		
+		// Add the keys into the model (from inside the EDT)
 		try {
 			EDTExecutor.instance().executeSync(new Runnable() {
 				@Override
 				public void run() {
-					for (int t=temp.size()-1; t>=0; t--) {
-						ILogEntry log=temp.get(t);
-						Integer key;
-						try {
-							key=Integer.valueOf(allLogs.add(log));
-						} catch (LogCacheException lce) {
-							System.err.println("Exception caught while inserting a new log entry in cache:");
-							System.err.println(lce.getLocalizedMessage());
-							lce.printStackTrace(System.err);
-							continue;
-						}
-						rows.add(key);
+					if (generation!=cacheGeneration) {
+						// The cache has been cleared in the meantime
+						return;
+					}
+					for (int t=0; t<size; t+=MAX_ROWS_PER_EVENT) {
+						int end=Math.min(size, t+MAX_ROWS_PER_EVENT);
+						rows.addAll(keys, t, end);
+						// The new logs are shown in the first rows
+						fireTableRowsInserted(0, end-t-1);
 					}
-					// Finally notify the change
-					fireTableRowsInserted(0, temp.size()-1);
 				}
 			});
 		} catch (InvocationTargetException e) {
@@ -711,8 +822,9 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 						// The model is unbounded or there is still enough room in the model
 						return;
 					}
-					keysDeleter.scheduleForDeletion(rows.removeLastEntries(rows.size()-maxLog));
-					fireTableDataChanged();
+					// The oldest logs are in the last rows
+					keysDeleter.scheduleForDeletion(rows.removeLastEntries(sz-maxLog));
+					fireTableRowsDeleted(maxLog, sz-1);
 				}
 			});
 		} catch (InvocationTargetException e) {
@@ -729,10 +841,15 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	@Override
 	public void run() {
 		while (!terminateThread) {
-			try {
-				Thread.sleep(UPDATE_INTERVAL);
-			} catch (InterruptedException ie) {
-				continue;
+			// Wait for the interval to elapse or enough logs to flush
+			synchronized (rowsToAdd) {
+				if (rowsToAdd.size()<FLUSH_THRESHOLD) {
+					try {
+						rowsToAdd.wait(UPDATE_INTERVAL);
+					} catch (InterruptedException ie) {
+						continue;
+					}
+				}
 			}
 			// Flush the logs waiting to be added in the model
 			try {
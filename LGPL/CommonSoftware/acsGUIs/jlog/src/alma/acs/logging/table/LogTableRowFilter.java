@@ -23,6 +23,8 @@ package alma.acs.logging.table;
 
 import javax.swing.RowFilter;
 
+import com.cosylab.logging.client.cache.LogCacheIndexes;
+import com.cosylab.logging.engine.CompiledFilters;
 import com.cosylab.logging.engine.Filter;
 import com.cosylab.logging.engine.FiltersVector;
 import com.cosylab.logging.engine.log.ILogEntry;
@@ -33,10 +35,14 @@ import com.cosylab.logging.engine.log.LogTypeHelper;
  * The filters used to hide/show logs in the table.
  * <P>
  * The filters defined in the <code>FiltersVector</code> are entirely reused by this object.
- * To enhance performances only the active filters are stored into an array built 
- * by the constructor.
+ * To enhance performances only the active filters are compiled into a {@link CompiledFilters}
+ * built by the constructor.
  * All the magic happens in the <code>include</code> method where the filters are compared against
  * the values of a row of the table.
+ * <P>
+ * If the indexes of the cache are available, the logs in the cache are selected
+ * by the indexes when the object is built and <code>include</code> applies to each log only 
+ * the filters that the indexes can't answer.
  *  
  * @author acaproni
  *
@@ -52,6 +58,20 @@ public class LogTableRowFilter extends RowFilter<LogTableDataModel, Integer> {
 	 */
 	private Filter[] filters = null;
 	
+	/**
+	 * The active filters compiled in a single predicate.
+	 * <P>
+	 * It is <code>null</code> if there are no filters.
+	 */
+	private CompiledFilters compiledFilters = null;
+	
+	/**
+	 * The filters that can't be answered by the indexes compiled in a single predicate.
+	 * <P>
+	 * It is <code>null</code> if there is no {@link #selection}.
+	 */
+	private final CompiledFilters residualFilters;
+	
 	/**
 	 * The log level.
 	 * <P>
@@ -59,6 +79,14 @@ public class LogTableRowFilter extends RowFilter<LogTableDataModel, Integer> {
 	 */
 	private LogTypeHelper logLevel=LogTypeHelper.TRACE;
 	
+	/**
+	 * The logs of the cache matching the log level and the filters that can be
+	 * answered by the indexes of the cache.
+	 * <P>
+	 * It is <code>null</code> if the indexes are not available.
+	 */
+	private final LogCacheIndexes.Selection selection;
+	
 	/**
 	 * Constructor
 	 * 
@@ -66,8 +94,30 @@ public class LogTableRowFilter extends RowFilter<LogTableDataModel, Integer> {
 	 * @param logLevel The log level of the logs to filter out
 	 */
 	public LogTableRowFilter(FiltersVector filtersVector, LogTypeHelper logLevel) {
+		this(filtersVector,logLevel,null);
+	}
+	
+	/**
+	 * Constructor
+	 * <P>
+	 * The logs already in the cache are selected by the indexes once, here: only the
+	 * filters that can't be answered by the indexes (like regular expressions) 
+	 * are applied to each log by {@link #include(javax.swing.RowFilter.Entry)}.
+	 * 
+	 * @param filtersVector The vector of engine filters (can be <code>null</code> or empty)
+	 * @param logLevel The log level of the logs to filter out
+	 * @param indexes The indexes of the cache of logs (can be <code>null</code>)
+	 */
+	public LogTableRowFilter(FiltersVector filtersVector, LogTypeHelper logLevel, LogCacheIndexes indexes) {
 		buildTableFilters(filtersVector);
 		this.logLevel=logLevel;
+		if (indexes!=null && (filters!=null || (logLevel!=null && logLevel.ordinal()>0))) {
+			selection=indexes.select(filters, logLevel);
+			residualFilters = new CompiledFilters(selection.getResidualFilters(), false);
+		} else {
+			selection=null;
+			residualFilters=null;
+		}
 	}
 	
 	/**
@@ -94,6 +144,7 @@ public class LogTableRowFilter extends RowFilter<LogTableDataModel, Integer> {
 			for (int t=0; t<activesIndexes.length; t++) {
 				filters[t]=userFilters.get(activesIndexes[t]);
 			}
+			compiledFilters = new CompiledFilters(filters, false);
 		}
 	}
 
@@ -115,8 +166,8 @@ public class LogTableRowFilter extends RowFilter<LogTableDataModel, Integer> {
 	 * containing it in <code>entry</code>. 
 	 * It is possible to know which field a filter wants to filter by reading the <code>Filter.field</code>
 	 * property.
-	 * <P>Once we have the filter and the value to filter, we can use <code>filter.applyTo(Object obj)</code>
-	 * method to check if the row matches the filter.
+	 * <P>The log of the row is then checked against all the active filters at once
+	 * by the {@link CompiledFilters}.
 	 * 
 	 * @param entry The entry to check against filters
 	 * @return <code>true</code> if the entry passed the filters and must be displayed in the table
@@ -124,12 +175,27 @@ public class LogTableRowFilter extends RowFilter<LogTableDataModel, Integer> {
 	 */
 	@Override
 	public boolean include(Entry<? extends LogTableDataModel, ? extends Integer> entry) {
+		if (selection!=null) {
+			// Logs already indexed when this filter has been built 
+			// are checked against the selection
+			Integer key = entry.getModel().getLogKey(entry.getIdentifier().intValue());
+			if (key!=null && selection.isIndexed(key.intValue())) {
+				if (!selection.contains(key.intValue())) {
+					return false;
+				}
+				if (residualFilters.isEmpty()) {
+					return true;
+				}
+				ILogEntry log = entry.getModel().getVisibleLogEntry(entry.getIdentifier().intValue());
+				return log!=null && residualFilters.matches(log);
+			}
+		}
 		// Check the log level
 		if (!checkLogLevel((LogTypeHelper)entry.getValue(LogField.ENTRYTYPE.ordinal()+1))) {
 			return false;
 		}
 		// If there are no filters defined, the entry is accepted
-		if (filters==null) {
+		if (compiledFilters==null) {
 			return true;
 		}
 		
@@ -138,12 +204,7 @@ public class LogTableRowFilter extends RowFilter<LogTableDataModel, Integer> {
 		ILogEntry log = model.getVisibleLogEntry(entry.getIdentifier().intValue());
 		
 		// Check if the log matches with the filters
-		boolean ret=true;
-		for (int t=0; t<filters.length && ret; t++) {
-			
-			ret = ret && filters[t].applyTo(log, false);
-		}
-		return ret;
+		return compiledFilters.matches(log);
 	}
 	
 	/**
@@ -141,7 +141,7 @@ public class LogTableRowSorter extends TableRowSorter<LogTableDataModel> impleme
 		EDTExecutor.instance().execute(new Runnable() {
 			@Override
 			public void run() {
-				setRowFilter(new LogTableRowFilter(filters,logLevel));
+				setRowFilter(new LogTableRowFilter(filters,logLevel,model.getCacheIndexes()));
 		
 			}
 		});
@@ -53,26 +53,29 @@ public class RowEntries {
 	/**
 	 * Remove the oldest <code>numOfEntries</code> entries from the 
 	 * array.
+	 * <P>
+	 * The entries are removed with a single range removal.
 	 * 
 	 * @param numOfEntries
+	 * @return the keys removed
 	 */
 	public List<Integer> removeLastEntries(int numOfEntries) {
 		if (numOfEntries<=0) {
 			throw new IllegalArgumentException("Invalid number of entries to remove: "+numOfEntries);
 		}
-		List<Integer> temp = new ArrayList<Integer>();
 		synchronized (entries) {
-			for (int t=0; t<numOfEntries; t++) {
-				temp.add(entries.get(0));
-				entries.remove(0);
-			}
+			List<Integer> range = entries.subList(0, Math.min(numOfEntries, entries.size()));
+			List<Integer> temp = new ArrayList<Integer>(range);
+			range.clear();
+			return temp;
 		}
-		return temp;
 	}
 	
 	/**
 	 * Remove the first <code>numOfEntries</code> entries from the 
 	 * array.
+	 * <P>
+	 * The entries are removed with a single range removal.
 	 * 
 	 * @param numOfEntries
 	 * @return the keys removed
@@ -81,15 +84,14 @@ public class RowEntries {
 		if (numOfEntries<=0) {
 			throw new IllegalArgumentException("Invalid number of entries to remove: "+numOfEntries);
 		}
-		List<Integer> temp = new ArrayList<Integer>();
 		synchronized (entries) {
-			for (int t=0; t<numOfEntries && !entries.isEmpty(); t++) {
-				temp.add(entries.get(entries.size()-1));
-				entries.remove(entries.size()-1);
-				
-			}
+			List<Integer> range = entries.subList(Math.max(0, entries.size()-numOfEntries), entries.size());
+			List<Integer> temp = new ArrayList<Integer>(range);
+			range.clear();
+			// The first entry is the last of the list
+			Collections.reverse(temp);
+			return temp;
 		}
-		return temp;
 	}
 
 	/**
@@ -110,6 +112,24 @@ public class RowEntries {
 	public void add(Integer key) {
 		entries.add(key);
 	}
+	
+	/**
+	 * Add the passed keys to the list of entries.
+	 * <P>
+	 * The keys are appended at the end of the vector in the given order
+	 * i.e. the last key will be shown in the first row of the table.
+	 * 
+	 * @param keys The keys to add
+	 * @param from The position in <code>keys</code> of the first key to add
+	 * @param to The position in <code>keys</code> after the last key to add
+	 */
+	public void addAll(int[] keys, int from, int to) {
+		synchronized (entries) {
+			for (int t=from; t<to; t++) {
+				entries.add(Integer.valueOf(keys[t]));
+			}
+		}
+	}
 
 	/**
 	 * Return the key at the given row of the table.
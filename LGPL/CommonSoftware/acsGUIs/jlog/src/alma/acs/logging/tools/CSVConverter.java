@@ -21,6 +21,7 @@
  */
 package alma.acs.logging.tools;
 
+import java.text.FieldPosition;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Vector;
@@ -54,6 +55,24 @@ import alma.acs.util.IsoDateFormat;
  */
 public class CSVConverter extends LogConverter {
 	
+	/**
+	 * The ID of the additional data in {@link LogConverter#colIndex}
+	 */
+	private static final char DATA_ID=Character.toUpperCase(ADDITIONAL_DATA_ID);
+	
+	/**
+	 * The format of the timestamp.
+	 * <P>
+	 * <code>SimpleDateFormat</code> is not thread safe so each thread
+	 * converting logs has its own instance.
+	 */
+	private static final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new IsoDateFormat();
+		}
+	};
+	
 	/**
 	 * The separator, usually a ','
 	 */
@@ -153,46 +172,55 @@ public class CSVConverter extends LogConverter {
 	 * @return The CSV string representing the log
 	 */
 	public String convert(ILogEntry log) {
+		StringBuilder str = new StringBuilder();
+		convert(log,str);
+		return str.toString();
+	}
+	
+	/**
+	 * Convert a log in a CSV string appending it to the passed builder
+	 * 
+	 * @param log The log to convert
+	 * @param str The builder to append the CSV string representing the log
+	 */
+	@Override
+	public void convert(ILogEntry log, StringBuilder str) {
 		if (log==null) {
 			throw new IllegalArgumentException("Impossible to convert a null log");
 		}
-		StringBuilder str = new StringBuilder();
-		SimpleDateFormat df = new IsoDateFormat();
-		for (int t=0; t<colIndex.length(); t++) {
+		String cols=colIndex;
+		for (int t=0; t<cols.length(); t++) {
 			if (t>0) {
 				str.append(separator);
 			}
-			Character c= Character.toUpperCase(colIndex.charAt(t));
-			if (
-					(c>='0' && c<='9') || 
-					(c>='A' && c<=Character.toUpperCase(LogField.values()[LogField.values().length-1].id))) {
-				LogField field=LogField.fromID(c);
-				Object obj = log.getField(field);
-				if (obj==null) {
-					appendField(null,str);
-				} else  if (field==LogField.TIMESTAMP) {
-					// Write the date in the right format
-					Date dt=new Date(((Long)obj).longValue());
-					StringBuffer dateSB = new StringBuffer();
-					java.text.FieldPosition pos = new java.text.FieldPosition(0);
-					df.format(dt,dateSB,pos);
-					appendField(dateSB.toString(),str);
-				} else if (field==LogField.ENTRYTYPE) {
-					appendField(LogTypeHelper.fromLogTypeDescription(obj.toString()).logEntryType,str);
-				} else {
-					appendField(obj.toString(),str);
-				}
-			} else {
+			char c= Character.toUpperCase(cols.charAt(t));
+			if (c==DATA_ID) {
 				// DATA
 				if (log.hasDatas()) {
 					appendField(formatData(log.getAdditionalData()),str);
 				} else {
 					appendField(null,str);
 				}
+				continue;
+			}
+			LogField field=LogField.fromID(c);
+			Object obj = log.getField(field);
+			if (obj==null) {
+				appendField(null,str);
+			} else  if (field==LogField.TIMESTAMP) {
+				// Write the date in the right format
+				SimpleDateFormat df = dateFormat.get();
+				StringBuffer dateSB = new StringBuffer();
+				df.format(new Date(((Long)obj).longValue()),dateSB,new FieldPosition(0));
+				appendField(dateSB,str);
+			} else if (field==LogField.ENTRYTYPE) {
+				LogTypeHelper logType = (obj instanceof LogTypeHelper)?(LogTypeHelper)obj:LogTypeHelper.fromLogTypeDescription(obj.toString());
+				appendField(logType.logEntryType,str);
+			} else {
+				appendField(obj.toString(),str);
 			}
 		}
 		str.append('\n');
-		return str.toString();
 	}
 	
 	/**
@@ -203,23 +231,29 @@ public class CSVConverter extends LogConverter {
 	 * @param fld The field to append
 	 * @param str The string builder where the field is appended
 	 */
-	private void appendField(String fld, StringBuilder str) {
+	private void appendField(CharSequence fld, StringBuilder str) {
 		if (useDoubleQuotes) {
-			if (fld==null || fld.length()==0) {
-				str.append('"');
-				str.append('"');
-				return;
-			}
 			str.append('"');
-			str.append(fld.replaceAll("\"","\"\""));
+			if (fld!=null) {
+				for (int t=0; t<fld.length(); t++) {
+					char c=fld.charAt(t);
+					if (c=='"') {
+						str.append('"');
+					}
+					str.append(c);
+				}
+			}
 			str.append('"');
-		} else {
-			if (fld==null || fld.length()==0) {
-				return;
+		} else if (fld!=null) {
+			for (int t=0; t<fld.length(); t++) {
+				char c=fld.charAt(t);
+				switch (c) {
+				case '"': str.append('\''); break;
+				case ',': str.append('_'); break;
+				case '\n': str.append(' '); break;
+				default: str.append(c);
+				}
 			}
-			String temp = fld.replace('"','\'');
-			temp=temp.replace(",","_");
-			str.append(temp.replace('\n',' '));
 		}
 	}
 	
@@ -84,7 +84,8 @@ public class LogAssistant {
 	private String destFileName=null;
 	
 	/**
-	 * The converter to save the logs in the preferred format.
+	 * The converter to save the logs in the preferred format
+	 * (<code>null</code> for the binary columnar format).
 	 */
 	private LogConverter converter;
 	
@@ -155,6 +156,8 @@ public class LogAssistant {
 		cmdLineArgs.registerOption(xmlOtuputFormat);
 		CmdLineRegisteredOption twikiOtuputFormat = new CmdLineRegisteredOption("-twiki",0);
 		cmdLineArgs.registerOption(twikiOtuputFormat);
+		CmdLineRegisteredOption binOtuputFormat = new CmdLineRegisteredOption("-bin",0);
+		cmdLineArgs.registerOption(binOtuputFormat);
 		CmdLineRegisteredOption startTime = new CmdLineRegisteredOption("-s","-start",1);
 		cmdLineArgs.registerOption(startTime);
 		CmdLineRegisteredOption endTime = new CmdLineRegisteredOption("-e","-end",1);
@@ -267,6 +270,12 @@ public class LogAssistant {
 			converter=new TwikiTableConverter(cols);
 			count++;
 		}
+		if (cmdLineArgs.isSpecified(binOtuputFormat)) {
+			System.out.println("Set output format to binary columnar");
+			// The logs are written by a ColumnarLogWriter: no converter
+			converter=null;
+			count++;
+		}
 		if (count==0) {
 			// No converter ==> Use XML by default
 			converter=new XMLConverter();
@@ -436,9 +445,10 @@ public class LogAssistant {
 		System.out.println("\t-csv: write the output as CSV");
 		System.out.println("\t-txt: write the output as plain ASCII text");
 		System.out.println("\t-twiki: write the output as Twiki table");
+		System.out.println("\t-bin: write the output in binary columnar format (can be loaded again by jlog and this tool)");
 		System.out.println("\t-col|-l columns: select the columns to write in the csv (not supported by XML)");
 		System.out.println("-dest <filename>: the name of the destionation file.");
-		System.out.println("-src <filename>...: the name of the source files.");
+		System.out.println("-src <filename>...: the name of the source files (.xml, .gz or .bin).");
 		System.out.println("                    Can be omitted if log files are provided on stdin.");
 		System.out.println("\nSee ACS manual for further details.\n");
 	}
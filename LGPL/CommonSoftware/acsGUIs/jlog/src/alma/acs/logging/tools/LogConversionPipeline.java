@@ -0,0 +1,410 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.tools;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import alma.acs.logging.engine.io.ColumnarLogWriter;
+
+import com.cosylab.logging.engine.log.ILogEntry;
+
+/**
+ * The pipeline to convert and write the logs read by the command line tools.
+ * <P>
+ * The logs are passed to the pipeline, in order, by the thread that
+ * reads them (the logs are parsed in parallel by the <code>IOHelper</code>).
+ * The pipeline groups the logs in batches of {@link #BATCH_SIZE} logs that are converted 
+ * in parallel by a pool of threads, one per available processor.
+ * Each batch is converted in a <code>StringBuilder</code> taken from a pool
+ * so that the builders are reused instead of allocating new strings for each log.
+ * <P>
+ * A dedicated thread writes the converted batches in the same order the logs were added,
+ * through a {@link NioLogWriter}.
+ * If there is no converter, the writer thread saves the logs
+ * with a {@link ColumnarLogWriter} instead.
+ * The columnar format is binary and written in blocks, so it is not 
+ * a {@link LogConverter}.
+ * <P>
+ * The number of batches in progress is bounded so that a slow disk
+ * slows down the reading instead of filling the memory.
+ * <P>
+ * The methods of this class must be called by the same thread.
+ */
+public class LogConversionPipeline {
+	
+	/**
+	 * The number of logs in each batch
+	 */
+	public static final int BATCH_SIZE = 2048;
+	
+	/**
+	 * A step for the writer thread.
+	 * <P>
+	 * A step is one of the following:
+	 * <UL>
+	 * 	<LI>open a new file (<code>fileName!=null</code>)
+	 * 	<LI>write a batch of converted logs (<code>converted!=null</code>)
+	 * 	<LI>write a batch of logs in columnar format (<code>logs!=null</code>)
+	 * 	<LI>close the file and terminate (all the fields <code>null</code>)
+	 * </UL>
+	 */
+	private static class Step {
+		final String fileName;
+		final Future<StringBuilder> converted;
+		final ILogEntry[] logs;
+		final int size;
+		
+		Step(String fileName, Future<StringBuilder> converted, ILogEntry[] logs, int size) {
+			this.fileName=fileName;
+			this.converted=converted;
+			this.logs=logs;
+			this.size=size;
+		}
+	}
+	
+	/**
+	 * The thread that writes the batches in order
+	 */
+	private class WriterThread extends Thread {
+		
+		/**
+		 * The writer of converted logs
+		 */
+		private NioLogWriter textWriter=null;
+		
+		/**
+		 * The writer of logs in columnar format
+		 */
+		private ColumnarLogWriter columnarWriter=null;
+		
+		public WriterThread() {
+			super("LogConversionPipeline.WriterThread");
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			while (true) {
+				Step step;
+				try {
+					step = steps.take();
+				} catch (InterruptedException ie) {
+					setError(ie);
+					break;
+				}
+				if (step.fileName==null && step.converted==null && step.logs==null) {
+					try {
+						closeFile();
+					} catch (Throwable t) {
+						setError(t);
+					}
+					break;
+				}
+				try {
+					if (step.converted!=null) {
+						StringBuilder converted=step.converted.get();
+						if (error==null) {
+							textWriter.write(converted);
+						}
+						builders.put(converted);
+					} else if (error==null) {
+						if (step.fileName!=null) {
+							closeFile();
+							openFile(step.fileName);
+						} else {
+							for (int t=0; t<step.size; t++) {
+								columnarWriter.write(step.logs[t]);
+							}
+						}
+					}
+				} catch (ExecutionException ee) {
+					setError(ee.getCause());
+				} catch (Throwable t) {
+					setError(t);
+				}
+			}
+		}
+		
+		private void openFile(String fileName) throws IOException {
+			if (columnar) {
+				columnarWriter = new ColumnarLogWriter(new FileOutputStream(fileName,false));
+			} else {
+				textWriter = new NioLogWriter(fileName);
+			}
+		}
+		
+		private void closeFile() throws IOException {
+			if (textWriter!=null) {
+				textWriter.close();
+				textWriter=null;
+			}
+			if (columnarWriter!=null) {
+				columnarWriter.close();
+				columnarWriter=null;
+			}
+		}
+	}
+	
+	/**
+	 * The converter of the logs (<code>null</code> if the logs 
+	 * are written in columnar format)
+	 */
+	private final LogConverter converter;
+	
+	/**
+	 * <code>true</code> if the logs are written in columnar format
+	 */
+	private final boolean columnar;
+	
+	/**
+	 * The threads converting the batches
+	 */
+	private final ExecutorService converters;
+	
+	/**
+	 * The steps for the writer thread, in order
+	 */
+	private final BlockingQueue<Step> steps;
+	
+	/**
+	 * The builders not in use
+	 */
+	private final BlockingQueue<StringBuilder> builders;
+	
+	/**
+	 * The writer thread
+	 */
+	private final WriterThread writer = new WriterThread();
+	
+	/**
+	 * The batch in preparation
+	 */
+	private ILogEntry[] batch = new ILogEntry[BATCH_SIZE];
+	
+	/**
+	 * The number of logs in {@link #batch}
+	 */
+	private int batchSize=0;
+	
+	/**
+	 * <code>true</code> if a file has been opened
+	 */
+	private boolean fileOpened=false;
+	
+	/**
+	 * <code>true</code> if the pipeline has been closed
+	 */
+	private boolean closed=false;
+	
+	/**
+	 * The first error occurred converting or writing the logs
+	 */
+	private volatile Throwable error=null;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param converter The converter of the logs or <code>null</code>
+	 * 					to write the logs in columnar format
+	 */
+	public LogConversionPipeline(LogConverter converter) {
+		this(converter,Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param converter The converter of the logs or <code>null</code>
+	 * 					to write the logs in columnar format
+	 * @param threads The number of threads converting the logs
+	 */
+	public LogConversionPipeline(LogConverter converter, int threads) {
+		if (threads<=0) {
+			throw new IllegalArgumentException("Invalid number of threads "+threads);
+		}
+		this.converter=converter;
+		columnar = converter==null;
+		steps = new ArrayBlockingQueue<Step>(2*threads);
+		// One builder for each step in the queue, one for the step being written
+		// and one for each thread converting
+		int numOfBuilders=3*threads+1;
+		builders = new ArrayBlockingQueue<StringBuilder>(numOfBuilders);
+		for (int t=0; t<numOfBuilders; t++) {
+			builders.add(new StringBuilder());
+		}
+		converters = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r,"LogConversionPipeline.Converter");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		writer.start();
+	}
+	
+	/**
+	 * Return the extension of the files written by a pipeline
+	 * 
+	 * @param converter The converter of the logs or <code>null</code>
+	 * 					if the logs are written in columnar format
+	 * @return The extension of the files, including the dot
+	 */
+	public static String getFileExtension(LogConverter converter) {
+		return (converter==null) ? ColumnarLogWriter.FILE_EXTENSION : converter.getFileExtension();
+	}
+	
+	/**
+	 * Close the current file (if any) and open a new one:
+	 * the logs added after this method are written in the new file.
+	 * 
+	 * @param fileName The name of the new file
+	 * @throws IOException In case of error converting or writing the logs
+	 */
+	public void openFile(String fileName) throws IOException {
+		if (fileName==null || fileName.isEmpty()) {
+			throw new IllegalArgumentException("Invalid file name: "+fileName);
+		}
+		checkState();
+		flushBatch();
+		putStep(new Step(fileName, null, null, 0));
+		fileOpened=true;
+	}
+	
+	/**
+	 * Add a log to convert and write in the current file
+	 * 
+	 * @param log The log to add
+	 * @throws IOException In case of error converting or writing the logs
+	 */
+	public void add(ILogEntry log) throws IOException {
+		if (log==null) {
+			throw new IllegalArgumentException("The log can't be null");
+		}
+		checkState();
+		if (!fileOpened) {
+			throw new IllegalStateException("No file opened");
+		}
+		batch[batchSize++]=log;
+		if (batchSize==BATCH_SIZE) {
+			flushBatch();
+		}
+	}
+	
+	/**
+	 * Write all the logs, close the file and release the threads.
+	 * 
+	 * @throws IOException In case of error converting or writing the logs
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			flushBatch();
+			putStep(new Step(null, null, null, 0));
+			writer.join();
+		} catch (InterruptedException ie) {
+			setError(ie);
+		} finally {
+			closed=true;
+			converters.shutdownNow();
+		}
+		checkError();
+	}
+	
+	/**
+	 * Send the batch in preparation to the converters
+	 */
+	private void flushBatch() throws IOException {
+		if (batchSize==0) {
+			return;
+		}
+		final ILogEntry[] logs=batch;
+		final int size=batchSize;
+		batch = new ILogEntry[BATCH_SIZE];
+		batchSize=0;
+		if (columnar) {
+			putStep(new Step(null, null, logs, size));
+			return;
+		}
+		Future<StringBuilder> converted = converters.submit(new Callable<StringBuilder>() {
+			@Override
+			public StringBuilder call() throws Exception {
+				StringBuilder str = builders.take();
+				str.setLength(0);
+				try {
+					for (int t=0; t<size; t++) {
+						converter.convert(logs[t],str);
+					}
+				} catch (RuntimeException e) {
+					// Give the builder back to the pool 
+					builders.put(str);
+					throw e;
+				}
+				return str;
+			}
+		});
+		putStep(new Step(null, converted, null, 0));
+	}
+	
+	private void putStep(Step step) throws IOException {
+		try {
+			steps.put(step);
+		} catch (InterruptedException ie) {
+			throw new IOException("Interrupted while writing logs", ie);
+		}
+	}
+	
+	private void checkState() throws IOException {
+		if (closed) {
+			throw new IllegalStateException("The pipeline has been closed");
+		}
+		checkError();
+	}
+	
+	private void checkError() throws IOException {
+		Throwable t = error;
+		if (t==null) {
+			return;
+		}
+		if (t instanceof IOException) {
+			throw (IOException)t;
+		}
+		throw new IOException("Error converting logs: "+t.getMessage(), t);
+	}
+	
+	private void setError(Throwable t) {
+		if (error==null) {
+			error=t;
+		}
+	}
+}
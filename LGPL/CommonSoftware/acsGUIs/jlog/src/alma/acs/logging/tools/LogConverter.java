@@ -169,6 +169,31 @@ public abstract class LogConverter {
 	 */
 	public abstract String convert(ILogEntry log);
 	
+	/**
+	 * Convert the log appending the converted string to the passed builder.
+	 * <P>
+	 * This method allows to reuse the same builder to convert many logs.
+	 * Implementations must be thread safe because the {@link LogConversionPipeline}
+	 * converts the logs in parallel.
+	 * <P>
+	 * The default implementation appends the string returned by {@link #convert(ILogEntry)}.
+	 * 
+	 * @param log The log to convert
+	 * @param out The builder to append the converted log to
+	 */
+	public void convert(ILogEntry log, StringBuilder out) {
+		out.append(convert(log));
+	}
+	
+	/**
+	 * Return the extension of the files of converted logs.
+	 * 
+	 * @return The extension of the files, including the dot
+	 */
+	public String getFileExtension() {
+		return ".txt";
+	}
+	
 	/**
 	 * Generate the header for the given converter.
 	 * <P>
@@ -22,9 +22,7 @@
 package alma.acs.logging.tools;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Date;
@@ -45,6 +43,8 @@ import com.cosylab.logging.engine.log.LogField;
  * It is possible to specify a start and/or end date or pass the name 
  * of a filter to load. The filters are the same used by jlog so
  * jlog can be used to edit and save such file.
+ * <P>
+ * The selected logs are converted and written by a {@link LogConversionPipeline}.
  * 
  * @author acaproni
  *
@@ -78,17 +78,13 @@ public class LogFileExtractor implements ACSRemoteLogListener, ACSRemoteErrorLis
 	private String destFileName;
 	
 	/**
-	 * The size of the buffer for writing
+	 * The pipeline to convert and write the logs in the destination file
 	 */
-	private static final int OUTPUT_BUFFER_SIZE=8192;
-	
-	/**
-	 * The writer to write the destination files
-	 */
-	private BufferedWriter outF=null;
+	private LogConversionPipeline pipeline=null;
 	
 	/**
 	 * The converter to format the log before saving
+	 * (<code>null</code> for the binary columnar format)
 	 */
 	private final LogConverter converter;
 	
@@ -106,6 +102,7 @@ public class LogFileExtractor implements ACSRemoteLogListener, ACSRemoteErrorLis
 	 * @param filterName The name of a file of filters to apply to select
 	 *                   logs (can be null)
 	 * @param converter The convert to save logs in different output formats
+	 * 			or <code>null</code> to save the logs in binary columnar format
 	 * @throws <code>Exception</code> In case of error
 	 */
 	public LogFileExtractor(
@@ -124,21 +121,13 @@ public class LogFileExtractor implements ACSRemoteLogListener, ACSRemoteErrorLis
 		if (inputFiles==null || inputFiles.length==0) {
 			throw new IllegalArgumentException("No source files");
 		}
-		if (converter==null) {
-			throw new IllegalArgumentException("The converter can't be null");
-		}
 		this.converter=converter;
 		inFileNames=new String[inputFiles.length];
 		System.arraycopy(inputFiles, 0, inFileNames, 0, inputFiles.length);
 		destFileName=outputFile;
 		// Add the extension to the outputfilename if not
 		// already present
-		String extension;
-		if (converter instanceof XMLConverter) {
-			extension=".xml";
-		} else {
-			extension=".txt";
-		}
+		String extension=LogConversionPipeline.getFileExtension(converter);
 		if (!destFileName.toLowerCase().endsWith(extension)) {
 			destFileName=destFileName+extension;
 		}
@@ -164,22 +153,15 @@ public class LogFileExtractor implements ACSRemoteLogListener, ACSRemoteErrorLis
 	}
 
 	/**
-	 * Create the <code>BufferedWriter</code> and the <code>IOHelper</code>
-	 * for writing logs.
-	 * <P>
-	 * This method uses a new <code>IOHelper</code> to open a new file 
-	 * where the logs are saved into.
-	 * It sets up:
-	 * <UL>
-	 * 	<LI>the <code>outHelper</code>
-	 *  <LI>the <code>outF</code>
-	 * </UL>
+	 * Create the {@link LogConversionPipeline} for writing logs
+	 * in the destination file.
 	 */
 	private void openDestFile() throws Exception {
 		if (destFileName.length()==0) {
 			throw new IllegalArgumentException("Wrong dest file name");
 		}
-		outF = new BufferedWriter(new FileWriter(destFileName));
+		pipeline = new LogConversionPipeline(converter);
+		pipeline.openFile(destFileName);
 	}
 	
 	/**
@@ -191,19 +173,21 @@ public class LogFileExtractor implements ACSRemoteLogListener, ACSRemoteErrorLis
 		IOHelper inputHelper = new IOHelper();
 		inputHelper.setFilters(filters);
 		openDestFile();
-		// Start the loading
-		if (inFileNames==null) {
-			// Read from stdin
-			BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
-			inputHelper.loadLogs(in, this, null, this, this);
-		} else for (String inFileName: inFileNames) {
-			System.out.println("Processing "+inFileName);
-			inputHelper.loadLogs(inFileName, this, null, this, this);
+		try {
+			// Start the loading
+			if (inFileNames==null) {
+				// Read from stdin
+				BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+				inputHelper.loadLogs(in, this, null, this, this);
+			} else for (String inFileName: inFileNames) {
+				System.out.println("Processing "+inFileName);
+				inputHelper.loadLogs(inFileName, this, null, this, this);
+			}
+		} finally {
+			// Flush and close the output
+			pipeline.close();
+			pipeline=null;
 		}
-		// Flush and close the output
-		outF.flush();
-		outF.close();
-		outF=null;
 	}
 	
 	/**
@@ -269,7 +253,7 @@ public class LogFileExtractor implements ACSRemoteLogListener, ACSRemoteErrorLis
 		}
 		if (matches) {
 			try {
-				outF.write(converter.convert(logEntry));
+				pipeline.add(logEntry);
 			} catch (IOException e) {
 				System.err.println("Error writing a log: "+e.getMessage());
 				e.printStackTrace(System.err);
@@ -22,8 +22,6 @@
 package alma.acs.logging.tools;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.FieldPosition;
@@ -37,8 +35,6 @@ import com.cosylab.logging.engine.log.LogField;
 
 import alma.acs.logging.engine.io.IOHelper;
 import alma.acs.logging.engine.io.IOPorgressListener;
-import alma.acs.logging.engine.parser.ACSLogParser;
-import alma.acs.logging.engine.parser.ACSLogParserFactory;
 import alma.acs.util.IsoDateFormat;
 
 /**
@@ -49,6 +45,8 @@ import alma.acs.util.IsoDateFormat;
  * for each created file.
  * If the time is the criteria to split the input file, the 
  * the date of the first log is appended to the name of the file too.
+ * <P>
+ * The logs are converted and written by a {@link LogConversionPipeline}.
  * 
  * @author acaproni
  *
@@ -93,14 +91,9 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 	private long firstLogDate=-1;
 	
 	/**
-	 * The size of the buffer for writing 
+	 * The pipeline to convert and write the logs in the destination files
 	 */
-	private static final int OUTPUT_BUFFER_SIZE=8192;
-	
-	/**
-	 * The writer to write the destination files
-	 */
-	private BufferedWriter outF=null;
+	private LogConversionPipeline pipeline=null;
 	
 	/**
 	 * The format of the date in the name of the file
@@ -109,6 +102,7 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 	
 	/**
 	 * The converter to format the log before saving
+	 * (<code>null</code> for the binary columnar format)
 	 */
 	private final LogConverter converter;
 	
@@ -120,6 +114,7 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 	 * @param num The number of logs per file (can be null)
 	 * @param mins The minutes of the logs per file (can be null)
 	 * @param converter The converter to format the logs before saving
+	 * 			or <code>null</code> to save the logs in binary columnar format
 	 */
 	public LogFileSplitter(
 			String[] inputFiles, 
@@ -148,9 +143,6 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 		if (num!=null && num<50000) {
 			System.out.println("Warning splitting for less then 50000 logs can create a big number of files");
 		}
-		if (converter==null) {
-			throw new IllegalArgumentException("The converter can't be null");
-		}
 		this.converter=converter;
 		inFileNames=new String[inputFiles.length];
 		System.arraycopy(inputFiles, 0, inFileNames, 0, inputFiles.length);
@@ -168,23 +160,25 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 	 */
 	public void split() throws Exception {
 		IOHelper ioHelper = new IOHelper();
-		if (inFileNames==null) {
-			// Read from stdin
-			BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
-			ioHelper.loadLogs(in, this, null, this, this);
-		} else {
-			for (String inFileName: inFileNames) {
-				System.out.println("Processing "+inFileName);
-				ioHelper.loadLogs(inFileName, this, null, this, this);
+		pipeline = new LogConversionPipeline(converter);
+		try {
+			if (inFileNames==null) {
+				// Read from stdin
+				BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+				ioHelper.loadLogs(in, this, null, this, this);
+			} else {
+				for (String inFileName: inFileNames) {
+					System.out.println("Processing "+inFileName);
+					ioHelper.loadLogs(inFileName, this, null, this, this);
+				}
 			}
-		}
-		if (outF!=null) {
-			closeOutputFile(outF);
+		} finally {
+			pipeline.close();
 		}
 	}
 	
 	/**
-	 * Create a new file for output.
+	 * Build the name of a new file for output.
 	 * 
 	 * @param dest The name of the destination file
 	 * @param index The index to append to the name
@@ -192,9 +186,9 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 	 *                     name of the file
 	 *                     It can be null.
 	 *                     
-	 * @return The writer for output
+	 * @return The name of the file for output
 	 */
-	private BufferedWriter getOutputFile(String dest, int idx, Date startingDate) throws IOException {
+	private String getOutputFileName(String dest, int idx, Date startingDate) {
 		// Build the name of the file
 		StringBuilder name = new StringBuilder(dest);
 		name.append('-');
@@ -208,30 +202,9 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 			name.append(buffer.toString()); 
 		}
 		// Add the extension
-		if (converter instanceof XMLConverter) {
-			name.append(".xml");
-		} else {
-			name.append(".txt");
-		}
-		// Create and return the file
-		FileWriter outFile=null;
-		outFile = new FileWriter(name.toString(),false);
+		name.append(LogConversionPipeline.getFileExtension(converter));
 		System.out.println("Writing logs on "+name);
-		return new BufferedWriter(outFile,OUTPUT_BUFFER_SIZE);
-	}
-	
-	/**
-	 * Flush and close the file
-	 * 
-	 * @param file The file to close
-	 */
-	private void closeOutputFile(BufferedWriter file) throws Exception {
-		//	Flush and close the old file
-		if (file!=null) {
-			file.flush();
-			file.close();
-			file=null;
-		}
+		return name.toString();
 	}
 
 
@@ -282,44 +255,22 @@ public class LogFileSplitter implements ACSRemoteLogListener, ACSRemoteErrorList
 	 */
 	@Override
 	public void logEntryReceived(ILogEntry logEntry) {
-		if (number!=null ) {
-			// Number criteria
-			if (outF==null || ++logsRead>number) {
-				try {
-					closeOutputFile(outF);
-				} catch (Throwable t) {
-					System.err.println("Error closing the output file");
-					t.printStackTrace(System.err);
-				}
-				try {
-					outF=getOutputFile(destFileName,index++,null);
-				} catch (IOException e) {
-					System.err.println("Error getting a new file for output: " + e.getMessage());
-					e.printStackTrace(System.err);
-				}
-				logsRead=1;
-			}
-		} else {
-			// Time criteria
-			long logDate = ((Long)logEntry.getField(LogField.TIMESTAMP));
-			if (firstLogDate==-1 || logDate-firstLogDate>time) {
-				firstLogDate=logDate;
-				try {
-					closeOutputFile(outF);
-				} catch (Throwable t) {
-					System.err.println("Error closing the output file");
-					t.printStackTrace(System.err);
+		try {
+			if (number!=null ) {
+				// Number criteria
+				if (index==0 || ++logsRead>number) {
+					pipeline.openFile(getOutputFileName(destFileName,index++,null));
+					logsRead=1;
 				}
-				try {
-					outF=getOutputFile(destFileName,index++,new Date(logDate));
-				} catch (IOException e) {
-					System.err.println("Error getting a new file for output: " + e.getMessage());
-					e.printStackTrace(System.err);
+			} else {
+				// Time criteria
+				long logDate = ((Long)logEntry.getField(LogField.TIMESTAMP));
+				if (firstLogDate==-1 || logDate-firstLogDate>time) {
+					firstLogDate=logDate;
+					pipeline.openFile(getOutputFileName(destFileName,index++,new Date(logDate)));
 				}
 			}
-		}
-		try {
-			outF.write(converter.convert(logEntry));
+			pipeline.add(logEntry);
 		} catch (IOException e) {
 			System.err.println("Error writing a log: " + e.getMessage());
 			e.printStackTrace(System.err);
@@ -0,0 +1,129 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.tools;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A buffered writer of converted logs on a file.
+ * <P>
+ * The chars are encoded with the default charset directly into a 
+ * direct <code>ByteBuffer</code> that is written on the <code>FileChannel</code> 
+ * when full, avoiding the intermediate copies of the <code>java.io</code> writers.
+ * <P>
+ * This class is not thread safe.
+ */
+class NioLogWriter {
+	
+	/**
+	 * The size of the output buffer
+	 */
+	private static final int BUFFER_SIZE = 1<<18;
+	
+	/**
+	 * The channel to write into
+	 */
+	private final FileChannel channel;
+	
+	/**
+	 * The encoder of the chars: like the <code>java.io</code> writers,
+	 * it replaces the chars that the charset can't encode
+	 */
+	private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	
+	/**
+	 * The buffer of the bytes to write in the channel 
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param fileName The name of the file to write; 
+	 * 			the file is truncated if it already exists
+	 * @throws IOException In case of error creating the file
+	 */
+	public NioLogWriter(String fileName) throws IOException {
+		if (fileName==null || fileName.isEmpty()) {
+			throw new IllegalArgumentException("Invalid file name: "+fileName);
+		}
+		channel = new FileOutputStream(fileName,false).getChannel();
+	}
+	
+	/**
+	 * Write the passed chars
+	 * 
+	 * @param chars The chars to write
+	 * @throws IOException In case of error writing in the file
+	 */
+	public void write(CharSequence chars) throws IOException {
+		CharBuffer in = CharBuffer.wrap(chars);
+		while (true) {
+			CoderResult result = encoder.encode(in, buffer, false);
+			if (result.isOverflow()) {
+				writeBuffer();
+			} else if (result.isUnderflow()) {
+				return;
+			} else {
+				result.throwException();
+			}
+		}
+	}
+	
+	/**
+	 * Write the content of the buffer in the channel
+	 */
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Flush the buffer and close the file
+	 * 
+	 * @throws IOException In case of error writing in the file
+	 */
+	public void close() throws IOException {
+		try {
+			CharBuffer empty = CharBuffer.allocate(0);
+			while (encoder.encode(empty, buffer, true).isOverflow() || encoder.flush(buffer).isOverflow()) {
+				writeBuffer();
+			}
+			writeBuffer();
+		} finally {
+			channel.close();
+		}
+	}
+}
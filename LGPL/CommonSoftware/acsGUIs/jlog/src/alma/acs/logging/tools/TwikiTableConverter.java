@@ -50,8 +50,24 @@ public class TwikiTableConverter extends CSVConverter {
 	 * Convert the log into a String
 	 */
 	public String convert(ILogEntry log) {
-		String ret=super.convert(log);
-		return "|"+ret.substring(0, ret.length()-1)+"|\n";
+		StringBuilder str = new StringBuilder();
+		convert(log,str);
+		return str.toString();
+	}
+	
+	/**
+	 * Convert the log appending the converted string to the builder
+	 */
+	@Override
+	public void convert(ILogEntry log, StringBuilder out) {
+		if (log==null) {
+			throw new IllegalArgumentException("Impossible to convert a null log");
+		}
+		out.append('|');
+		super.convert(log,out);
+		// Replace the trailing new line
+		out.setLength(out.length()-1);
+		out.append("|\n");
 	}
 
 	/**
@@ -45,6 +45,26 @@ public class XMLConverter extends LogConverter {
 		return log.toXMLString()+"\n";
 	}
 	
+	/**
+	 * @see LogConverter
+	 */
+	@Override
+	public void convert(ILogEntry log, StringBuilder out) {
+		if (log==null) {
+			throw new IllegalArgumentException("Impossible to convert a null log");
+		}
+		out.append(log.toXMLString());
+		out.append('\n');
+	}
+	
+	/**
+	 * @see LogConverter
+	 */
+	@Override
+	public String getFileExtension() {
+		return ".xml";
+	}
+	
 	/**
 	 * @see LogConverter
 	 */
@@ -107,6 +107,12 @@ public class LogCache extends LogMultiFileCache implements ILogMap {
 	 */
 	private final Map<Integer,Long> logTimes= Collections.synchronizedMap(new HashMap<Integer,Long>());
 	
+	/**
+	 * The secondary indexes of the logs in cache, used by the table
+	 * to filter logs without reading them from disk
+	 */
+	private final LogCacheIndexes indexes = new LogCacheIndexes();
+	
 	/**
 	 * Build a LogCache object
 	 * 
@@ -145,6 +151,7 @@ public class LogCache extends LogMultiFileCache implements ILogMap {
 		Integer key = super.add(log);
 		logTypes.put(key,(log.getType()));
 		logTimes.put(key,(Long)log.getField(LogField.TIMESTAMP));
+		indexes.add(key, log);
 		return key;
 	}
 
@@ -249,6 +256,7 @@ public class LogCache extends LogMultiFileCache implements ILogMap {
 		manager.clear();
 		logTypes.clear();
 		logTimes.clear();
+		indexes.clear();
 		super.clear();
 	}
 	
@@ -305,9 +313,48 @@ public class LogCache extends LogMultiFileCache implements ILogMap {
 		}
 		logTimes.remove(key);
 		logTypes.remove(key);
+		indexes.remove(key);
 		super.deleteLog(key);
 	}
 	
+	/**
+	 * Replace the log with the given key updating the indexes
+	 * and the logs in memory
+	 * 
+	 * @param key The key of the log to replace
+	 * @param log The new log
+	 */
+	public synchronized void replaceLog(Integer key, ILogEntry log) throws LogCacheException {
+		ILogEntry oldLog = getLog(key);
+		super.replaceLog(key, log);
+		if (cache.containsKey(key)) {
+			cache.put(key, log);
+		}
+		logTypes.put(key,(log.getType()));
+		logTimes.put(key,(Long)log.getField(LogField.TIMESTAMP));
+		indexes.replace(key, oldLog, log);
+	}
+	
+	/**
+	 * @return The secondary indexes of the logs in cache
+	 */
+	public LogCacheIndexes getIndexes() {
+		return indexes;
+	}
+	
+	/**
+	 * Delete a collection of logs.
+	 * <P>
+	 * The logs are deleted holding the lock of the cache only once. 
+	 * 
+	 * @param keys The keys of the logs to delete
+	 * @see LogMultiFileCache#deleteLogs(Collection)
+	 */
+	@Override
+	public synchronized void deleteLogs(Collection<Integer> keys) throws LogCacheException {
+		super.deleteLogs(keys);
+	}
+	
 	/**
 	 * Delete a collection of logs
 	 * 
@@ -332,8 +379,8 @@ public class LogCache extends LogMultiFileCache implements ILogMap {
 	/**
 	 * Returns a set of number of logs (i.e. their position in cache)
 	 * exceeding the given time frame.
-	 * This operation is quite slow because it requires a double scan of the 
-	 * logTimes array
+	 * <P>
+	 * The keys are read from the time index of {@link #indexes}.
 	 * 
 	 * @param timeframe The time frame to check in millisecond
 	 * @return A collection of number of logs exceedding the given timeframe
@@ -342,23 +389,12 @@ public class LogCache extends LogMultiFileCache implements ILogMap {
 		// Look for the newest log
 		// We can't assume the oldest is the latest inserted log because the user
 		// is allowed to load logs from different sources at any time. 
-		long newestTime=-1;
-		Collection<Long> times;
-		times = logTimes.values();
-		for (Long time: times) {
-			if (time>newestTime) {
-				newestTime=time;
-			}
+		Long newestTime=indexes.getMaxTime();
+		if (newestTime==null) {
+			return new ArrayList<Integer>();
 		}
 		long limit = newestTime-timeframe;
-		ArrayList<Integer>ret = new ArrayList<Integer>();
-		Set<Integer> keys = logTimes.keySet();
-		for (Integer key: keys) {
-			if (logTimes.get(key)>limit) {
-				ret.add(key);
-			}
-		}
-		return ret;
+		return indexes.selectTimeRange(limit+1, Long.MAX_VALUE);
 	}
 	
 	/**
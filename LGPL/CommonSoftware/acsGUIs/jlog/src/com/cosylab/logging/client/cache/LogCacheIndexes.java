@@ -0,0 +1,661 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package com.cosylab.logging.client.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.cosylab.logging.engine.ExactFilter;
+import com.cosylab.logging.engine.Filter;
+import com.cosylab.logging.engine.MinMaxFilter;
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * The secondary indexes of the logs in the cache.
+ * <P>
+ * The indexes are updated every time a log is added, replaced or deleted
+ * and allow to select the logs matching the most common filters without
+ * reading the logs from the cache:
+ * <UL>
+ * 	<LI>a {@link LogTimeIndex} for the timestamps
+ * 	<LI>a bitmap for each log level
+ * 	<LI>a sorted list of positions (a posting list) for each value of the audience,
+ * 		host, process, source object and context
+ * </UL>
+ * <P>
+ * The position of a log in the bitmaps and in the lists is <code>key-base</code>.
+ * A log is in one list per field so the memory used by the lists is proportional
+ * to the number of logs, whatever the number of distinct values of the fields.
+ * <P>
+ * Deleted logs are removed from the set of valid keys only: all the selections
+ * are masked with the valid keys. When enough logs have been deleted, the indexes are
+ * compacted: the base is moved to the first valid key (deleted logs are usually the oldest)
+ * and the positions of the deleted logs are removed from all the bitmaps and lists.
+ * <P>
+ * The indexes answer only to {@link ExactFilter}s and {@link MinMaxFilter}s on the indexed fields:
+ * all the other filters (like the {@link com.cosylab.logging.engine.RegExpFilter})
+ * must be checked by reading the logs (see {@link Selection#getResidualFilters()}).
+ */
+public class LogCacheIndexes {
+
+	/**
+	 * The result of a selection.
+	 * <P>
+	 * A selection is a snapshot of the indexes at the time it has been built:
+	 * it can only tell if a log added before the selection matches the indexed filters
+	 * (see {@link #isIndexed(int)}).
+	 */
+	public static class Selection {
+
+		/**
+		 * The keys matching the indexed filters (in position <code>key-base</code>)
+		 */
+		private final BitSet keys;
+
+		/**
+		 * The base of the keys
+		 */
+		private final int base;
+
+		/**
+		 * The greatest key in the indexes when the selection has been built
+		 */
+		private final int lastIndexedKey;
+
+		/**
+		 * The filters that could not be answered by the indexes
+		 */
+		private final Filter[] residualFilters;
+
+		private Selection(BitSet keys, int base, int lastIndexedKey, Filter[] residualFilters) {
+			this.keys=keys;
+			this.base=base;
+			this.lastIndexedKey=lastIndexedKey;
+			this.residualFilters=residualFilters;
+		}
+
+		/**
+		 * @param key The key of a log
+		 * @return <code>true</code> if the log was in the indexes when
+		 * 			the selection has been built
+		 */
+		public boolean isIndexed(int key) {
+			return key>=base && key<=lastIndexedKey;
+		}
+
+		/**
+		 * @param key The key of a log
+		 * @return <code>true</code> if the log matches the indexed filters
+		 */
+		public boolean contains(int key) {
+			return key>=base && keys.get(key-base);
+		}
+
+		/**
+		 * @return The filters that must be checked against the logs
+		 * 			in the selection; the array can be empty but not <code>null</code>
+		 */
+		public Filter[] getResidualFilters() {
+			return residualFilters;
+		}
+
+		/**
+		 * @return The number of logs in the selection
+		 */
+		public int size() {
+			return keys.cardinality();
+		}
+	}
+
+	/**
+	 * The sorted positions of the logs having a given value of a field.
+	 * <P>
+	 * The positions are usually appended because logs are added with increasing keys;
+	 * a position is inserted in the middle of the list only when a log is replaced.
+	 */
+	private static class PostingList {
+
+		/**
+		 * The positions, sorted in ascending order (only the first {@link #size} are valid)
+		 */
+		private int[] positions = new int[4];
+
+		/**
+		 * The number of positions in the list
+		 */
+		private int size=0;
+
+		/**
+		 * Add a position to the list
+		 */
+		public void add(int pos) {
+			if (size==positions.length) {
+				positions = Arrays.copyOf(positions, size+(size>>1)+1);
+			}
+			if (size==0 || positions[size-1]<pos) {
+				positions[size++]=pos;
+				return;
+			}
+			int idx = Arrays.binarySearch(positions, 0, size, pos);
+			if (idx>=0) {
+				return;
+			}
+			idx=-idx-1;
+			System.arraycopy(positions, idx, positions, idx+1, size-idx);
+			positions[idx]=pos;
+			size++;
+		}
+
+		/**
+		 * Remove a position from the list
+		 */
+		public void remove(int pos) {
+			int idx = Arrays.binarySearch(positions, 0, size, pos);
+			if (idx<0) {
+				return;
+			}
+			System.arraycopy(positions, idx+1, positions, idx, size-idx-1);
+			size--;
+		}
+
+		/**
+		 * Set the bits of the positions of the list in the passed bitmap
+		 */
+		public void addTo(BitSet bs) {
+			for (int t=0; t<size; t++) {
+				bs.set(positions[t]);
+			}
+		}
+
+		/**
+		 * @return A new bitmap with the bits of the positions in the list
+		 */
+		public BitSet toBitSet() {
+			BitSet bs = new BitSet();
+			addTo(bs);
+			return bs;
+		}
+
+		/**
+		 * Remove the positions of the deleted logs and shift the others
+		 * toward 0 (the list is trimmed if it is mostly empty).
+		 *
+		 * @param validKeys The valid keys, already shifted
+		 * @param shift The shift of the positions
+		 */
+		public void compact(BitSet validKeys, int shift) {
+			int n=0;
+			for (int t=0; t<size; t++) {
+				int pos = positions[t]-shift;
+				if (pos>=0 && validKeys.get(pos)) {
+					positions[n++]=pos;
+				}
+			}
+			size=n;
+			if (positions.length>2*size+4) {
+				positions = Arrays.copyOf(positions, size+4);
+			}
+		}
+
+		public boolean isEmpty() {
+			return size==0;
+		}
+	}
+
+	/**
+	 * The fields with a posting list for each value
+	 */
+	private static final LogField[] LIST_FIELDS = {
+		LogField.AUDIENCE,
+		LogField.HOST,
+		LogField.PROCESS,
+		LogField.SOURCEOBJECT,
+		LogField.CONTEXT
+	};
+
+	/**
+	 * The min number of deleted logs to trigger a compaction
+	 */
+	private static final int COMPACTION_THRESHOLD = 65536;
+
+	/**
+	 * The key of a log is in position <code>key-base</code> in the bitmaps
+	 */
+	private int base=0;
+
+	/**
+	 * The valid keys
+	 */
+	private BitSet validKeys = new BitSet();
+
+	/**
+	 * The number of valid keys
+	 */
+	private int size=0;
+
+	/**
+	 * The greatest key added to the indexes
+	 */
+	private int lastKey=-1;
+
+	/**
+	 * The number of logs deleted since the last compaction
+	 */
+	private int deletedSinceCompaction=0;
+
+	/**
+	 * The bitmaps of the levels (one for each {@link LogTypeHelper})
+	 */
+	private final BitSet[] levels = new BitSet[LogTypeHelper.values().length];
+
+	/**
+	 * The posting lists of the values of the fields in {@link #LIST_FIELDS}.
+	 * <P>
+	 * The logs without a value for a field are in the list with the
+	 * <code>null</code> key.
+	 */
+	private final Map<LogField, Map<String, PostingList>> postings = new EnumMap<LogField, Map<String,PostingList>>(LogField.class);
+
+	/**
+	 * The index of the timestamps
+	 */
+	private final LogTimeIndex timeIndex = new LogTimeIndex();
+
+	/**
+	 * The logs without timestamp
+	 */
+	private BitSet nullTimes = new BitSet();
+
+	/**
+	 * Constructor
+	 */
+	public LogCacheIndexes() {
+		for (int t=0; t<levels.length; t++) {
+			levels[t]= new BitSet();
+		}
+		for (LogField field: LIST_FIELDS) {
+			postings.put(field, new HashMap<String, PostingList>());
+		}
+	}
+
+	/**
+	 * Add a log to the indexes.
+	 * <P>
+	 * Logs must be added with increasing keys.
+	 *
+	 * @param key The key of the log
+	 * @param log The log
+	 */
+	public synchronized void add(int key, ILogEntry log) {
+		if (log==null) {
+			throw new IllegalArgumentException("The log can't be null");
+		}
+		if (key<=lastKey) {
+			throw new IllegalArgumentException("Keys must be added in increasing order: "+key+"<="+lastKey);
+		}
+		lastKey=key;
+		int pos = key-base;
+		validKeys.set(pos);
+		size++;
+		setFields(pos, key, log);
+	}
+
+	/**
+	 * @return The value of the field of the log used as key of the posting lists
+	 */
+	private static String valueOf(ILogEntry log, LogField field) {
+		Object value = log.getField(field);
+		return (value==null) ? null : value.toString();
+	}
+
+	/**
+	 * Add the log to the bitmaps, the posting lists and the time index
+	 */
+	private void setFields(int pos, int key, ILogEntry log) {
+		levels[log.getType().ordinal()].set(pos);
+		for (LogField field: LIST_FIELDS) {
+			Map<String, PostingList> values = postings.get(field);
+			String str = valueOf(log, field);
+			PostingList list = values.get(str);
+			if (list==null) {
+				list = new PostingList();
+				values.put(str, list);
+			}
+			list.add(pos);
+		}
+		Long time = (Long)log.getField(LogField.TIMESTAMP);
+		if (time==null) {
+			nullTimes.set(pos);
+		} else {
+			timeIndex.add(time.longValue(), key);
+		}
+	}
+
+	/**
+	 * Remove the log from the bitmaps and from the posting lists
+	 * of its values.
+	 * <P>
+	 * The time index is not updated.
+	 *
+	 * @param pos The position of the log
+	 * @param log The log as it was added to the indexes
+	 */
+	private void clearFields(int pos, ILogEntry log) {
+		levels[log.getType().ordinal()].clear(pos);
+		for (LogField field: LIST_FIELDS) {
+			Map<String, PostingList> values = postings.get(field);
+			String str = valueOf(log, field);
+			PostingList list = values.get(str);
+			if (list!=null) {
+				list.remove(pos);
+				if (list.isEmpty()) {
+					values.remove(str);
+				}
+			}
+		}
+		nullTimes.clear(pos);
+	}
+
+	/**
+	 * Remove a log from the indexes
+	 *
+	 * @param key The key of the log to remove
+	 */
+	public synchronized void remove(int key) {
+		int pos = key-base;
+		if (pos<0 || !validKeys.get(pos)) {
+			return;
+		}
+		validKeys.clear(pos);
+		size--;
+		deletedSinceCompaction++;
+		if (deletedSinceCompaction>=COMPACTION_THRESHOLD && deletedSinceCompaction>=size) {
+			compact();
+		}
+	}
+
+	/**
+	 * Update the indexes when a log is replaced by another one.
+	 *
+	 * @param key The key of the log
+	 * @param oldLog The log to replace
+	 * @param newLog The new log
+	 */
+	public synchronized void replace(int key, ILogEntry oldLog, ILogEntry newLog) {
+		if (oldLog==null || newLog==null) {
+			throw new IllegalArgumentException("The logs can't be null");
+		}
+		int pos = key-base;
+		if (pos<0 || !validKeys.get(pos)) {
+			return;
+		}
+		clearFields(pos, oldLog);
+		Long oldTime = (Long)oldLog.getField(LogField.TIMESTAMP);
+		if (oldTime!=null) {
+			timeIndex.remove(oldTime.longValue(), key);
+		}
+		setFields(pos, key, newLog);
+	}
+
+	/**
+	 * Move the base to the first valid key and remove the deleted logs
+	 * from all the indexes.
+	 */
+	private void compact() {
+		int newBase = (size==0) ? lastKey+1 : base+validKeys.nextSetBit(0);
+		int shift = newBase-base;
+		validKeys = shift(validKeys, shift);
+		for (int t=0; t<levels.length; t++) {
+			levels[t] = shift(levels[t], shift);
+			levels[t].and(validKeys);
+		}
+		for (Map<String, PostingList> values: postings.values()) {
+			Iterator<PostingList> iter = values.values().iterator();
+			while (iter.hasNext()) {
+				PostingList list = iter.next();
+				list.compact(validKeys, shift);
+				if (list.isEmpty()) {
+					iter.remove();
+				}
+			}
+		}
+		nullTimes = shift(nullTimes, shift);
+		nullTimes.and(validKeys);
+		base=newBase;
+		timeIndex.compact(validKeys, base);
+		deletedSinceCompaction=0;
+	}
+
+	/**
+	 * @return A new bitmap with the bits of <code>bs</code> shifted toward 0
+	 */
+	private static BitSet shift(BitSet bs, int shift) {
+		if (shift==0) {
+			return bs;
+		}
+		return bs.get(shift, Math.max(shift, bs.length()));
+	}
+
+	/**
+	 * Remove all the logs from the indexes
+	 */
+	public synchronized void clear() {
+		base=0;
+		validKeys.clear();
+		size=0;
+		lastKey=-1;
+		deletedSinceCompaction=0;
+		for (BitSet bs: levels) {
+			bs.clear();
+		}
+		for (Map<String, PostingList> values: postings.values()) {
+			values.clear();
+		}
+		nullTimes.clear();
+		timeIndex.clear();
+	}
+
+	/**
+	 * @return The number of logs in the indexes
+	 */
+	public synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * Check if a filter can be answered by the indexes
+	 *
+	 * @param filter The filter to check
+	 * @return <code>true</code> if the filter can be answered by the indexes
+	 */
+	public static boolean isIndexable(Filter filter) {
+		if (filter==null) {
+			throw new IllegalArgumentException("The filter can't be null");
+		}
+		LogField field = filter.getField();
+		boolean indexedField = field==LogField.TIMESTAMP || field==LogField.ENTRYTYPE;
+		for (int t=0; t<LIST_FIELDS.length && !indexedField; t++) {
+			indexedField = LIST_FIELDS[t]==field;
+		}
+		if (!indexedField) {
+			return false;
+		}
+		if (filter instanceof ExactFilter) {
+			return true;
+		}
+		return filter instanceof MinMaxFilter;
+	}
+
+	/**
+	 * Select the logs whose level is at least <code>minLevel</code> and that match the
+	 * passed filters (that are in AND).
+	 * <P>
+	 * The filters are applied as the table does i.e. not in lethal circumstances: lethal
+	 * filters always match.
+	 *
+	 * @param filters The filters (can be <code>null</code> or empty)
+	 * @param minLevel The min level of the logs (can be <code>null</code>)
+	 * @return The selection
+	 */
+	public synchronized Selection select(Filter[] filters, LogTypeHelper minLevel) {
+		BitSet result = (BitSet)validKeys.clone();
+		if (minLevel!=null && minLevel.ordinal()>0) {
+			BitSet levelsBS = new BitSet();
+			for (int t=minLevel.ordinal(); t<levels.length; t++) {
+				levelsBS.or(levels[t]);
+			}
+			result.and(levelsBS);
+		}
+		List<Filter> residuals = new ArrayList<Filter>();
+		if (filters!=null) {
+			for (Filter f: filters) {
+				if (f.getIsLethal()) {
+					continue;
+				}
+				if (!isIndexable(f)) {
+					residuals.add(f);
+					continue;
+				}
+				result.and(selectFilter(f));
+				if (result.isEmpty()) {
+					break;
+				}
+			}
+		}
+		Filter[] residualFilters = new Filter[residuals.size()];
+		residuals.toArray(residualFilters);
+		return new Selection(result, base, lastKey, residualFilters);
+	}
+
+	/**
+	 * Return the keys of the logs in the time range <code>[min, max]</code>
+	 *
+	 * @param min The min time (inclusive)
+	 * @param max The max time (inclusive)
+	 * @return The keys of the logs in the range
+	 */
+	public synchronized List<Integer> selectTimeRange(long min, long max) {
+		BitSet bs = timeRange(min, max);
+		List<Integer> ret = new ArrayList<Integer>(bs.cardinality());
+		for (int t=bs.nextSetBit(0); t>=0; t=bs.nextSetBit(t+1)) {
+			ret.add(Integer.valueOf(t+base));
+		}
+		return ret;
+	}
+
+	/**
+	 * @return The max time of the logs in the indexes
+	 * 			or <code>null</code> if there are no logs
+	 */
+	public synchronized Long getMaxTime() {
+		if (size==0) {
+			return null;
+		}
+		return timeIndex.getMaxTime(validKeys, base);
+	}
+
+	/**
+	 * @return the keys of the valid logs whose time is in <code>[min, max]</code>
+	 */
+	private BitSet timeRange(long min, long max) {
+		BitSet bs = new BitSet();
+		timeIndex.select(min, max, bs, base);
+		bs.and(validKeys);
+		return bs;
+	}
+
+	/**
+	 * Return the keys of the logs matching a single indexable filter
+	 */
+	private BitSet selectFilter(Filter f) {
+		LogField field = f.getField();
+		BitSet match;
+		BitSet nulls;
+		if (field==LogField.TIMESTAMP) {
+			nulls=nullTimes;
+			if (f instanceof ExactFilter) {
+				long time = ((Long)((ExactFilter)f).getExact()).longValue();
+				match = timeRange(time, time);
+			} else {
+				MinMaxFilter mmf = (MinMaxFilter)f;
+				long min = (mmf.getMinimum()==null) ? Long.MIN_VALUE : ((Long)mmf.getMinimum()).longValue();
+				long max = (mmf.getMaximum()==null) ? Long.MAX_VALUE : ((Long)mmf.getMaximum()).longValue();
+				match = timeRange(min, max);
+			}
+		} else if (field==LogField.ENTRYTYPE) {
+			nulls = new BitSet();
+			match = new BitSet();
+			if (f instanceof ExactFilter) {
+				match.or(levels[((LogTypeHelper)((ExactFilter)f).getExact()).ordinal()]);
+			} else {
+				MinMaxFilter mmf = (MinMaxFilter)f;
+				int min = (mmf.getMinimum()==null) ? 0 : ((LogTypeHelper)mmf.getMinimum()).ordinal();
+				int max = (mmf.getMaximum()==null) ? levels.length-1 : ((LogTypeHelper)mmf.getMaximum()).ordinal();
+				for (int t=min; t<=max; t++) {
+					match.or(levels[t]);
+				}
+			}
+		} else {
+			Map<String, PostingList> values = postings.get(field);
+			PostingList nullList = values.get(null);
+			nulls = (nullList==null) ? new BitSet() : nullList.toBitSet();
+			match = new BitSet();
+			if (f instanceof ExactFilter) {
+				PostingList list = values.get(((ExactFilter)f).getExact());
+				if (list!=null) {
+					list.addTo(match);
+				}
+			} else {
+				MinMaxFilter mmf = (MinMaxFilter)f;
+				@SuppressWarnings("unchecked")
+				Comparable<Object> min = mmf.getMinimum();
+				@SuppressWarnings("unchecked")
+				Comparable<Object> max = mmf.getMaximum();
+				for (Map.Entry<String, PostingList> entry: values.entrySet()) {
+					String value = entry.getKey();
+					if (value==null) {
+						continue;
+					}
+					if ((min==null || min.compareTo(value)<=0) && (max==null || max.compareTo(value)>=0)) {
+						entry.getValue().addTo(match);
+					}
+				}
+			}
+		}
+		if (f.notPolicyApplyed()) {
+			// Logs without a value for the field never match, not even with the NOT policy
+			BitSet ret = (BitSet)validKeys.clone();
+			ret.andNot(match);
+			ret.andNot(nulls);
+			return ret;
+		}
+		return match;
+	}
+}
@@ -0,0 +1,639 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package com.cosylab.logging.client.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogStringDictionary;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+import com.cosylab.util.FileHelper;
+
+/**
+ * A cache of logs stored on disk by columns.
+ * <P>
+ * The fields most used for sorting and filtering (time, level, source object,
+ * host and process) are stored in a column each, in memory mapped files
+ * (see {@link MappedColumn}). The strings are not written in the columns: they are
+ * replaced by their codes in a {@link LogStringDictionary}.
+ * The other fields and the additional data are written in a data file with the same
+ * format of the {@link LogFileCache}: the position of each log in the data file
+ * is stored in another memory mapped column (the index).
+ * <P>
+ * The memory used by the columns and the index is outside of the java heap:
+ * the heap holds only the dictionary, the set of valid keys (one bit per log)
+ * and the few replaced logs.
+ * This allows to load multi GB sessions without increasing the memory used by jlog.
+ * <P>
+ * The data file is read through memory mapped segments of {@link #DATA_SEGMENT_SIZE}
+ * bytes. The last (partially written) segment is read from the channel.
+ * <P>
+ * The values of the columns can be read without building the log: see for example
+ * {@link #getLogTimestamp(int)} and {@link #getFieldCode(LogField, int)}.
+ * <P>
+ * The {@link LogMultiFileCache} (and therefore the {@link LogCache}) stores each of its
+ * files in a <code>LogColumnarCache</code> if the {@link LogMultiFileCache#COLUMNAR_PROPERTY_NAME}
+ * property is <code>true</code>.
+ */
+public class LogColumnarCache implements ILogMap {
+
+	/**
+	 * The fields stored in a column of codes of the dictionary
+	 */
+	private static final LogField[] DICTIONARY_COLUMNS = {
+		LogField.SOURCEOBJECT,
+		LogField.HOST,
+		LogField.PROCESS
+	};
+
+	/**
+	 * The size of the mapped segments of the data file
+	 */
+	public static final int DATA_SEGMENT_SIZE = 1<<25;
+
+	/**
+	 * The charset to write and read strings in the data file
+	 */
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * The column of the timestamps
+	 */
+	private MappedColumn timeColumn;
+
+	/**
+	 * The column of the levels (the ordinal of the {@link LogTypeHelper})
+	 */
+	private MappedColumn levelColumn;
+
+	/**
+	 * The columns of the codes of the strings
+	 * in the same order of {@link #DICTIONARY_COLUMNS}
+	 */
+	private final MappedColumn[] codeColumns = new MappedColumn[DICTIONARY_COLUMNS.length];
+
+	/**
+	 * The index: for each log it contains the starting position (<code>long</code>)
+	 * and the length (<code>int</code>) of the log in the data file
+	 */
+	private MappedColumn indexColumn;
+
+	/**
+	 * The file of the logs
+	 */
+	private RandomAccessFile dataFile;
+
+	/**
+	 * The name of the data file
+	 */
+	private File dataFileName;
+
+	/**
+	 * The number of bytes written in the data file
+	 */
+	private long dataLength=0;
+
+	/**
+	 * The read only segments mapped from the data file.
+	 * A segment is mapped only when it has been completely written.
+	 */
+	private final ArrayList<MappedByteBuffer> dataSegments = new ArrayList<MappedByteBuffer>();
+
+	/**
+	 * The dictionary of the strings of the columns
+	 */
+	private final LogStringDictionary dictionary;
+
+	/**
+	 * <code>true</code> if the dictionary has been created by this cache
+	 * and must be cleared with the cache
+	 */
+	private final boolean ownDictionary;
+
+	/**
+	 * The keys of the logs in the cache (i.e. not deleted)
+	 */
+	private final BitSet validKeys = new BitSet();
+
+	/**
+	 * The number of logs in cache
+	 */
+	private int size=0;
+
+	/**
+	 * The key of the next log to add
+	 */
+	private int logID=0;
+
+	/**
+	 * The logs replaced (for example the logs with some info added)
+	 * They are usually a few so we keep them in memory
+	 */
+	private final HashMap<Integer,ILogEntry> replacedLogs = new HashMap<Integer,ILogEntry>();
+
+	/**
+	 * The buffer to build the strings to write in the data file
+	 */
+	private final StringBuilder sb = new StringBuilder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param dictionary The dictionary to encode strings (it must have no limit on the
+	 * 					number of strings); if <code>null</code> a new dictionary is created
+	 * 					for this cache and cleared with the cache
+	 */
+	public LogColumnarCache(LogStringDictionary dictionary) {
+		if (dictionary!=null && dictionary.getMaxSize()!=Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The dictionary of the cache can't be bounded");
+		}
+		this.ownDictionary= dictionary==null;
+		this.dictionary= (dictionary==null) ? new LogStringDictionary() : dictionary;
+	}
+
+	/**
+	 * Constructor.
+	 * <P>
+	 * The cache encodes the strings in its own dictionary,
+	 * cleared by {@link #clear()}.
+	 */
+	public LogColumnarCache() {
+		this(null);
+	}
+
+	/**
+	 * Create a temporary file for the cache in <code>$ACS_TMP</code> or,
+	 * if it is not possible, in the default temporary folder.
+	 *
+	 * @param suffix The suffix of the name of the file
+	 * @return The new file
+	 * @throws IOException If the file could not be created
+	 */
+	private static File createCacheFile(String suffix) throws IOException {
+		File f=null;
+		String acstmp = System.getProperty("ACS.tmp");
+		if (acstmp!=null) {
+			File dir = new File(acstmp);
+			if (dir.isDirectory() && dir.canWrite()) {
+				f = File.createTempFile("jlog",suffix,dir);
+			}
+		}
+		if (f==null) {
+			f = File.createTempFile("jlog",suffix);
+		}
+		f.deleteOnExit();
+		return f;
+	}
+
+	/**
+	 * Create the files of the cache
+	 *
+	 * @throws IOException In case of error creating the files
+	 */
+	private void initCache() throws IOException {
+		dataFileName=createCacheFile(".data");
+		dataFile = new RandomAccessFile(dataFileName, "rw");
+		dataFile.setLength(0);
+		dataLength=0;
+		timeColumn = new MappedColumn(createCacheFile(".time"), 8);
+		levelColumn = new MappedColumn(createCacheFile(".level"), 1);
+		for (int t=0; t<DICTIONARY_COLUMNS.length; t++) {
+			codeColumns[t]= new MappedColumn(createCacheFile("."+DICTIONARY_COLUMNS[t].getTagAttribute()), 4);
+		}
+		indexColumn = new MappedColumn(createCacheFile(".idx"), 12);
+	}
+
+	/**
+	 * Return the position of the field in {@link #DICTIONARY_COLUMNS}
+	 *
+	 * @param field The field
+	 * @return the position of the field or -1 if the field has no column of codes
+	 */
+	private static int columnOf(LogField field) {
+		for (int t=0; t<DICTIONARY_COLUMNS.length; t++) {
+			if (DICTIONARY_COLUMNS[t]==field) {
+				return t;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 *
+	 * @param field The field
+	 * @return <code>true</code> if the field is stored in a column of codes
+	 * @see #getFieldCode(LogField, int)
+	 */
+	public static boolean hasCodeColumn(LogField field) {
+		return columnOf(field)!=-1;
+	}
+
+	/**
+	 * Write the values of the columns for the log with the given key
+	 *
+	 * @param key The key of the log
+	 * @param log The log
+	 */
+	private void writeColumns(int key, ILogEntry log) {
+		Long time = (Long)log.getField(LogField.TIMESTAMP);
+		timeColumn.putLong(key, 0, (time==null)?0:time.longValue());
+		levelColumn.putByte(key, 0, (byte)log.getType().ordinal());
+		for (int t=0; t<DICTIONARY_COLUMNS.length; t++) {
+			int code = dictionary.encode((String)log.getField(DICTIONARY_COLUMNS[t]));
+			codeColumns[t].putInt(key, 0, code);
+		}
+	}
+
+	/**
+	 * Check if the key belongs to a log in the cache
+	 *
+	 * @param key The key to check
+	 * @throws LogCacheException If the key is not in the cache
+	 */
+	private void checkKey(Integer key) throws LogCacheException {
+		if (key==null) {
+			throw new IllegalArgumentException("The key can't be null");
+		}
+		if (key<0 || key>=logID) {
+			throw new LogCacheException("Key "+key+" out of range [0,"+logID+"[");
+		}
+		if (!validKeys.get(key)) {
+			throw new LogCacheException("The log "+key+" is not in cache");
+		}
+	}
+
+	/**
+	 * @see ILogMap#add(ILogEntry)
+	 */
+	public synchronized int add(ILogEntry log) throws LogCacheException {
+		if (log==null) {
+			throw new LogCacheException("Trying to add a null log!");
+		}
+		if (dataFile==null) {
+			try {
+				initCache();
+			} catch (IOException e) {
+				throw new LogCacheException("Error initializing the cache",e);
+			}
+		}
+		byte[] bytes = LogFileCache.toCacheString(log, sb).getBytes(CHARSET);
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			long pos=dataLength;
+			while (buffer.hasRemaining()) {
+				pos+=dataFile.getChannel().write(buffer, pos);
+			}
+		} catch (IOException ioe) {
+			throw new LogCacheException("Error adding a log",ioe);
+		}
+		int key=logID;
+		indexColumn.putLong(key, 0, dataLength);
+		indexColumn.putInt(key, 8, bytes.length);
+		dataLength+=bytes.length;
+		writeColumns(key, log);
+		validKeys.set(key);
+		size++;
+		logID++;
+		return key;
+	}
+
+	/**
+	 * Read the bytes of a log from the data file.
+	 * <P>
+	 * The bytes are read from a mapped segment if the log is entirely contained
+	 * in a completely written segment, otherwise they are read from the channel.
+	 *
+	 * @param start The position of the log in the data file
+	 * @param len The length of the log
+	 * @return The bytes of the log
+	 * @throws IOException In case of error reading from the file
+	 */
+	private byte[] readData(long start, int len) throws IOException {
+		byte[] buffer = new byte[len];
+		int segIdx = (int)(start/DATA_SEGMENT_SIZE);
+		long segEnd = (long)(segIdx+1)*DATA_SEGMENT_SIZE;
+		if (start+len<=segEnd && dataLength>=segEnd) {
+			while (dataSegments.size()<=segIdx) {
+				long segStart=(long)dataSegments.size()*DATA_SEGMENT_SIZE;
+				dataSegments.add(dataFile.getChannel().map(FileChannel.MapMode.READ_ONLY, segStart, DATA_SEGMENT_SIZE));
+			}
+			ByteBuffer segment = dataSegments.get(segIdx).duplicate();
+			segment.position((int)(start-(long)segIdx*DATA_SEGMENT_SIZE));
+			segment.get(buffer);
+			return buffer;
+		}
+		ByteBuffer bb = ByteBuffer.wrap(buffer);
+		long pos=start;
+		while (bb.hasRemaining()) {
+			int read=dataFile.getChannel().read(bb, pos);
+			if (read<0) {
+				throw new IOException("Unexpected EOF reading "+len+" bytes at "+start);
+			}
+			pos+=read;
+		}
+		return buffer;
+	}
+
+	/**
+	 * @see ILogMap#getLog(Integer)
+	 */
+	public synchronized ILogEntry getLog(Integer key) throws LogCacheException {
+		checkKey(key);
+		ILogEntry replaced = replacedLogs.get(key);
+		if (replaced!=null) {
+			return replaced;
+		}
+		long start = indexColumn.getLong(key, 0);
+		int len = indexColumn.getInt(key, 8);
+		String logStr;
+		try {
+			logStr = new String(readData(start, len),CHARSET);
+		} catch (IOException ioe) {
+			throw new LogCacheException("Exception getting log from cache",ioe);
+		}
+		try {
+			return LogFileCache.fromCacheString(logStr);
+		} catch (Exception e) {
+			throw new LogCacheException("Exception parsing a log [logStr.len="+logStr.length()+", log={"+logStr+"}]",e);
+		}
+	}
+
+	/**
+	 * Return the timestamp of a log reading its column
+	 *
+	 * @param key The key of the log
+	 * @return The timestamp of the log
+	 * @throws LogCacheException If the log is not in cache
+	 */
+	public synchronized long getLogTimestamp(int key) throws LogCacheException {
+		checkKey(key);
+		return timeColumn.getLong(key, 0);
+	}
+
+	/**
+	 * Return the type of a log reading its column
+	 *
+	 * @param key The key of the log
+	 * @return The type of the log
+	 * @throws LogCacheException If the log is not in cache
+	 */
+	public synchronized LogTypeHelper getLogType(int key) throws LogCacheException {
+		checkKey(key);
+		return LogTypeHelper.values()[levelColumn.getByte(key, 0)];
+	}
+
+	/**
+	 * Return the code in the dictionary of a field of a log.
+	 *
+	 * @param field The field (see {@link #hasCodeColumn(LogField)})
+	 * @param key The key of the log
+	 * @return The code of the field
+	 * @throws LogCacheException If the log is not in cache
+	 * @see #getDictionary()
+	 */
+	public synchronized int getFieldCode(LogField field, int key) throws LogCacheException {
+		int col = columnOf(field);
+		if (col==-1) {
+			throw new IllegalArgumentException("No column for "+field);
+		}
+		checkKey(key);
+		return codeColumns[col].getInt(key, 0);
+	}
+
+	/**
+	 * Return the value of a field of a log reading its column
+	 *
+	 * @param field The field (see {@link #hasCodeColumn(LogField)})
+	 * @param key The key of the log
+	 * @return The string in the field (can be <code>null</code>)
+	 * @throws LogCacheException If the log is not in cache
+	 */
+	public String getFieldString(LogField field, int key) throws LogCacheException {
+		return dictionary.decode(getFieldCode(field, key));
+	}
+
+	/**
+	 * @return The dictionary used to encode the strings of the columns
+	 */
+	public LogStringDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @see ILogMap#replaceLog(Integer, ILogEntry)
+	 */
+	public synchronized void replaceLog(Integer key, ILogEntry log) throws LogCacheException {
+		if (log==null) {
+			throw new IllegalArgumentException("The log can't be null");
+		}
+		checkKey(key);
+		replacedLogs.put(key, log);
+		writeColumns(key, log);
+	}
+
+	/**
+	 * @see ILogMap#deleteLog(Integer)
+	 */
+	public synchronized void deleteLog(Integer key) throws LogCacheException {
+		checkKey(key);
+		validKeys.clear(key);
+		replacedLogs.remove(key);
+		size--;
+	}
+
+	/**
+	 * @see ILogMap#deleteLogs(Collection)
+	 */
+	public synchronized void deleteLogs(Collection<Integer> keys) throws LogCacheException {
+		if (keys==null) {
+			throw new IllegalArgumentException("Invalid null parameter");
+		}
+		for (Integer key: keys) {
+			deleteLog(key);
+		}
+	}
+
+	/**
+	 * @see ILogMap#clear()
+	 */
+	public synchronized void clear() throws LogCacheException {
+		validKeys.clear();
+		replacedLogs.clear();
+		for (MappedByteBuffer segment: dataSegments) {
+			FileHelper.unmap(segment);
+		}
+		dataSegments.clear();
+		if (ownDictionary) {
+			dictionary.clear();
+		}
+		size=0;
+		logID=0;
+		dataLength=0;
+		if (dataFile==null) {
+			return;
+		}
+		try {
+			dataFile.close();
+			timeColumn.close();
+			levelColumn.close();
+			for (MappedColumn col: codeColumns) {
+				col.close();
+			}
+			indexColumn.close();
+			if (!dataFileName.delete()) {
+				throw new LogCacheException("File.delete() could not delete "+dataFileName);
+			}
+		} catch (IOException e) {
+			throw new LogCacheException("Error clearing cache file "+dataFileName,e);
+		} finally {
+			dataFile=null;
+			dataFileName=null;
+		}
+	}
+
+	/**
+	 * @see ILogMap#getSize()
+	 */
+	public synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The number of bytes written in the data file
+	 */
+	public synchronized long getFileSize() {
+		return dataLength;
+	}
+
+	/**
+	 * Return a view of the keys of the logs in cache.
+	 * <P>
+	 * The iterator of the returned set works on a snapshot of the keys
+	 * taken when the iterator is created.
+	 *
+	 * @see ILogMap#keySet()
+	 */
+	public Set<Integer> keySet() {
+		return new AbstractSet<Integer>() {
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Integer)) {
+					return false;
+				}
+				int key = ((Integer)o).intValue();
+				synchronized (LogColumnarCache.this) {
+					return key>=0 && validKeys.get(key);
+				}
+			}
+
+			@Override
+			public Iterator<Integer> iterator() {
+				final BitSet snapshot;
+				synchronized (LogColumnarCache.this) {
+					snapshot = (BitSet)validKeys.clone();
+				}
+				return new Iterator<Integer>() {
+					private int next=snapshot.nextSetBit(0);
+
+					public boolean hasNext() {
+						return next>=0;
+					}
+
+					public Integer next() {
+						if (next<0) {
+							throw new NoSuchElementException();
+						}
+						int ret=next;
+						next=snapshot.nextSetBit(next+1);
+						return Integer.valueOf(ret);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return getSize();
+			}
+		};
+	}
+
+	/**
+	 * @see ILogMap#iterator()
+	 */
+	public Iterator<ILogEntry> iterator() {
+		return new LogIterator(this);
+	}
+
+	/**
+	 * @see ILogMap#getLastLog()
+	 */
+	public synchronized Integer getLastLog() {
+		if (size==0) {
+			return null;
+		}
+		return Integer.valueOf(validKeys.length()-1);
+	}
+
+	/**
+	 * @see ILogMap#getFirstLog()
+	 */
+	public synchronized Integer getFirstLog() {
+		if (size==0) {
+			return null;
+		}
+		return Integer.valueOf(validKeys.nextSetBit(0));
+	}
+
+	/**
+	 * @see ILogMap#getFirstLogs(int, Collection)
+	 */
+	public synchronized int getFirstLogs(int n, Collection<Integer> keys) {
+		if (n<=0 || keys==null) {
+			throw new IllegalArgumentException("Invalid number of requested key or null collection");
+		}
+		int ret=0;
+		for (int key=validKeys.nextSetBit(0); key>=0 && ret<n; key=validKeys.nextSetBit(key+1)) {
+			keys.add(Integer.valueOf(key));
+			ret++;
+		}
+		return ret;
+	}
+}
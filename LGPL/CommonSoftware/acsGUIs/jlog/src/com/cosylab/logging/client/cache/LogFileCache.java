@@ -34,7 +34,7 @@ import java.util.TreeMap;
 import java.util.Vector;
 
 import com.cosylab.logging.engine.log.ILogEntry;
-import com.cosylab.logging.engine.log.LogEntry;
+import com.cosylab.logging.engine.log.CompactLogEntry;
 import com.cosylab.logging.engine.log.LogTypeHelper;
 import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
 import com.cosylab.logging.engine.log.LogField;
@@ -398,6 +398,21 @@ public class LogFileCache implements ILogMap {
 	}
 	
 	protected String toCacheString(ILogEntry log) {
+		return toCacheString(log, sb);
+	}
+	
+	/**
+	 * Build the string representing the log in the file of the cache.
+	 * <P>
+	 * The fields are written in the order of {@link LogField} separated 
+	 * by {@link #SEPARATOR}, followed by the additional data (if any).
+	 * 
+	 * @param log The log to write in the cache
+	 * @param sb The buffer to build the string into (it is cleared)
+	 * @return The string representing the log in the cache
+	 * @see #fromCacheString(String)
+	 */
+	static String toCacheString(ILogEntry log, StringBuilder sb) {
 		sb.delete(0,sb.length());
 		for (LogField field: LogField.values()) {
 			Object obj = log.getField(field);
@@ -425,7 +440,14 @@ public class LogFileCache implements ILogMap {
 		return sb.toString();
 	}
 	
-	private ILogEntry fromCacheString(String str) {
+	/**
+	 * Build a log from its representation in the file of the cache
+	 * 
+	 * @param str The string read from the file of the cache
+	 * @return The log
+	 * @see #toCacheString(ILogEntry, StringBuilder)
+	 */
+	static ILogEntry fromCacheString(String str) {
 		String[] strs = str.split(SEPARATOR);
 		Long millis = new Long(strs[0]);
 		Integer entrytype = new Integer(strs[1]);
@@ -505,7 +527,7 @@ public class LogFileCache implements ILogMap {
         		addDatas.add(new AdditionalData(strs[t],strs[t+1]));
         	}
         }
-        return new LogEntry(
+        return new CompactLogEntry(
         		millis,
         		entrytype,
         		fileNM,
@@ -102,6 +102,15 @@ public class LogMultiFileCache  implements ILogMap {
 	 */
 	public static final long DEFAULT_FILEMAXSIZE = 10000000;
 	
+	/**
+	 * The name of the property to store the logs of each file
+	 * in a {@link LogColumnarCache} instead of a {@link LogBufferedFileCache}.
+	 * <P>
+	 * The columnar cache keeps the index of the logs in memory mapped files
+	 * so the heap used by the cache does not grow with the number of logs.
+	 */
+	public static final String COLUMNAR_PROPERTY_NAME = "jlog.cache.columnar";
+	
 	/**
 	 * Flag activating some info prints   
 	 */
@@ -112,6 +121,13 @@ public class LogMultiFileCache  implements ILogMap {
 	 * class LogFileTableRecord.
 	 */
 	private long fileMaxSize;
+	
+	/**
+	 * <code>true</code> if the logs are stored in {@link LogColumnarCache}s
+	 * 
+	 * @see #COLUMNAR_PROPERTY_NAME
+	 */
+	private final boolean columnar;
 
 	/**
 	 * The vector of objects describing the buffers on disk
@@ -159,7 +175,7 @@ public class LogMultiFileCache  implements ILogMap {
 	 * 
 	 */
 	private MultiFileTableRecord createNewFileRecord() throws LogCacheException {
-		MultiFileTableRecord newFileRec=new MultiFileTableRecord();
+		MultiFileTableRecord newFileRec=new MultiFileTableRecord(columnar);
 		
 		// Add new record to vector
 		logFileTable.add(newFileRec);
@@ -175,6 +191,9 @@ public class LogMultiFileCache  implements ILogMap {
 	 * against the key of the searched log.
 	 * As a consequence the record returned by this method is the only one record that <B>can</B>
 	 * contain this log but it could be that the log is not there (for example it has been deleted)
+	 * <P>
+	 * The records are appended to the table with increasing and not overlapping ranges of keys
+	 * so the record is found by a binary search.
 	 * 
 	 * @param logKey  The key of the log to look for
 	 * @return The record containing the log
@@ -193,9 +212,19 @@ public class LogMultiFileCache  implements ILogMap {
 			throw new LogCacheException("Empty log file table");
 		}
 		
-		for (MultiFileTableRecord record: logFileTable) {
-			if (logKey>=record.getMinLogIdx() && logKey<=record.getMaxLogIdx()) {
-				return record;
+		synchronized (logFileTable) {
+			int low=0;
+			int high=logFileTable.size()-1;
+			while (low<=high) {
+				int mid = (low+high)>>>1;
+				MultiFileTableRecord record = logFileTable.get(mid);
+				if (logKey<record.getMinLogIdx()) {
+					high=mid-1;
+				} else if (logKey>record.getMaxLogIdx()) {
+					low=mid+1;
+				} else {
+					return record;
+				}
 			}
 		}
 		throw new LogCacheException("Log record containing "+logKey+" not found");
@@ -212,6 +241,7 @@ public class LogMultiFileCache  implements ILogMap {
 			throw new IllegalArgumentException("Invalid size for logFile "+fileSize);
 		}
 		fileMaxSize = fileSize;
+		columnar = Boolean.getBoolean(COLUMNAR_PROPERTY_NAME);
 		
 		printDebugTrace("LogMultiFileCache uses file of max size: "+fileMaxSize);
 	}
@@ -0,0 +1,336 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package com.cosylab.logging.client.cache;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * The index of the timestamps of the logs.
+ * <P>
+ * The index is a flat list of leaves ordered by time: each leaf contains
+ * up to {@link #LEAF_SIZE} pairs <code>&lt;time, key&gt;</code> ordered by time.
+ * The leaf of a time is found by a binary search in the list then in the leaf.
+ * A leaf is split in two when it is full.
+ * <P>
+ * Logs usually arrive ordered by time so most of the insertions
+ * are appends to the last leaf.
+ * <P>
+ * Deleted logs are not removed one by one from the index: the caller
+ * masks the result of {@link #select(long, long, BitSet, int)}
+ * with the keys still valid and periodically calls {@link #compact(BitSet, int)}.
+ * <P>
+ * This class is not thread safe.
+ */
+public class LogTimeIndex {
+
+	/**
+	 * The max number of entries in a leaf
+	 */
+	public static final int LEAF_SIZE = 512;
+
+	/**
+	 * A leaf of the index
+	 */
+	private static class Leaf {
+		final long[] times;
+		final int[] keys;
+		int size;
+
+		Leaf(int capacity) {
+			times = new long[capacity];
+			keys = new int[capacity];
+			size=0;
+		}
+
+		long firstTime() {
+			return times[0];
+		}
+
+		long lastTime() {
+			return times[size-1];
+		}
+
+		/**
+		 * @return The position where a log with the given time must be inserted
+		 * 			to keep the leaf ordered (after all the logs with the same time)
+		 */
+		int insertionPoint(long time) {
+			int low=0;
+			int high=size;
+			while (low<high) {
+				int mid=(low+high)>>>1;
+				if (times[mid]<=time) {
+					low=mid+1;
+				} else {
+					high=mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * @return The position of the first log with a time not less than <code>time</code>
+		 */
+		int lowerBound(long time) {
+			int low=0;
+			int high=size;
+			while (low<high) {
+				int mid=(low+high)>>>1;
+				if (times[mid]<time) {
+					low=mid+1;
+				} else {
+					high=mid;
+				}
+			}
+			return low;
+		}
+
+		void insert(int pos, long time, int key) {
+			System.arraycopy(times, pos, times, pos+1, size-pos);
+			System.arraycopy(keys, pos, keys, pos+1, size-pos);
+			times[pos]=time;
+			keys[pos]=key;
+			size++;
+		}
+	}
+
+	/**
+	 * The leaves ordered by time
+	 */
+	private final ArrayList<Leaf> leaves = new ArrayList<Leaf>();
+
+	/**
+	 * The number of entries in the index
+	 */
+	private int size=0;
+
+	/**
+	 * Return the position of the leaf where a log with the given
+	 * time must be inserted
+	 */
+	private int leafFor(long time) {
+		int low=0;
+		int high=leaves.size()-1;
+		int ret=0;
+		while (low<=high) {
+			int mid=(low+high)>>>1;
+			if (leaves.get(mid).firstTime()<=time) {
+				ret=mid;
+				low=mid+1;
+			} else {
+				high=mid-1;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Return the position of the first leaf that can contain logs
+	 * with a time not less then the passed time
+	 */
+	private int firstLeafFrom(long time) {
+		int low=0;
+		int high=leaves.size()-1;
+		int ret=0;
+		while (low<=high) {
+			int mid=(low+high)>>>1;
+			if (leaves.get(mid).firstTime()<time) {
+				ret=mid;
+				low=mid+1;
+			} else {
+				high=mid-1;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Add a log to the index
+	 *
+	 * @param time The time of the log
+	 * @param key The key of the log
+	 */
+	public void add(long time, int key) {
+		size++;
+		if (leaves.isEmpty()) {
+			Leaf leaf = new Leaf(LEAF_SIZE);
+			leaf.insert(0, time, key);
+			leaves.add(leaf);
+			return;
+		}
+		Leaf last = leaves.get(leaves.size()-1);
+		if (time>=last.lastTime()) {
+			// Append: the most common case
+			if (last.size<LEAF_SIZE) {
+				last.insert(last.size, time, key);
+			} else {
+				Leaf leaf = new Leaf(LEAF_SIZE);
+				leaf.insert(0, time, key);
+				leaves.add(leaf);
+			}
+			return;
+		}
+		int leafIdx=leafFor(time);
+		Leaf leaf = leaves.get(leafIdx);
+		if (leaf.size==LEAF_SIZE) {
+			// Split the leaf
+			Leaf newLeaf = new Leaf(LEAF_SIZE);
+			int half=LEAF_SIZE/2;
+			System.arraycopy(leaf.times, half, newLeaf.times, 0, LEAF_SIZE-half);
+			System.arraycopy(leaf.keys, half, newLeaf.keys, 0, LEAF_SIZE-half);
+			newLeaf.size=LEAF_SIZE-half;
+			leaf.size=half;
+			leaves.add(leafIdx+1, newLeaf);
+			if (time>=newLeaf.firstTime()) {
+				leaf=newLeaf;
+			}
+		}
+		leaf.insert(leaf.insertionPoint(time), time, key);
+	}
+
+	/**
+	 * Remove a log from the index
+	 *
+	 * @param time The time of the log
+	 * @param key The key of the log
+	 * @return <code>true</code> if the log was in the index
+	 */
+	public boolean remove(long time, int key) {
+		if (leaves.isEmpty()) {
+			return false;
+		}
+		for (int l=firstLeafFrom(time); l<leaves.size(); l++) {
+			Leaf leaf = leaves.get(l);
+			if (leaf.firstTime()>time) {
+				return false;
+			}
+			for (int t=leaf.lowerBound(time); t<leaf.size && leaf.times[t]==time; t++) {
+				if (leaf.keys[t]==key) {
+					System.arraycopy(leaf.times, t+1, leaf.times, t, leaf.size-t-1);
+					System.arraycopy(leaf.keys, t+1, leaf.keys, t, leaf.size-t-1);
+					leaf.size--;
+					if (leaf.size==0) {
+						leaves.remove(l);
+					}
+					size--;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Set in <code>result</code> the keys of the logs whose time is in
+	 * the range <code>[min,max]</code>.
+	 *
+	 * @param min The min time (inclusive)
+	 * @param max The max time (inclusive)
+	 * @param result The set of keys to fill
+	 * @param base The keys are set in <code>result</code> at the position <code>key-base</code>
+	 */
+	public void select(long min, long max, BitSet result, int base) {
+		if (leaves.isEmpty() || min>max) {
+			return;
+		}
+		for (int l=firstLeafFrom(min); l<leaves.size(); l++) {
+			Leaf leaf = leaves.get(l);
+			if (leaf.firstTime()>max) {
+				return;
+			}
+			for (int t=leaf.lowerBound(min); t<leaf.size; t++) {
+				if (leaf.times[t]>max) {
+					return;
+				}
+				int pos = leaf.keys[t]-base;
+				if (pos>=0) {
+					result.set(pos);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove from the index the keys that are not valid anymore.
+	 *
+	 * @param valid The valid keys (the key <code>k</code> is in position <code>k-base</code>)
+	 * @param base The base of the keys in <code>valid</code>
+	 */
+	public void compact(BitSet valid, int base) {
+		ArrayList<Leaf> newLeaves = new ArrayList<Leaf>();
+		Leaf current=null;
+		size=0;
+		for (Leaf leaf: leaves) {
+			for (int t=0; t<leaf.size; t++) {
+				int pos=leaf.keys[t]-base;
+				if (pos<0 || !valid.get(pos)) {
+					continue;
+				}
+				if (current==null || current.size==LEAF_SIZE) {
+					current = new Leaf(LEAF_SIZE);
+					newLeaves.add(current);
+				}
+				current.insert(current.size, leaf.times[t], leaf.keys[t]);
+				size++;
+			}
+		}
+		leaves.clear();
+		leaves.addAll(newLeaves);
+	}
+
+	/**
+	 * Return the max time of the valid logs in the index
+	 *
+	 * @param valid The valid keys (the key <code>k</code> is in position <code>k-base</code>)
+	 * @param base The base of the keys in <code>valid</code>
+	 * @return The max time or <code>null</code> if there are no valid logs in the index
+	 */
+	public Long getMaxTime(BitSet valid, int base) {
+		for (int l=leaves.size()-1; l>=0; l--) {
+			Leaf leaf = leaves.get(l);
+			for (int t=leaf.size-1; t>=0; t--) {
+				int pos = leaf.keys[t]-base;
+				if (pos>=0 && valid.get(pos)) {
+					return Long.valueOf(leaf.times[t]);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The number of entries in the index, including
+	 * 			the entries removed since the last compaction
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all the entries from the index
+	 */
+	public void clear() {
+		leaves.clear();
+		size=0;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package com.cosylab.logging.client.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import com.cosylab.util.FileHelper;
+
+/**
+ * A column of fixed size records stored in a file and accessed through
+ * memory mapped buffers.
+ * <P>
+ * The file is mapped in segments of {@link #RECORDS_PER_SEGMENT} records.
+ * A new segment is mapped only when a record is written past the end of the
+ * last mapped segment so the memory used by the column lives outside of the
+ * java heap and is paged in and out by the operating system.
+ * <P>
+ * The record with index <code>n</code> starts at <code>n*width</code>
+ * and each record can hold more fields at different offsets.
+ * <P>
+ * This class is not thread safe: the {@link LogColumnarCache} owning the column
+ * is in charge of synchronizing the accesses.
+ */
+class MappedColumn {
+
+	/**
+	 * The number of records in each mapped segment
+	 */
+	public static final int RECORDS_PER_SEGMENT = 1<<16;
+
+	/**
+	 * The size (bytes) of each record
+	 */
+	private final int width;
+
+	/**
+	 * The size (bytes) of each segment
+	 */
+	private final int segmentSize;
+
+	/**
+	 * The file on disk
+	 */
+	private final File file;
+
+	/**
+	 * The file used to map the segments
+	 */
+	private RandomAccessFile raFile;
+
+	/**
+	 * The mapped segments
+	 */
+	private final ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param file The file to store the column into; the file is truncated
+	 * @param width The size of each record in bytes
+	 * @throws IOException In case of error creating the file
+	 */
+	public MappedColumn(File file, int width) throws IOException {
+		if (file==null) {
+			throw new IllegalArgumentException("The file can't be null");
+		}
+		if (width<=0) {
+			throw new IllegalArgumentException("Invalid record width "+width);
+		}
+		this.file=file;
+		this.width=width;
+		this.segmentSize=width*RECORDS_PER_SEGMENT;
+		raFile = new RandomAccessFile(file, "rw");
+		raFile.setLength(0);
+	}
+
+	/**
+	 * Return the segment containing the record with the given index,
+	 * mapping new segments if needed.
+	 *
+	 * @param index The index of the record
+	 * @return The segment containing the record
+	 */
+	private MappedByteBuffer segmentFor(int index) {
+		int segIdx = index/RECORDS_PER_SEGMENT;
+		while (segments.size()<=segIdx) {
+			if (raFile==null) {
+				throw new IllegalStateException("The column "+file.getName()+" has been closed");
+			}
+			long start = (long)segments.size()*segmentSize;
+			try {
+				segments.add(raFile.getChannel().map(FileChannel.MapMode.READ_WRITE, start, segmentSize));
+			} catch (IOException ioe) {
+				throw new IllegalStateException("Error mapping "+file.getName()+" at "+start, ioe);
+			}
+		}
+		return segments.get(segIdx);
+	}
+
+	/**
+	 * @return The position of the record in its segment
+	 */
+	private int positionOf(int index, int offset) {
+		return (index%RECORDS_PER_SEGMENT)*width+offset;
+	}
+
+	public void putLong(int index, int offset, long value) {
+		segmentFor(index).putLong(positionOf(index, offset), value);
+	}
+
+	public long getLong(int index, int offset) {
+		return segmentFor(index).getLong(positionOf(index, offset));
+	}
+
+	public void putInt(int index, int offset, int value) {
+		segmentFor(index).putInt(positionOf(index, offset), value);
+	}
+
+	public int getInt(int index, int offset) {
+		return segmentFor(index).getInt(positionOf(index, offset));
+	}
+
+	public void putByte(int index, int offset, byte value) {
+		segmentFor(index).put(positionOf(index, offset), value);
+	}
+
+	public byte getByte(int index, int offset) {
+		return segmentFor(index).get(positionOf(index, offset));
+	}
+
+	/**
+	 * Close the column and delete the file.
+	 * <P>
+	 * The mapped segments are released immediately (and not when
+	 * garbage collected) so the column must not be accessed anymore.
+	 *
+	 * @throws IOException In case of error closing the file
+	 */
+	public void close() throws IOException {
+		for (MappedByteBuffer segment: segments) {
+			FileHelper.unmap(segment);
+		}
+		segments.clear();
+		if (raFile!=null) {
+			raFile.close();
+			raFile=null;
+		}
+		file.delete();
+	}
+}
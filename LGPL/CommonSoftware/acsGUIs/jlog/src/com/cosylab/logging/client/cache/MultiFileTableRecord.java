@@ -47,13 +47,24 @@ public class MultiFileTableRecord {
 	 * @throws LogCacheException
 	 */
 	public MultiFileTableRecord() throws LogCacheException {
+		this(false);
+	}
+	
+	/**
+	 * Build a new object
+	 * 
+	 * @param columnar If <code>true</code> the logs are stored in a {@link LogColumnarCache},
+	 * 				   otherwise in a {@link LogBufferedFileCache}
+	 * @throws LogCacheException
+	 */
+	public MultiFileTableRecord(boolean columnar) throws LogCacheException {
 		minLogIdx=Integer.MAX_VALUE;
 		maxLogIdx=Integer.MIN_VALUE; 
-		lbfc= new LogBufferedFileCache();
+		lbfc= columnar ? new LogColumnarCache(null) : new LogBufferedFileCache();
 	}
 	
-	// Reference to an LogBufferedFileCache object
-	private LogBufferedFileCache lbfc;
+	// Reference to the LogBufferedFileCache or LogColumnarCache object
+	private final ILogMap lbfc;
 	
 	/** Minimum and maximum log keys stored in the LogBufferedFileCache
 	 * These two numbers are used to locate a given log by its keyword.
@@ -80,7 +91,10 @@ public class MultiFileTableRecord {
 	 * @throws IOException In case of error getting the size of the file
 	 */
 	public long getFileSize() throws IOException {
-		return lbfc.getFileSize();
+		if (lbfc instanceof LogColumnarCache) {
+			return ((LogColumnarCache)lbfc).getFileSize();
+		}
+		return ((LogBufferedFileCache)lbfc).getFileSize();
 	}
 	
 	/**
@@ -135,11 +149,14 @@ public class MultiFileTableRecord {
 	
 	/**
 	 * Flush the buffer on disk delegating to the <code>LogBufferedFileCache</code>
+	 * (the <code>LogColumnarCache</code> has no buffer)
 	 * 
 	 * @throws LogCacheException In case of error flushing on disk
 	 */
 	public void flushBuffer() throws LogCacheException {
-		lbfc.flushBuffer();
+		if (lbfc instanceof LogBufferedFileCache) {
+			((LogBufferedFileCache)lbfc).flushBuffer();
+		}
 	}
 	
 	/**
@@ -32,6 +32,7 @@ import java.util.Vector;
 import com.cosylab.logging.client.cache.ILogMap;
 import com.cosylab.logging.client.cache.LogBufferedFileCache;
 import com.cosylab.logging.client.cache.LogCache;
+import com.cosylab.logging.client.cache.LogColumnarCache;
 import com.cosylab.logging.client.cache.LogFileCache;
 import com.cosylab.logging.engine.log.ILogEntry;
 import com.cosylab.logging.engine.log.LogTypeHelper;
@@ -60,9 +61,10 @@ public class CacheUtils {
 	public static final int LOGFILECACHE_TYPE=0;
 	public static final int LOGBUFFEREDFILECACHE_TYPE=1;
 	public static final int LOGCACHE_TYPE=2;
+	public static final int LOGCOLUMNARCACHE_TYPE=3;
 	
 	// The number of possible cache types
-	public static final int NUMOFCACHETYPES=3;
+	public static final int NUMOFCACHETYPES=4;
 	
 	/**
 	 * Generate a random collection of keys.
@@ -263,7 +265,7 @@ public class CacheUtils {
 	 * param is null.
 	 * If opt is not null the cache is created passing opt in the
 	 * constructor.
-	 * LogFileCache has only the empty constructor: for this class
+	 * LogFileCache and LogColumnarCache have only the empty constructor: for these classes
 	 * opt is ignored.
 	 * 
 	 * @param type The type of the cache
@@ -287,6 +289,8 @@ public class CacheUtils {
 			} else {
 				return new LogCache(opt);
 			}
+		case LOGCOLUMNARCACHE_TYPE:
+			return new LogColumnarCache();
 		default:
 			throw new IllegalArgumentException("Invalid cache type "+type);
 		}
@@ -0,0 +1,199 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.jlog.test;
+
+import java.util.Collection;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import com.cosylab.logging.client.cache.LogCacheException;
+import com.cosylab.logging.client.cache.LogColumnarCache;
+import com.cosylab.logging.client.cache.LogMultiFileCache;
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.LogField;
+
+/**
+ * Test the {@link LogColumnarCache} and the {@link LogMultiFileCache}
+ * storing its files in <code>LogColumnarCache</code>s.
+ * <P>
+ * The iteration over the logs of the <code>LogColumnarCache</code>
+ * is tested by {@link LogIteratorTest}.
+ */
+public class ColumnarCacheTest extends TestCase {
+
+	/**
+	 * The number of logs to add to the caches
+	 */
+	private static final int NUM_OF_LOGS = 2000;
+
+	/**
+	 * The cache to test
+	 */
+	private LogColumnarCache cache;
+
+	/**
+	 * Constructor
+	 */
+	public ColumnarCacheTest() {
+		super("ColumnarCacheTest");
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		cache = new LogColumnarCache();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.clear();
+		super.tearDown();
+	}
+
+	/**
+	 * Check if the logs read from the cache and the values
+	 * read from the columns match with the added logs
+	 *
+	 * @throws Exception
+	 */
+	public void testAddGet() throws Exception {
+		Vector<ILogEntry> logs = new Vector<ILogEntry>(CacheUtils.generateLogs(NUM_OF_LOGS));
+		for (ILogEntry log: logs) {
+			cache.add(log);
+		}
+		assertEquals(NUM_OF_LOGS, cache.getSize());
+		assertEquals(Integer.valueOf(0), cache.getFirstLog());
+		assertEquals(Integer.valueOf(NUM_OF_LOGS-1), cache.getLastLog());
+
+		for (int key=0; key<NUM_OF_LOGS; key++) {
+			ILogEntry expected = logs.get(key);
+			ILogEntry log = cache.getLog(key);
+			assertEquals(expected.getField(LogField.LOGMESSAGE), log.getField(LogField.LOGMESSAGE));
+			assertEquals(expected.getField(LogField.TIMESTAMP), log.getField(LogField.TIMESTAMP));
+			assertEquals(expected.getType(), log.getType());
+
+			assertEquals(((Long)expected.getField(LogField.TIMESTAMP)).longValue(), cache.getLogTimestamp(key));
+			assertEquals(expected.getType(), cache.getLogType(key));
+			assertEquals(expected.getField(LogField.HOST), cache.getFieldString(LogField.HOST, key));
+			assertEquals(expected.getField(LogField.PROCESS), cache.getFieldString(LogField.PROCESS, key));
+		}
+	}
+
+	/**
+	 * Test the replacement and the deletion of logs
+	 *
+	 * @throws Exception
+	 */
+	public void testReplaceDelete() throws Exception {
+		Vector<ILogEntry> logs = new Vector<ILogEntry>(CacheUtils.generateLogs(NUM_OF_LOGS));
+		for (ILogEntry log: logs) {
+			cache.add(log);
+		}
+
+		// Replace the first log with the last one
+		cache.replaceLog(0, logs.lastElement());
+		assertEquals(logs.lastElement().getField(LogField.LOGMESSAGE), cache.getLog(0).getField(LogField.LOGMESSAGE));
+		assertEquals(((Long)logs.lastElement().getField(LogField.TIMESTAMP)).longValue(), cache.getLogTimestamp(0));
+
+		// Delete the first and the last logs
+		cache.deleteLog(0);
+		cache.deleteLog(NUM_OF_LOGS-1);
+		assertEquals(NUM_OF_LOGS-2, cache.getSize());
+		assertEquals(NUM_OF_LOGS-2, cache.keySet().size());
+		assertEquals(Integer.valueOf(1), cache.getFirstLog());
+		assertEquals(Integer.valueOf(NUM_OF_LOGS-2), cache.getLastLog());
+		try {
+			cache.getLog(0);
+			fail("Got a deleted log");
+		} catch (LogCacheException e) {
+			// Expected
+		}
+		assertEquals(logs.get(1).getField(LogField.LOGMESSAGE), cache.getLog(1).getField(LogField.LOGMESSAGE));
+
+		Collection<Integer> keys = new Vector<Integer>();
+		assertEquals(10, cache.getFirstLogs(10, keys));
+		assertEquals(Integer.valueOf(1), keys.iterator().next());
+	}
+
+	/**
+	 * Check that the cache can be used again after being cleared
+	 *
+	 * @throws Exception
+	 */
+	public void testClear() throws Exception {
+		CacheUtils.populateCache(cache, NUM_OF_LOGS);
+		assertTrue(cache.getFileSize()>0);
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getFileSize());
+		assertNull(cache.getFirstLog());
+		// The dictionary is cleared with the cache
+		assertEquals(0, cache.getDictionary().size());
+
+		Collection<ILogEntry> logs = CacheUtils.generateLogs(10);
+		for (ILogEntry log: logs) {
+			cache.add(log);
+		}
+		assertEquals(10, cache.getSize());
+		assertEquals(logs.iterator().next().getField(LogField.LOGMESSAGE), cache.getLog(0).getField(LogField.LOGMESSAGE));
+	}
+
+	/**
+	 * Test the {@link LogMultiFileCache} storing the logs in several
+	 * <code>LogColumnarCache</code>s.
+	 *
+	 * @throws Exception
+	 */
+	public void testMultiFileColumnarCache() throws Exception {
+		System.setProperty(LogMultiFileCache.COLUMNAR_PROPERTY_NAME, "true");
+		LogMultiFileCache multiFileCache;
+		try {
+			multiFileCache = new LogMultiFileCache(16384);
+		} finally {
+			System.clearProperty(LogMultiFileCache.COLUMNAR_PROPERTY_NAME);
+		}
+		try {
+			Vector<ILogEntry> logs = new Vector<ILogEntry>(CacheUtils.generateLogs(NUM_OF_LOGS));
+			for (ILogEntry log: logs) {
+				multiFileCache.add(log);
+			}
+			assertEquals(NUM_OF_LOGS, multiFileCache.getSize());
+			assertTrue("The logs are all in one file", multiFileCache.getNumberOfCacheFiles()>1);
+			for (int key=0; key<NUM_OF_LOGS; key++) {
+				assertEquals(logs.get(key).getField(LogField.LOGMESSAGE), multiFileCache.getLog(key).getField(LogField.LOGMESSAGE));
+			}
+
+			// Deleting all the logs of the first file removes the file
+			int files = multiFileCache.getNumberOfCacheFiles();
+			int key=0;
+			while (multiFileCache.getNumberOfCacheFiles()==files) {
+				multiFileCache.deleteLog(key++);
+			}
+			assertEquals(Integer.valueOf(key), multiFileCache.getFirstLog());
+			assertEquals(NUM_OF_LOGS-key, multiFileCache.getSize());
+		} finally {
+			multiFileCache.clear();
+		}
+		assertEquals(0, multiFileCache.getSize());
+	}
+}
@@ -0,0 +1,421 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.jlog.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import com.cosylab.logging.client.cache.LogCacheIndexes;
+import com.cosylab.logging.engine.ExactFilter;
+import com.cosylab.logging.engine.Filter;
+import com.cosylab.logging.engine.MinMaxFilter;
+import com.cosylab.logging.engine.RegExpFilter;
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.LogEntry;
+import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * Test the {@link LogCacheIndexes}.
+ * <P>
+ * Each selection is checked against a full scan of the logs
+ * with {@link Filter#applyTo(ILogEntry, boolean)}, as the table does.
+ * <P>
+ * The logs have few distinct values for the indexed fields and
+ * some of them have no value at all so that the filters
+ * with the NOT policy are checked against logs with <code>null</code> fields.
+ */
+public class LogCacheIndexesTest extends TestCase {
+
+	/**
+	 * The number of logs in the indexes
+	 */
+	private static final int NUM_OF_LOGS = 3000;
+
+	/**
+	 * The time of the first log
+	 */
+	private static final long START_TIME = 1000000L;
+
+	/**
+	 * The hosts of the logs (<code>null</code> means no host)
+	 */
+	private static final String[] HOSTS = { "alma01", "alma02", "alma03", "osf", null };
+
+	/**
+	 * The processes of the logs (<code>null</code> means no process)
+	 */
+	private static final String[] PROCESSES = { "acsStartContainer", "maciManager", "jlog", null };
+
+	/**
+	 * The source objects of the logs (<code>null</code> means no source object)
+	 */
+	private static final String[] SOURCES = { "CONTROL/DV01", "CONTROL/DV02", "TELCAL", null };
+
+	/**
+	 * The indexes to test
+	 */
+	private LogCacheIndexes indexes;
+
+	/**
+	 * The logs in the indexes, by key
+	 */
+	private Map<Integer, ILogEntry> logs;
+
+	/**
+	 * The generator of the values of the logs
+	 * (the seed is fixed to make failures reproducible)
+	 */
+	private Random rnd;
+
+	/**
+	 * Constructor
+	 */
+	public LogCacheIndexesTest() {
+		super("LogCacheIndexesTest");
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		indexes = new LogCacheIndexes();
+		logs = new TreeMap<Integer, ILogEntry>();
+		rnd = new Random(5417);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		indexes.clear();
+		logs.clear();
+		super.tearDown();
+	}
+
+	/**
+	 * Build a log with random values.
+	 * <P>
+	 * One log out of 20 has no timestamp.
+	 *
+	 * @param key The key of the log, used for the timestamp
+	 * @return The log
+	 */
+	private ILogEntry newLog(int key) {
+		Long time = (rnd.nextInt(20)==0) ? null : Long.valueOf(START_TIME+key*10+rnd.nextInt(10));
+		int type = rnd.nextInt(LogTypeHelper.values().length);
+		return new LogEntry(
+				time,
+				Integer.valueOf(type),
+				"LogCacheIndexesTest.java",
+				Integer.valueOf(key),
+				"newLog",
+				HOSTS[rnd.nextInt(HOSTS.length)],
+				PROCESSES[rnd.nextInt(PROCESSES.length)],
+				(rnd.nextBoolean()) ? "ctx" : null,
+				"main",
+				null,
+				null,
+				null,
+				null,
+				null,
+				"Log number "+key,
+				SOURCES[rnd.nextInt(SOURCES.length)],
+				null,
+				null,
+				null,
+				null);
+	}
+
+	/**
+	 * Add logs with consecutive keys to the indexes
+	 *
+	 * @param firstKey The key of the first log to add
+	 * @param num The number of logs to add
+	 */
+	private void addLogs(int firstKey, int num) {
+		for (int key=firstKey; key<firstKey+num; key++) {
+			ILogEntry log = newLog(key);
+			indexes.add(key, log);
+			logs.put(Integer.valueOf(key), log);
+		}
+	}
+
+	/**
+	 * Check the selection of the indexes against a full scan of the logs.
+	 * <P>
+	 * A log is selected by the full scan if its level is at least <code>minLevel</code>
+	 * and all the filters accept it in non lethal circumstances.
+	 *
+	 * @param filters The filters
+	 * @param minLevel The min level of the logs (can be <code>null</code>)
+	 * @return The number of selected logs
+	 */
+	private int checkSelection(Filter[] filters, LogTypeHelper minLevel) {
+		LogCacheIndexes.Selection selection = indexes.select(filters, minLevel);
+		for (Filter f: selection.getResidualFilters()) {
+			assertFalse("Indexable filter not answered by the indexes: "+f, LogCacheIndexes.isIndexable(f));
+		}
+		int selected=0;
+		for (Map.Entry<Integer, ILogEntry> entry: logs.entrySet()) {
+			int key = entry.getKey().intValue();
+			ILogEntry log = entry.getValue();
+			assertTrue(selection.isIndexed(key));
+
+			boolean expected = minLevel==null || log.getType().ordinal()>=minLevel.ordinal();
+			for (Filter f: filters) {
+				expected = expected && f.applyTo(log, false);
+			}
+			boolean actual = selection.contains(key);
+			for (Filter f: selection.getResidualFilters()) {
+				actual = actual && f.applyTo(log, false);
+			}
+			assertEquals("Wrong selection of log "+key+" with "+describe(filters), expected, actual);
+			if (actual) {
+				selected++;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * @return A description of the filters for the error messages
+	 */
+	private static String describe(Filter[] filters) {
+		StringBuilder ret = new StringBuilder();
+		for (Filter f: filters) {
+			ret.append('[');
+			ret.append(f.toString());
+			ret.append(']');
+		}
+		return ret.toString();
+	}
+
+	/**
+	 * @return The filters on the indexed fields, with and without the NOT policy
+	 * @throws Exception
+	 */
+	private List<Filter> buildFilters() throws Exception {
+		List<Filter> ret = new ArrayList<Filter>();
+		for (int t=0; t<2; t++) {
+			boolean not = t==1;
+			ret.add(new ExactFilter(LogField.HOST, false, "alma02", not));
+			ret.add(new ExactFilter(LogField.PROCESS, false, "maciManager", not));
+			ret.add(new ExactFilter(LogField.SOURCEOBJECT, false, "TELCAL", not));
+			ret.add(new ExactFilter(LogField.CONTEXT, false, "ctx", not));
+			ret.add(new ExactFilter(LogField.HOST, false, "unknown", not));
+			ret.add(new ExactFilter(LogField.ENTRYTYPE, false, LogTypeHelper.WARNING, not));
+			ret.add(new ExactFilter(LogField.TIMESTAMP, false, Long.valueOf(START_TIME+1000*10+5), not));
+
+			ret.add(new MinMaxFilter(LogField.HOST, false, "alma02", "alma03", not));
+			ret.add(new MinMaxFilter(LogField.HOST, false, "alma02", null, not));
+			ret.add(new MinMaxFilter(LogField.HOST, false, null, "alma02", not));
+			ret.add(new MinMaxFilter(LogField.SOURCEOBJECT, false, "CONTROL/", "CONTROL/DV01", not));
+			ret.add(new MinMaxFilter(LogField.PROCESS, false, "b", "z", not));
+
+			ret.add(new MinMaxFilter(LogField.ENTRYTYPE, false, LogTypeHelper.INFO, LogTypeHelper.ERROR, not));
+			ret.add(new MinMaxFilter(LogField.ENTRYTYPE, false, LogTypeHelper.NOTICE, null, not));
+			ret.add(new MinMaxFilter(LogField.ENTRYTYPE, false, null, LogTypeHelper.DEBUG, not));
+
+			ret.add(new MinMaxFilter(LogField.TIMESTAMP, false, Long.valueOf(START_TIME+5000), Long.valueOf(START_TIME+15000), not));
+			ret.add(new MinMaxFilter(LogField.TIMESTAMP, false, Long.valueOf(START_TIME+20000), null, not));
+			ret.add(new MinMaxFilter(LogField.TIMESTAMP, false, null, Long.valueOf(START_TIME+3000), not));
+		}
+		return ret;
+	}
+
+	/**
+	 * Check each filter alone, with and without a min level,
+	 * and in AND with the other filters.
+	 *
+	 * @throws Exception
+	 */
+	private void checkAllFilters() throws Exception {
+		List<Filter> filters = buildFilters();
+		for (Filter f: filters) {
+			assertTrue(LogCacheIndexes.isIndexable(f));
+			checkSelection(new Filter[] { f }, null);
+			checkSelection(new Filter[] { f }, LogTypeHelper.WARNING);
+		}
+		for (int t=0; t<filters.size(); t++) {
+			Filter[] pair = new Filter[] { filters.get(t), filters.get((t*7+3)%filters.size()) };
+			checkSelection(pair, LogTypeHelper.DEBUG);
+		}
+	}
+
+	/**
+	 * Check the exact and the min/max filters, with and without the NOT policy,
+	 * on the strings, the levels and the timestamps.
+	 *
+	 * @throws Exception
+	 */
+	public void testFilters() throws Exception {
+		addLogs(0, NUM_OF_LOGS);
+		assertEquals(NUM_OF_LOGS, indexes.getSize());
+		assertEquals(NUM_OF_LOGS, checkSelection(new Filter[0], null));
+		checkAllFilters();
+	}
+
+	/**
+	 * Logs without a value for a field never match a filter on that field,
+	 * not even with the NOT policy
+	 *
+	 * @throws Exception
+	 */
+	public void testNotPolicyWithNulls() throws Exception {
+		addLogs(0, NUM_OF_LOGS);
+		Filter notHost = new ExactFilter(LogField.HOST, false, "alma01", true);
+		Filter notTime = new MinMaxFilter(LogField.TIMESTAMP, false, Long.valueOf(START_TIME), Long.valueOf(START_TIME+100), true);
+		checkSelection(new Filter[] { notHost }, null);
+		checkSelection(new Filter[] { notTime }, null);
+
+		LogCacheIndexes.Selection selection = indexes.select(new Filter[] { notHost, notTime }, null);
+		int nulls=0;
+		for (Map.Entry<Integer, ILogEntry> entry: logs.entrySet()) {
+			ILogEntry log = entry.getValue();
+			if (log.getField(LogField.HOST)==null || log.getField(LogField.TIMESTAMP)==null) {
+				assertFalse(selection.contains(entry.getKey().intValue()));
+				nulls++;
+			}
+		}
+		assertTrue("No logs with null fields", nulls>0);
+	}
+
+	/**
+	 * Lethal filters always match in non lethal circumstances
+	 * and must be ignored by the indexes
+	 *
+	 * @throws Exception
+	 */
+	public void testLethalFilters() throws Exception {
+		addLogs(0, NUM_OF_LOGS);
+		Filter lethalHost = new ExactFilter(LogField.HOST, true, "alma01", false);
+		Filter lethalLevel = new MinMaxFilter(LogField.ENTRYTYPE, true, LogTypeHelper.ERROR, null, false);
+		Filter lethalRegExp = new RegExpFilter(LogField.LOGMESSAGE, true, "nothing", false);
+		Filter process = new ExactFilter(LogField.PROCESS, false, "jlog", false);
+
+		assertEquals(NUM_OF_LOGS, checkSelection(new Filter[] { lethalHost, lethalLevel, lethalRegExp }, null));
+		LogCacheIndexes.Selection selection = indexes.select(new Filter[] { lethalHost, lethalRegExp }, null);
+		assertEquals(0, selection.getResidualFilters().length);
+		assertEquals(NUM_OF_LOGS, selection.size());
+
+		checkSelection(new Filter[] { lethalHost, process }, null);
+		checkSelection(new Filter[] { process, lethalLevel }, LogTypeHelper.INFO);
+	}
+
+	/**
+	 * The filters that can't be answered by the indexes
+	 * are returned as residuals
+	 *
+	 * @throws Exception
+	 */
+	public void testResidualFilters() throws Exception {
+		addLogs(0, NUM_OF_LOGS);
+		Filter regExp = new RegExpFilter(LogField.LOGMESSAGE, false, ".*1.*", false);
+		Filter thread = new ExactFilter(LogField.THREAD, false, "main", true);
+		Filter host = new ExactFilter(LogField.HOST, false, "osf", false);
+
+		LogCacheIndexes.Selection selection = indexes.select(new Filter[] { regExp, host, thread }, null);
+		assertEquals(2, selection.getResidualFilters().length);
+		checkSelection(new Filter[] { regExp, host, thread }, null);
+		checkSelection(new Filter[] { regExp, host }, LogTypeHelper.NOTICE);
+	}
+
+	/**
+	 * Replace some logs and check that the indexes are updated
+	 *
+	 * @throws Exception
+	 */
+	public void testReplace() throws Exception {
+		addLogs(0, NUM_OF_LOGS);
+		for (int t=0; t<NUM_OF_LOGS/3; t++) {
+			Integer key = Integer.valueOf(rnd.nextInt(NUM_OF_LOGS));
+			ILogEntry newLog = newLog(rnd.nextInt(NUM_OF_LOGS));
+			indexes.replace(key.intValue(), logs.get(key), newLog);
+			logs.put(key, newLog);
+		}
+		assertEquals(NUM_OF_LOGS, indexes.getSize());
+		checkAllFilters();
+
+		// The time index must return the new timestamps
+		List<Integer> keys = indexes.selectTimeRange(START_TIME, START_TIME+5000);
+		for (Map.Entry<Integer, ILogEntry> entry: logs.entrySet()) {
+			Long time = (Long)entry.getValue().getField(LogField.TIMESTAMP);
+			boolean inRange = time!=null && time.longValue()<=START_TIME+5000;
+			assertEquals(inRange, keys.contains(entry.getKey()));
+		}
+	}
+
+	/**
+	 * Delete logs until the indexes are compacted and check
+	 * the selections before and after adding new logs
+	 *
+	 * @throws Exception
+	 */
+	public void testCompaction() throws Exception {
+		// The indexes are compacted when at least 65536 logs have been deleted
+		// and the deleted logs are at least as many as the logs in the indexes
+		int numOfLogs = 150000;
+		int toDelete = 100000;
+		addLogs(0, numOfLogs);
+		for (int key=0; key<toDelete; key++) {
+			indexes.remove(key);
+			logs.remove(Integer.valueOf(key));
+		}
+		// Delete some logs in the middle too
+		for (int key=toDelete+10; key<numOfLogs; key+=100) {
+			indexes.remove(key);
+			logs.remove(Integer.valueOf(key));
+		}
+		assertEquals(logs.size(), indexes.getSize());
+		LogCacheIndexes.Selection all = indexes.select(null, null);
+		assertFalse(all.isIndexed(0));
+		assertFalse(all.contains(toDelete-1));
+		assertEquals(logs.size(), checkSelection(new Filter[0], null));
+		checkAllFilters();
+
+		// Add and replace logs after the compaction
+		addLogs(numOfLogs, 2000);
+		for (int key=toDelete; key<numOfLogs; key+=500) {
+			Integer k = Integer.valueOf(key);
+			if (logs.containsKey(k)) {
+				ILogEntry newLog = newLog(key);
+				indexes.replace(key, logs.get(k), newLog);
+				logs.put(k, newLog);
+			}
+		}
+		assertEquals(logs.size(), indexes.getSize());
+		checkAllFilters();
+
+		// The max time is the max of the logs still in the indexes
+		long maxTime = Long.MIN_VALUE;
+		for (ILogEntry log: logs.values()) {
+			Long time = (Long)log.getField(LogField.TIMESTAMP);
+			if (time!=null) {
+				maxTime = Math.max(maxTime, time.longValue());
+			}
+		}
+		assertEquals(Long.valueOf(maxTime), indexes.getMaxTime());
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.jlog.test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import alma.acs.logging.table.RowEntries;
+
+/**
+ * Test the bulk operations of {@link RowEntries}
+ */
+public class RowEntriesTest extends TestCase {
+	
+	/**
+	 * The number of keys in the entries
+	 */
+	private static final int NUM_OF_KEYS = 1000;
+	
+	/**
+	 * The entries to test
+	 */
+	private RowEntries rows;
+
+	/**
+	 * Constructor
+	 */
+	public RowEntriesTest() {
+		super(RowEntriesTest.class.getName());
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		rows = new RowEntries();
+		int[] keys = new int[NUM_OF_KEYS];
+		for (int t=0; t<keys.length; t++) {
+			keys[t]=t;
+		}
+		// Add the keys in two chunks
+		rows.addAll(keys, 0, 100);
+		rows.addAll(keys, 100, keys.length);
+	}
+	
+	/**
+	 * Check that the keys added in bulk are in the right rows
+	 */
+	public void testAddAll() throws Exception {
+		assertEquals(NUM_OF_KEYS, rows.size());
+		for (int t=0; t<NUM_OF_KEYS; t++) {
+			// The last key added is in the first row
+			assertEquals(Integer.valueOf(NUM_OF_KEYS-1-t), rows.get(t));
+			assertEquals(NUM_OF_KEYS-1-t, rows.indexOf(Integer.valueOf(t)));
+		}
+	}
+	
+	/**
+	 * Remove the oldest entries (i.e. those in the last rows)
+	 */
+	public void testRemoveLastEntries() throws Exception {
+		List<Integer> removed = rows.removeLastEntries(300);
+		assertEquals(300, removed.size());
+		for (int t=0; t<removed.size(); t++) {
+			assertEquals(Integer.valueOf(t), removed.get(t));
+		}
+		assertEquals(NUM_OF_KEYS-300, rows.size());
+		assertEquals(Integer.valueOf(NUM_OF_KEYS-1), rows.get(0));
+		assertEquals(Integer.valueOf(300), rows.get(rows.size()-1));
+		// Removing more entries then available
+		removed = rows.removeLastEntries(NUM_OF_KEYS);
+		assertEquals(NUM_OF_KEYS-300, removed.size());
+		assertEquals(0, rows.size());
+	}
+	
+	/**
+	 * Remove the newest entries (i.e. those in the first rows)
+	 */
+	public void testRemoveFirstEntries() throws Exception {
+		List<Integer> removed = rows.removeFirstEntries(10);
+		assertEquals(10, removed.size());
+		for (int t=0; t<removed.size(); t++) {
+			// The first removed is the one in the first row
+			assertEquals(Integer.valueOf(NUM_OF_KEYS-1-t), removed.get(t));
+		}
+		assertEquals(NUM_OF_KEYS-10, rows.size());
+		assertEquals(Integer.valueOf(NUM_OF_KEYS-11), rows.get(0));
+		assertEquals(Integer.valueOf(0), rows.get(rows.size()-1));
+	}
+}
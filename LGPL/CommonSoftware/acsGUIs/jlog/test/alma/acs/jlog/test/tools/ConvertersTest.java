@@ -27,6 +27,7 @@ import alma.acs.logging.engine.parser.ACSLogParser;
 import alma.acs.logging.engine.parser.ACSLogParserFactory;
 import alma.acs.logging.engine.parser.ACSLogParserFactory.ParserTypes;
 import alma.acs.logging.tools.CSVConverter;
+import alma.acs.logging.tools.LogConverter;
 import alma.acs.logging.tools.TextConverter;
 import alma.acs.logging.tools.TwikiTableConverter;
 import alma.acs.logging.tools.XMLConverter;
@@ -363,6 +364,39 @@ public class ConvertersTest extends TestCase {
 		assertEquals(expected, txt);
 	}
 	
+	/**
+	 * Test the conversion of a log appending the converted string
+	 * to a <code>StringBuilder</code>: the result must be the same
+	 * of {@link LogConverter#convert(ILogEntry)}
+	 * 
+	 * @throws Exception
+	 */
+	public void testConvertToBuilder() throws Exception {
+		String cols="";
+		cols+=LogField.TIMESTAMP.id;
+		cols+=LogField.ENTRYTYPE.id;
+		cols+=LogField.LOGMESSAGE.id;
+		cols+=LogConverter.ADDITIONAL_DATA_ID;
+		LogConverter[] converters = {
+				new CSVConverter(),
+				new CSVConverter(cols,'$',false),
+				new TextConverter(cols),
+				new TwikiTableConverter(cols),
+				new XMLConverter()
+		};
+		StringBuilder builder = new StringBuilder();
+		for (LogConverter converter: converters) {
+			String converted=converter.convert(logToConvert);
+			builder.setLength(0);
+			builder.append("Header");
+			converter.convert(logToConvert, builder);
+			assertEquals("Header"+converted, builder.toString());
+			// Reuse the same builder for another log
+			converter.convert(logToConvert, builder);
+			assertEquals("Header"+converted+converted, builder.toString());
+		}
+	}
+	
 	/**
 	 * Check the generation of the header for the different 
 	 * log converters.
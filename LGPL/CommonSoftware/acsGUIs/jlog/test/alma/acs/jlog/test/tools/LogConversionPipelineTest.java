@@ -0,0 +1,233 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.jlog.test.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import alma.acs.logging.engine.io.ColumnarLogReader;
+import alma.acs.logging.tools.CSVConverter;
+import alma.acs.logging.tools.LogConversionPipeline;
+import alma.acs.logging.tools.LogConverter;
+import alma.acs.logging.tools.XMLConverter;
+
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
+import com.cosylab.logging.engine.log.LogEntry;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * Test the conversion and the writing of the logs with the 
+ * {@link LogConversionPipeline}.
+ */
+public class LogConversionPipelineTest extends TestCase {
+	
+	/**
+	 * The number of logs to write: more then one batch
+	 */
+	private static final int NUM_OF_LOGS = 3*LogConversionPipeline.BATCH_SIZE+17;
+	
+	/**
+	 * The logs to convert
+	 */
+	private final Vector<ILogEntry> logs = new Vector<ILogEntry>();
+	
+	/**
+	 * The files created by the test, deleted by {@link #tearDown()}
+	 */
+	private final Vector<File> files = new Vector<File>();
+	
+	/**
+	 * Constructor
+	 */
+	public LogConversionPipelineTest() {
+		super(LogConversionPipelineTest.class.getName());
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		LogTypeHelper[] types = LogTypeHelper.values();
+		for (int t=0; t<NUM_OF_LOGS; t++) {
+			Vector<AdditionalData> datas=null;
+			if (t%3==0) {
+				datas = new Vector<AdditionalData>();
+				datas.add(new AdditionalData("Name", "Value "+t));
+				datas.add(new AdditionalData("Index", Integer.toString(t)));
+			}
+			logs.add(new LogEntry(
+					Long.valueOf(1433152800000L+t),
+					Integer.valueOf(types[t%types.length].ordinal()),
+					"File"+(t%5)+".java",
+					(t%7==0)?null:Integer.valueOf(t),
+					"routine"+(t%11),
+					"host"+(t%2),
+					"process",
+					null,
+					"thread"+(t%4),
+					null,
+					Integer.valueOf(t%3),
+					null,
+					null,
+					null,
+					"Message \"number\" "+t+", with a comma\nand a new line",
+					"SourceObject",
+					"Operator",
+					null,
+					"DV0"+(t%9),
+					datas));
+		}
+	}
+
+	/**
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception {
+		for (File f: files) {
+			f.delete();
+		}
+		files.clear();
+		logs.clear();
+		super.tearDown();
+	}
+	
+	/**
+	 * @return A new temporary file deleted at the end of the test
+	 */
+	private File getTempFile(String extension) throws IOException {
+		File f = File.createTempFile("LogConversionPipelineTest", extension);
+		files.add(f);
+		return f;
+	}
+	
+	/**
+	 * @return The content of the given file
+	 */
+	private String readFile(File f) throws IOException {
+		StringBuilder ret = new StringBuilder();
+		FileReader reader = new FileReader(f);
+		try {
+			char[] buf = new char[4096];
+			int n;
+			while ((n=reader.read(buf))>=0) {
+				ret.append(buf, 0, n);
+			}
+		} finally {
+			reader.close();
+		}
+		return ret.toString();
+	}
+	
+	/**
+	 * Convert the logs with the pipeline and check that the content of the 
+	 * files is the same of the logs converted one by one
+	 */
+	public void testConversion() throws Exception {
+		LogConverter[] converters = { new CSVConverter(), new XMLConverter() };
+		for (LogConverter converter: converters) {
+			File f = getTempFile(converter.getFileExtension());
+			LogConversionPipeline pipeline = new LogConversionPipeline(converter,4);
+			pipeline.openFile(f.getAbsolutePath());
+			StringBuilder expected = new StringBuilder();
+			for (ILogEntry log: logs) {
+				pipeline.add(log);
+				expected.append(converter.convert(log));
+			}
+			pipeline.close();
+			assertEquals(expected.toString(), readFile(f));
+		}
+	}
+	
+	/**
+	 * Write the logs in more files
+	 */
+	public void testMoreFiles() throws Exception {
+		CSVConverter converter = new CSVConverter();
+		File[] outFiles = new File[3];
+		StringBuilder[] expected = new StringBuilder[outFiles.length];
+		LogConversionPipeline pipeline = new LogConversionPipeline(converter,2);
+		int logsPerFile=NUM_OF_LOGS/outFiles.length+1;
+		for (int t=0; t<NUM_OF_LOGS; t++) {
+			int idx=t/logsPerFile;
+			if (t%logsPerFile==0) {
+				outFiles[idx]=getTempFile(".txt");
+				expected[idx]=new StringBuilder();
+				pipeline.openFile(outFiles[idx].getAbsolutePath());
+			}
+			pipeline.add(logs.get(t));
+			expected[idx].append(converter.convert(logs.get(t)));
+		}
+		pipeline.close();
+		for (int t=0; t<outFiles.length; t++) {
+			assertEquals(expected[t].toString(), readFile(outFiles[t]));
+		}
+	}
+	
+	/**
+	 * Write the logs in columnar format and read them back
+	 */
+	public void testColumnar() throws Exception {
+		File f = getTempFile(LogConversionPipeline.getFileExtension(null));
+		LogConversionPipeline pipeline = new LogConversionPipeline(null);
+		pipeline.openFile(f.getAbsolutePath());
+		for (ILogEntry log: logs) {
+			pipeline.add(log);
+		}
+		pipeline.close();
+		
+		ColumnarLogReader reader = new ColumnarLogReader(new FileInputStream(f));
+		int count=0;
+		ILogEntry[] block;
+		while ((block=reader.readBlock())!=null) {
+			for (ILogEntry log: block) {
+				assertEquals(logs.get(count++).toXMLString(), log.toXMLString());
+			}
+		}
+		reader.close();
+		assertEquals(NUM_OF_LOGS, count);
+		assertEquals(f.length(), reader.getBytesRead());
+	}
+	
+	/**
+	 * Adding logs before opening a file is an error
+	 */
+	public void testNoFile() throws Exception {
+		LogConversionPipeline pipeline = new LogConversionPipeline(new CSVConverter());
+		try {
+			pipeline.add(logs.get(0));
+			fail("Adding a log without a file must fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		} finally {
+			pipeline.close();
+		}
+	}
+}
@@ -6,10 +6,14 @@ package com.cosylab.cdb.client;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.SAXParser;
@@ -32,6 +36,7 @@ import com.cosylab.CDB.DALChangeListenerPOA;
 import com.cosylab.CDB.DALHelper;
 import com.cosylab.CDB.DAOOperations;
 import com.cosylab.cdb.jdal.DAOImpl;
+import com.cosylab.cdb.jdal.SAXParserPool;
 import com.cosylab.cdb.jdal.XMLHandler;
 
 /**
@@ -39,6 +44,9 @@ import com.cosylab.cdb.jdal.XMLHandler;
  * observing DAO changes, and providing accessor methods to the user).
  * <p>
  * It retrieves and caches XML data from the CDB unless property <code>DAO.remote</code> is <code>true</code>.
+ * In this (default) mode the XML of a record is fetched only once (via <code>get_DAO</code>) and parsed locally,
+ * all the DAO proxies of the same CURL share the parsed record and serve their getters from memory.
+ * The parsed record is dropped when the DAL reports the CURL as changed and the proxies are reconnected.
  * 
  * @author		Matej Sekoranja (matej.sekoranja@cosylab.com)
  * @version	@@VERSION@@
@@ -106,6 +114,23 @@ public class CDBAccess
 	 */
 	private boolean bypassNameService = false;
 
+	/**
+	 * Cache of locally parsed (materialized) DAOs, used when <code>remoteDAO</code> is <code>false</code>.
+	 * Maps CURL to <code>DAOImpl</code>.
+	 */
+	private final Map materializedDAOs = new HashMap();
+
+	/**
+	 * Incremented on every invalidation of <code>materializedDAOs</code>,
+	 * prevents caching of DAOs that were parsed from XML retrieved before the invalidation.
+	 */
+	private long materializedDAOsGeneration = 0;
+
+	/**
+	 * Pool of parsers used to parse XML of the materialized DAOs.
+	 */
+	private SAXParserPool parserPool = null;
+
 	/**
 	 * This private class will handle CDB restart or data change in the CDB.
 	 * 
@@ -115,7 +140,7 @@ public class CDBAccess
 	private class ChangeListener extends DALChangeListenerPOA
 	{
 		/**
-		 * Map of monitored CURLs entities.
+		 * Map of monitored CURLs entities, maps CURL to (weak) set of its <code>DAOProxy</code> instances.
 		 */
 		private HashMap curlMap = new HashMap();
 		
@@ -180,21 +205,41 @@ public class CDBAccess
 		 */
 		public void object_changed(String curl)
 		{
-			// get the connectable from cache and reconnect it in separate thread
-			DAOProxy connectable = (DAOProxy) curlMap.get(curl);
-			if (connectable != null)
-				new ReconnectTask(connectable).start();
+			// parsed XML is out of date
+			invalidateMaterializedDAO(curl);
+
+			// get the connectables from cache and reconnect them in separate threads
+			DAOProxy[] connectables;
+			synchronized (curlMap)
+			{
+				Set proxies = (Set) curlMap.get(curl);
+				if (proxies == null)
+					return;
+				connectables = (DAOProxy[]) proxies.toArray(new DAOProxy[proxies.size()]);
+			}
+			
+			for (int i = 0; i < connectables.length; i++)
+				new ReconnectTask(connectables[i]).start();
 		}
 
 		/**
 		 * Add listener for curl on DAL server so the connectable object can be reconnected.
+		 * The listener is registered on the DAL server only once per curl; synchronized,
+		 * since DAOs of the same curl can be created concurrently.
 		 * 
 		 * @param dal the reference of the DAL server where the curl is obtained
 		 * @param curl the path for our DAO object
 		 * @param conn the object for which we made the DAO
 		 */
-		public void handle(DAL dal, String curl, DAOProxy conn)
+		public synchronized void handle(DAL dal, String curl, DAOProxy conn)
 		{
+			// already listening for <code>curl</code> changes
+			if (isRegistered(curl))
+			{
+				add(curl, conn);
+				return;
+			}
+
 			// create CORBA instance
 			if (cl == null)
 				cl = changeListener._this(orb);
@@ -213,7 +258,28 @@ public class CDBAccess
 
 			// after all registrations are done successfully
 			// remember that we are monitoring <code>curl</code>
-			curlMap.put(curl, conn);
+			add(curl, conn);
+		}
+
+		/**
+		 * Adds the proxy to the set of proxies to be reconnected when <code>curl</code> changes.
+		 * Proxies are referenced weakly, i.e. the ones no longer used are forgotten.
+		 * 
+		 * @param curl the path for our DAO object
+		 * @param conn the object for which we made the DAO
+		 */
+		public void add(String curl, DAOProxy conn)
+		{
+			synchronized (curlMap)
+			{
+				Set proxies = (Set) curlMap.get(curl);
+				if (proxies == null)
+				{
+					proxies = Collections.newSetFromMap(new WeakHashMap());
+					curlMap.put(curl, proxies);
+				}
+				proxies.add(conn);
+			}
 		}
 
 		/**
@@ -222,13 +288,16 @@ public class CDBAccess
 		 */
 		public boolean isRegistered(String curl)
 		{
-			return curlMap.containsKey(curl);
+			synchronized (curlMap)
+			{
+				return curlMap.containsKey(curl);
+			}
 		}
 
 		/**
 		 * Unregister this listener from DAL server(s).
 		 */
-		public void destroy()
+		public synchronized void destroy()
 		{
 			DAL dal;
 			Integer listenerID;
@@ -252,7 +321,10 @@ public class CDBAccess
 			
 			// clear caches
 			dalMap.clear();
-			curlMap.clear();
+			synchronized (curlMap)
+			{
+				curlMap.clear();
+			}
 		}
 	}
 
@@ -325,33 +397,14 @@ public class CDBAccess
 			}
 			else
 			{
-				String xml = dalReference.get_DAO(curl);
-
-				SAXParserFactory factory = SAXParserFactory.newInstance();
-				SAXParser saxParser = factory.newSAXParser();
-				
-				// use CDB XML handler which does not creates strings...
-				XMLHandler xmlSolver = new XMLHandler(false, logger);
-				
-				saxParser.parse(new InputSource(new StringReader(xml)), xmlSolver);
-				
-				if (xmlSolver.m_errorString != null){
-					AcsJCDBXMLErrorEx e = new AcsJCDBXMLErrorEx();
-					e.setErrorString("XML parser error: " + xmlSolver.m_errorString);
-					throw e;
-					//throw new XMLerror("XML parser error: " + xmlSolver.m_errorString);
-				}
-				// create non-CORBA related, silent DAO
-				dao = new DAOImpl(curl, xmlSolver.m_rootNode, null, logger, true);
-				proxy.setElementName(xmlSolver.m_rootNode.getName());
+				DAOImpl daoImpl = getMaterializedDAO(curl);
+				dao = daoImpl;
+				proxy.setElementName(daoImpl.getRootNode().getName());
 			}
 			
 			// register listener, if not already registered
 			if (changeListener != null)
-			{
-				if (!changeListener.isRegistered(curl))
-					changeListener.handle(dalReference, curl, proxy);
-			}
+				changeListener.handle(dalReference, curl, proxy);
 			
 		} catch (Throwable th)
 		{
@@ -374,6 +427,88 @@ public class CDBAccess
 
 	}
 
+	/**
+	 * Returns locally parsed DAO of the given CURL, the XML is retrieved from the DAL only if the DAO is not cached.
+	 * The returned DAO is shared and must not be modified.
+	 * 
+	 * @param	curl	DAO curl, non-<code>null</code>
+	 * @return	non-CORBA related, silent DAO.
+	 * @throws	Throwable	exception on failure (e.g. connection failure, XML error, etc.)
+	 */
+	private DAOImpl getMaterializedDAO(String curl) throws Throwable
+	{
+		long generation;
+		SAXParserPool pool;
+		synchronized (materializedDAOs)
+		{
+			DAOImpl dao = (DAOImpl) materializedDAOs.get(curl);
+			if (dao != null)
+				return dao;
+			
+			generation = materializedDAOsGeneration;
+			
+			if (parserPool == null)
+				parserPool = new SAXParserPool(SAXParserFactory.newInstance(), null);
+			pool = parserPool;
+		}
+
+		String xml = dalReference.get_DAO(curl);
+
+		// use CDB XML handler which does not creates strings...
+		XMLHandler xmlSolver = new XMLHandler(false, logger);
+
+		SAXParser saxParser = pool.acquire();
+		try
+		{
+			saxParser.parse(new InputSource(new StringReader(xml)), xmlSolver);
+		}
+		finally
+		{
+			saxParser.reset();
+			pool.release(saxParser);
+		}
+		
+		if (xmlSolver.m_errorString != null){
+			AcsJCDBXMLErrorEx e = new AcsJCDBXMLErrorEx();
+			e.setErrorString("XML parser error: " + xmlSolver.m_errorString);
+			throw e;
+			//throw new XMLerror("XML parser error: " + xmlSolver.m_errorString);
+		}
+
+		// create non-CORBA related, silent DAO
+		DAOImpl dao = new DAOImpl(curl, xmlSolver.m_rootNode, null, logger, true);
+
+		synchronized (materializedDAOs)
+		{
+			// do not cache if invalidated in the meantime (XML might be out of date)
+			if (generation == materializedDAOsGeneration)
+			{
+				DAOImpl cachedDAO = (DAOImpl) materializedDAOs.get(curl);
+				if (cachedDAO != null)
+					return cachedDAO;
+				materializedDAOs.put(curl, dao);
+			}
+		}
+		
+		return dao;
+	}
+
+	/**
+	 * Removes locally parsed DAO of the given CURL from the cache.
+	 * @param	curl	DAO curl, <code>null</code> to remove all.
+	 */
+	private void invalidateMaterializedDAO(String curl)
+	{
+		synchronized (materializedDAOs)
+		{
+			materializedDAOsGeneration++;
+			if (curl == null)
+				materializedDAOs.clear();
+			else
+				materializedDAOs.remove(curl);
+		}
+	}
+
 	/**
 	 * @return the bypassNameService
 	 */
@@ -541,6 +676,8 @@ public class CDBAccess
 		if(changeListener != null)
 			changeListener.destroy();
 		
+		invalidateMaterializedDAO(null);
+		
 		// TODO @todo should DAOProxies be destroyed too?
 	}
 	
@@ -27,7 +27,7 @@ public class DAOProxy implements DAOOperations
 	/**
 	 * DAO CORBA reference.
 	 */
-	protected DAOOperations dao = null;
+	protected volatile DAOOperations dao = null;
 
 	/**
 	 * Connection listeners.
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.omg.CORBA.NO_RESOURCES;
+
+import alma.acs.logging.AcsLogLevel;
+import alma.cdbErrType.CDBRecordDoesNotExistEx;
+import alma.cdbErrType.CDBXMLErrorEx;
+
+/**
+ * Warm-up of the DAL cache: walks the whole CDB tree and loads (parses and caches) all the XML records
+ * in parallel, so that the manager and the containers started after a CDB restart find a hot cache.
+ * <p>
+ * The records of the manager, containers and components (<code>MACI/*</code>) and of the <code>alma/*</code> branch
+ * are loaded first. Records are cached only if they fit without evicting others
+ * and the warm-up stops as soon as the cache size limit is reached or the DAL is shut down.
+ */
+public class DALCacheWarmUp {
+
+	/**
+	 * Name of the property that enables the warm-up at DAL startup (instead of pre-loading only the basic MACI records).
+	 */
+	public static final String WARM_UP_PROPERTYNAME = "cdb.warmUp";
+
+	/**
+	 * Name of the property that sets the number of threads used by the warm-up.
+	 * The default is the number of available processors.
+	 */
+	public static final String WARM_UP_THREADS_PROPERTYNAME = "cdb.warmUp.threads";
+
+	/**
+	 * Prefixes of the curls that are loaded first, in order of priority.
+	 */
+	private static final String[] PRIORITY_PREFIXES = {
+		"MACI/Managers",
+		"MACI/Containers",
+		"MACI/Components",
+		"MACI",
+		"alma"
+	};
+
+	/**
+	 * Progress is reported every <code>PROGRESS_STEPS</code>-th part of the records.
+	 */
+	private static final int PROGRESS_STEPS = 10;
+
+	private final DALImpl dal;
+	private final Logger logger;
+	private final int threads;
+
+	private final AtomicInteger loaded = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicBoolean stopped = new AtomicBoolean();
+
+	/**
+	 * Constructor, the number of threads is given by the {@link #WARM_UP_THREADS_PROPERTYNAME} property.
+	 * @param dal	DAL whose cache to warm up.
+	 * @param logger	logger.
+	 */
+	public DALCacheWarmUp(DALImpl dal, Logger logger) {
+		this(dal, logger, Integer.getInteger(WARM_UP_THREADS_PROPERTYNAME, Runtime.getRuntime().availableProcessors()).intValue());
+	}
+
+	/**
+	 * Constructor.
+	 * @param dal	DAL whose cache to warm up.
+	 * @param logger	logger.
+	 * @param threads	number of threads loading the records.
+	 */
+	public DALCacheWarmUp(DALImpl dal, Logger logger, int threads) {
+		this.dal = dal;
+		this.logger = logger;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Loads all the records, blocks until done.
+	 * @return <code>true</code> if all the records were loaded,
+	 * 		   <code>false</code> if the warm-up was stopped (cache size limit reached, shutdown or interrupted).
+	 */
+	public boolean run() {
+		if (dal.wasCacheLimitReached()) {
+			logger.log(AcsLogLevel.DEBUG, "Cache warm-up skipped, cache is disabled or full.");
+			return false;
+		}
+
+		long startTime = System.currentTimeMillis();
+
+		final List<String> curls = prioritize(dal.getRecordCurls());
+		final int total = curls.size();
+		final int progressStep = Math.max(1, total / PROGRESS_STEPS);
+		logger.log(AcsLogLevel.INFO, "Starting cache warm-up of " + total + " records using " + threads + " threads...");
+
+		ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger threadNumber = new AtomicInteger();
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "cache-warm-up-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		// submitted in order of priority, the executor queue is FIFO
+		for (final String curl : curls) {
+			executor.execute(new Runnable() {
+				public void run() {
+					if (stopped.get())
+						return;
+					load(curl);
+					int done = loaded.incrementAndGet();
+					if (done % progressStep == 0 && done < total)
+						logger.log(AcsLogLevel.DEBUG, "Cache warm-up: " + done + " of " + total + " records loaded.");
+				}
+			});
+		}
+		executor.shutdown();
+
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// noop
+			}
+		} catch (InterruptedException ie) {
+			stopped.set(true);
+			executor.shutdownNow();
+		}
+
+		long time = System.currentTimeMillis() - startTime;
+		if (!stopped.get())
+			logger.log(AcsLogLevel.INFO, "Cache warm-up completed in " + time + " ms, " + total + " records loaded (" + failed.get() + " invalid).");
+		else
+			logger.log(AcsLogLevel.INFO, "Cache warm-up stopped after " + time + " ms, " + loaded.get() + " of " + total + " records loaded (" + failed.get() + " invalid).");
+		return !stopped.get();
+	}
+
+	/**
+	 * Loads a single record, stops the warm-up on shutdown or when the cache is full.
+	 */
+	private void load(String curl) {
+		try {
+			dal.internal_get_DAO(curl, true);
+		} catch (CDBXMLErrorEx xmlerr) {
+			failed.incrementAndGet();
+		} catch (CDBRecordDoesNotExistEx noRec) {
+			failed.incrementAndGet();
+		} catch (NO_RESOURCES nores) {
+			// shutdown
+			stopped.set(true);
+			return;
+		} catch (Throwable th) {
+			failed.incrementAndGet();
+			logger.log(AcsLogLevel.DEBUG, "Cache warm-up failed to load record '" + curl + "'.", th);
+		}
+
+		if (dal.wasCacheLimitReached())
+			stopped.set(true);
+	}
+
+	/**
+	 * Orders the curls by the priority of their prefix, keeping the tree order otherwise.
+	 */
+	static List<String> prioritize(List<String> curls) {
+		List<List<String>> groups = new ArrayList<List<String>>(PRIORITY_PREFIXES.length + 1);
+		for (int i = 0; i <= PRIORITY_PREFIXES.length; i++)
+			groups.add(new ArrayList<String>());
+
+		for (String curl : curls) {
+			int i = 0;
+			while (i < PRIORITY_PREFIXES.length &&
+				   !(curl.equals(PRIORITY_PREFIXES[i]) || curl.startsWith(PRIORITY_PREFIXES[i] + "/")))
+				i++;
+			groups.get(i).add(curl);
+		}
+
+		List<String> ordered = new ArrayList<String>(curls.size());
+		for (List<String> group : groups)
+			ordered.addAll(group);
+		return ordered;
+	}
+}
@@ -11,11 +11,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -24,6 +26,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
@@ -31,7 +34,6 @@ import org.omg.CORBA.NO_RESOURCES;
 import org.omg.CORBA.ORB;
 import org.omg.PortableServer.POA;
 import org.omg.PortableServer.Servant;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -119,6 +121,10 @@ public class DALImpl extends JDALPOA implements Recoverer {
 	private POA poa;
 	private SAXParserFactory factory;
 	private SAXParser saxParser;
+	/**
+	 * Parsers used by the DAL requests, replaced on {@link #loadFactory()}.
+	 */
+	private volatile SAXParserPool parserPool;
 	private String m_root;
 	private HashMap<String, DAO> daoMap = new HashMap<String, DAO>();
 
@@ -222,25 +228,27 @@ public class DALImpl extends JDALPOA implements Recoverer {
 
 		if (cacheDisabled)
 			m_logger.log(AcsLogLevel.INFO, "DAL cache is disabled.");
+		else
+			m_logger.log(AcsLogLevel.INFO, "DAL cache size limit is " + (cache.getMaxSize() / (1024 * 1024)) + " MB.");
 		
 		loadFactory();
 		
-		// cache cleanup thread
+		// cache statistics thread (the cache is bounded by size, no cleanup is needed)
 		new Thread(new Runnable() {
 			
 			public void run() {
 				while (!shutdown) {
-					checkCache();
 					synchronized (shutdownLock) {
 						try {
-							shutdownLock.wait(15000);	// 15 seconds
+							shutdownLock.wait(60000);	// 60 seconds
 						} catch (InterruptedException e) {
 							// noop
 						}
 					}
+					logCacheStatistics();
 				}
 			}
-		}, "cache-cleanup").start();
+		}, "cache-statistics").start();
 	}
 	
 	public void loadFactory(){
@@ -266,26 +274,17 @@ public class DALImpl extends JDALPOA implements Recoverer {
 				m_logger.log(AcsLogLevel.NOTICE, "Check to see if parser conforms to JAXP 1.2 spec.", x);
 				System.exit(1); // @TODO: wouldn't an exception be enough? 
 			}
-			// Create the parser
-			saxParser = factory.newSAXParser();
 			// find out all schemas
 			String allURIs = getSchemas();
-			m_logger.log(AcsLogLevel.DELOUSE, "created parser " + saxParser.getClass().getName() + 
-					" with schema location: '" + allURIs +"'");//msc:added
-			if (allURIs != null) {
-				saxParser.setProperty(EXTERNAL_SCHEMA_LOCATION_PROPERTY_ID, allURIs);
-			} else {
+			if (allURIs == null) {
 				m_logger.log(AcsLogLevel.NOTICE,"Schema files: NO SCHEMAS!");
 			}
-			
-			// More performance tuning, see http://www.ibm.com/developerworks/xml/library/x-perfap3.html
-			
-			// xml reader buffer size, said to not improve things much above 8 kB
-			saxParser.setProperty("http://apache.org/xml/properties/input-buffer-size", new Integer(1024 * 10));
-			
-			// this unfortunately gives 
-			// org.xml.sax.SAXNotRecognizedException: Property 'http://apache.org/xml/features/validation/schema/augment-psvi' is not recognized.
-			//saxParser.setProperty("http://apache.org/xml/features/validation/schema/augment-psvi", true);
+			// Create the parsers (the pool is configured with the same schemas and tuning properties)
+			SAXParserPool pool = new SAXParserPool(factory, allURIs);
+			saxParser = pool.create();
+			parserPool = pool;
+			m_logger.log(AcsLogLevel.DELOUSE, "created parser " + saxParser.getClass().getName() + 
+					" with schema location: '" + allURIs +"'");//msc:added
 			
 		} catch (Throwable t) {
 			t.printStackTrace(); // @TODO is this right? Throw exception..?
@@ -413,30 +412,35 @@ public class DALImpl extends JDALPOA implements Recoverer {
 	}
 	
 	public void parseNode(DALNode node, XMLHandler xmlSolver, String path) throws SAXException, IOException, AcsJCDBXMLErrorEx {
+		SAXParserPool pool = parserPool;
+		SAXParser parser = acquireParser(pool);
+		try {
+			parseNode(node, xmlSolver, path, parser, null);
+		} finally {
+			pool.release(parser);
+		}
+	}
+
+	/**
+	 * @param files if not <code>null</code>, all parsed XML files are added to this list
+	 */
+	private void parseNode(DALNode node, XMLHandler xmlSolver, String path, SAXParser parser, List<File> files) throws SAXException, IOException, AcsJCDBXMLErrorEx {
 		m_logger.finest("parseNode called for " + path + "/" + node.name);
 		DALNode[] childs = node.getChilds();
 		DALNode curlNode = node.getCurlNode();
 		if(curlNode != null) {
 			String xmlPath = getRecordPath(node.getCurl());
-			// NOTE: we cannot cache due to setFirstElement.... sadly :(
-			String xml = null; //getFromCache(node.getCurl());
-			File xmlFile = null;
-			if (xml != null)
-			{
-				saxParser.parse(new InputSource(new StringReader(xml)), xmlSolver);
-			}
-			else 
-			{
-				xmlFile = new File(xmlPath);
-				xmlSolver.setFirstElement(node.name);
-				saxParser.parse(xmlFile, xmlSolver);
-			}
+			// NOTE: we cannot cache the XML string due to setFirstElement,
+			// the merged trees are cached as a whole instead (see getTree)
+			File xmlFile = new File(xmlPath);
+			if (files != null)
+				files.add(xmlFile);
+			xmlSolver.setFirstElement(node.name);
+			parser.parse(xmlFile, xmlSolver);
 			
 			if (xmlSolver.m_errorString != null) {
 				String info = "XML parser error: ";
-				if (xmlFile != null) {
-					info += "file=" + xmlFile.getAbsolutePath() + " ";
-				}
+				info += "file=" + xmlFile.getAbsolutePath() + " ";
 				info += xmlSolver.m_errorString;
 				
 				AcsJCDBXMLErrorEx cdbxmlErr = new AcsJCDBXMLErrorEx();
@@ -459,7 +463,7 @@ public class DALImpl extends JDALPOA implements Recoverer {
 		
 		// and childs if exist
 		for (int i = 0; i < childs.length; i++) {
-			parseNode(childs[i], xmlSolver, path + "/" + node.name);
+			parseNode(childs[i], xmlSolver, path + "/" + node.name, parser, files);
 		}
 		xmlSolver.closeElement();
 	}
@@ -479,11 +483,13 @@ public class DALImpl extends JDALPOA implements Recoverer {
 		
 		try {
 			// create hierarchy of all nodes if it is not created yet 
+			DALNode rootNode;
 			synchronized (this) {
-				if( rootNode == null) {
+				if( this.rootNode == null) {
 					//no Error thrown
-					rootNode = DALNode.getRoot(m_root);
+					this.rootNode = DALNode.getRoot(m_root);
 				}
+				rootNode = this.rootNode;
 			}
 	
 			//no Error thrown
@@ -527,43 +533,43 @@ public class DALImpl extends JDALPOA implements Recoverer {
 
 			// no Error thrown
 			
-			if (curlNode.isSimple()) {
+			if (curlNode.isSimple())
 				m_logger.log(AcsLogLevel.DEBUG, "loadRecords(curl=" + curl+ "); curlNode '" + curlNode.name + "' is simple.");
+			else
+				m_logger.log(AcsLogLevel.DEBUG, "loadRecords(curl="+curl+"), curlNode is Complex");
+			try {
 				if (curl.equals(strFileCurl)) {
-					return loadRecord(strFileCurl, toString);
-				} 
+					if (toString) {
+						// the XML string keeps the original formatting of the file(s), it is cached by internal_get_DAO
+						if (curlNode.isSimple())
+							return loadRecord(strFileCurl, true);
+						XMLHandler xmlSolver = new XMLHandler(true, m_logger);
+						xmlSolver.setAutoCloseStartingElement(false);
+						parseNode(curlNode, xmlSolver, "");
+						return xmlSolver;
+					}
+					XMLHandler xmlSolver = new XMLHandler(false, m_logger);
+					XMLTreeNode tree = getTree(strFileCurl, curlNode);
+					xmlSolver.m_rootNode = (tree != null) ? tree.copy(null) : null;
+					return xmlSolver;
+				}
 				else {
-					XMLHandler xmlSolver = loadRecord(strFileCurl, false);
+					//here we must return the node inside the xmlSolver with curl= strNodeCurl
+					XMLHandler xmlSolver = new XMLHandler(false, m_logger);
+					xmlSolver.m_rootNode = getTree(strFileCurl, curlNode);
+					XMLHandler childSolver;
 					try {
-						return xmlSolver.getChild(strNodeCurl);
-					} 
-					catch (AcsJCDBRecordDoesNotExistEx e) {
-						e.setCurl(strFileCurl + e.getCurl());
+						childSolver = xmlSolver.getChild(strNodeCurl);
+					} catch (AcsJCDBRecordDoesNotExistEx e){
+						e.setCurl(strFileCurl+e.getCurl());
 						throw e;
 					}
-				}
-			}
-			m_logger.log(AcsLogLevel.DEBUG, "loadRecords(curl="+curl+"), curlNode is Complex");
-			XMLHandler xmlSolver;
-			try {
-				//xmlSolver.startDocument();
-				//xmlSolver.startElement(null,null,"curl",new org.xml.sax.helpers.AttributesImpl);
-	 			if(curl.equals(strFileCurl)){
-				    xmlSolver = new XMLHandler(toString, m_logger);
-				    xmlSolver.setAutoCloseStartingElement(false);
-				    parseNode(curlNode, xmlSolver, "");
-				//xmlSolver.closeElement();
-				     return xmlSolver;
-				}else{
-				    //here we must return the node inside the xmlSolver with curl= strNodeCurl		
-				    xmlSolver = new XMLHandler(false, m_logger);
-			 	    xmlSolver.setMarkArrays(1);
-				    xmlSolver.setAutoCloseStartingElement(false);
-				    parseNode(curlNode, xmlSolver, "");
-				    return xmlSolver.getChild(strNodeCurl);
+					childSolver.m_rootNode = childSolver.m_rootNode.copy(null);
+					return childSolver;
 				}
 			} catch (AcsJCDBRecordDoesNotExistEx e){
-				e.setCurl(strFileCurl+e.getCurl());
+				throw e;
+			} catch (AcsJCDBXMLErrorEx e) {
 				throw e;
 			} catch (SAXParseException e) {
 				AcsJCDBXMLErrorEx cdbxmlErr = new AcsJCDBXMLErrorEx();
@@ -583,7 +589,80 @@ public class DALImpl extends JDALPOA implements Recoverer {
 		}
 	}
 
+	/**
+	 * Returns the parsed tree of the XML file(s) of the given node, 
+	 * taken from {@link #treeCache} if none of the files has changed since.
+	 * For complex nodes, the XML files of all sub-nodes are merged into the tree.
+	 * <p>
+	 * The returned tree is shared and must not be modified.
+	 */
+	private XMLTreeNode getTree(String fileCurl, DALNode curlNode) 
+		throws AcsJCDBRecordDoesNotExistEx, AcsJCDBXMLErrorEx, SAXException, IOException {
+		long generation = getCacheGeneration();
+		XMLTreeNode tree = treeCache.get(fileCurl);
+		if (tree != null) {
+			m_logger.log(AcsLogLevel.DELOUSE, "Parsed XML of '" + fileCurl + "' retrieved from cache.");
+			return tree;
+		}
+		
+		List<File> files = new ArrayList<File>();
+		SAXParserPool pool = parserPool;
+		SAXParser parser = acquireParser(pool);
+		try {
+			XMLHandler xmlSolver;
+			if (curlNode.isSimple()) {
+				xmlSolver = loadRecord(fileCurl, false, parser);
+				files.add(new File(getRecordPath(fileCurl)));
+			}
+			else {
+				xmlSolver = new XMLHandler(false, m_logger);
+				xmlSolver.setMarkArrays(1);
+				xmlSolver.setAutoCloseStartingElement(false);
+				parseNode(curlNode, xmlSolver, "", parser, files);
+			}
+			tree = xmlSolver.m_rootNode;
+		} finally {
+			pool.release(parser);
+		}
+		
+		if (tree != null && !cacheDisabled) {
+			synchronized (cacheLock) {
+				// do not cache if invalidated in the meantime (files might have been re-read already)
+				if (generation == cacheGeneration)
+					treeCache.put(fileCurl, tree, files);
+			}
+		}
+		return tree;
+	}
+
+	private SAXParser acquireParser(SAXParserPool pool) throws SAXException {
+		try {
+			return pool.acquire();
+		} catch (ParserConfigurationException ex) {
+			throw new SAXException(ex);
+		}
+	}
+
 	private XMLHandler loadRecord(String curl, boolean toString)
+		throws AcsJCDBRecordDoesNotExistEx, AcsJCDBXMLErrorEx {
+		SAXParserPool pool = parserPool;
+		SAXParser parser;
+		try {
+			parser = acquireParser(pool);
+		} catch (SAXException ex) {
+			AcsJCDBXMLErrorEx cdbxmlErr = new AcsJCDBXMLErrorEx(ex);
+			cdbxmlErr.setCurl(curl);
+			cdbxmlErr.setErrorString("Failed to create XML parser: " + ex);
+			throw cdbxmlErr;
+		}
+		try {
+			return loadRecord(curl, toString, parser);
+		} finally {
+			pool.release(parser);
+		}
+	}
+
+	private XMLHandler loadRecord(String curl, boolean toString, SAXParser parser)
 		throws AcsJCDBRecordDoesNotExistEx, AcsJCDBXMLErrorEx {
 		String xmlPath = getRecordPath(curl);
 		File xmlFile = new File(xmlPath);
@@ -598,7 +677,7 @@ public class DALImpl extends JDALPOA implements Recoverer {
 		xmlSolver.setMarkArrays(1);
 		try {
 			m_logger.log(AcsLogLevel.DEBUG, "Parsing xmlFile="+xmlFile);
-			saxParser.parse(xmlFile, xmlSolver);
+			parser.parse(xmlFile, xmlSolver);
 			if (xmlSolver.m_errorString != null) {
 				String info = "XML parser error: " + xmlSolver.m_errorString;
 				//CDBXMLError xmlErr = new CDBXMLError(info);
@@ -621,86 +700,145 @@ public class DALImpl extends JDALPOA implements Recoverer {
 		}
 	}
 
-	private final LinkedHashMap<String, Object> cache = new LinkedHashMap<String, Object>();
+	/**
+	 * Name of the property that sets the max. (estimated) size of the XML record cache, in MB.
+	 * The default is 20% of the max. heap size.
+	 */
+	public static final String CACHE_SIZE_PROPERTYNAME = "cdb.cacheSizeMB";
+
+	private final XMLRecordCache cache = new XMLRecordCache(getCacheMaxSize());
+	/**
+	 * Parsed XML trees, used to build the DAOs and the XML of nodes embedded in XML files. 
+	 * Bounded by the same size as the XML record cache.
+	 */
+	private final XMLTreeCache treeCache = new XMLTreeCache(getCacheMaxSize());
 	private boolean cacheDisabled = false;
-	private volatile boolean cacheLimitReached = false;
+
+	/**
+	 * Incremented (under <code>cacheLock</code>) on every invalidation of the caches,
+	 * prevents caching of records and parsed XML that were read before the invalidation.
+	 */
+	private long cacheGeneration = 0;
+	private final Object cacheLock = new Object();
 	
 	public boolean wasCacheLimitReached() {
-		return cacheLimitReached || cacheDisabled;
+		return cacheDisabled || cache.wasLimitReached();
 	}
 
-	private void checkCache()
+	private static long getCacheMaxSize()
 	{
-		checkCache(false);
+		long maxSize = Long.getLong(CACHE_SIZE_PROPERTYNAME, -1).longValue();
+		if (maxSize >= 0)
+			return maxSize * 1024 * 1024;
+		else
+			return (long)(Runtime.getRuntime().maxMemory()*0.2);	// 20%
 	}
-	private boolean checkCache(boolean tryOnly)
+
+	/**
+	 * Number of cache requests at the last {@link #logCacheStatistics()}.
+	 */
+	private long lastCacheRequests = 0;
+
+	/**
+	 * Logs the cache statistics, if the cache was used since the last call.
+	 */
+	private void logCacheStatistics()
+	{
+		if (cacheDisabled)
+			return;
+
+		long requests = cache.getHitCount() + cache.getMissCount() + treeCache.getHitCount() + treeCache.getMissCount();
+		if (requests != lastCacheRequests) {
+			lastCacheRequests = requests;
+			m_logger.log(AcsLogLevel.DEBUG, "DAL cache statistics: " + cache.getStatistics() + "; parsed XML " + treeCache.getStatistics());
+		}
+	}
+	
+	/**
+	 * Computes the fingerprint of the CDB sources (XML files and schemas), see {@link DALSnapshot}.
+	 */
+	public byte[] computeFingerprint()
+	{
+		List<File> schemaFiles = new ArrayList<File>();
+		String schemas = getSchemas();
+		if (schemas != null) {
+			// pairs of namespace and file path
+			StringTokenizer tokenizer = new StringTokenizer(schemas);
+			while (tokenizer.hasMoreTokens()) {
+				tokenizer.nextToken();
+				if (tokenizer.hasMoreTokens())
+					schemaFiles.add(new File(tokenizer.nextToken()));
+			}
+		}
+		return DALSnapshot.fingerprint(new File(m_root), schemaFiles);
+	}
+
+	/**
+	 * Puts the XML records of the snapshot to the cache, if the snapshot matches the CDB sources.
+	 * Records are cached only if they fit without evicting other records.
+	 * @param snapshot	snapshot to load.
+	 * @param fingerprint	fingerprint of the current CDB sources, see {@link #computeFingerprint()}.
+	 * @return <code>true</code> if the snapshot was loaded.
+	 */
+	public boolean loadSnapshot(DALSnapshot snapshot, byte[] fingerprint)
 	{
 		if (cacheDisabled)
 			return false;
-		
-		synchronized (cache) {
-			
-			System.gc();
-			System.runFinalization();
-			System.gc();
 
-			final Runtime r = Runtime.getRuntime();
-			long allocatedMemory = r.totalMemory();
-			long freeOfAllocatedMemory = r.freeMemory();
-			final long maxMemory = r.maxMemory();
+		long startTime = System.currentTimeMillis();
+		Map<String, String> records = snapshot.load(fingerprint);
+		if (records == null)
+			return false;
 
-			long totalFreeMemory = maxMemory-allocatedMemory+freeOfAllocatedMemory;
-			final long requiredFreeMemory = (long)(maxMemory*0.2);	// 20%
-			final long toFree = requiredFreeMemory - totalFreeMemory;
+		int cached = 0;
+		for (Map.Entry<String, String> record : records.entrySet())
+			if (cache.putIfFits(record.getKey(), record.getValue()))
+				cached++;
 
-			if (tryOnly)
-			{
-				// true if we have some memory for cache left
-				boolean someFreeLeft = (toFree <= 0);
-				cacheLimitReached |= someFreeLeft;
-				return someFreeLeft;
-			}
-			
-			if (toFree <= 0 || cache.isEmpty())
-			{
-				// round to 0.1%
-				m_logger.log(AcsLogLevel.DELOUSE, "Memory status: " + ((1000 * totalFreeMemory / maxMemory) / 10.) + "% free.");
-				return true;
-			}
-			
-			m_logger.log(AcsLogLevel.DEBUG, "Low memory: " + ((totalFreeMemory/(double)maxMemory)*100) + "% free. Cleaning cache...");
-			cacheLimitReached = true;
-
-			long freedEstimation = 0;
-			while (freedEstimation < toFree && !cache.isEmpty()) {
-				String oldestKey = cache.keySet().iterator().next();
-				Object cachedObject = cache.remove(oldestKey);
-				// for non-string objects their string representation is also used
-				// String.toString() returns "this", so we are safe of creating another string instance
-				String value = cachedObject.toString();	 
-				freedEstimation += (value.length()*2 + 64) + (oldestKey.length()*2 + 64) + 68;
-				m_logger.log(AcsLogLevel.DELOUSE, "XML record '" + oldestKey + "' removed from cache.");
-			}
-			
-			System.runFinalization();
-			System.gc();
+		m_logger.log(AcsLogLevel.INFO, "Loaded " + cached + " of " + records.size() + " XML records from CDB snapshot '" + 
+				snapshot.getFile() + "' in " + (System.currentTimeMillis() - startTime) + " ms.");
+		return true;
+	}
 
-			// recalculate
-			long l = totalFreeMemory;
-			allocatedMemory = r.totalMemory();
-			freeOfAllocatedMemory = r.freeMemory();
-			totalFreeMemory = maxMemory-allocatedMemory+freeOfAllocatedMemory;
+	/**
+	 * Saves the cached XML records to the snapshot.
+	 * Nothing is saved if the CDB sources have changed since the fingerprint was computed,
+	 * i.e. the fingerprint must be computed before the records are loaded.
+	 * @param snapshot	snapshot to save.
+	 * @param fingerprint	fingerprint of the CDB sources the records were read from.
+	 * @return <code>true</code> if the snapshot was saved.
+	 */
+	public boolean saveSnapshot(DALSnapshot snapshot, byte[] fingerprint)
+	{
+		if (cacheDisabled)
+			return false;
 
-			m_logger.log(AcsLogLevel.DEBUG, "Total free memory after cache cleanup: " + ((totalFreeMemory/(double)maxMemory)*100) + "% free (actually freed: " + (totalFreeMemory-l) + " bytes, estimated: " + freedEstimation + " bytes).");
-			
+		Map<String, String> records = cache.getXMLRecords();
+		if (!Arrays.equals(fingerprint, computeFingerprint())) {
+			m_logger.log(AcsLogLevel.DEBUG, "CDB snapshot not saved, CDB has changed while its records were loaded.");
 			return false;
 		}
+
+		if (!snapshot.save(fingerprint, records))
+			return false;
+
+		m_logger.log(AcsLogLevel.INFO, "Saved " + records.size() + " XML records to CDB snapshot '" + snapshot.getFile() + "'.");
+		return true;
 	}
-	
+
 	private void clearCache() 
 	{
-		synchronized (cache) {
+		synchronized (cacheLock) {
+			cacheGeneration++;
 			cache.clear();
+			treeCache.clear();
+		}
+	}
+
+	private long getCacheGeneration()
+	{
+		synchronized (cacheLock) {
+			return cacheGeneration;
 		}
 	}
 	
@@ -710,35 +848,33 @@ public class DALImpl extends JDALPOA implements Recoverer {
 		if (curl != null && curl.startsWith("/"))
 			curl = curl.substring(1);
 		
-		synchronized (cache) {
-			Object cachedObject = cache.get(curl);
-			if (cachedObject != null)
-			{
-				// make it recent
-				cache.remove(curl);
-				cache.put(curl, cachedObject);
-				
-				if (cachedObject instanceof String) {
-					m_logger.log(AcsLogLevel.DEBUG, "XML record '" + curl + "' retrieved from cache.");
-					return (String)cachedObject;
-				}
-				else if (cachedObject instanceof CDBRecordDoesNotExistEx) {
-					m_logger.log(AcsLogLevel.DEBUG, "CDBRecordDoesNotExist exception for record '" + curl + "' retrieved from cache.");
-					throw (CDBRecordDoesNotExistEx)cachedObject;
-				}
-				else if (cachedObject instanceof CDBXMLErrorEx) {
-					m_logger.log(AcsLogLevel.DEBUG, "CDBXMLError exception for record '" + curl + "' retrieved from cache.");
-					throw (CDBXMLErrorEx)cachedObject;
-				}
-				else
-					throw new RuntimeException("Unable to handle object of class: " + cachedObject.getClass() + ", value: " + cachedObject);
+		Object cachedObject = cache.get(curl);
+		if (cachedObject != null)
+		{
+			if (cachedObject instanceof String) {
+				m_logger.log(AcsLogLevel.DEBUG, "XML record '" + curl + "' retrieved from cache.");
+				return (String)cachedObject;
+			}
+			else if (cachedObject instanceof CDBRecordDoesNotExistEx) {
+				m_logger.log(AcsLogLevel.DEBUG, "CDBRecordDoesNotExist exception for record '" + curl + "' retrieved from cache.");
+				throw (CDBRecordDoesNotExistEx)cachedObject;
+			}
+			else if (cachedObject instanceof CDBXMLErrorEx) {
+				m_logger.log(AcsLogLevel.DEBUG, "CDBXMLError exception for record '" + curl + "' retrieved from cache.");
+				throw (CDBXMLErrorEx)cachedObject;
 			}
 			else
-				return null;
+				throw new RuntimeException("Unable to handle object of class: " + cachedObject.getClass() + ", value: " + cachedObject);
 		}
+		else
+			return null;
 	}
 	
-	private void putToCache(String curl, Object xml) 
+	/**
+	 * @param precacheStage	if <code>true</code>, the record is cached only if it fits without evicting other records.
+	 * @param generation	cache generation when the record was started to be read, see {@link #getCacheGeneration()}.
+	 */
+	private void putToCache(String curl, Object xml, boolean precacheStage, long generation) 
 	{
 		if (cacheDisabled)
 			return;
@@ -747,14 +883,21 @@ public class DALImpl extends JDALPOA implements Recoverer {
 		if (curl != null && curl.startsWith("/"))
 			curl = curl.substring(1);
 
-		synchronized (cache) {
-			checkCache();
-			cache.put(curl, xml);
-			if (xml instanceof String)
-				m_logger.log(AcsLogLevel.DEBUG, "XML record '" + curl + "' put to cache.");
-			else
-				m_logger.log(AcsLogLevel.DEBUG, "Exception for record '" + curl + "' put to cache.");
+		boolean cached;
+		synchronized (cacheLock) {
+			// do not cache if invalidated in the meantime (record might be out of date)
+			if (generation != cacheGeneration) {
+				m_logger.log(AcsLogLevel.DEBUG, "Record '" + curl + "' not put to cache, cache was cleared while it was read.");
+				return;
+			}
+			cached = precacheStage ? cache.putIfFits(curl, xml) : cache.put(curl, xml);
 		}
+		if (!cached)
+			m_logger.log(AcsLogLevel.DEBUG, "Record '" + curl + "' not put to cache, cache size limit reached.");
+		else if (xml instanceof String)
+			m_logger.log(AcsLogLevel.DEBUG, "XML record '" + curl + "' put to cache.");
+		else
+			m_logger.log(AcsLogLevel.DEBUG, "Exception for record '" + curl + "' put to cache.");
 	}
 	
 	/**
@@ -767,19 +910,20 @@ public class DALImpl extends JDALPOA implements Recoverer {
 	/**
 	 * returns full expanded XML string
 	 */
-	public synchronized String internal_get_DAO(String curl, boolean precacheStage) throws CDBRecordDoesNotExistEx, CDBXMLErrorEx {
+	public String internal_get_DAO(String curl, boolean precacheStage) throws CDBRecordDoesNotExistEx, CDBXMLErrorEx {
 		totalDALInvocationCounter.incrementAndGet();
 
 		if (shutdown) {
 			throw new NO_RESOURCES();
 		}
 		
+		long generation = getCacheGeneration();
 		try {
 			if (curl.lastIndexOf('/') == curl.length() - 1)
 				curl = curl.substring(0, curl.length() - 1);
 			
-			// NOTE: concurrent caching not supported,
-			// but since this method is synced, this is not a problem
+			// NOTE: concurrent requests for the same (not yet cached) record may both load it,
+			// which is harmless and cheaper than serializing all requests
 			String xml = getFromCache(curl);
 			if (xml != null)
 				return xml;
@@ -796,17 +940,15 @@ public class DALImpl extends JDALPOA implements Recoverer {
 			
 			xml = xmlSolver.toString(false);
 			
-			// put to cache only if enough of space (do not override first record to be cached)
-			if (!precacheStage || checkCache(true))
-				putToCache(curl, xml);
+			// when pre-caching, put to cache only if enough of space (do not override first record to be cached)
+			putToCache(curl, xml, precacheStage, generation);
 			
 			return xml;
 		} catch (AcsJCDBXMLErrorEx e) {
 			CDBXMLErrorEx ex = e.toCDBXMLErrorEx();
 			
 			// negative cache
-			if (!precacheStage || checkCache(true))
-				putToCache(curl, ex);
+			putToCache(curl, ex, precacheStage, generation);
 			
 			// @todo watch if this log also needs a repeat guard, similar to logRecordNotExistWithRepeatGuard
 			if (!precacheStage)
@@ -816,8 +958,7 @@ public class DALImpl extends JDALPOA implements Recoverer {
 			CDBRecordDoesNotExistEx ex = e.toCDBRecordDoesNotExistEx();
 				
 			// negative cache
-			if (!precacheStage || checkCache(true))
-				 putToCache(curl, ex);
+			putToCache(curl, ex, precacheStage, generation);
 
 			if (!precacheStage)
 				logRecordNotExistWithRepeatGuard(curl);
@@ -828,7 +969,7 @@ public class DALImpl extends JDALPOA implements Recoverer {
 	/**
 	 * create DAO servant with requested XML
 	 */
-	public synchronized DAO get_DAO_Servant(String curl) throws CDBRecordDoesNotExistEx, CDBXMLErrorEx {
+	public DAO get_DAO_Servant(String curl) throws CDBRecordDoesNotExistEx, CDBXMLErrorEx {
 		totalDALInvocationCounter.incrementAndGet();
 
 		// make sure CURL->DAO mapping is surjective function, remove leading slash
@@ -1166,8 +1307,14 @@ public class DALImpl extends JDALPOA implements Recoverer {
 	public void clear_cache(String curl) {
 		totalDALInvocationCounter.incrementAndGet();
 
-		// first take care of our own map
+		// first take care of our own map and parsed XML
 		object_changed(curl);
+		if (curl != null) {
+			synchronized (cacheLock) {
+				cacheGeneration++;
+				treeCache.remove(curl.startsWith("/") ? curl.substring(1) : curl);
+			}
+		}
 
 		// then all registered listeners
 		ArrayList<Integer> listeners;
@@ -1246,6 +1393,37 @@ public class DALImpl extends JDALPOA implements Recoverer {
 	    return list;
 	}
 
+	/**
+	 * Returns the curls of all the records that have their own XML file, in the order of the CDB tree.
+	 * Used by {@link DALCacheWarmUp}.
+	 */
+	List<String> getRecordCurls() {
+		DALNode rootNode;
+		synchronized (this) {
+			if (this.rootNode == null)
+				this.rootNode = DALNode.getRoot(m_root);
+			rootNode = this.rootNode;
+		}
+
+		List<String> curls = new ArrayList<String>();
+		addRecordCurls(rootNode, curls);
+		return curls;
+	}
+
+	private static void addRecordCurls(DALNode node, List<String> curls) {
+		if (node.getCurlNode() != null) {
+			String curl = node.getCurl();
+			if (curl.startsWith("/"))
+				curl = curl.substring(1);
+			if (curl.length() > 0)
+				curls.add(curl);
+		}
+
+		DALNode[] childs = node.getChilds();
+		for (int i = 0; i < childs.length; i++)
+			addRecordCurls(childs[i], curls);
+	}
+
     // listing
 	public String list_nodes(String name) {
 		totalDALInvocationCounter.incrementAndGet();
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import alma.acs.logging.AcsLogLevel;
+
+/**
+ * Binary snapshot of the XML records of the DAL (pre-rendered XML per curl), stored in a file.
+ * At startup the snapshot is memory-mapped and its records are put to the cache,
+ * which saves the parsing and schema validation of the XML files.
+ * <p>
+ * The snapshot holds a fingerprint of the CDB sources (paths, modification times and lengths of all XML and schema files);
+ * a snapshot whose fingerprint does not match the current sources is ignored, i.e. the DAL loads the XML files as usual.
+ * <p>
+ * File format (all numbers big-endian): magic, version, fingerprint length and bytes, number of records,
+ * for each record its curl and XML as UTF-8 bytes prefixed by their length,
+ * and the CRC32 (as long) of everything after the version.
+ * Snapshots with a wrong checksum or inconsistent lengths are ignored as corrupted.
+ */
+public class DALSnapshot {
+
+	/**
+	 * Name of the property that sets the snapshot file, the snapshot is not used if not set.
+	 */
+	public static final String SNAPSHOT_FILE_PROPERTYNAME = "cdb.snapshotFile";
+
+	/**
+	 * "CDBS".
+	 */
+	private static final int MAGIC = 0x43444253;
+
+	/**
+	 * Version of the file format, snapshots of other versions are ignored.
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Size of the checksum at the end of the file.
+	 */
+	private static final int CHECKSUM_SIZE = 8;
+
+	private static final String CHARSET = "UTF-8";
+
+	private final File file;
+	private final Logger logger;
+
+	/**
+	 * Constructor.
+	 * @param file	snapshot file.
+	 * @param logger	logger.
+	 */
+	public DALSnapshot(File file, Logger logger) {
+		this.file = file;
+		this.logger = logger;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Computes the fingerprint of the CDB sources.
+	 * @param root	CDB root directory, all XML and schema files in its hierarchy are taken into account.
+	 * @param files	additional files (e.g. schemas outside of the CDB root).
+	 * @return the fingerprint.
+	 */
+	public static byte[] fingerprint(File root, List<File> files) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 not supported.", e);
+		}
+
+		update(digest, root);
+		for (File f : files)
+			update(digest, f);
+
+		return digest.digest();
+	}
+
+	private static void update(MessageDigest digest, File f) {
+		if (f.isDirectory()) {
+			File[] files = f.listFiles();
+			if (files == null)
+				return;
+			// do not depend on the order of the directory entries
+			Arrays.sort(files);
+			for (int i = 0; i < files.length; i++)
+				if (files[i].isDirectory() || files[i].getName().endsWith(".xml") || files[i].getName().endsWith(".xsd"))
+					update(digest, files[i]);
+		}
+		else {
+			String entry = f.getAbsolutePath() + '|' + f.lastModified() + '|' + f.length() + '\n';
+			try {
+				digest.update(entry.getBytes(CHARSET));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Reads the records from the (memory-mapped) snapshot file.
+	 * @param fingerprint	fingerprint of the current CDB sources.
+	 * @return records in the order they were saved, <code>null</code> if there is no snapshot,
+	 * 		   or it is out of date, of other version or corrupted.
+	 */
+	public Map<String, String> load(byte[] fingerprint) {
+		if (!file.exists())
+			return null;
+
+		try {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				FileChannel channel = in.getChannel();
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+				if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+					logger.log(AcsLogLevel.DEBUG, "CDB snapshot '" + file + "' ignored, unsupported format or version.");
+					return null;
+				}
+
+				// verify the checksum of the payload, then read the payload only
+				if (buffer.remaining() < CHECKSUM_SIZE)
+					throw new BufferUnderflowException();
+				int payloadEnd = buffer.limit() - CHECKSUM_SIZE;
+				long checksum = buffer.getLong(payloadEnd);
+				buffer.limit(payloadEnd);
+				if (checksum(buffer) != checksum) {
+					logger.log(AcsLogLevel.NOTICE, "CDB snapshot '" + file + "' ignored, checksum mismatch.");
+					return null;
+				}
+
+				byte[] snapshotFingerprint = readBytes(buffer);
+				if (!Arrays.equals(snapshotFingerprint, fingerprint)) {
+					logger.log(AcsLogLevel.DEBUG, "CDB snapshot '" + file + "' ignored, CDB has changed since it was taken.");
+					return null;
+				}
+
+				int count = buffer.getInt();
+				// every record takes at least two lengths
+				if (count < 0 || count > buffer.remaining() / 8)
+					throw new BufferUnderflowException();
+				Map<String, String> records = new LinkedHashMap<String, String>(count * 4 / 3 + 1);
+				for (int i = 0; i < count; i++) {
+					String curl = readString(buffer);
+					records.put(curl, readString(buffer));
+				}
+				return records;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.log(AcsLogLevel.NOTICE, "Failed to read CDB snapshot '" + file + "'.", e);
+		} catch (BufferUnderflowException e) {
+			logger.log(AcsLogLevel.NOTICE, "CDB snapshot '" + file + "' ignored, file is corrupted.");
+		} catch (RuntimeException e) {
+			logger.log(AcsLogLevel.NOTICE, "CDB snapshot '" + file + "' ignored, file is corrupted.", e);
+		}
+		return null;
+	}
+
+	private static String readString(MappedByteBuffer buffer) throws IOException {
+		return new String(readBytes(buffer), CHARSET);
+	}
+
+	/**
+	 * Reads bytes prefixed by their length.
+	 * @throws BufferUnderflowException	if the length is negative or exceeds the remaining bytes (corrupted file).
+	 */
+	private static byte[] readBytes(MappedByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining())
+			throw new BufferUnderflowException();
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Computes the CRC32 of the remaining bytes of the buffer, without changing its position.
+	 */
+	private static long checksum(MappedByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[64 * 1024];
+		int position = buffer.position();
+		while (buffer.hasRemaining()) {
+			int length = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, length);
+			crc.update(chunk, 0, length);
+		}
+		buffer.position(position);
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes the records to the snapshot file.
+	 * The file is replaced only when the new snapshot has been completely written.
+	 * @param fingerprint	fingerprint of the CDB sources the records were read from.
+	 * @param records	XML records, mapped by curl.
+	 * @return <code>true</code> on success.
+	 */
+	public boolean save(byte[] fingerprint, Map<String, String> records) {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try {
+			CheckedOutputStream checked = new CheckedOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024), new CRC32());
+			DataOutputStream out = new DataOutputStream(checked);
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				checked.getChecksum().reset();
+				out.writeInt(fingerprint.length);
+				out.write(fingerprint);
+				out.writeInt(records.size());
+				for (Map.Entry<String, String> record : records.entrySet()) {
+					writeString(out, record.getKey());
+					writeString(out, record.getValue());
+				}
+				out.writeLong(checked.getChecksum().getValue());
+			} finally {
+				out.close();
+			}
+
+			// renameTo does not overwrite an existing file on all platforms
+			file.delete();
+			if (!tmpFile.renameTo(file))
+				throw new IOException("Failed to rename '" + tmpFile + "' to '" + file + "'.");
+			return true;
+		} catch (IOException e) {
+			logger.log(AcsLogLevel.NOTICE, "Failed to write CDB snapshot '" + file + "'.", e);
+			tmpFile.delete();
+			return false;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(CHARSET);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Pool of identically configured SAX parsers, so that concurrent DAL requests can parse XML files in parallel
+ * (a <code>SAXParser</code> instance must not be used by more than one thread at a time).
+ * Parsers are created on demand, the number of pooled parsers is therefore given by the max. number of concurrent requests.
+ * <p>
+ * A pool is bound to the schemas that were known when it was created;
+ * the DAL replaces the whole pool when the schemas are reloaded.
+ */
+public class SAXParserPool {
+
+	private final SAXParserFactory factory;
+	private final String schemaLocation;
+	private final ConcurrentLinkedQueue<SAXParser> parsers = new ConcurrentLinkedQueue<SAXParser>();
+
+	/**
+	 * Constructor.
+	 * @param factory	configured factory of the parsers.
+	 * @param schemaLocation	value of the {@link DALImpl#EXTERNAL_SCHEMA_LOCATION_PROPERTY_ID} property, can be <code>null</code>.
+	 */
+	public SAXParserPool(SAXParserFactory factory, String schemaLocation) {
+		this.factory = factory;
+		this.schemaLocation = schemaLocation;
+	}
+
+	/**
+	 * Creates a new parser, not managed by the pool.
+	 */
+	public SAXParser create() throws ParserConfigurationException, SAXException {
+		SAXParser saxParser = factory.newSAXParser();
+		if (schemaLocation != null)
+			saxParser.setProperty(DALImpl.EXTERNAL_SCHEMA_LOCATION_PROPERTY_ID, schemaLocation);
+
+		// More performance tuning, see http://www.ibm.com/developerworks/xml/library/x-perfap3.html
+
+		// xml reader buffer size, said to not improve things much above 8 kB
+		saxParser.setProperty("http://apache.org/xml/properties/input-buffer-size", new Integer(1024 * 10));
+
+		// this unfortunately gives
+		// org.xml.sax.SAXNotRecognizedException: Property 'http://apache.org/xml/features/validation/schema/augment-psvi' is not recognized.
+		//saxParser.setProperty("http://apache.org/xml/features/validation/schema/augment-psvi", true);
+
+		return saxParser;
+	}
+
+	/**
+	 * Takes a parser from the pool, or creates a new one if all pooled parsers are in use.
+	 * The parser must be given back with {@link #release(SAXParser)}.
+	 */
+	public SAXParser acquire() throws ParserConfigurationException, SAXException {
+		SAXParser saxParser = parsers.poll();
+		return (saxParser != null) ? saxParser : create();
+	}
+
+	/**
+	 * Gives a parser obtained by {@link #acquire()} back to the pool.
+	 */
+	public void release(SAXParser saxParser) {
+		if (saxParser != null)
+			parsers.add(saxParser);
+	}
+}
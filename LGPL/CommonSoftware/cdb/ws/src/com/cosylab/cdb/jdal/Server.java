@@ -27,6 +27,7 @@
  */
 package com.cosylab.cdb.jdal;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.util.Properties;
@@ -289,6 +290,29 @@ public class Server {
 	};
 
 	private void preloadCache(DALImpl dal, Logger sharedLogger) {
+		String snapshotFileName = System.getProperty(DALSnapshot.SNAPSHOT_FILE_PROPERTYNAME);
+		if (snapshotFileName == null) {
+			preloadRecords(dal, sharedLogger);
+			return;
+		}
+
+		// use the snapshot if it is up to date, otherwise load the records and take a new snapshot
+		DALSnapshot snapshot = new DALSnapshot(new File(snapshotFileName), sharedLogger);
+		byte[] fingerprint = dal.computeFingerprint();
+		if (dal.loadSnapshot(snapshot, fingerprint))
+			return;
+		
+		preloadRecords(dal, sharedLogger);
+		dal.saveSnapshot(snapshot, fingerprint);
+	}
+
+	private void preloadRecords(DALImpl dal, Logger sharedLogger) {
+		// optional warm-up of the whole CDB
+		if (Boolean.getBoolean(DALCacheWarmUp.WARM_UP_PROPERTYNAME)) {
+			new DALCacheWarmUp(dal, sharedLogger).run();
+			return;
+		}
+
 		boolean allRead = false;
 		sharedLogger.log(AcsLogLevel.DEBUG, "Starting pre-filling cache...");
 		try
@@ -41,7 +41,7 @@ import org.xml.sax.helpers.DefaultHandler;
 import alma.cdbErrType.wrappers.AcsJCDBRecordDoesNotExistEx;
 
 public class XMLHandler extends DefaultHandler {
-	private static boolean m_toString;
+	private final boolean m_toString;
 	private final Logger logger;
 	//
 	public XMLTreeNode m_rootNode = null;
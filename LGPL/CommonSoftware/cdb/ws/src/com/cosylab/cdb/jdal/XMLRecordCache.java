@@ -0,0 +1,237 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the expanded XML records (and of the exceptions for records that could not be read) of the DAL,
+ * bounded by the estimated memory size of the cached entries.
+ * When a new entry does not fit, the least recently used entries are evicted.
+ * <p>
+ * The size of an entry is estimated from the length of its curl and XML string,
+ * which replaces the former measurement of the free heap that required forced garbage collections.
+ * <p>
+ * This class is thread-safe.
+ */
+public class XMLRecordCache {
+
+	/**
+	 * Estimated memory overhead of a string object, in bytes.
+	 */
+	private static final int STRING_OVERHEAD = 64;
+
+	/**
+	 * Estimated memory overhead of a map entry, in bytes.
+	 */
+	private static final int ENTRY_OVERHEAD = 68;
+
+	/**
+	 * Estimated size of a cached exception (negative cache entry), in bytes.
+	 */
+	private static final int EXCEPTION_SIZE = 512;
+
+	private final long maxSize;
+
+	/**
+	 * Entries in access order, the least recently used first.
+	 */
+	private final LinkedHashMap<String, Object> entries = new LinkedHashMap<String, Object>(256, 0.75f, true);
+
+	private long size = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long rejections = 0;
+
+	/**
+	 * Constructor.
+	 * @param maxSize	max. estimated size of the cached entries, in bytes.
+	 */
+	public XMLRecordCache(long maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+	}
+
+	/**
+	 * Returns the cached XML string or exception, and makes it the most recently used entry.
+	 * @param curl	curl of the record.
+	 * @return the cached object, <code>null</code> if there is none.
+	 */
+	public synchronized Object get(String curl) {
+		Object cachedObject = entries.get(curl);
+		if (cachedObject != null)
+			hits++;
+		else
+			misses++;
+		return cachedObject;
+	}
+
+	/**
+	 * Puts a XML string or an exception to the cache, evicting the least recently used entries if needed.
+	 * Objects larger than the whole cache are not cached.
+	 * @param curl	curl of the record.
+	 * @param cachedObject	XML string or exception.
+	 * @return <code>true</code> if the object was put to the cache.
+	 */
+	public synchronized boolean put(String curl, Object cachedObject) {
+		return put(curl, cachedObject, true);
+	}
+
+	/**
+	 * Puts a XML string or an exception to the cache only if it fits without evicting other entries.
+	 * Used for pre-caching, which must not displace records that were already cached.
+	 * @param curl	curl of the record.
+	 * @param cachedObject	XML string or exception.
+	 * @return <code>true</code> if the object was put to the cache.
+	 */
+	public synchronized boolean putIfFits(String curl, Object cachedObject) {
+		return put(curl, cachedObject, false);
+	}
+
+	private boolean put(String curl, Object cachedObject, boolean evict) {
+		remove(curl);
+
+		long entrySize = estimateSize(curl, cachedObject);
+		if (entrySize > maxSize || (!evict && size + entrySize > maxSize)) {
+			rejections++;
+			return false;
+		}
+
+		Iterator<Map.Entry<String, Object>> iterator = entries.entrySet().iterator();
+		while (size + entrySize > maxSize && iterator.hasNext()) {
+			Map.Entry<String, Object> eldest = iterator.next();
+			size -= estimateSize(eldest.getKey(), eldest.getValue());
+			iterator.remove();
+			evictions++;
+		}
+
+		entries.put(curl, cachedObject);
+		size += entrySize;
+		return true;
+	}
+
+	/**
+	 * Removes the entry of the given curl.
+	 * @param curl	curl of the record.
+	 * @return the removed object, <code>null</code> if there was none.
+	 */
+	public synchronized Object remove(String curl) {
+		Object cachedObject = entries.remove(curl);
+		if (cachedObject != null)
+			size -= estimateSize(curl, cachedObject);
+		return cachedObject;
+	}
+
+	/**
+	 * Removes all the entries (statistics are kept).
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	/**
+	 * Returns the cached XML records (exceptions are skipped), without affecting the access order.
+	 * @return XML strings mapped by curl, the most recently used first.
+	 */
+	public synchronized Map<String, String> getXMLRecords() {
+		List<Map.Entry<String, Object>> list = new ArrayList<Map.Entry<String, Object>>(entries.entrySet());
+		Map<String, String> records = new LinkedHashMap<String, String>(list.size() * 4 / 3 + 1);
+		for (int i = list.size() - 1; i >= 0; i--) {
+			Map.Entry<String, Object> entry = list.get(i);
+			if (entry.getValue() instanceof String)
+				records.put(entry.getKey(), (String)entry.getValue());
+		}
+		return records;
+	}
+
+	/**
+	 * @return <code>true</code> if the cache was ever full, i.e. entries were evicted or not cached because of the size limit.
+	 */
+	public synchronized boolean wasLimitReached() {
+		return evictions > 0 || rejections > 0;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return estimated size of the cached entries, in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return max. estimated size of the cached entries, in bytes.
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return number of objects that were not cached because they did not fit.
+	 */
+	public synchronized long getRejectionCount() {
+		return rejections;
+	}
+
+	/**
+	 * @return a one-line summary of the cache statistics, suitable for logging.
+	 */
+	public synchronized String getStatistics() {
+		long requests = hits + misses;
+		return "entries: " + entries.size() + ", size: " + (size / 1024) + " of " + (maxSize / 1024) + " kB" +
+				", hits: " + hits + ", misses: " + misses +
+				(requests > 0 ? " (hit ratio " + ((1000 * hits / requests) / 10.) + "%)" : "") +
+				", evictions: " + evictions + ", not cached: " + rejections;
+	}
+
+	/**
+	 * Estimates the memory used by a cache entry.
+	 * For exceptions (negative cache) a constant size is assumed.
+	 */
+	static long estimateSize(String curl, Object cachedObject) {
+		long size = ENTRY_OVERHEAD + curl.length() * 2L + STRING_OVERHEAD;
+		if (cachedObject instanceof String)
+			size += ((String)cachedObject).length() * 2L + STRING_OVERHEAD;
+		else
+			size += EXCEPTION_SIZE;
+		return size;
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of parsed XML trees of the DAL, keyed by the curl of the node that owns the XML file.
+ * For nodes with sub-nodes the tree contains the merged XML files of the whole hierarchy.
+ * <p>
+ * An entry remembers the modification time and length of every XML file it was built from,
+ * and is dropped as soon as one of the files changes (or disappears).
+ * Entries are also removed explicitly on <code>clear_cache</code>.
+ * The cache is bounded by an estimate of the memory used by the trees (derived from the size of the XML files),
+ * the least recently used trees are evicted first.
+ * <p>
+ * Cached trees are shared and must never be modified; callers get copies, see {@link XMLTreeNode#copy(XMLTreeNode)}.
+ * This class is thread-safe.
+ */
+public class XMLTreeCache {
+
+	/**
+	 * Rough ratio between the memory used by a parsed tree and the size of its XML file.
+	 */
+	private static final int TREE_SIZE_FACTOR = 6;
+
+	/**
+	 * Cached tree with the files it was built from.
+	 */
+	private static class Entry {
+		final XMLTreeNode root;
+		final File[] files;
+		final long[] lastModified;
+		final long[] length;
+		final long size;
+
+		Entry(XMLTreeNode root, List<File> fileList) {
+			this.root = root;
+			files = fileList.toArray(new File[fileList.size()]);
+			lastModified = new long[files.length];
+			length = new long[files.length];
+			long totalLength = 0;
+			for (int i = 0; i < files.length; i++) {
+				lastModified[i] = files[i].lastModified();
+				length[i] = files[i].length();
+				totalLength += length[i];
+			}
+			size = TREE_SIZE_FACTOR * totalLength + 256;
+		}
+
+		boolean isValid() {
+			for (int i = 0; i < files.length; i++)
+				if (files[i].lastModified() != lastModified[i] || files[i].length() != length[i])
+					return false;
+			return true;
+		}
+	}
+
+	private final long maxSize;
+
+	/**
+	 * Entries in access order, the least recently used first.
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+
+	private long size = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long invalidations = 0;
+	private long evictions = 0;
+
+	/**
+	 * Constructor.
+	 * @param maxSize	max. estimated memory used by the cached trees, in bytes.
+	 */
+	public XMLTreeCache(long maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+	}
+
+	/**
+	 * Returns the cached tree, if none of its files has changed since it was parsed.
+	 * The file modification times are checked outside the cache lock.
+	 * @param curl	curl of the node that owns the XML file.
+	 * @return the (shared, read-only) tree, <code>null</code> if there is none or it is out of date.
+	 */
+	public XMLTreeNode get(String curl) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(curl);
+			if (entry == null) {
+				misses++;
+				return null;
+			}
+		}
+
+		boolean valid = entry.isValid();
+
+		synchronized (this) {
+			if (valid) {
+				hits++;
+				return entry.root;
+			}
+			misses++;
+			invalidations++;
+			// do not remove a newer entry put in the meantime
+			if (entries.get(curl) == entry)
+				remove(curl);
+			return null;
+		}
+	}
+
+	/**
+	 * Puts a tree to the cache, evicting the least recently used trees if needed.
+	 * @param curl	curl of the node that owns the XML file.
+	 * @param root	root of the parsed tree, must not be modified afterwards.
+	 * @param files	XML files the tree was built from.
+	 */
+	public void put(String curl, XMLTreeNode root, List<File> files) {
+		// stat the files outside the lock
+		Entry entry = new Entry(root, files);
+
+		synchronized (this) {
+			remove(curl);
+			if (entry.size > maxSize)
+				return;
+
+			Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+			while (size + entry.size > maxSize && iterator.hasNext()) {
+				size -= iterator.next().getValue().size;
+				iterator.remove();
+				evictions++;
+			}
+
+			entries.put(curl, entry);
+			size += entry.size;
+		}
+	}
+
+	/**
+	 * Removes the tree of the given curl, and all the trees that contain it (parent nodes with merged sub-nodes)
+	 * or are contained in it.
+	 * @param curl	curl of a node.
+	 */
+	public synchronized void remove(String curl) {
+		Entry entry = entries.remove(curl);
+		if (entry != null)
+			size -= entry.size;
+
+		String prefix = curl + "/";
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Entry> e = iterator.next();
+			String key = e.getKey();
+			if (key.startsWith(prefix) || curl.startsWith(key + "/") || key.length() == 0) {
+				size -= e.getValue().size;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all the trees (statistics are kept).
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return a one-line summary of the cache statistics, suitable for logging.
+	 */
+	public synchronized String getStatistics() {
+		long requests = hits + misses;
+		return "trees: " + entries.size() + ", estimated size: " + (size / 1024) + " of " + (maxSize / 1024) + " kB" +
+				", hits: " + hits + ", misses: " + misses +
+				(requests > 0 ? " (hit ratio " + ((1000 * hits / requests) / 10.) + "%)" : "") +
+				", out of date: " + invalidations + ", evictions: " + evictions;
+	}
+}
@@ -30,6 +30,7 @@ package com.cosylab.cdb.jdal;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class XMLTreeNode {
 	public static final String ARRAY_TYPE = "_ArrayNode_";
@@ -92,6 +93,33 @@ public class XMLTreeNode {
 		m_type = NORMAL_TYPE;
 	}
 	
+	/**
+	 * Creates a deep copy of this node and all its sub-nodes.
+	 * Used to hand out private copies of the trees shared in {@link XMLTreeCache}.
+	 * 
+	 * @param parent the parent of the copy
+	 * @return the copy
+	 */
+	XMLTreeNode copy(XMLTreeNode parent) {
+		XMLTreeNode copy = new XMLTreeNode(parent);
+		copy.m_name = m_name;
+		copy.m_nameSpace = m_nameSpace;
+		copy.m_type = m_type;
+		copy.m_fieldMap.putAll(m_fieldMap);
+		for (Map.Entry<String, XMLTreeNode> entry : m_subNodesMap.entrySet())
+			copy.m_subNodesMap.put(entry.getKey(), entry.getValue().copy(copy));
+		if (m_elementsMap != null) {
+			copy.m_elementsMap = new LinkedHashMap<String, XMLTreeNode>();
+			for (Map.Entry<String, XMLTreeNode> entry : m_elementsMap.entrySet()) {
+				// elements are normally also sub-nodes, share the copies
+				XMLTreeNode node = (m_subNodesMap.get(entry.getKey()) == entry.getValue()) ?
+						copy.m_subNodesMap.get(entry.getKey()) : entry.getValue().copy(copy);
+				copy.m_elementsMap.put(entry.getKey(), node);
+			}
+		}
+		return copy;
+	}
+
 	public void markNodesAsElements()
 	{
 		// ignore remarkings, they are wrong
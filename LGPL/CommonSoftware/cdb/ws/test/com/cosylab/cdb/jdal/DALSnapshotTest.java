@@ -0,0 +1,179 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests saving and loading of the {@link DALSnapshot}, and the rejection of
+ * out of date or corrupted snapshots. No running CDB is needed.
+ */
+public class DALSnapshotTest extends TestCase {
+
+	private static final byte[] FINGERPRINT = new byte[] { 1, 2, 3, 4 };
+
+	private File file;
+	private DALSnapshot snapshot;
+	private Map<String, String> records;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("DALSnapshotTest", ".snapshot");
+		file.delete();
+		Logger logger = Logger.getAnonymousLogger();
+		// keep the test output clean
+		logger.setUseParentHandlers(false);
+		snapshot = new DALSnapshot(file, logger);
+
+		records = new LinkedHashMap<String, String>();
+		records.put("alma/comp0", "<comp0 attr=\"value\"/>");
+		records.put("alma/comp1", "<comp1 attr=\"\u00e9\u00e8\"/>");
+		records.put("MACI/Managers/Manager", "<Manager/>");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		new File(file.getPath() + ".tmp").delete();
+	}
+
+	/**
+	 * Records are loaded as saved, in the same order.
+	 */
+	public void testSaveLoad() throws Exception {
+		assertNull(snapshot.load(FINGERPRINT));
+
+		assertTrue(snapshot.save(FINGERPRINT, records));
+		Map<String, String> loaded = snapshot.load(FINGERPRINT);
+		assertEquals(records, loaded);
+		assertEquals(records.keySet().iterator().next(), loaded.keySet().iterator().next());
+
+		// replaced by a new snapshot
+		Map<String, String> empty = Collections.emptyMap();
+		assertTrue(snapshot.save(FINGERPRINT, empty));
+		assertEquals(0, snapshot.load(FINGERPRINT).size());
+	}
+
+	/**
+	 * A snapshot of other CDB sources is ignored.
+	 */
+	public void testFingerprint() throws Exception {
+		assertTrue(snapshot.save(FINGERPRINT, records));
+		assertNull(snapshot.load(new byte[] { 1, 2, 3, 5 }));
+
+		File root = File.createTempFile("DALSnapshotTest", "");
+		root.delete();
+		root.mkdir();
+		File xml = new File(root, "comp.xml");
+		try {
+			byte[] before = DALSnapshot.fingerprint(root, Collections.<File>emptyList());
+			assertTrue(xml.createNewFile());
+			byte[] after = DALSnapshot.fingerprint(root, Collections.<File>emptyList());
+			assertFalse(Arrays.equals(before, after));
+			assertTrue(Arrays.equals(after, DALSnapshot.fingerprint(root, Collections.<File>emptyList())));
+		} finally {
+			xml.delete();
+			root.delete();
+		}
+	}
+
+	/**
+	 * Changed bytes are detected by the checksum.
+	 */
+	public void testChecksum() throws Exception {
+		assertTrue(snapshot.save(FINGERPRINT, records));
+		long length = file.length();
+		for (long position = 8; position < length; position += 7) {
+			assertTrue(snapshot.save(FINGERPRINT, records));
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(position);
+				int b = raf.read();
+				raf.seek(position);
+				raf.write(b ^ 0x10);
+			} finally {
+				raf.close();
+			}
+			assertNull("corruption at " + position + " not detected", snapshot.load(FINGERPRINT));
+		}
+	}
+
+	/**
+	 * Truncated files, and lengths that do not fit into the file are rejected
+	 * (also if the checksum matches, e.g. for a snapshot written by a buggy writer).
+	 */
+	public void testInvalidLengths() throws Exception {
+		assertTrue(snapshot.save(FINGERPRINT, records));
+		long length = file.length();
+		for (long size = 0; size < length; size += 5) {
+			assertTrue(snapshot.save(FINGERPRINT, records));
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(size);
+			} finally {
+				raf.close();
+			}
+			assertNull("truncation to " + size + " not detected", snapshot.load(FINGERPRINT));
+		}
+
+		// negative and too large fingerprint length
+		writeSnapshot(-1);
+		assertNull(snapshot.load(FINGERPRINT));
+		writeSnapshot(Integer.MAX_VALUE);
+		assertNull(snapshot.load(FINGERPRINT));
+		writeSnapshot(FINGERPRINT.length);
+		assertNotNull(snapshot.load(FINGERPRINT));
+	}
+
+	/**
+	 * Writes a snapshot without records with the given fingerprint length and a valid checksum.
+	 */
+	private void writeSnapshot(int fingerprintLength) throws Exception {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeInt(fingerprintLength);
+		out.write(FINGERPRINT);
+		out.writeInt(0);
+		out.close();
+		CRC32 crc = new CRC32();
+		crc.update(payload.toByteArray());
+
+		out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.writeInt(0x43444253);
+			out.writeInt(2);
+			out.write(payload.toByteArray());
+			out.writeLong(crc.getValue());
+		} finally {
+			out.close();
+		}
+	}
+}
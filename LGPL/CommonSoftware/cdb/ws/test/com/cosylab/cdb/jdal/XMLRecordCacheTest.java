@@ -0,0 +1,120 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the size bound, eviction order and negative caching of {@link XMLRecordCache}.
+ * No running CDB is needed.
+ */
+public class XMLRecordCacheTest extends TestCase {
+
+	private static final String XML = "<record attr=\"value\"/>";
+
+	/**
+	 * Records and exceptions are cached, hits and misses are counted.
+	 */
+	public void testPutGet() throws Exception {
+		XMLRecordCache cache = new XMLRecordCache(1024 * 1024);
+		Exception ex = new Exception("record does not exist");
+
+		assertNull(cache.get("alma/comp"));
+		assertTrue(cache.put("alma/comp", XML));
+		assertTrue(cache.put("alma/missing", ex));
+		assertEquals(XML, cache.get("alma/comp"));
+		assertSame(ex, cache.get("alma/missing"));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(XMLRecordCache.estimateSize("alma/comp", XML) + XMLRecordCache.estimateSize("alma/missing", ex), cache.getSize());
+
+		// replacing an entry does not leak its size
+		assertTrue(cache.put("alma/comp", XML + XML));
+		assertEquals(XMLRecordCache.estimateSize("alma/comp", XML + XML) + XMLRecordCache.estimateSize("alma/missing", ex), cache.getSize());
+
+		assertEquals(XML + XML, cache.remove("alma/comp"));
+		assertEquals(XMLRecordCache.estimateSize("alma/missing", ex), cache.getSize());
+
+		cache.clear();
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getSize());
+		assertFalse(cache.wasLimitReached());
+	}
+
+	/**
+	 * The least recently used records are evicted, pre-caching does not evict anything.
+	 */
+	public void testEviction() throws Exception {
+		long entrySize = XMLRecordCache.estimateSize("curl0", XML);
+		XMLRecordCache cache = new XMLRecordCache(3 * entrySize);
+
+		assertTrue(cache.put("curl0", XML));
+		assertTrue(cache.put("curl1", XML));
+		assertTrue(cache.put("curl2", XML));
+		assertNotNull(cache.get("curl0"));
+
+		// curl1 is the least recently used
+		assertTrue(cache.put("curl3", XML));
+		assertNull(cache.get("curl1"));
+		assertNotNull(cache.get("curl0"));
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(cache.wasLimitReached());
+		assertTrue(cache.getSize() <= cache.getMaxSize());
+
+		assertFalse(cache.putIfFits("curl4", XML));
+		assertNull(cache.get("curl4"));
+		assertEquals(3, cache.getEntryCount());
+		assertEquals(1, cache.getRejectionCount());
+
+		// larger than the whole cache
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 20; i++)
+			large.append(XML);
+		assertFalse(cache.put("large", large.toString()));
+		assertEquals(3, cache.getEntryCount());
+	}
+
+	/**
+	 * Only the XML records are returned (for the snapshot), the most recently used first.
+	 */
+	public void testGetXMLRecords() throws Exception {
+		XMLRecordCache cache = new XMLRecordCache(1024 * 1024);
+		cache.put("curl0", XML);
+		cache.put("missing", new Exception());
+		cache.put("curl1", XML);
+		cache.get("curl0");
+
+		Map<String, String> records = cache.getXMLRecords();
+		assertEquals(2, records.size());
+		Iterator<String> curls = records.keySet().iterator();
+		assertEquals("curl0", curls.next());
+		assertEquals("curl1", curls.next());
+
+		// access order is not affected
+		long hits = cache.getHitCount();
+		cache.put("curl2", XML);
+		cache.put("curl3", XML);
+		assertEquals(hits, cache.getHitCount());
+	}
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *    and Cosylab 2002, All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.cosylab.cdb.jdal;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the invalidation and eviction of the parsed XML trees in {@link XMLTreeCache},
+ * and the isolation of the copies made by {@link XMLTreeNode#copy(XMLTreeNode)}.
+ * No running CDB is needed.
+ */
+public class XMLTreeCacheTest extends TestCase {
+
+	private List<File> tempFiles = new ArrayList<File>();
+
+	protected void tearDown() throws Exception {
+		for (File file : tempFiles)
+			file.delete();
+		tempFiles.clear();
+	}
+
+	private File createFile(String content) throws IOException {
+		File file = File.createTempFile("XMLTreeCacheTest", ".xml");
+		tempFiles.add(file);
+		writeFile(file, content);
+		return file;
+	}
+
+	private void writeFile(File file, String content) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private XMLTreeNode createTree(String name) {
+		XMLTreeNode root = new XMLTreeNode(null);
+		root.m_name = name;
+		root.m_fieldMap.put("attr", "value");
+		XMLTreeNode child = new XMLTreeNode(root);
+		child.m_name = "child";
+		child.m_fieldMap.put("childAttr", "childValue");
+		root.m_subNodesMap.put("child", child);
+		root.markNodesAsElements();
+		return root;
+	}
+
+	/**
+	 * A tree is dropped as soon as one of its files changes.
+	 */
+	public void testFileChange() throws Exception {
+		XMLTreeCache cache = new XMLTreeCache(1024 * 1024);
+		File file = createFile("<root attr=\"value\"/>");
+		XMLTreeNode tree = createTree("root");
+
+		assertNull(cache.get("root"));
+		cache.put("root", tree, Collections.singletonList(file));
+		assertSame(tree, cache.get("root"));
+
+		writeFile(file, "<root attr=\"changed value\"/>");
+		assertNull(cache.get("root"));
+		assertNull(cache.get("root"));
+
+		// a deleted file invalidates the tree as well
+		cache.put("root", tree, Collections.singletonList(file));
+		assertSame(tree, cache.get("root"));
+		file.delete();
+		assertNull(cache.get("root"));
+	}
+
+	/**
+	 * Removing a node removes the trees of its parents and its sub-nodes, but not of the other nodes.
+	 */
+	public void testRemove() throws Exception {
+		XMLTreeCache cache = new XMLTreeCache(1024 * 1024);
+		List<File> files = Collections.singletonList(createFile("<root/>"));
+		cache.put("alma", createTree("alma"), files);
+		cache.put("alma/comp", createTree("comp"), files);
+		cache.put("alma/comp/sub", createTree("sub"), files);
+		cache.put("alma/compOther", createTree("compOther"), files);
+		cache.put("other", createTree("other"), files);
+
+		cache.remove("alma/comp");
+		assertNull(cache.get("alma"));
+		assertNull(cache.get("alma/comp"));
+		assertNull(cache.get("alma/comp/sub"));
+		assertNotNull(cache.get("alma/compOther"));
+		assertNotNull(cache.get("other"));
+
+		cache.clear();
+		assertNull(cache.get("other"));
+	}
+
+	/**
+	 * The least recently used trees are evicted when the size limit is reached.
+	 */
+	public void testEviction() throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 100; i++)
+			content.append("<element attr=\"value\"/>");
+		List<File> files = Collections.singletonList(createFile(content.toString()));
+		long treeSize = 6 * files.get(0).length() + 256;
+
+		XMLTreeCache cache = new XMLTreeCache(2 * treeSize);
+		cache.put("first", createTree("first"), files);
+		cache.put("second", createTree("second"), files);
+		assertNotNull(cache.get("first"));
+
+		// "second" is now the least recently used
+		cache.put("third", createTree("third"), files);
+		assertNull(cache.get("second"));
+		assertNotNull(cache.get("first"));
+		assertNotNull(cache.get("third"));
+
+		// too large to be cached at all
+		cache = new XMLTreeCache(treeSize - 1);
+		cache.put("first", createTree("first"), files);
+		assertNull(cache.get("first"));
+	}
+
+	/**
+	 * Changes of a copy do not affect the (cached) original.
+	 */
+	public void testCopyIsolation() throws Exception {
+		XMLTreeNode tree = createTree("root");
+		XMLTreeNode copy = tree.copy(null);
+
+		assertEquals(tree.toString(false), copy.toString(false));
+		assertNull(copy.m_parent);
+		XMLTreeNode copiedChild = copy.m_subNodesMap.get("child");
+		assertNotSame(tree.m_subNodesMap.get("child"), copiedChild);
+		assertSame(copy, copiedChild.m_parent);
+		// elements share the copied sub-nodes
+		assertSame(copiedChild, copy.m_elementsMap.get("child"));
+
+		copy.m_fieldMap.put("attr", "changed");
+		copiedChild.m_fieldMap.put("childAttr", "changed");
+		XMLTreeNode added = new XMLTreeNode(copy);
+		added.m_name = "added";
+		copy.m_subNodesMap.put("added", added);
+		copy.m_elementsMap.put("added", added);
+
+		assertEquals("value", tree.m_fieldMap.get("attr"));
+		assertEquals("childValue", tree.m_subNodesMap.get("child").m_fieldMap.get("childAttr"));
+		assertEquals(1, tree.m_subNodesMap.size());
+		assertEquals(1, tree.m_elementsMap.size());
+		assertSame(tree, tree.m_subNodesMap.get("child").m_parent);
+	}
+}
@@ -55,6 +55,10 @@ import java.util.Random;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
@@ -185,6 +189,16 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 	static final String COMPONENT_TREE_NAME = System.getProperty(TMCDB_COMPONENT_TREE_NAME_KEY, "alma");
 	
 	static final boolean TMCDB_ACS_ONLY = Boolean.getBoolean("cdb_rdb.acsOnly");
+
+	/**
+	 * Number of threads reading (parsing) the component configurations in parallel when importing the XML CDB.
+	 */
+	static final int IMPORT_THREADS = Integer.getInteger("cdb_rdb.import.threads", Runtime.getRuntime().availableProcessors()).intValue();
+
+	/**
+	 * Number of imported components after which the session is flushed, i.e. the batched inserts are executed.
+	 */
+	static final int IMPORT_FLUSH_INTERVAL = Integer.getInteger("cdb_rdb.import.flushInterval", 100).intValue();
 	
 	// a DAL is always valid for *one* configuration:
   	protected String configName = null;
@@ -222,6 +236,25 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 	protected final Logger m_logger;
 
 	protected volatile Object rootNode;
+
+	/**
+	 * Nodes resolved from <code>rootNode</code>, mapped by curl.
+	 */
+	private static class NodeCache
+	{
+		final Object root;
+		final ConcurrentHashMap<String, Object> nodes = new ConcurrentHashMap<String, Object>();
+
+		NodeCache(Object root)
+		{
+			this.root = root;
+		}
+	}
+
+	/**
+	 * Cache of resolved nodes, replaced when the data is (re)loaded or changed.
+	 */
+	private volatile NodeCache nodeCache = new NodeCache(null);
 	
 	protected SAXParser saxParser;	
 	
@@ -322,6 +355,9 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 		
 		plugin = PluginFactory.getPlugin(m_logger);
 		hibernateDBUtil = new HibernateDBUtil(logger, plugin);
+		
+		// batch the writes of the XML CDB import (also applies to the writes after the import)
+		hibernateDBUtil.setJdbcBatching(loadXMLCDB);
 
 		// set-up connection
 		// in-memory can be configured from outside, therefore "feedback" for forceInMemory
@@ -511,6 +547,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 			configId = config.getConfigurationId();
 
 			initializeRootNode();
+			clearNodeCache();
 		
 			// we do not close session (needed by WDAL)
 		} catch (Throwable th) {
@@ -791,7 +828,15 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 				}
 				
 				// load all schemas				
+				long phaseStartTime = System.currentTimeMillis();
 				loadSchemas(session);
+				phaseStartTime = logImportPhase("schemas", phaseStartTime);
+
+				// references resolved in memory instead of querying the DB for every component
+				Map<String, Computer> computers = new HashMap<String, Computer>();
+				Map<String, Container> containers = new HashMap<String, Container>();
+				Map<String, Schemas> schemas = new HashMap<String, Schemas>();
+				Map<String, ComponentType> componentTypes = new HashMap<String, ComponentType>();
 
 				try
 				{
@@ -849,8 +894,10 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 					String computerHostName = readString(containerDAO, "DeployInfo/Host", null);
 					if (computerHostName != null)
 					{
-						hostComputer = (Computer)session.createCriteria(Computer.class).
-													add(Restrictions.eq("networkName", computerHostName)).uniqueResult();
+						hostComputer = computers.get(computerHostName);
+						if (hostComputer == null)
+							hostComputer = (Computer)session.createCriteria(Computer.class).
+														add(Restrictions.eq("networkName", computerHostName)).uniqueResult();
 						if (hostComputer == null) {
 							// NOTE: we add some dummy data as computer name, realtime flag, CPU type here
 							String computerName = computerHostName;
@@ -867,6 +914,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 							hostComputer.setPhysicalLocation(null);
 							session.persist(hostComputer);
 						}
+						computers.put(computerHostName, hostComputer);
 					}
 					
 					final String containerPath;
@@ -906,6 +954,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						container.setPingInterval(pingInterval);
 					container.setAutoloadSharedLibs(containerDAO.get_string("Autoload"));
 					session.persist(container);
+					containers.put(containerPath + "/" + containerName, container);
 					// convert the "Flags" string of concatenated options to ContainerStartupOption 
 					String containerStartFlags = readString(containerDAO, "DeployInfo/Flags", null);
 					ContainerStartupOptionHelper containerStartupOptionHelper = new ContainerStartupOptionHelper(m_logger);
@@ -920,6 +969,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 				else {
 					m_logger.info("No XML container data found.");
 				}
+				phaseStartTime = logImportPhase("manager and containers", phaseStartTime);
 
 
 				// set of all existing component names
@@ -948,6 +998,11 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 					m_logger.warning("Failed to read MACI/Components DAO, skipping...");
 				}
 				
+				// parse the component configurations in parallel, they are then cached by cdbAccess
+				prefetchComponentConfigurations(cdbAccess, componentDAO, nodes);
+				phaseStartTime = logImportPhase("component configurations read", phaseStartTime);
+
+				int componentCount = 0;
 				Iterator iter = nodes.iterator();
 	            while (iter.hasNext())
 	            {
@@ -1009,10 +1064,12 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								containerPath = "/"; // for Oracle
 							}
 
-							Container container = (Container)session.createCriteria(Container.class)
-								.add(Restrictions.eq("configuration", config))
-								.add(Restrictions.eq("containerName", containerName))
-								.add(Restrictions.eq("path", containerPath)).uniqueResult();
+							Container container = containers.get(containerPath + "/" + containerName);
+							if (container == null)
+								container = (Container)session.createCriteria(Container.class)
+									.add(Restrictions.eq("configuration", config))
+									.add(Restrictions.eq("containerName", containerName))
+									.add(Restrictions.eq("path", containerPath)).uniqueResult();
 							if (container != null) {
 								componentContainerId = container.getContainerId();
 								tmpComponentContainer = container;
@@ -1049,6 +1106,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								container.setRecovery(false);
 								container.setAutoloadSharedLibs(null);
 								session.persist(container);
+								containers.put(containerPath + "/" + containerName, container);
 								componentContainerId = container.getContainerId();
 								tmpComponentContainer = container;
 							}
@@ -1058,7 +1116,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						boolean almaBranchDoesNotExist = componentName.startsWith("*");
 						boolean forceSubcomponentCheck = false;
 
-						int typeId;
+						ComponentType componentType;
 						String type = componentDAO.get_string(componentName+"/Type");
 						DAOProxy componentConfigurationDAO = null; // pulled out for performance optimization, to avoid reading it twice in many cases
 						Schemas schema = null;
@@ -1119,22 +1177,31 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 							}
 							
                             // get the Schema identifier for the schemaURN
-                            schema = (Schemas)session.createCriteria(Schemas.class)
-                            	.add(Restrictions.eq("URN", schemaURN))
-                            	.add(Restrictions.eq("configuration", config)).uniqueResult();
+                            if (schemas.containsKey(schemaURN))
+                            	schema = schemas.get(schemaURN);
+                            else
+                            {
+                            	schema = (Schemas)session.createCriteria(Schemas.class)
+                            		.add(Restrictions.eq("URN", schemaURN))
+                            		.add(Restrictions.eq("configuration", config)).uniqueResult();
+                            	schemas.put(schemaURN, schema);
+                            }
                             if (schema == null && !almaBranchDoesNotExist)
                             	m_logger.severe("Component " + componentName + " of XSD type " + schemaURN + " has no XSD file.");
                             
-                            ComponentType componentType = (ComponentType)session.createCriteria(ComponentType.class)
-                            	.add(Restrictions.eq("IDL", type)).uniqueResult();
+                            componentType = componentTypes.get(type);
                             if (componentType == null)
                             {
-                            	componentType = new ComponentType();
-                            	componentType.setIDL(type);
-                                session.saveOrUpdate(componentType);
+                            	componentType = (ComponentType)session.createCriteria(ComponentType.class)
+                            		.add(Restrictions.eq("IDL", type)).uniqueResult();
+                            	if (componentType == null)
+                            	{
+                            		componentType = new ComponentType();
+                            		componentType.setIDL(type);
+                            		session.saveOrUpdate(componentType);
+                            	}
+                            	componentTypes.put(type, componentType);
                             }
-
-							typeId = componentType.getComponentTypeId();
 						}
 
 						boolean isControlDevice = !nonControlDeviceSet.contains(type) && !almaBranchDoesNotExist;
@@ -1145,8 +1212,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						}
 						
 					    Component component = new Component();
-					    // TODO this can be optimized!!!
-					    component.setComponentType((ComponentType)session.get(ComponentType.class, typeId));
+					    component.setComponentType(componentType);
 					    component.setComponentName(realComponentName);
 					    component.setConfiguration(config);
 //					    component.setContainerId(componentContainerId);
@@ -1165,7 +1231,10 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						component.setXMLDoc(xml);
                     	component.setURN(schema == null ? null : schema.getURN());
 						session.persist(component);
-						session.flush();
+
+						// flush periodically (not per component), so that the inserts are executed in JDBC batches
+						if (++componentCount % IMPORT_FLUSH_INTERVAL == 0)
+							session.flush();
 					
 						// try to create alma branch (if available)
 						if ((isControlDevice || isCharateristicsDevice) && !almaBranchDoesNotExist) {
@@ -1176,6 +1245,8 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								}
 								if (plugin != null && isControlDevice)
 								{
+									// plugin might query the DB
+									session.flush();
 									plugin.controlDeviceImportEpilogue(session, config, cdbAccess, componentName, component);
 								}
 								
@@ -1312,6 +1383,8 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 	            	// if the preceding while loop actually did something...
 	            	m_logger.info("Imported Components from XML.");
 	            }
+	            session.flush();
+	            phaseStartTime = logImportPhase("components (" + componentCount + ")", phaseStartTime);
 	            
 	            
 	            //
@@ -1420,6 +1493,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 					// no mappings
 				}
 				m_logger.info("Imported Notification Channels from XML.");
+				phaseStartTime = logImportPhase("channels", phaseStartTime);
 
 
 				// plugin importEpilogue()
@@ -1437,6 +1511,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 				}
 
 				hibernateUtil.commitTransaction();
+				logImportPhase("plugin epilogue and commit", phaseStartTime);
 				
 				m_logger.info("Configuration from XML CDB loaded.");
 			}
@@ -1473,6 +1548,76 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 		}
 	}
 
+	/**
+	 * Logs the time spent in a phase of the XML CDB import.
+	 * @param phase	name of the phase.
+	 * @param startTime	start time of the phase.
+	 * @return the current time, i.e. the start time of the next phase.
+	 */
+	private long logImportPhase(String phase, long startTime)
+	{
+		long now = System.currentTimeMillis();
+		m_logger.info("XML CDB import of " + phase + " took " + (now - startTime) + " ms.");
+		return now;
+	}
+
+	/**
+	 * Reads the configurations (<code>COMPONENT_TREE_NAME</code> branch) of all the components in parallel,
+	 * so that the (sequential) import gets them already parsed and cached by <code>cdbAccess</code>.
+	 * Failures are ignored here, they are reported by the import itself.
+	 * @param cdbAccess	CDB access used by the import.
+	 * @param componentDAO	<code>MACI/Components</code> DAO, can be <code>null</code>.
+	 * @param nodes	paths of the <code>MACI/Components</code> nodes.
+	 */
+	private void prefetchComponentConfigurations(final CDBAccess cdbAccess, DAOProxy componentDAO, Set nodes)
+	{
+		if (componentDAO == null || IMPORT_THREADS < 2)
+			return;
+
+		List<String> curls = new ArrayList<String>();
+		for (Object node : nodes)
+		{
+			String path = node.toString();
+			String prefix = (path.length() == 0 || path.equals("/")) ? "" : path + "/";
+			try
+			{
+				StringTokenizer tokenizer = new StringTokenizer((String)componentDAO.get_field_data(prefix + "_elements"), ",");
+				while (tokenizer.hasMoreTokens())
+				{
+					String componentName = prefix + tokenizer.nextToken();
+					if (!componentName.startsWith("*"))
+						curls.add(COMPONENT_TREE_NAME + "/" + componentName);
+				}
+			}
+			catch (Throwable th)
+			{
+				// reported by the import
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(IMPORT_THREADS, Math.max(1, curls.size())));
+		for (final String curl : curls)
+		{
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						cdbAccess.createDAO(curl);
+					} catch (Throwable th) {
+						// reported by the import
+					}
+				}
+			});
+		}
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	/**
 	 * @param xmlCDB
 	 * @param componentName
@@ -1975,6 +2120,43 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 			return null;
 	}
 
+	/**
+	 * Resolves the node of the given curl, using the cache of resolved nodes.
+	 * Only non-primitive nodes are cached.
+	 * @param curl	curl without leading slash.
+	 * @return node, <code>null</code> if not found.
+	 */
+	protected Object getNodeCached(String curl)
+	{
+		Object root = rootNode;
+		if (curl.length() == 0)
+			return root;
+
+		NodeCache cache = nodeCache;
+		if (cache.root != root)
+		{
+			cache = new NodeCache(root);
+			nodeCache = cache;
+		}
+
+		Object node = cache.nodes.get(curl);
+		if (node == null)
+		{
+			node = DOMJavaClassIntrospector.getNode(curl, root);
+			if (node != null && !DOMJavaClassIntrospector.isPrimitive(node.getClass()))
+				cache.nodes.put(curl, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Clears the cache of resolved nodes, must be called whenever nodes are (re)loaded or replaced.
+	 */
+	protected void clearNodeCache()
+	{
+		nodeCache = new NodeCache(rootNode);
+	}
+
 	protected synchronized void initializeRootNode()
 	{
 		m_logger.info("Loading configuration from the database...");
@@ -2468,7 +2650,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 			if (daoMap.containsKey(curl))
 				return daoMap.get(curl);
 
-			Object node = curl.length() == 0 ? rootNode : DOMJavaClassIntrospector.getNode(curl, rootNode);
+			Object node = getNodeCached(curl);
 			if (node == null || DOMJavaClassIntrospector.isPrimitive(node.getClass()))
 			{
 				AcsJCDBRecordDoesNotExistEx ex = new AcsJCDBRecordDoesNotExistEx();
@@ -2538,7 +2720,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 		
 		m_logger.log(AcsLogLevel.INFO, "Returning XML record for: " + curl);
 		
-		Object node = curl.length() == 0 ? rootNode : DOMJavaClassIntrospector.getNode(curl, rootNode);
+		Object node = getNodeCached(curl);
 		if (node == null  || DOMJavaClassIntrospector.isPrimitive(node.getClass()))
 		{
 			AcsJCDBRecordDoesNotExistEx ex = new AcsJCDBRecordDoesNotExistEx();
@@ -2594,7 +2776,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 		if (curl == null)
 			curl = EMPTY_STRING;
 		
-		Object node = DOMJavaClassIntrospector.getNode(curl, rootNode);
+		Object node = getNodeCached(curl);
 		if (node == null  || DOMJavaClassIntrospector.isPrimitive(node.getClass()))
 		{
 			/*
@@ -2806,6 +2988,9 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 				m_logger.log(AcsLogLevel.NOTICE, "Failed to set DAO: " + curl, th);
 				AcsJCDBExceptionEx cdbex = new AcsJCDBExceptionEx(th);
 				throw cdbex.toCDBExceptionEx();
+			} finally {
+				// saved XML might replace the subnodes
+				clearNodeCache();
 			}
 			
 			return;
@@ -2828,6 +3013,8 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 			throw e.toCDBFieldDoesNotExistEx();
 		}catch(AcsJCDBXMLErrorEx e){
 			throw e.toCDBXMLErrorEx();
+		}finally{
+			clearNodeCache();
 		}
 	}
 	
@@ -3447,6 +3634,8 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 				}
 			}
 			m_logger.info("clear_cache(curl): Main5");
+			// (parts of) the node tree were reloaded
+			clearNodeCache();
 			loadInProgress.set(false);
 		}
 
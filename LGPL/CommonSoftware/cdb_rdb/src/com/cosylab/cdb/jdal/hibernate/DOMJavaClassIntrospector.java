@@ -9,6 +9,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import org.w3c.dom.Element;
@@ -50,6 +51,37 @@ public class DOMJavaClassIntrospector {
 	public static final String SUBNODES_MAP_NAME = "_";
 	public static final String SUBNODES_MAP_NAME_ALTERNATIVE = "MAP_";
 
+	/**
+	 * Marks "not found" in the reflection caches.
+	 */
+	private static final Object NOT_FOUND = new Object();
+
+	/**
+	 * Cache of accessor methods, per class and field name.
+	 * Classes do not change, so the cache never needs to be invalidated (also not on data reload).
+	 */
+	private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Object>> accessorMethodCache =
+		new ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Object>>();
+
+	/**
+	 * Cache of declared fields (searched through the class hierarchy), per class and field name.
+	 */
+	private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Object>> fieldCache =
+		new ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Object>>();
+
+	private static ConcurrentHashMap<String, Object> getClassCache(ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Object>> cache, Class<?> type)
+	{
+		ConcurrentHashMap<String, Object> classCache = cache.get(type);
+		if (classCache == null)
+		{
+			classCache = new ConcurrentHashMap<String, Object>();
+			ConcurrentHashMap<String, Object> existing = cache.putIfAbsent(type, classCache);
+			if (existing != null)
+				classCache = existing;
+		}
+		return classCache;
+	}
+
 	public static Object getNode(String path, Object rootNode)
 	{
         // System.out.println("Getting node "+path+" for rootNode: "+rootNode.getClass().getName());
@@ -129,6 +161,18 @@ public class DOMJavaClassIntrospector {
 	}
 
 	public static final Method getAccessorMethod(Class type, String fieldName)
+	{
+		ConcurrentHashMap<String, Object> classCache = getClassCache(accessorMethodCache, type);
+		Object method = classCache.get(fieldName);
+		if (method == null)
+		{
+			method = findAccessorMethod(type, fieldName);
+			classCache.put(fieldName, method != null ? method : NOT_FOUND);
+		}
+		return (method != NOT_FOUND) ? (Method)method : null;
+	}
+
+	private static Method findAccessorMethod(Class type, String fieldName)
 	{
 		try {
 			String accessorMethodName = "get" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
@@ -144,6 +188,31 @@ public class DOMJavaClassIntrospector {
 		
 		return null;
 	}
+
+	/**
+	 * Returns the field declared by the given class or one of its superclasses.
+	 * @return the field, <code>null</code> if there is no such field.
+	 */
+	private static Field getDeclaredField(Class type, String name)
+	{
+		ConcurrentHashMap<String, Object> classCache = getClassCache(fieldCache, type);
+		Object cached = classCache.get(name);
+		if (cached == null)
+		{
+			Field field = null;
+			Class t = type;
+			while (field == null && t != null)
+			{
+				try {
+					field = t.getDeclaredField(name);
+				} catch (NoSuchFieldException e) { /* noop */ }
+				t = t.getSuperclass();
+			}
+			cached = (field != null) ? field : NOT_FOUND;
+			classCache.put(name, cached);
+		}
+		return (cached != NOT_FOUND) ? (Field)cached : null;
+	}
 	
 	public static final Method getMutatorMethod(Class type, String fieldName)
 	{
@@ -243,16 +312,8 @@ public class DOMJavaClassIntrospector {
 			}
 			else
 			{
-				Field field = null;
 				final Class nodeType = node.getClass();
-				Class type = nodeType;
-				while (field == null && type != null)
-				{
-					try {
-						field = type.getDeclaredField(name);
-					} catch (NoSuchFieldException e) { /* noop */ }
-					type = type.getSuperclass();
-				}
+				Field field = getDeclaredField(nodeType, name);
 				
 				if (field != null)
 				{
@@ -361,16 +422,8 @@ public class DOMJavaClassIntrospector {
         }
         else
         {
-			Field field = null;
 			final Class nodeType = node.getClass();
-			Class type = nodeType;
-			while (field == null && type != null)
-			{
-				try {
-					field = type.getDeclaredField(name);
-				} catch (NoSuchFieldException e) { /* noop */ }
-				type = type.getSuperclass();
-			}
+			Field field = getDeclaredField(nodeType, name);
 			
 			if (field != null)
 			{
@@ -36,8 +36,15 @@ public class HibernateDBUtil {
 	static final String HSQLDB_MEM_USER = "sa";
 	static final String HSQLDB_MEM_PASSWORD = "";
 
+	/**
+	 * JDBC batch size used by hibernate when importing the XML CDB, <code>0</code> disables batching.
+	 */
+	static final int JDBC_BATCH_SIZE = Integer.getInteger("cdb_rdb.jdbc.batchSize", 50).intValue();
+
 	private final HibernateUtil hibernateUtil;
 	
+	private boolean jdbcBatching = false;
+	
 	private final String[] scripts;
 	
 	private final Logger logger;
@@ -55,6 +62,20 @@ public class HibernateDBUtil {
 		return setUp(forceInMemory, createTables, true, scripts);
 	}
 
+	/**
+	 * Enables JDBC batching (of size <code>cdb_rdb.jdbc.batchSize</code>) of the inserts and updates,
+	 * used when the XML CDB is imported. Applies to the next {@link #setUp(boolean, boolean)}.
+	 * <p>
+	 * Hibernate configures batching per session factory, i.e. when enabled it also applies
+	 * to all the writes of the DAL after the import (errors of a batched statement are then
+	 * reported at the flush of the batch, not at the statement itself).
+	 * Disabled by default.
+	 * @param jdbcBatching	<code>true</code> to enable batching.
+	 */
+	public void setJdbcBatching(boolean jdbcBatching) {
+		this.jdbcBatching = jdbcBatching;
+	}
+
 	/**
 	 * @param forceInMemory
 	 * @param createTables
@@ -123,6 +144,14 @@ public class HibernateDBUtil {
 				connectionProperties.setProperty("hibernate.connection.driver_class", config.get("hibernate.connection.driver_class", null));
 			}
 				
+			// batch the inserts/updates (XML CDB import), ordered so that statements of the same entity can be batched together
+			// NOTE: hibernate does not batch inserts of entities with identity generated IDs
+			if (jdbcBatching)
+			{
+				connectionProperties.setProperty("hibernate.jdbc.batch_size", String.valueOf(JDBC_BATCH_SIZE));
+				connectionProperties.setProperty("hibernate.order_inserts", "true");
+				connectionProperties.setProperty("hibernate.order_updates", "true");
+			}
 				
 			// connect hibernate
 			hibernateUtil.setConfiguration(connectionProperties);
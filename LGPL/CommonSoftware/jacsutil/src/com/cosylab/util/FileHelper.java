@@ -30,6 +30,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
@@ -161,4 +164,37 @@ public class FileHelper {
 		}
 	}
 
+	/**
+	 * Releases the mapping of a memory mapped buffer right away, instead of when the buffer gets garbage collected
+	 * (until then the mapped file keeps using address space and can not be deleted on some platforms).
+	 * The buffer (and its duplicates) must not be accessed afterwards.
+	 * Does nothing if this JVM does not allow to release the mapping.
+	 */
+	public static void unmap(MappedByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+		try {
+			// JDK 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Throwable th) {
+			// not available, try the JDK 6-8 way
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Throwable th) {
+			// nop, the mapping is released by the garbage collector
+		}
+	}
+
 }
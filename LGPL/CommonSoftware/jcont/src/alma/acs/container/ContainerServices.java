@@ -21,7 +21,10 @@
  */
 package alma.acs.container;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -114,7 +117,132 @@ public interface ContainerServices extends ContainerServicesBase
 	 */
 	public org.omg.CORBA.Object getComponent(String componentUrl) 
 			throws AcsJContainerServicesEx;
-	
+
+	/**
+	 * Gets references to several components at once.
+	 * <p>
+	 * The result is the same as calling {@link #getComponent(String)} for every curl,
+	 * but the references are requested from the manager in parallel, so that a component
+	 * which depends on many other components does not wait for one manager call after the other.
+	 * References that were obtained before are taken from the cache, like in <code>getComponent</code>.
+	 * <p>
+	 * A failure to get one component does not affect the others, but is reported for its curl
+	 * in the returned {@link ComponentRequestResult}.
+	 *
+	 * @param componentUrls  the ACS CURLs of the deployed component instances. Duplicate curls are requested only once.
+	 * @return  the CORBA proxies of the components, and the failures, per curl.
+	 * @throws AcsJContainerServicesEx  if a curl is <code>null</code>, or if the calling thread got interrupted.
+	 * @since ACS 2015.6
+	 */
+	public ComponentRequestResult getComponents(String... componentUrls)
+			throws AcsJContainerServicesEx;
+
+	/**
+	 * Asynchronous variant of {@link #getComponents(String...)}, which returns right away
+	 * and reports every component reference (or failure) to the given callback as soon as it is available.
+	 *
+	 * @param callback  receives the component references and failures.
+	 *                  A new instance of <code>ComponentRequestCallback</code> is required for every call.
+	 * @param componentUrls  the ACS CURLs of the deployed component instances. Duplicate curls are requested only once.
+	 * @since ACS 2015.6
+	 */
+	public void getComponentsAsync(ComponentRequestCallback callback, String... componentUrls);
+
+	/**
+	 * Result of {@link ContainerServices#getComponents(String...)},
+	 * with either the component reference or the failure for every requested curl.
+	 */
+	public static class ComponentRequestResult {
+		private final Map<String, org.omg.CORBA.Object> components =
+				Collections.synchronizedMap(new LinkedHashMap<String, org.omg.CORBA.Object>());
+		private final Map<String, AcsJContainerServicesEx> failures =
+				Collections.synchronizedMap(new LinkedHashMap<String, AcsJContainerServicesEx>());
+
+		void addComponent(String curl, org.omg.CORBA.Object component) {
+			components.put(curl, component);
+		}
+		void addFailure(String curl, AcsJContainerServicesEx failure) {
+			failures.put(curl, failure);
+		}
+		/**
+		 * @return the CORBA proxy for the given component, or <code>null</code> if the component could not be retrieved.
+		 */
+		public org.omg.CORBA.Object getComponent(String curl) {
+			return components.get(curl);
+		}
+		/**
+		 * @return the reason why the given component could not be retrieved, or <code>null</code> if it was retrieved.
+		 */
+		public AcsJContainerServicesEx getFailure(String curl) {
+			return failures.get(curl);
+		}
+		/**
+		 * @return the retrieved components (key = curl), in the order in which they were retrieved.
+		 */
+		public Map<String, org.omg.CORBA.Object> getComponents() {
+			synchronized (components) {
+				return new LinkedHashMap<String, org.omg.CORBA.Object>(components);
+			}
+		}
+		/**
+		 * @return the failures (key = curl), empty if all components were retrieved.
+		 */
+		public Map<String, AcsJContainerServicesEx> getFailures() {
+			synchronized (failures) {
+				return new LinkedHashMap<String, AcsJContainerServicesEx>(failures);
+			}
+		}
+		/**
+		 * @return <code>true</code> if at least one component could not be retrieved.
+		 */
+		public boolean hasFailures() {
+			return !failures.isEmpty();
+		}
+	}
+
+	/**
+	 * Callback for {@link ContainerServices#getComponentsAsync(ComponentRequestCallback, String...)}.
+	 * Users may override the methods they need in their subclasses of <code>ComponentRequestCallback</code>.
+	 * The callback methods may be called concurrently from different threads.
+	 * <p>
+	 * Note that {@link #awaitComponents(long, TimeUnit)} is not a callback method
+	 * but should make it easier to synchronize user code execution with the component retrieval.
+	 * <p>
+	 * An instance of <code>ComponentRequestCallback</code> can be used for only one component request call.
+	 */
+	public static class ComponentRequestCallback {
+		private CountDownLatch sync = new CountDownLatch(1);
+		/**
+		 * Called by ACS when all components have been processed,
+		 * to release the thread (if any) that blocks on {@link #awaitComponents(long, TimeUnit)}.
+		 */
+		final void callOver() {
+			sync.countDown();
+		}
+		/**
+		 * Called when the reference to a component has been retrieved.
+		 */
+		public void componentReceived(String curl, org.omg.CORBA.Object component) {}
+		/**
+		 * Called when the reference to a component could not be retrieved.
+		 */
+		public void errorComponentRequestFailed(String curl, AcsJContainerServicesEx ex) {}
+
+		/**
+		 * This is not a callback method but a convenience method to "park" the calling thread
+		 * until all requested components have been retrieved or have failed, or the given timeout has struck.
+		 *
+		 * @param timeout The maximum time to wait.
+		 * @param unit  The unit of <code>timeout</code>.
+		 * @return <code>true</code> if all components were processed, <code>false</code> if the call returns because of a timeout.
+		 *         See {@link CountDownLatch#await(long, TimeUnit)}.
+		 * @throws InterruptedException
+		 */
+		public final boolean awaitComponents(long timeout, TimeUnit unit) throws InterruptedException {
+			return sync.await(timeout, unit);
+		}
+	}
+
 	/**
 	 * Gets a non-sticky reference to a component.
 	 * This is typically used by "weak clients" such as graphical user interfaces that only want to observe the running system
@@ -26,14 +26,22 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import org.omg.CosNaming.NamingContext;
@@ -110,6 +118,9 @@ public class ContainerServicesImpl implements ContainerServices
 	public static final String PROPERTYNAME_FAKE_UID_FOR_TESTING = "acs.container.fakeUIDsForTesting";
 	private final boolean fakeUIDsForTesting = Boolean.getBoolean(PROPERTYNAME_FAKE_UID_FOR_TESTING);
 
+	/** max number of components that {@link #getComponents(String...)} requests from the manager at the same time (default 8) */
+	public static final String PROPERTYNAME_MAX_PARALLEL_COMPONENT_REQUESTS = "acs.container.maxParallelComponentRequests";
+
 	/**
 	 * Holds and re-establishes the connection to the manager, and encapsulates the handle given by the manager at login.
 	 */
@@ -157,6 +168,11 @@ public class ContainerServicesImpl implements ContainerServices
 	private final ComponentStateManager m_componentStateManager;
     private final ThreadFactory m_threadFactory;
 
+	/**
+	 * Thread pool for parallel component requests, created lazily by {@link #getComponentRequestExecutor()}.
+	 */
+	private ThreadPoolExecutor componentRequestExecutor;
+
     private volatile String[] methodsExcludedFromInvocationLogging;
 
     /**
@@ -562,8 +578,157 @@ public class ContainerServicesImpl implements ContainerServices
 
 		return stub;
 	}
-	
-	
+
+
+	/**
+	 * The manager offers no call to get several components at once,
+	 * which is why we call {@link #getComponent(String)} in parallel, from the threads of {@link #getComponentRequestExecutor()}.
+	 * @see alma.acs.container.ContainerServices#getComponents(String...)
+	 */
+	@Override
+	public ComponentRequestResult getComponents(String... curls) throws AcsJContainerServicesEx
+	{
+		checkComponentUrls(curls);
+
+		final ComponentRequestResult result = new ComponentRequestResult();
+		ComponentRequestCallback callback = new ComponentRequestCallback() {
+			public void componentReceived(String curl, org.omg.CORBA.Object component) {
+				result.addComponent(curl, component);
+			}
+			public void errorComponentRequestFailed(String curl, AcsJContainerServicesEx ex) {
+				result.addFailure(curl, ex);
+			}
+		};
+		getComponentsAsync(callback, curls);
+
+		try {
+			// the individual get_component calls are subject to the ORB timeouts
+			callback.awaitComponents(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			AcsJContainerServicesEx ex2 = new AcsJContainerServicesEx(ex);
+			ex2.setContextInfo("Interrupted while waiting for components.");
+			throw ex2;
+		}
+		return result;
+	}
+
+
+	/**
+	 * @see alma.acs.container.ContainerServices#getComponentsAsync(alma.acs.container.ContainerServices.ComponentRequestCallback, String...)
+	 */
+	@Override
+	public void getComponentsAsync(final ComponentRequestCallback callback, String... curls)
+	{
+		if (callback == null) {
+			m_logger.info("No callback given to getComponentsAsync, thus no components will be requested.");
+			return;
+		}
+		try {
+			checkComponentUrls(curls);
+		} catch (AcsJContainerServicesEx ex) {
+			callback.errorComponentRequestFailed(null, ex);
+			callback.callOver();
+			return;
+		}
+
+		// already used components are resolved right away from m_usedComponentsMap
+		Set<String> pendingCurls = new LinkedHashSet<String>();
+		for (String curl : new LinkedHashSet<String>(Arrays.asList(curls))) {
+			if (m_usedComponentsMap.containsKey(curl)) {
+				processComponentRequest(curl, callback);
+			}
+			else {
+				pendingCurls.add(curl);
+			}
+		}
+
+		if (pendingCurls.isEmpty()) {
+			callback.callOver();
+			return;
+		}
+
+		m_logger.fine("will retrieve " + pendingCurls.size() + " remote components in parallel for client '" + m_clientName + "'.");
+		final AtomicInteger pendingCount = new AtomicInteger(pendingCurls.size());
+		ThreadPoolExecutor executor = getComponentRequestExecutor();
+		for (final String curl : pendingCurls) {
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						processComponentRequest(curl, callback);
+						if (pendingCount.decrementAndGet() == 0) {
+							callback.callOver();
+						}
+					}
+				});
+			} catch (RejectedExecutionException ex) {
+				AcsJContainerServicesEx ex2 = new AcsJContainerServicesEx(ex);
+				ex2.setContextInfo("Failed to schedule the retrieval of component " + curl);
+				callback.errorComponentRequestFailed(curl, ex2);
+				if (pendingCount.decrementAndGet() == 0) {
+					callback.callOver();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets one component for {@link #getComponentsAsync(ComponentRequestCallback, String...)}
+	 * and reports the result to the callback.
+	 */
+	private void processComponentRequest(String curl, ComponentRequestCallback callback) {
+		try {
+			org.omg.CORBA.Object stub = null;
+			try {
+				stub = getComponent(curl);
+			} catch (AcsJContainerServicesEx ex) {
+				callback.errorComponentRequestFailed(curl, ex);
+				return;
+			}
+			callback.componentReceived(curl, stub);
+		} catch (Throwable thr) {
+			// a failing user callback must not stop the other requests
+			m_logger.log(Level.WARNING, "Component request callback failed for component " + curl, thr);
+		}
+	}
+
+	/**
+	 * Checks that there are curls, and that none of them is <code>null</code>.
+	 */
+	private void checkComponentUrls(String[] curls) throws AcsJContainerServicesEx {
+		if (curls == null || curls.length == 0) {
+			AcsJBadParameterEx cause = new AcsJBadParameterEx();
+			cause.setParameter("curls");
+			cause.setParameterValue(curls == null ? "null" : "empty");
+			throw new AcsJContainerServicesEx(cause);
+		}
+		for (String curl : curls) {
+			if (curl == null) {
+				AcsJBadParameterEx cause = new AcsJBadParameterEx();
+				cause.setParameter("curl");
+				cause.setParameterValue("null");
+				throw new AcsJContainerServicesEx(cause);
+			}
+		}
+	}
+
+	/**
+	 * Creates on demand the thread pool used to retrieve components in parallel.
+	 * The number of threads is limited by the property {@link #PROPERTYNAME_MAX_PARALLEL_COMPONENT_REQUESTS};
+	 * idle threads terminate, so that the pool costs nothing for components that don't use it.
+	 */
+	private ThreadPoolExecutor getComponentRequestExecutor() {
+		synchronized (lazyCreationSync) {
+			if (componentRequestExecutor == null) {
+				int maxThreads = Math.max(1, Integer.getInteger(PROPERTYNAME_MAX_PARALLEL_COMPONENT_REQUESTS, 8).intValue());
+				componentRequestExecutor = new ThreadPoolExecutor(maxThreads, maxThreads,
+						30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+						(m_threadFactory != null ? m_threadFactory : Executors.defaultThreadFactory()));
+				componentRequestExecutor.allowCoreThreadTimeOut(true);
+			}
+			return componentRequestExecutor;
+		}
+	}
 
 
 	public org.omg.CORBA.Object getComponentNonSticky(String curl) 
@@ -1238,6 +1403,14 @@ public class ContainerServicesImpl implements ContainerServices
 	 * @since ACS 8.1.0
 	 */
 	public void cleanUp() {
+		/* Stop the threads used for parallel component requests */
+		synchronized (lazyCreationSync) {
+			if (componentRequestExecutor != null) {
+				componentRequestExecutor.shutdown();
+				componentRequestExecutor = null;
+			}
+		}
+
 		/* Cleanup through externally registered callbacks */
 		for (CleanUpCallback cleanUpCallback : cleanUpCallbacks) {
 			try {
@@ -153,6 +153,24 @@ public class ContainerServicesProxy implements ContainerServices
 		return delegate.getComponent(componentUrl);
 	}
 
+	/**
+	 * @see alma.acs.container.ContainerServices#getComponents(java.lang.String[])
+	 */
+	@Override
+	public ComponentRequestResult getComponents(String... componentUrls) throws AcsJContainerServicesEx {
+		check();
+		return delegate.getComponents(componentUrls);
+	}
+
+	/**
+	 * @see alma.acs.container.ContainerServices#getComponentsAsync(alma.acs.container.ContainerServices.ComponentRequestCallback, java.lang.String[])
+	 */
+	@Override
+	public void getComponentsAsync(ComponentRequestCallback callback, String... componentUrls) {
+		check();
+		delegate.getComponentsAsync(callback, componentUrls);
+	}
+
 	/**
 	 * @see alma.acs.container.ContainerServices#getComponentNonSticky(java.lang.String)
 	 */
@@ -149,6 +149,23 @@ public class DummyContainerServices extends DummyContainerServicesBase implement
 		throw new AcsJContainerServicesEx();
 	}
 
+	/**
+	 * @see alma.acs.container.ContainerServices#getComponents(java.lang.String[])
+	 */
+	@Override
+	public ComponentRequestResult getComponents(String... componentUrls) throws AcsJContainerServicesEx {
+		throw new AcsJContainerServicesEx();
+	}
+
+	/**
+	 * @throws UnsupportedOperationException  always, like {@link #getComponents(String...)} fails always.
+	 * @see alma.acs.container.ContainerServices#getComponentsAsync(alma.acs.container.ContainerServices.ComponentRequestCallback, java.lang.String[])
+	 */
+	@Override
+	public void getComponentsAsync(ComponentRequestCallback callback, String... componentUrls) {
+		throw new UnsupportedOperationException("DummyContainerServices cannot retrieve components.");
+	}
+
 	/**
 	 * @see alma.acs.container.ContainerServices#getComponentNonSticky(java.lang.String)
 	 */
@@ -26,6 +26,7 @@ import junit.framework.TestSuite;
 
 import alma.acs.container.CleaningThreadFactoryTest;
 import alma.acs.container.ComponentMapTest;
+import alma.acs.container.ContainerServicesImplTest;
 import alma.acs.container.archive.UIDLibraryTest;
 import alma.acs.container.corba.AcsCorbaTest;
 import alma.acs.container.corba.CorbaNullFinderTest;
@@ -49,6 +50,7 @@ public class SelfcontainedJUnitTestsJCONT
 		//$JUnit-BEGIN$
         suite.addTestSuite(CleaningThreadFactoryTest.class);
         suite.addTestSuite(ComponentMapTest.class);
+        suite.addTestSuite(ContainerServicesImplTest.class);
 		suite.addTestSuite(EntityRefFinderTest.class);
 		suite.addTestSuite(EntitySerializerTest.class);
 		suite.addTestSuite(AcsCorbaTest.class);
@@ -0,0 +1,179 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.container;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import alma.JavaContainerError.wrappers.AcsJContainerServicesEx;
+import alma.acs.container.ContainerServices.ComponentRequestCallback;
+import alma.acs.container.ContainerServices.ComponentRequestResult;
+import alma.acs.logging.AcsLogger;
+import alma.acs.logging.ClientLogManager;
+
+/**
+ * Tests {@link ContainerServicesImpl#getComponents(String...)} and 
+ * {@link ContainerServicesImpl#getComponentsAsync(ComponentRequestCallback, String...)}
+ * with a dummy <code>getComponent</code>, so that no ACS runtime environment is needed.
+ */
+public class ContainerServicesImplTest extends TestCase {
+
+	private AcsLogger logger;
+	private DummyContainerServicesImpl cs;
+
+	protected void setUp() throws Exception {
+		logger = ClientLogManager.getAcsLogManager().getLoggerForApplication(getName(), false);
+		cs = new DummyContainerServicesImpl(logger);
+	}
+
+	protected void tearDown() throws Exception {
+		cs.cleanUp();
+		ClientLogManager.getAcsLogManager().shutdown(true);
+	}
+
+	/**
+	 * Failed components are reported per curl, without affecting the other components.
+	 */
+	public void testPartialFailure() throws Exception {
+		ComponentRequestResult result = cs.getComponents("COMP_1", "BAD_1", "COMP_2", "COMP_1", "BAD_2");
+
+		assertEquals(2, result.getComponents().size());
+		assertNotNull(result.getComponent("COMP_1"));
+		assertNotNull(result.getComponent("COMP_2"));
+		assertNull(result.getFailure("COMP_1"));
+
+		assertTrue(result.hasFailures());
+		assertEquals(2, result.getFailures().size());
+		assertNotNull(result.getFailure("BAD_1"));
+		assertNotNull(result.getFailure("BAD_2"));
+		assertNull(result.getComponent("BAD_1"));
+
+		// duplicate curls are requested once
+		assertEquals(1, cs.getRequestCount("COMP_1"));
+	}
+
+	/**
+	 * Components are requested in parallel, and the callback is released also if some requests fail.
+	 */
+	public void testAsyncPartialFailure() throws Exception {
+		// the good components can only be retrieved together
+		cs.barrier = new CyclicBarrier(3);
+		
+		final Map<String, org.omg.CORBA.Object> components = new HashMap<String, org.omg.CORBA.Object>();
+		final Map<String, AcsJContainerServicesEx> failures = new HashMap<String, AcsJContainerServicesEx>();
+		ComponentRequestCallback callback = new ComponentRequestCallback() {
+			public synchronized void componentReceived(String curl, org.omg.CORBA.Object component) {
+				components.put(curl, component);
+			}
+			public synchronized void errorComponentRequestFailed(String curl, AcsJContainerServicesEx ex) {
+				failures.put(curl, ex);
+			}
+		};
+		cs.getComponentsAsync(callback, "COMP_1", "COMP_2", "BAD_1", "COMP_3");
+		assertTrue(callback.awaitComponents(30, TimeUnit.SECONDS));
+
+		synchronized (callback) {
+			assertEquals(3, components.size());
+			assertEquals(1, failures.size());
+			assertTrue(failures.containsKey("BAD_1"));
+		}
+	}
+
+	/**
+	 * Missing or <code>null</code> curls are rejected.
+	 */
+	public void testInvalidCurls() throws Exception {
+		try {
+			cs.getComponents();
+			fail("AcsJContainerServicesEx expected");
+		} catch (AcsJContainerServicesEx ex) {
+			// expected
+		}
+		try {
+			cs.getComponents("COMP_1", null);
+			fail("AcsJContainerServicesEx expected");
+		} catch (AcsJContainerServicesEx ex) {
+			// expected
+		}
+		assertEquals(0, cs.getRequestCount("COMP_1"));
+
+		final AcsJContainerServicesEx[] failure = new AcsJContainerServicesEx[1];
+		ComponentRequestCallback callback = new ComponentRequestCallback() {
+			public void errorComponentRequestFailed(String curl, AcsJContainerServicesEx ex) {
+				failure[0] = ex;
+			}
+		};
+		cs.getComponentsAsync(callback, (String) null);
+		assertTrue(callback.awaitComponents(0, TimeUnit.SECONDS));
+		assertNotNull(failure[0]);
+	}
+
+
+	/**
+	 * Retrieves components whose curl does not start with "BAD" (without a manager), and counts the requests.
+	 */
+	private static class DummyContainerServicesImpl extends ContainerServicesImpl {
+		private final Map<String, Integer> requestCounts = new HashMap<String, Integer>();
+		volatile CyclicBarrier barrier;
+
+		DummyContainerServicesImpl(AcsLogger logger) {
+			super(null, null, null, null, logger, 0, "DummyClient", null, null);
+		}
+
+		public org.omg.CORBA.Object getComponent(String curl) throws AcsJContainerServicesEx {
+			synchronized (requestCounts) {
+				Integer count = requestCounts.get(curl);
+				requestCounts.put(curl, count == null ? 1 : count + 1);
+			}
+			if (curl.startsWith("BAD")) {
+				AcsJContainerServicesEx ex = new AcsJContainerServicesEx();
+				ex.setContextInfo("Failed to retrieve component " + curl);
+				throw ex;
+			}
+			if (barrier != null) {
+				try {
+					barrier.await(30, TimeUnit.SECONDS);
+				} catch (Exception ex) {
+					throw new AcsJContainerServicesEx(ex);
+				}
+			}
+			return new DummyComponentStub();
+		}
+
+		int getRequestCount(String curl) {
+			synchronized (requestCounts) {
+				Integer count = requestCounts.get(curl);
+				return (count == null ? 0 : count.intValue());
+			}
+		}
+	}
+
+	private static class DummyComponentStub extends org.omg.CORBA.portable.ObjectImpl {
+		public String[] _ids() {
+			return new String[] {"IDL:alma/ACS/ACSComponent:1.0"};
+		}
+	}
+}
@@ -0,0 +1,446 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.engine.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import alma.acs.logging.engine.parser.ACSLogParser;
+import alma.acs.logging.engine.parser.ACSLogParserFactory;
+
+import com.cosylab.logging.engine.ACS.ACSRemoteErrorListener;
+import com.cosylab.logging.engine.ACS.ACSRemoteLogListener;
+import com.cosylab.logging.engine.ACS.ACSRemoteRawLogListener;
+import com.cosylab.logging.engine.log.ILogEntry;
+
+/**
+ * <code>BlockLogLoader</code> loads the logs from a <code>Reader</code> 
+ * for the {@link IOHelper}.
+ * <P>
+ * The loading is a pipeline:
+ * <OL>
+ * 	<LI>the chars are read in blocks of {@link #BLOCK_SIZE} chars 
+ * 		(compressed files are decompressed by a {@link DecompressingReader} in its own thread)
+ * 	<LI>the {@link LogBlockScanner} finds the boundaries of the records in each block
+ * 		and the records are grouped in chunks of about {@link #CHUNK_SIZE} chars
+ * 	<LI>the chunks are parsed and matched against the constraints of the {@link IOHelper}
+ * 		by the threads of a <code>ForkJoinPool</code>
+ * 	<LI>the results are sent to the listeners by the thread that called 
+ * 		{@link #load(Reader, ACSRemoteLogListener, ACSRemoteRawLogListener, ACSRemoteErrorListener, IOPorgressListener)} 
+ * 		in the same order the records have in the file
+ * </OL>
+ * The number of chunks waiting to be sent to the listeners is limited
+ * so that loading a huge file does not fill the memory.
+ */
+class BlockLogLoader {
+	
+	/**
+	 * The number of chars read from the reader in each block
+	 */
+	public static final int BLOCK_SIZE = 1<<20;
+	
+	/**
+	 * The (approximate) number of chars of the records parsed by each task
+	 */
+	public static final int CHUNK_SIZE = 1<<17;
+	
+	/**
+	 * The max number of chunks for each thread of the pool
+	 * waiting to be sent to the listeners
+	 */
+	private static final int PENDING_CHUNKS_PER_THREAD = 4;
+	
+	/**
+	 * A <code>Reader</code> that reads ahead the chars from another reader in a separate thread.
+	 * <P>
+	 * It is used to decompress the files in a stage of the pipeline of its own,
+	 * in parallel with the scanning and parsing of the logs.
+	 */
+	static class DecompressingReader extends Reader implements Runnable {
+		
+		/**
+		 * The max number of blocks read ahead
+		 */
+		private static final int QUEUE_SIZE = 4;
+		
+		/**
+		 * The marker of the end of the stream in the queue
+		 */
+		private static final char[] EOF = new char[0];
+		
+		/**
+		 * The reader to read chars from
+		 */
+		private final Reader in;
+		
+		/**
+		 * The blocks read by the thread
+		 */
+		private final BlockingQueue<char[]> queue = new ArrayBlockingQueue<char[]>(QUEUE_SIZE);
+		
+		/**
+		 * The error reading from {@link #in}, if any
+		 */
+		private volatile IOException error=null;
+		
+		/**
+		 * The thread reading from {@link #in}
+		 */
+		private final Thread thread;
+		
+		/**
+		 * The block in use and the position of the next char to return
+		 */
+		private char[] current=null;
+		private int currentPos=0;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param in The reader to read chars from (for example a reader of a <code>GZIPInputStream</code>)
+		 */
+		public DecompressingReader(Reader in) {
+			if (in==null) {
+				throw new IllegalArgumentException("The reader can't be null");
+			}
+			this.in=in;
+			thread = new Thread(this,"DecompressingReader");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		/**
+		 * The thread reading blocks from {@link #in}
+		 */
+		public void run() {
+			try {
+				boolean eof=false;
+				while (!eof) {
+					char[] block = new char[BLOCK_SIZE];
+					int n=0;
+					while (n<block.length) {
+						int r=in.read(block, n, block.length-n);
+						if (r<0) {
+							eof=true;
+							break;
+						}
+						n+=r;
+					}
+					if (n>0) {
+						if (n<block.length) {
+							char[] temp = new char[n];
+							System.arraycopy(block, 0, temp, 0, n);
+							block=temp;
+						}
+						queue.put(block);
+					}
+				}
+			} catch (IOException ioe) {
+				error=ioe;
+			} catch (InterruptedException ie) {
+				// Closed
+				return;
+			}
+			try {
+				queue.put(EOF);
+			} catch (InterruptedException ie) {}
+		}
+		
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (len==0) {
+				return 0;
+			}
+			if (current==null || (currentPos==current.length && current!=EOF)) {
+				try {
+					current=queue.take();
+				} catch (InterruptedException ie) {
+					throw new IOException("Interrupted while reading", ie);
+				}
+				currentPos=0;
+			}
+			if (current==EOF) {
+				if (error!=null) {
+					throw error;
+				}
+				return -1;
+			}
+			int n=Math.min(len, current.length-currentPos);
+			System.arraycopy(current, currentPos, cbuf, off, n);
+			currentPos+=n;
+			return n;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			thread.interrupt();
+			in.close();
+		}
+	}
+	
+	/**
+	 * The task to parse a chunk of records
+	 */
+	private class ParseTask extends RecursiveAction {
+		
+		/**
+		 * The chars of the block containing the records
+		 */
+		private final char[] buf;
+		
+		/**
+		 * The boundaries of the records in {@link #buf}
+		 */
+		private final int[] starts;
+		private final int[] ends;
+		
+		/**
+		 * The number of chars read from the reader until the end of the last record of the chunk
+		 */
+		public final long charsRead;
+		
+		/**
+		 * The XML of the records
+		 */
+		public final String[] xmls;
+		
+		/**
+		 * The parsed logs (<code>null</code> if the log does not match
+		 * or it was not possible to parse it)
+		 */
+		public final ILogEntry[] logs;
+		
+		/**
+		 * The errors parsing the logs (<code>null</code> if there was no error)
+		 */
+		public final Exception[] errors;
+		
+		public ParseTask(char[] buf, int[] starts, int[] ends, long charsRead) {
+			this.buf=buf;
+			this.starts=starts;
+			this.ends=ends;
+			this.charsRead=charsRead;
+			xmls = new String[starts.length];
+			logs = new ILogEntry[starts.length];
+			errors = new Exception[starts.length];
+		}
+		
+		@Override
+		protected void compute() {
+			ACSLogParser parser=null;
+			for (int t=0; t<starts.length; t++) {
+				xmls[t]=new String(buf, starts[t], ends[t]-starts[t]).trim();
+				if (!parseLogs) {
+					continue;
+				}
+				try {
+					if (parser==null) {
+						parser=getParser();
+					}
+					ILogEntry log = parser.parse(xmls[t]);
+					if (ioHelper.match(log)) {
+						logs[t]=log;
+					}
+				} catch (Exception e) {
+					errors[t]=e;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The helper whose constraints are checked against the logs
+	 */
+	private final IOHelper ioHelper;
+	
+	/**
+	 * The parser of each thread of the pool
+	 */
+	private final ThreadLocal<ACSLogParser> parsers = new ThreadLocal<ACSLogParser>();
+	
+	/**
+	 * <code>true</code> if the logs must be parsed i.e.
+	 * if there is a listener of parsed logs
+	 */
+	private volatile boolean parseLogs;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ioHelper The helper whose constraints are checked against the logs
+	 */
+	public BlockLogLoader(IOHelper ioHelper) {
+		if (ioHelper==null) {
+			throw new IllegalArgumentException("The IOHelper can't be null");
+		}
+		this.ioHelper=ioHelper;
+	}
+	
+	/**
+	 * @return The parser of the current thread
+	 * @throws Exception In case of error building the parser
+	 */
+	private ACSLogParser getParser() throws Exception {
+		ACSLogParser parser = parsers.get();
+		if (parser==null) {
+			parser=ACSLogParserFactory.getNewParser();
+			parsers.set(parser);
+		}
+		return parser;
+	}
+	
+	/**
+	 * Load the logs from the given reader.
+	 * <P>
+	 * The load terminates when all the chars have been read or when
+	 * {@link IOHelper#stopIO()} is called.
+	 * 
+	 * @param reader The reader to read logs from
+	 * @param logListener The callback for each new log read from the IO
+	 * @param rawLogListener The callback for each new XML log read from the IO
+	 * @param errorListener The listener for errors
+	 * @param progressListener The listener to be notified about the chars read
+	 * @return The number of records read
+	 * @throws IOException In case of an IO error while reading
+	 */
+	public int load(
+			Reader reader,
+			ACSRemoteLogListener logListener,
+			ACSRemoteRawLogListener rawLogListener,
+			ACSRemoteErrorListener errorListener, 
+			IOPorgressListener progressListener) throws IOException {
+		parseLogs=logListener!=null;
+		ForkJoinPool pool = new ForkJoinPool();
+		int maxPendingChunks = PENDING_CHUNKS_PER_THREAD*pool.getParallelism();
+		LinkedList<ParseTask> pending = new LinkedList<ParseTask>();
+		LogBlockScanner scanner = new LogBlockScanner();
+		LogBlockScanner.Records records = new LogBlockScanner.Records();
+		int recordsRead=0;
+		try {
+			// The chars of the last block not yet assigned to a record
+			char[] carry = new char[0];
+			// The number of chars read before the beginning of the current block
+			long base=0;
+			boolean eof=false;
+			while (!eof && !ioHelper.stopped) {
+				char[] buf = new char[carry.length+BLOCK_SIZE];
+				System.arraycopy(carry, 0, buf, 0, carry.length);
+				int len=carry.length;
+				while (len<buf.length) {
+					int r=reader.read(buf, len, buf.length-len);
+					if (r<0) {
+						eof=true;
+						break;
+					}
+					len+=r;
+				}
+				records.clear();
+				int restart=scanner.scan(buf, 0, len, records);
+				
+				// Split the records in chunks and submit the chunks to the pool
+				int first=0;
+				while (first<records.size()) {
+					int last=first;
+					while (last+1<records.size() && records.getEnd(last+1)-records.getStart(first)<=CHUNK_SIZE) {
+						last++;
+					}
+					int[] starts = new int[last-first+1];
+					int[] ends = new int[last-first+1];
+					for (int t=first; t<=last; t++) {
+						starts[t-first]=records.getStart(t);
+						ends[t-first]=records.getEnd(t);
+					}
+					ParseTask task = new ParseTask(buf, starts, ends, base+ends[ends.length-1]);
+					pool.execute(task);
+					pending.add(task);
+					first=last+1;
+					
+					while (pending.size()>=maxPendingChunks && !ioHelper.stopped) {
+						recordsRead=publish(pending.removeFirst(), recordsRead, logListener, rawLogListener, errorListener, progressListener);
+					}
+				}
+				// Publish the chunks already parsed
+				while (!pending.isEmpty() && pending.getFirst().isDone() && !ioHelper.stopped) {
+					recordsRead=publish(pending.removeFirst(), recordsRead, logListener, rawLogListener, errorListener, progressListener);
+				}
+				
+				carry = new char[len-restart];
+				System.arraycopy(buf, restart, carry, 0, carry.length);
+				base+=restart;
+			}
+			while (!pending.isEmpty() && !ioHelper.stopped) {
+				recordsRead=publish(pending.removeFirst(), recordsRead, logListener, rawLogListener, errorListener, progressListener);
+			}
+		} finally {
+			for (ForkJoinTask<?> task: pending) {
+				task.cancel(false);
+			}
+			pool.shutdown();
+		}
+		return recordsRead;
+	}
+	
+	/**
+	 * Send the records of a chunk to the listeners.
+	 * <P>
+	 * This method waits until the chunk has been parsed.
+	 * 
+	 * @param task The chunk
+	 * @param recordsRead The number of records read before the chunk
+	 * @return The number of records read including those of the chunk
+	 */
+	private int publish(
+			ParseTask task,
+			int recordsRead,
+			ACSRemoteLogListener logListener,
+			ACSRemoteRawLogListener rawLogListener,
+			ACSRemoteErrorListener errorListener, 
+			IOPorgressListener progressListener) {
+		task.join();
+		for (int t=0; t<task.xmls.length; t++) {
+			recordsRead++;
+			if (logListener!=null) {
+				if (task.errors[t]!=null) {
+					errorListener.errorReceived(task.xmls[t]);
+					System.err.println("Exception parsing a log: "+task.errors[t].getMessage()+" ["+task.xmls[t]+"]");
+					task.errors[t].printStackTrace(System.err);
+					continue;
+				}
+				if (task.logs[t]!=null) {
+					logListener.logEntryReceived(task.logs[t]);
+				}
+			}
+			if (rawLogListener!=null) {
+				rawLogListener.xmlEntryReceived(task.xmls[t]);
+			}
+		}
+		progressListener.bytesRead(task.charsRead);
+		progressListener.logsRead(recordsRead);
+		return recordsRead;
+	}
+}
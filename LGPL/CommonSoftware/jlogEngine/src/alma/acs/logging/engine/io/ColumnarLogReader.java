@@ -0,0 +1,237 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.engine.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Vector;
+
+import com.cosylab.logging.engine.log.CompactLogEntry;
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
+import com.cosylab.logging.engine.log.LogField;
+
+/**
+ * Read the logs written by {@link ColumnarLogWriter}.
+ * <P>
+ * The logs are read one block at a time and returned as {@link CompactLogEntry}.
+ * <P>
+ * This class is not thread safe.
+ */
+public class ColumnarLogReader {
+	
+	/**
+	 * A stream that counts the bytes read
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		
+		long count=0;
+		
+		public CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int ret=super.read();
+			if (ret>=0) {
+				count++;
+			}
+			return ret;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int ret=super.read(b, off, len);
+			if (ret>0) {
+				count+=ret;
+			}
+			return ret;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long ret=super.skip(n);
+			count+=ret;
+			return ret;
+		}
+	}
+	
+	/**
+	 * The size of the buffer of the input stream
+	 */
+	private static final int INPUT_BUFFER_SIZE = 1<<16;
+	
+	/**
+	 * The stream to count the bytes read
+	 */
+	private final CountingInputStream counter;
+	
+	/**
+	 * The stream to read the logs from
+	 */
+	private final DataInputStream in;
+	
+	/**
+	 * <code>true</code> when the end of the logs has been reached
+	 */
+	private boolean eof=false;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param inStream The stream to read the logs from
+	 * @throws IOException If the stream does not contain logs in columnar format
+	 */
+	public ColumnarLogReader(InputStream inStream) throws IOException {
+		if (inStream==null) {
+			throw new IllegalArgumentException("The input stream can't be null");
+		}
+		counter = new CountingInputStream(inStream);
+		in = new DataInputStream(new BufferedInputStream(counter, INPUT_BUFFER_SIZE));
+		if (in.readInt()!=ColumnarLogWriter.MAGIC) {
+			throw new IOException("Not a file of logs in columnar format");
+		}
+		int version = in.readInt();
+		if (version!=ColumnarLogWriter.VERSION) {
+			throw new IOException("Unsupported version "+version+" of the columnar format");
+		}
+	}
+	
+	/**
+	 * Read the next block of logs.
+	 * 
+	 * @return The logs of the block in the order they were written
+	 * 			or <code>null</code> if there are no more logs to read
+	 * @throws IOException In case of error reading the logs
+	 */
+	public ILogEntry[] readBlock() throws IOException {
+		if (eof) {
+			return null;
+		}
+		int size=in.readInt();
+		if (size<=0) {
+			eof=true;
+			return null;
+		}
+		String[] strings = new String[in.readInt()];
+		byte[] bytes = new byte[256];
+		for (int t=0; t<strings.length; t++) {
+			int len=in.readInt();
+			if (len>bytes.length) {
+				bytes=new byte[Math.max(len, 2*bytes.length)];
+			}
+			in.readFully(bytes, 0, len);
+			strings[t]=new String(bytes, 0, len, ColumnarLogWriter.UTF8);
+		}
+		LogField[] fields = LogField.values();
+		long[] dates = new long[size];
+		byte[] types = new byte[size];
+		int[][] columns = new int[fields.length][];
+		for (LogField field: fields) {
+			if (field==LogField.TIMESTAMP) {
+				for (int t=0; t<size; t++) {
+					dates[t]=in.readLong();
+				}
+			} else if (field==LogField.ENTRYTYPE) {
+				in.readFully(types);
+			} else {
+				int[] column = new int[size];
+				for (int t=0; t<size; t++) {
+					column[t]=in.readInt();
+				}
+				columns[field.ordinal()]=column;
+			}
+		}
+		int[] numOfData = new int[size];
+		for (int t=0; t<size; t++) {
+			numOfData[t]=in.readInt();
+		}
+		ILogEntry[] logs = new ILogEntry[size];
+		for (int t=0; t<size; t++) {
+			Vector<AdditionalData> datas=null;
+			if (numOfData[t]>0) {
+				datas = new Vector<AdditionalData>(numOfData[t]);
+				for (int d=0; d<numOfData[t]; d++) {
+					String name = decode(strings, in.readInt());
+					String value = decode(strings, in.readInt());
+					datas.add(new AdditionalData(name, value));
+				}
+			}
+			logs[t] = new CompactLogEntry(
+					(dates[t]==ColumnarLogWriter.NULL_LONG)?null:Long.valueOf(dates[t]),
+					Integer.valueOf(types[t]),
+					decode(strings, columns[LogField.FILE.ordinal()][t]),
+					toInteger(columns[LogField.LINE.ordinal()][t]),
+					decode(strings, columns[LogField.ROUTINE.ordinal()][t]),
+					decode(strings, columns[LogField.HOST.ordinal()][t]),
+					decode(strings, columns[LogField.PROCESS.ordinal()][t]),
+					decode(strings, columns[LogField.CONTEXT.ordinal()][t]),
+					decode(strings, columns[LogField.THREAD.ordinal()][t]),
+					decode(strings, columns[LogField.LOGID.ordinal()][t]),
+					toInteger(columns[LogField.PRIORITY.ordinal()][t]),
+					decode(strings, columns[LogField.URI.ordinal()][t]),
+					decode(strings, columns[LogField.STACKID.ordinal()][t]),
+					toInteger(columns[LogField.STACKLEVEL.ordinal()][t]),
+					decode(strings, columns[LogField.LOGMESSAGE.ordinal()][t]),
+					decode(strings, columns[LogField.SOURCEOBJECT.ordinal()][t]),
+					decode(strings, columns[LogField.AUDIENCE.ordinal()][t]),
+					decode(strings, columns[LogField.ARRAY.ordinal()][t]),
+					decode(strings, columns[LogField.ANTENNA.ordinal()][t]),
+					datas);
+		}
+		return logs;
+	}
+	
+	/**
+	 * @return The number of bytes read from the stream
+	 */
+	public long getBytesRead() {
+		return counter.count;
+	}
+	
+	/**
+	 * Close the stream
+	 * 
+	 * @throws IOException In case of error closing the stream
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+	
+	private static String decode(String[] strings, int code) throws IOException {
+		if (code==ColumnarLogWriter.NULL_CODE) {
+			return null;
+		}
+		if (code<0 || code>=strings.length) {
+			throw new IOException("Invalid string code "+code);
+		}
+		return strings[code];
+	}
+	
+	private static Integer toInteger(int value) {
+		return (value==ColumnarLogWriter.NULL_INT)?null:Integer.valueOf(value);
+	}
+}
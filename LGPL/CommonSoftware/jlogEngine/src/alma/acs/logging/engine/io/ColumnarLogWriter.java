@@ -0,0 +1,333 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.engine.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
+import com.cosylab.logging.engine.log.LogField;
+
+/**
+ * Write logs in a binary columnar format that can be read back 
+ * by {@link ColumnarLogReader} much faster than parsing XML.
+ * <P>
+ * The logs are written in blocks of up to {@link #BLOCK_SIZE} logs.
+ * In each block the values of a field of all the logs are written
+ * together (i.e. a column) so that fields that assume few distinct values
+ * like the host or the process compress well.
+ * The strings of a block are written only once in a dictionary at the
+ * beginning of the block and the columns contain their codes.
+ * <P>
+ * The format of the file is:
+ * <UL>
+ * 	<LI>{@link #MAGIC} (<code>int</code>) and {@link #VERSION} (<code>int</code>)
+ * 	<LI>the blocks, each of them composed of
+ * 	<UL>
+ * 		<LI>the number of logs <code>N</code> in the block (<code>int</code>)
+ * 		<LI>the size of the dictionary followed by the strings 
+ * 			(length of the UTF-8 encoding as <code>int</code> and the bytes)
+ * 		<LI>one column per each {@link LogField} in the order of the enum:
+ * 			<code>N long</code> for the timestamp, <code>N byte</code> for the type, 
+ * 			<code>N int</code> for the other fields (the value for integer fields
+ * 			or the code of the string in the dictionary)
+ * 		<LI>the number of additional data of each log (<code>N int</code>)
+ * 			followed by the codes of the names and values of all the additional data
+ * 	</UL>
+ * 	<LI>a block with no logs that marks the end of the file
+ * </UL>
+ * <code>null</code> values are written as {@link #NULL_LONG}, {@link #NULL_INT}
+ * or {@link #NULL_CODE}.
+ * <P>
+ * This class is not thread safe.
+ */
+public class ColumnarLogWriter {
+	
+	/**
+	 * The extension of the files of logs in columnar format
+	 */
+	public static final String FILE_EXTENSION = ".bin";
+	
+	/**
+	 * The magic number at the beginning of the file ("JLGC")
+	 */
+	public static final int MAGIC = 0x4A4C4743;
+	
+	/**
+	 * The version of the format
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * The max number of logs in a block
+	 */
+	public static final int BLOCK_SIZE = 8192;
+	
+	/**
+	 * The value written for <code>null</code> timestamps
+	 */
+	public static final long NULL_LONG = Long.MIN_VALUE;
+	
+	/**
+	 * The value written for <code>null</code> integer fields
+	 */
+	public static final int NULL_INT = Integer.MIN_VALUE;
+	
+	/**
+	 * The code of the <code>null</code> strings
+	 */
+	public static final int NULL_CODE = -1;
+	
+	/**
+	 * The charset to encode the strings
+	 */
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/**
+	 * The size of the buffer of the output stream
+	 */
+	private static final int OUTPUT_BUFFER_SIZE = 1<<16;
+	
+	/**
+	 * The stream to write the logs into
+	 */
+	private final DataOutputStream out;
+	
+	/**
+	 * The logs of the block not yet written
+	 */
+	private final ILogEntry[] block = new ILogEntry[BLOCK_SIZE];
+	
+	/**
+	 * The number of logs in {@link #block}
+	 */
+	private int blockSize=0;
+	
+	/**
+	 * The dictionary of the strings of the block
+	 */
+	private final HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+	
+	/**
+	 * The strings of the dictionary in the order of their codes
+	 */
+	private final Vector<String> strings = new Vector<String>();
+	
+	/**
+	 * The number of logs written
+	 */
+	private int logsWritten=0;
+	
+	/**
+	 * <code>true</code> if the writer has been closed
+	 */
+	private boolean closed=false;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param outStream The stream to write the logs into
+	 * @throws IOException In case of error writing the header
+	 */
+	public ColumnarLogWriter(OutputStream outStream) throws IOException {
+		if (outStream==null) {
+			throw new IllegalArgumentException("The output stream can't be null");
+		}
+		out = new DataOutputStream(new BufferedOutputStream(outStream, OUTPUT_BUFFER_SIZE));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+	
+	/**
+	 * Write a log.
+	 * <P>
+	 * The log is effectively written when the block is full or
+	 * when the writer is flushed or closed.
+	 * 
+	 * @param log The log to write
+	 * @throws IOException In case of error writing the block
+	 */
+	public void write(ILogEntry log) throws IOException {
+		if (log==null) {
+			throw new IllegalArgumentException("The log can't be null");
+		}
+		if (closed) {
+			throw new IllegalStateException("The writer has been closed");
+		}
+		block[blockSize++]=log;
+		if (blockSize==BLOCK_SIZE) {
+			writeBlock();
+		}
+	}
+	
+	/**
+	 * Write the logs not yet written and flush the stream
+	 * 
+	 * @throws IOException In case of error writing the logs
+	 */
+	public void flush() throws IOException {
+		if (blockSize>0) {
+			writeBlock();
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Write the logs not yet written, terminate the file and close the stream.
+	 * 
+	 * @throws IOException In case of error writing the logs
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed=true;
+		try {
+			if (blockSize>0) {
+				writeBlock();
+			}
+			out.writeInt(0);
+			out.flush();
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * @return The number of logs written 
+	 */
+	public int getLogsWritten() {
+		return logsWritten;
+	}
+	
+	/**
+	 * Return the code of a string, adding the string to the dictionary
+	 * of the block if not already present.
+	 */
+	private int encode(String str) {
+		if (str==null) {
+			return NULL_CODE;
+		}
+		Integer code = dictionary.get(str);
+		if (code==null) {
+			code=Integer.valueOf(strings.size());
+			dictionary.put(str, code);
+			strings.add(str);
+		}
+		return code.intValue();
+	}
+	
+	/**
+	 * Write the logs in {@link #block}
+	 */
+	private void writeBlock() throws IOException {
+		LogField[] fields = LogField.values();
+		// Build the dictionary and the columns before writing
+		int[][] columns = new int[fields.length][];
+		int[] numOfData = new int[blockSize];
+		int totData=0;
+		for (LogField field: fields) {
+			if (field==LogField.TIMESTAMP || field==LogField.ENTRYTYPE) {
+				continue;
+			}
+			int[] column = new int[blockSize];
+			boolean isString=field.getType()==String.class;
+			for (int t=0; t<blockSize; t++) {
+				Object value = block[t].getField(field);
+				if (isString) {
+					column[t]=encode((String)value);
+				} else {
+					column[t]=(value==null)?NULL_INT:((Integer)value).intValue();
+				}
+			}
+			columns[field.ordinal()]=column;
+		}
+		List<Vector<AdditionalData>> datas = new ArrayList<Vector<AdditionalData>>(blockSize);
+		for (int t=0; t<blockSize; t++) {
+			Vector<AdditionalData> logDatas=null;
+			if (block[t].hasDatas()) {
+				logDatas=block[t].getAdditionalData();
+				numOfData[t]=logDatas.size();
+				totData+=numOfData[t];
+			}
+			datas.add(logDatas);
+		}
+		int[] dataCodes = new int[2*totData];
+		int pos=0;
+		for (int t=0; t<blockSize; t++) {
+			if (datas.get(t)!=null) {
+				for (AdditionalData data: datas.get(t)) {
+					dataCodes[pos++]=encode(data.name);
+					dataCodes[pos++]=encode(data.value);
+				}
+			}
+		}
+		
+		// Write the block
+		out.writeInt(blockSize);
+		out.writeInt(strings.size());
+		for (String str: strings) {
+			byte[] bytes = str.getBytes(UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		for (LogField field: fields) {
+			if (field==LogField.TIMESTAMP) {
+				for (int t=0; t<blockSize; t++) {
+					Long date = (Long)block[t].getField(LogField.TIMESTAMP);
+					out.writeLong((date==null)?NULL_LONG:date.longValue());
+				}
+			} else if (field==LogField.ENTRYTYPE) {
+				for (int t=0; t<blockSize; t++) {
+					out.writeByte(block[t].getType().ordinal());
+				}
+			} else {
+				int[] column = columns[field.ordinal()];
+				for (int t=0; t<blockSize; t++) {
+					out.writeInt(column[t]);
+				}
+			}
+		}
+		for (int t=0; t<blockSize; t++) {
+			out.writeInt(numOfData[t]);
+		}
+		for (int code: dataCodes) {
+			out.writeInt(code);
+		}
+		
+		logsWritten+=blockSize;
+		for (int t=0; t<blockSize; t++) {
+			block[t]=null;
+		}
+		blockSize=0;
+		dictionary.clear();
+		strings.clear();
+	}
+}
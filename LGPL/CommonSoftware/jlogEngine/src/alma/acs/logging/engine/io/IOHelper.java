@@ -32,13 +32,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
-import alma.acs.logging.engine.parser.ACSLogParser;
 import alma.acs.logging.engine.parser.ACSLogParserFactory;
 import alma.acs.util.StopWatch;
 
@@ -131,7 +131,8 @@ public class IOHelper extends LogMatcher {
 	 * @throws Exception In case of errors building the parser
 	 */
 	public IOHelper() throws Exception {
-		parser=ACSLogParserFactory.getParser();
+		// Fail early if the parser can't be built
+		ACSLogParserFactory.getParser();
 	}
 	
 	/**
@@ -139,48 +140,15 @@ public class IOHelper extends LogMatcher {
 	 */
 	public static final int DEFAULT_COMPRESSION_LEVEL = 5;
 	
-	/** 
-	 * Signal that a load or a save must be stopped
-	 */
-	protected volatile boolean stopped=false;
-	
 	/**
-	 * The parser
+	 * The size of the buffer of the <code>GZIPInputStream</code> while loading files
 	 */
-	private final ACSLogParser parser;
+	private static final int GZIP_BUFFER_SIZE = 1<<16;
 	
-	/**
-	 * Inject the log into the engine 
-	 * 
-	 * @param logStr The string representation of the log
-	 * @param logListener The listener i.e. the callback for each new log to add
+	/** 
+	 * Signal that a load or a save must be stopped
 	 */
-	private void injectLog (
-			StringBuilder logStr, 
-			ACSRemoteLogListener logListener, 
-			ACSRemoteRawLogListener rawLogListener,
-			ACSRemoteErrorListener errorListener) {
-		if (errorListener==null || (logListener==null && rawLogListener==null)) {
-			throw new IllegalArgumentException("Listeners can't be null");
-		}
-		if (logListener!=null) {
-			ILogEntry log=null;
-			try {
-				log = parser.parse(logStr.toString().trim());
-			} catch (Exception e) {
-				errorListener.errorReceived(logStr.toString().trim());
-				System.err.println("Exception parsing a log: "+e.getMessage()+" ["+logStr+"]");
-				e.printStackTrace(System.err);
-				return;
-			}
-			if (match(log)) {
-				logListener.logEntryReceived(log);
-			}
-		}
-		if (rawLogListener!=null) {
-			rawLogListener.xmlEntryReceived(logStr.toString().trim());
-		}
-	}
+	protected volatile boolean stopped=false;
 	
 	/**
 	 * Load the logs from the file with the given name.
@@ -213,14 +181,19 @@ public class IOHelper extends LogMatcher {
 		}
 		File f = new File(fileName);
 		InputStream inStream = new FileInputStream(f);
-		BufferedReader reader;
+		Reader reader;
 		if (gzip) {
-			InputStreamReader inStreamReader= new InputStreamReader(new GZIPInputStream(inStream));
-			reader = new BufferedReader(inStreamReader);
+			// Decompress in a separate thread
+			reader = new BlockLogLoader.DecompressingReader(
+					new InputStreamReader(new GZIPInputStream(inStream, GZIP_BUFFER_SIZE)));
 		} else {
-			reader = new BufferedReader(new InputStreamReader(inStream));
+			reader = new InputStreamReader(inStream);
+		}
+		try {
+			loadLogs(reader, logListener, rawLogListener, errorListener,progressListener);
+		} finally {
+			reader.close();
 		}
-		loadLogs(reader, logListener, rawLogListener, errorListener,progressListener);
 		return f.length();
 	}
 	
@@ -230,12 +203,14 @@ public class IOHelper extends LogMatcher {
 	 * The logs are sent to the <code>ACSRemoteLogListener</code> and /or
 	 * to the <code>ACSRemoteRawLogListener</code>.
 	 * <P>
-	 * The file can be compressed (GZIP) or plain.
-	 * Compressed file names must terminate with <I>.gz</I> while
-	 * plain XML file names must end with <I>.xml</I>.
+	 * The file can be compressed (GZIP), plain or in the binary columnar format 
+	 * written by {@link ColumnarLogWriter}.
+	 * Compressed file names must terminate with <I>.gz</I>,
+	 * plain XML file names must end with <I>.xml</I> and the names of
+	 * the files in columnar format with {@link ColumnarLogWriter#FILE_EXTENSION}.
 	 *  
 	 * @param fileName The name of the file to read logs from.
-	 * 					<code>fileName</code> must terminate with .gz or .xml (case insensitive)
+	 * 					<code>fileName</code> must terminate with .gz, .xml or .bin (case insensitive)
 	 * @param logListener The callback for each new log read from the IO
 	 * @param rawLogListener The callback for each new XML log read from the IO
 	 * @param errorListener The listener for errors
@@ -251,12 +226,77 @@ public class IOHelper extends LogMatcher {
 			ACSRemoteErrorListener errorListener, 
 			IOPorgressListener progressListener) throws IOException, Exception {
 		String name = fileName.toLowerCase();
+		if (name.endsWith(ColumnarLogWriter.FILE_EXTENSION)) {
+			return loadColumnarLogs(fileName, logListener, rawLogListener, errorListener, progressListener);
+		}
 		if (!name.endsWith(".gz") && !name.endsWith(".xml")) {
-			throw new IllegalArgumentException("File name must end with .gz or .xml");
+			throw new IllegalArgumentException("File name must end with .gz, .xml or "+ColumnarLogWriter.FILE_EXTENSION);
 		}
 		return loadLogs(fileName, logListener, rawLogListener, errorListener, progressListener,name.endsWith(".gz")); 
 	}
 	
+	/**
+	 * Load the logs from a file written in columnar format by {@link ColumnarLogWriter}.
+	 * <P>
+	 * The logs are sent to the <code>ACSRemoteLogListener</code> and /or
+	 * to the <code>ACSRemoteRawLogListener</code> (as XML).
+	 *  
+	 * @param fileName The name of the file to read logs from
+	 * @param logListener The callback for each new log read from the IO
+	 * @param rawLogListener The callback for each new XML log read from the IO
+	 * @param errorListener The listener for errors
+	 * @param progressListener The listener to be notified about the bytes read
+	 * @return The length of the file to read
+	 * @throws IOException In case of an IO error while reading the file
+	 */
+	public synchronized long loadColumnarLogs(
+			String fileName,
+			ACSRemoteLogListener logListener,
+			ACSRemoteRawLogListener rawLogListener,
+			ACSRemoteErrorListener errorListener, 
+			IOPorgressListener progressListener) throws IOException {
+		if (fileName==null || fileName.isEmpty()) {
+			throw new IllegalArgumentException("Invalid file name: "+fileName);
+		}
+		if (errorListener==null) {
+			throw new IllegalArgumentException("Parameters can't be null");
+		}
+		if (logListener==null && rawLogListener==null) {
+			throw new IllegalArgumentException("No log listeners defined");
+		}
+		if (progressListener==null) {
+			throw new IllegalArgumentException("The progress listener can't be null");
+		}
+		File f = new File(fileName);
+		stopped=false;
+		StopWatch stopWatch = new StopWatch();
+		int logRecordsRead=0;
+		ColumnarLogReader reader = new ColumnarLogReader(new FileInputStream(f));
+		try {
+			ILogEntry[] logs;
+			while (!stopped && (logs=reader.readBlock())!=null) {
+				for (ILogEntry log: logs) {
+					if (logListener!=null && match(log)) {
+						logListener.logEntryReceived(log);
+					}
+					// Like for the XML files, the raw listener receives 
+					// all the logs, also those discarded by the filters
+					if (rawLogListener!=null) {
+						rawLogListener.xmlEntryReceived(log.toXMLString());
+					}
+				}
+				logRecordsRead+=logs.length;
+				progressListener.bytesRead(reader.getBytesRead());
+				progressListener.logsRead(logRecordsRead);
+			}
+		} finally {
+			reader.close();
+		}
+		System.out.println("Columnar log record import finished with " + logRecordsRead + " records in " + 
+				stopWatch.getLapTimeMillis()/1000 + " seconds.");
+		return f.length();
+	}
+	
 	/**
 	 * Load the logs from the given <code>BufferedReader</code>.
 	 * <P>
@@ -277,6 +317,30 @@ public class IOHelper extends LogMatcher {
 			ACSRemoteRawLogListener rawLogListener,
 			ACSRemoteErrorListener errorListener, 
 			IOPorgressListener progressListener) throws IOException {
+		loadLogs((Reader)reader, logListener, rawLogListener, errorListener, progressListener);
+	}
+	
+	/**
+	 * Load the logs from the given <code>Reader</code>.
+	 * <P>
+	 * The reader is read in big blocks and the logs are parsed in parallel
+	 * by a {@link BlockLogLoader}; the listeners are notified in the same order 
+	 * the logs have in the reader, by the thread that executes this method.
+	 *  
+	 * @param reader The reader to read logs from
+	 * @param logListener The callback for each new log read from the IO
+	 * @param rawLogListener The callback for each new XML log read from the IO
+	 * @param errorListener The listener for errors
+	 * @param progressListener The listener to be notified about the bytes read
+	 * 
+	 * @throws IOException In case of an IO error while reading the file
+	 */
+	private void loadLogs(
+			Reader reader,
+			ACSRemoteLogListener logListener,
+			ACSRemoteRawLogListener rawLogListener,
+			ACSRemoteErrorListener errorListener, 
+			IOPorgressListener progressListener) throws IOException {
 		if (reader==null || errorListener==null) {
 			throw new IllegalArgumentException("Parameters can't be null");
 		}
@@ -286,78 +350,9 @@ public class IOHelper extends LogMatcher {
 		if (progressListener==null) {
 			throw new IllegalArgumentException("The progress listener can't be null");
 		}
-		
 		stopped=false;
-		
-		// The "clever" buffer
-		LogStringBuffer buffer = new LogStringBuffer();
-		
-		// Read one char per iteration
-		int chRead;
-		
-		// Count the bytes read
-		int bytesRead=0;
-		
-		int logRecordsRead = 0;
-		
-		// Here the buffer writes the XML of each log
-		StringBuilder xmlStr = new StringBuilder();
-		
-		/**
-		 * The size of the buffer
-		 */
-		final int size=16384;
-		
-		/** 
-		 * The buffer of data read from the file
-		 */
-		char[] buf =new char[size];
-		
-		/**
-		 * The cursor to scan the buffer (circular)
-		 */
-		int actualPos=-1;
-		
-		/**
-		 * When it is 0, then we have to read another block from the file
-		 */
-		int bytesInBuffer=0;
-		
 		StopWatch stopWatch = new StopWatch();
-		
-		// This thread is very CPU demanding so we want to give other
-		// threads a chance to run too...
-		int yelder=0;
-		
-		while (true && !stopped) {
-			// Read a block from the file if the buffer is empty
-			if (bytesInBuffer==0) {
-				bytesInBuffer = reader.read(buf,0,size);
-			}
-			if (bytesInBuffer<=0) { // EOF
-				break;
-			}
-			bytesInBuffer--;
-			actualPos=(actualPos+1)%size;
-			chRead=buf[actualPos];
-			
-			bytesRead++;
-			buffer.append((char)chRead,xmlStr);
-			if (xmlStr.length()>0) {
-				// A new log has been found
-				injectLog(xmlStr,logListener, rawLogListener, errorListener);
-				logRecordsRead++;
-				xmlStr.delete(0, xmlStr.length());
-				progressListener.bytesRead(bytesRead);
-				if (logRecordsRead%25==0) {
-					progressListener.logsRead(logRecordsRead);
-				}
-			}
-			yelder=(yelder++)%5000;
-			if (yelder==0) {
-				Thread.yield();
-			}
-		}
+		int logRecordsRead = new BlockLogLoader(this).load(reader, logListener, rawLogListener, errorListener, progressListener);
 		System.out.println("XML log record import finished with " + logRecordsRead + " records in " + 
 					stopWatch.getLapTimeMillis()/1000 + " seconds.");
 	}
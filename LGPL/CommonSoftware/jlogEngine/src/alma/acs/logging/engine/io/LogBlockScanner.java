@@ -0,0 +1,272 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.engine.io;
+
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * <code>LogBlockScanner</code> finds the boundaries of the XML log records 
+ * in a block of chars read from a file.
+ * <P>
+ * Differently from {@link LogStringBuffer} that checks each char,
+ * the scanner looks for the '<' char with a tight loop over the array
+ * and checks the tags only at those positions:
+ * <UL>
+ * 	<LI>outside of a record, it looks for the opening tag of a log type (like <code>&lt;Info</code>)
+ * 	<LI>the start tag of a record terminates at the first '>' that is not in an attribute value;
+ * 		if the start tag is closed by "/>" then the record terminates there
+ * 	<LI>inside a record, it looks for the closing tag of the log type 
+ * 		(like <code>&lt;/Info&gt;</code>) skipping the CDATA sections
+ * </UL>
+ * The scanner has no state: if the block terminates in the middle of a record,
+ * {@link #scan(char[], int, int, Records)} returns the position where the record begins
+ * and the caller scans it again when more chars are available.
+ */
+public class LogBlockScanner {
+	
+	/**
+	 * The boundaries of the records found by the scanner.
+	 * <P>
+	 * The record <code>n</code> begins at <code>getStart(n)</code> (inclusive) 
+	 * and ends at <code>getEnd(n)</code> (exclusive).
+	 */
+	public static class Records {
+		private int[] starts = new int[1024];
+		private int[] ends = new int[1024];
+		private int size=0;
+		
+		void add(int start, int end) {
+			if (size==starts.length) {
+				int[] newStarts = new int[size*2];
+				int[] newEnds = new int[size*2];
+				System.arraycopy(starts, 0, newStarts, 0, size);
+				System.arraycopy(ends, 0, newEnds, 0, size);
+				starts=newStarts;
+				ends=newEnds;
+			}
+			starts[size]=start;
+			ends[size++]=end;
+		}
+		
+		public int getStart(int n) {
+			return starts[n];
+		}
+		
+		public int getEnd(int n) {
+			return ends[n];
+		}
+		
+		public int size() {
+			return size;
+		}
+		
+		public void clear() {
+			size=0;
+		}
+	}
+	
+	/**
+	 * The opening tags of the log types (like <code>&lt;Info</code>) 
+	 * in the order of {@link LogTypeHelper}
+	 */
+	private final char[][] openingTags;
+	
+	/**
+	 * The closing tags of the log types (like <code>&lt;/Info&gt;</code>)
+	 * in the order of {@link LogTypeHelper}
+	 */
+	private final char[][] closingTags;
+	
+	/**
+	 * The length of the longest opening tag plus the following delimiter
+	 */
+	private final int maxOpeningTagLength;
+	
+	/**
+	 * The begin of a CDATA section
+	 */
+	private static final char[] CDATA_START = "<![CDATA[".toCharArray();
+	
+	/**
+	 * The end of a CDATA section
+	 */
+	private static final char[] CDATA_END = "]]>".toCharArray();
+	
+	/**
+	 * Constructor
+	 */
+	public LogBlockScanner() {
+		LogTypeHelper[] types = LogTypeHelper.values();
+		openingTags = new char[types.length][];
+		closingTags = new char[types.length][];
+		int max=0;
+		for (int t=0; t<types.length; t++) {
+			openingTags[t]=("<"+types[t].logEntryType).toCharArray();
+			closingTags[t]=("</"+types[t].logEntryType+">").toCharArray();
+			max=Math.max(max, openingTags[t].length+1);
+		}
+		maxOpeningTagLength=max;
+	}
+	
+	/**
+	 * Look for the records in <code>buf[from,to[</code>.
+	 * 
+	 * @param buf The chars to scan
+	 * @param from The position of the first char to scan
+	 * @param to The position after the last char to scan
+	 * @param records The boundaries of the records found in the buffer are appended here
+	 * @return The position of the first char not belonging to a record already found 
+	 * 			that the next scan must start from: it is <code>to</code> if there 
+	 * 			is no record in progress at the end of the buffer
+	 */
+	public int scan(char[] buf, int from, int to, Records records) {
+		int pos=from;
+		while (true) {
+			int start=indexOf(buf, '<', pos, to);
+			if (start<0) {
+				return to;
+			}
+			if (to-start<maxOpeningTagLength) {
+				// Not enough chars to recognize the tag
+				return start;
+			}
+			int type=lookForOpeningTag(buf, start);
+			if (type<0) {
+				pos=start+1;
+				continue;
+			}
+			// Look for the end of the start tag
+			int p=start+openingTags[type].length;
+			char quote=0;
+			for (; p<to; p++) {
+				char c=buf[p];
+				if (quote!=0) {
+					if (c==quote) {
+						quote=0;
+					}
+				} else if (c=='"' || c=='\'') {
+					quote=c;
+				} else if (c=='>') {
+					break;
+				}
+			}
+			if (p>=to) {
+				return start;
+			}
+			if (buf[p-1]=='/') {
+				// Empty element
+				records.add(start, p+1);
+				pos=p+1;
+				continue;
+			}
+			// Look for the closing tag
+			char[] closingTag=closingTags[type];
+			int end=-1;
+			p++;
+			while (end<0) {
+				int q=indexOf(buf, '<', p, to);
+				if (q<0) {
+					return start;
+				}
+				boolean canClose=to-q>=closingTag.length;
+				boolean canBeCDATA=to-q>=CDATA_START.length;
+				if (canClose && startsWith(buf, q, closingTag)) {
+					end=q+closingTag.length;
+				} else if (canBeCDATA && startsWith(buf, q, CDATA_START)) {
+					int cdataEnd=indexOf(buf, CDATA_END, q+CDATA_START.length, to);
+					if (cdataEnd<0) {
+						return start;
+					}
+					p=cdataEnd+CDATA_END.length;
+				} else if (!canClose || !canBeCDATA) {
+					// Not enough chars to recognize the tag
+					return start;
+				} else {
+					p=q+1;
+				}
+			}
+			records.add(start, end);
+			pos=end;
+		}
+	}
+	
+	/**
+	 * @return The position of the first <code>ch</code> in <code>buf[from,to[</code>
+	 * 			or -1 if not found
+	 */
+	private static int indexOf(char[] buf, char ch, int from, int to) {
+		for (int t=from; t<to; t++) {
+			if (buf[t]==ch) {
+				return t;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return The position of the first occurrence of <code>str</code> 
+	 * 			in <code>buf[from,to[</code> or -1 if not found
+	 */
+	private static int indexOf(char[] buf, char[] str, int from, int to) {
+		int last=to-str.length;
+		for (int t=indexOf(buf, str[0], from, to); t>=0 && t<=last; t=indexOf(buf, str[0], t+1, to)) {
+			if (startsWith(buf, t, str)) {
+				return t;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return <code>true</code> if the chars of <code>buf</code> starting at <code>pos</code>
+	 * 			are those of <code>str</code>; the caller ensures that <code>buf</code>
+	 * 			contains enough chars
+	 */
+	private static boolean startsWith(char[] buf, int pos, char[] str) {
+		for (int t=0; t<str.length; t++) {
+			if (buf[pos+t]!=str[t]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Check if there is the opening tag of a log at the given position.
+	 * <P>
+	 * The name of the tag must be followed by a space, '>' or '/' 
+	 * 
+	 * @return The ordinal of the {@link LogTypeHelper} of the log 
+	 * 			or -1 if there is no opening tag at the given position
+	 */
+	private int lookForOpeningTag(char[] buf, int pos) {
+		for (int t=0; t<openingTags.length; t++) {
+			if (startsWith(buf, pos, openingTags[t])) {
+				char next=buf[pos+openingTags[t].length];
+				if (Character.isWhitespace(next) || next=='>' || next=='/') {
+					return t;
+				}
+			}
+		}
+		return -1;
+	}
+}
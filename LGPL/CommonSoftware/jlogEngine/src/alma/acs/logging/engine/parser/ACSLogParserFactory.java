@@ -101,6 +101,25 @@ public class ACSLogParserFactory {
 		return parser;
 	}
 	
+	/**
+	 * Get a new parser of the same type of the parser returned by <code>getParser()</code>.
+	 * <P>
+	 * The parsers are not thread safe: this method allows to parse logs
+	 * concurrently by giving each thread its own parser.
+	 * Differently from <code>getParser(ParserTypes)</code>, the parser in use 
+	 * is not changed.
+	 * 
+	 * @return A new parser
+	 * @throws <code>Exception</code> in case of error building the parser
+	 */
+	public static synchronized ACSLogParser getNewParser() throws Exception {
+		ParserTypes type = getParserType(getParser());
+		if (type==ParserTypes.VTD) {
+			return new ACSLogParserVTD();
+		}
+		return new ACSLogParserDOM();
+	}
+	
 	/**
 	 * Get a parser of the given type.
 	 * <P>
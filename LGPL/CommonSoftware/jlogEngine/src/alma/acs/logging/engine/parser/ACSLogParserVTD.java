@@ -34,7 +34,7 @@ import alma.acs.util.XmlNormalizer;
 
 import com.cosylab.logging.engine.ACS.LogParseException;
 import com.cosylab.logging.engine.log.ILogEntry;
-import com.cosylab.logging.engine.log.LogEntry;
+import com.cosylab.logging.engine.log.CompactLogEntry;
 import com.cosylab.logging.engine.log.LogField;
 import com.cosylab.logging.engine.log.LogTypeHelper;
 import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
@@ -399,7 +399,7 @@ public class ACSLogParserVTD implements ACSLogParser {
 		if (xmlString==null || xmlString.length()==0) {
 			throw new IllegalArgumentException("Invalid string to parse");
 		}
-		LogEntry retVal = null; 
+		ILogEntry retVal = null; 
 		byte[] bytesArray = xmlString.getBytes();	
 		try {
 			try {
@@ -454,10 +454,10 @@ public class ACSLogParserVTD implements ACSLogParser {
 	 * @return A LogEntry populated with the data for the log entry contained in the XML string passed in.
 	 * @throws LogParseException if the parsing fails
 	 */
-	private LogEntry makeLogEntryFromParsedXML(byte[] bytesArray, String xmlString) throws LogParseException
+	private ILogEntry makeLogEntryFromParsedXML(byte[] bytesArray, String xmlString) throws LogParseException
 	{
 		// TODO: this method, though relatively simple, is a bit long; consider making it shorter
-		LogEntry retVal = null;
+		ILogEntry retVal = null;
 		Object vtdNav;
 		try 
 		{
@@ -619,7 +619,7 @@ public class ACSLogParserVTD implements ACSLogParser {
 						
 				}
 				
-				retVal = new LogEntry(milliseconds,	entryType.ordinal(), fileName,
+				retVal = new CompactLogEntry(milliseconds,	entryType.ordinal(), fileName,
 						line, routineName, hostName, processName,
 						contextName, threadName, logId, priority,
 						uri, stackId, stackLevel, logMessage, srcObjectName,
@@ -27,7 +27,7 @@ import java.util.Vector;
 
 import com.cosylab.logging.engine.LogEngineException;
 import com.cosylab.logging.engine.log.ILogEntry;
-import com.cosylab.logging.engine.log.LogEntry;
+import com.cosylab.logging.engine.log.CompactLogEntry;
 import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
 import com.cosylab.logging.engine.log.LogField;
 
@@ -147,7 +147,7 @@ public class CacheUtils {
         		addDatas.add(new AdditionalData(strs[t],strs[t+1]));
         	}
         }
-        return new LogEntry(
+        return new CompactLogEntry(
         		millis,
         		entrytype,
         		fileNM,
@@ -0,0 +1,435 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package com.cosylab.logging.engine;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * A set of filters compiled into a single predicate to apply to the logs.
+ * <P>
+ * Each {@link Filter} is translated into a clause specialized for the type
+ * of the field and the constraint:
+ * <UL>
+ * 	<LI>ranges and exact values of timestamps and integer fields are compared
+ * 		as primitives without calling <code>compareTo</code>
+ * 	<LI>log levels are compared by their ordinal
+ * 	<LI>regular expressions reuse the pattern compiled by the {@link RegExpFilter}
+ * </UL>
+ * Filters that do not fit in any of the specialized clauses are applied
+ * by delegating to {@link Filter#applyTo(ILogEntry, boolean)}.
+ * <P>
+ * The clauses are in AND and the evaluation stops at the first clause rejecting the log.
+ * For that reason the clauses are periodically reordered by the number of logs
+ * they rejected and by their cost so that cheap and selective clauses are evaluated first.
+ * <P>
+ * Filters applied in circumstances different from those of the predicate
+ * (i.e. lethal filters at GUI level or non lethal filters at engine level)
+ * always pass and are not compiled at all.
+ * <P>
+ * {@link #matches(ILogEntry)} can be called concurrently by several threads:
+ * the statistics used to reorder the clauses are not synchronized and can be 
+ * slightly inaccurate but this never affects the result of the filtering.
+ */
+public class CompiledFilters {
+
+	/**
+	 * The clauses are reordered after this number of evaluations
+	 */
+	public static final int REORDER_INTERVAL = 4096;
+
+	/**
+	 * A clause of the predicate built from a filter.
+	 * <P>
+	 * The NOT policy and <code>null</code> fields are managed here
+	 * like the filters do: a log with a <code>null</code> field never
+	 * passes the clause, not even if the NOT policy is applied.
+	 */
+	private static abstract class Clause {
+
+		/**
+		 * The filter this clause has been built from
+		 */
+		final Filter filter;
+
+		/**
+		 * The field to check
+		 */
+		final LogField field;
+
+		/**
+		 * The NOT policy
+		 */
+		final boolean not;
+
+		/**
+		 * The relative cost of evaluating the clause
+		 */
+		final int cost;
+
+		/**
+		 * The number of times the clause has been evaluated
+		 */
+		int evaluations=0;
+
+		/**
+		 * The number of logs rejected by the clause
+		 */
+		int rejections=0;
+
+		Clause(Filter filter, int cost) {
+			this.filter=filter;
+			this.field=filter.getField();
+			this.not=filter.notPolicyApplyed();
+			this.cost=cost;
+		}
+
+		/**
+		 * Check the (not <code>null</code>) value of the field
+		 * without applying the NOT policy.
+		 */
+		abstract boolean test(Object value);
+
+		/**
+		 * @return The value of the field of the log to check
+		 */
+		Object valueOf(ILogEntry log) {
+			return log.getField(field);
+		}
+
+		boolean matches(ILogEntry log) {
+			Object value = valueOf(log);
+			if (value==null) {
+				return false;
+			}
+			return test(value)!=not;
+		}
+	}
+
+	/**
+	 * A range of a <code>Long</code> field (i.e. the timestamp)
+	 */
+	private static class LongRangeClause extends Clause {
+		final long min;
+		final long max;
+
+		LongRangeClause(Filter filter, long min, long max) {
+			super(filter, 2);
+			this.min=min;
+			this.max=max;
+		}
+
+		@Override
+		boolean test(Object value) {
+			long val=((Long)value).longValue();
+			return val>=min && val<=max;
+		}
+	}
+
+	/**
+	 * A range of an <code>Integer</code> field (i.e. the line or the priority)
+	 */
+	private static class IntRangeClause extends Clause {
+		final int min;
+		final int max;
+
+		IntRangeClause(Filter filter, int min, int max) {
+			super(filter, 2);
+			this.min=min;
+			this.max=max;
+		}
+
+		@Override
+		boolean test(Object value) {
+			int val=((Integer)value).intValue();
+			return val>=min && val<=max;
+		}
+	}
+
+	/**
+	 * A range of log levels compared by their ordinal
+	 */
+	private static class LevelRangeClause extends Clause {
+		final int min;
+		final int max;
+
+		LevelRangeClause(Filter filter, int min, int max) {
+			super(filter, 1);
+			this.min=min;
+			this.max=max;
+		}
+
+		@Override
+		Object valueOf(ILogEntry log) {
+			return log.getType();
+		}
+
+		@Override
+		boolean test(Object value) {
+			int val=((LogTypeHelper)value).ordinal();
+			return val>=min && val<=max;
+		}
+	}
+
+	/**
+	 * The exact value of a <code>String</code> field
+	 */
+	private static class StringExactClause extends Clause {
+		final String exact;
+
+		StringExactClause(Filter filter, String exact) {
+			super(filter, 4);
+			this.exact=exact;
+		}
+
+		@Override
+		boolean test(Object value) {
+			return exact.equals(value);
+		}
+	}
+
+	/**
+	 * A regular expression
+	 */
+	private static class RegExpClause extends Clause {
+		final Pattern pattern;
+
+		RegExpClause(RegExpFilter filter) {
+			super(filter, 20);
+			this.pattern=filter.getPattern();
+		}
+
+		@Override
+		boolean test(Object value) {
+			return pattern.matcher((String)value).matches();
+		}
+	}
+
+	/**
+	 * The clause for the filters that have no specialized clause:
+	 * the log is checked by the filter itself.
+	 */
+	private static class FilterClause extends Clause {
+		final boolean lethalCircumstances;
+
+		FilterClause(Filter filter, boolean lethalCircumstances) {
+			super(filter, 10);
+			this.lethalCircumstances=lethalCircumstances;
+		}
+
+		@Override
+		boolean test(Object value) {
+			throw new IllegalStateException("FilterClause delegates to the filter");
+		}
+
+		@Override
+		boolean matches(ILogEntry log) {
+			return filter.applyTo(log, lethalCircumstances);
+		}
+	}
+
+	/**
+	 * The clauses in the order they are evaluated.
+	 * <P>
+	 * The array is replaced (never modified) when the clauses are reordered.
+	 */
+	private volatile Clause[] clauses;
+
+	/**
+	 * The number of evaluations since the last reordering
+	 */
+	private int evaluations=0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param filters The filters to compile (can be <code>null</code> or empty)
+	 * @param lethalCircumstances <code>true</code> if the predicate is applied
+	 * 			at engine level (lethal filters), <code>false</code> if applied at GUI level 
+	 */
+	public CompiledFilters(Filter[] filters, boolean lethalCircumstances) {
+		ArrayList<Clause> temp = new ArrayList<Clause>();
+		if (filters!=null) {
+			for (Filter f: filters) {
+				if (f==null) {
+					throw new IllegalArgumentException("Invalid null filter");
+				}
+				if (f.getIsLethal()!=lethalCircumstances) {
+					// Always passes
+					continue;
+				}
+				temp.add(compile(f, lethalCircumstances));
+			}
+		}
+		clauses=temp.toArray(new Clause[temp.size()]);
+	}
+
+	/**
+	 * Build the clause for the passed filter
+	 *
+	 * @param f The filter to compile
+	 * @param lethalCircumstances The circumstances the filter is applied
+	 * @return The clause for the filter
+	 */
+	private static Clause compile(Filter f, boolean lethalCircumstances) {
+		if (f instanceof RegExpFilter) {
+			return new RegExpClause((RegExpFilter)f);
+		}
+		Class<?> fieldClass = f.getField().getType();
+		if (f instanceof ExactFilter) {
+			Object exact = ((ExactFilter)f).getExact();
+			if (f.getField()==LogField.ENTRYTYPE && exact instanceof LogTypeHelper) {
+				int ordinal=((LogTypeHelper)exact).ordinal();
+				return new LevelRangeClause(f, ordinal, ordinal);
+			}
+			if (fieldClass==Long.class && exact instanceof Long) {
+				long val=((Long)exact).longValue();
+				return new LongRangeClause(f, val, val);
+			}
+			if (fieldClass==Integer.class && exact instanceof Integer) {
+				int val=((Integer)exact).intValue();
+				return new IntRangeClause(f, val, val);
+			}
+			if (fieldClass==String.class && exact instanceof String) {
+				return new StringExactClause(f, (String)exact);
+			}
+		} else if (f instanceof MinMaxFilter) {
+			Object min = ((MinMaxFilter)f).getMinimum();
+			Object max = ((MinMaxFilter)f).getMaximum();
+			if (f.getField()==LogField.ENTRYTYPE 
+					&& (min==null || min instanceof LogTypeHelper)
+					&& (max==null || max instanceof LogTypeHelper)) {
+				return new LevelRangeClause(
+						f, 
+						(min==null)?Integer.MIN_VALUE:((LogTypeHelper)min).ordinal(),
+						(max==null)?Integer.MAX_VALUE:((LogTypeHelper)max).ordinal());
+			}
+			if (fieldClass==Long.class 
+					&& (min==null || min instanceof Long)
+					&& (max==null || max instanceof Long)) {
+				return new LongRangeClause(
+						f, 
+						(min==null)?Long.MIN_VALUE:((Long)min).longValue(),
+						(max==null)?Long.MAX_VALUE:((Long)max).longValue());
+			}
+			if (fieldClass==Integer.class 
+					&& (min==null || min instanceof Integer)
+					&& (max==null || max instanceof Integer)) {
+				return new IntRangeClause(
+						f, 
+						(min==null)?Integer.MIN_VALUE:((Integer)min).intValue(),
+						(max==null)?Integer.MAX_VALUE:((Integer)max).intValue());
+			}
+		}
+		return new FilterClause(f, lethalCircumstances);
+	}
+
+	/**
+	 * Check if a log matches with all the compiled filters
+	 *
+	 * @param log The log to check
+	 * @return <code>true</code> if the log passes all the filters
+	 */
+	public boolean matches(ILogEntry log) {
+		Clause[] temp=clauses;
+		if (temp.length==0) {
+			return true;
+		}
+		if (++evaluations>=REORDER_INTERVAL) {
+			evaluations=0;
+			reorder();
+		}
+		for (Clause clause: temp) {
+			clause.evaluations++;
+			if (!clause.matches(log)) {
+				clause.rejections++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sort the clauses so that the cheapest and most selective
+	 * are evaluated first.
+	 * <P>
+	 * The rank of each clause is the expected cost to reject a log
+	 * i.e. the cost of the clause divided by the rate of rejected logs.
+	 * <P>
+	 * The statistics are halved after sorting to follow changes
+	 * in the stream of logs.
+	 */
+	private synchronized void reorder() {
+		Clause[] temp=clauses.clone();
+		if (temp.length<2) {
+			return;
+		}
+		// Take a snapshot of the ranks: the statistics
+		// can be updated while sorting
+		double[] ranks = new double[temp.length];
+		for (int t=0; t<temp.length; t++) {
+			int evals=temp[t].evaluations;
+			int rejs=temp[t].rejections;
+			ranks[t]=temp[t].cost*(evals+1.0)/(rejs+1.0);
+			temp[t].evaluations=evals/2;
+			temp[t].rejections=rejs/2;
+		}
+		// Insertion sort: there are only a few clauses
+		for (int t=1; t<temp.length; t++) {
+			Clause c = temp[t];
+			double rank=ranks[t];
+			int j=t-1;
+			while (j>=0 && ranks[j]>rank) {
+				temp[j+1]=temp[j];
+				ranks[j+1]=ranks[j];
+				j--;
+			}
+			temp[j+1]=c;
+			ranks[j+1]=rank;
+		}
+		clauses=temp;
+	}
+
+	/**
+	 * @return The filters in the order they are currently evaluated
+	 */
+	public Filter[] getFilters() {
+		Clause[] temp=clauses;
+		Filter[] ret = new Filter[temp.length];
+		for (int t=0; t<temp.length; t++) {
+			ret[t]=temp[t].filter;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return <code>true</code> if there are no filters to apply 
+	 * 			i.e. all the logs match
+	 */
+	public boolean isEmpty() {
+		return clauses.length==0;
+	}
+}
@@ -60,6 +60,37 @@ public class FiltersVector extends Vector<Filter> {
 	// The vector of the active filters
 	// It contains the indexes (int) of the active filters
 	private Vector<Integer> activeFilters= new Vector<Integer>();
+	
+	/**
+	 * The active filters compiled in a single predicate.
+	 * <P>
+	 * It is built by {@link #getCompiledFilters()} when needed and rebuilt
+	 * when the filters or the active filters change.
+	 * <P>
+	 * It is accessed only while holding the lock of the vector.
+	 */
+	private transient CompiledFilters compiledFilters=null;
+	
+	/**
+	 * The <code>modCount</code> of the vector when {@link #compiledFilters} 
+	 * has been built
+	 */
+	private transient int compiledModCount;
+	
+	/**
+	 * The version of the filters, increased by {@link #filtersChanged()} 
+	 * every time a filter is replaced or the active filters change 
+	 * (the <code>modCount</code> of the vector does not track such changes).
+	 * <P>
+	 * It is accessed only while holding the lock of the vector.
+	 */
+	private transient int filtersVersion=0;
+	
+	/**
+	 * The {@link #filtersVersion} when {@link #compiledFilters} 
+	 * has been built
+	 */
+	private transient int compiledVersion;
 
 	/**
 	 * Constructor 
@@ -76,12 +107,13 @@ public class FiltersVector extends Vector<Filter> {
 	 * @param f The filter to add
 	 * @param active true if the filter is active
 	 */
-	public void addFilter(Filter f, boolean active) {
+	public synchronized void addFilter(Filter f, boolean active) {
 		if (f==null) {
 			throw new IllegalArgumentException("Invalid null filter");
 		}
 		add(f);
 		if (active) activeFilters.add(new Integer(size()-1));
+		filtersChanged();
 	}
 	
 	/**
@@ -91,7 +123,7 @@ public class FiltersVector extends Vector<Filter> {
 	 * @param filters The array of filters to add
 	 * @param active The array of active filters
 	 */
-	public void setFilters(Filter[] f, boolean[] active) {
+	public synchronized void setFilters(Filter[] f, boolean[] active) {
 		if (f.length !=  active.length) {
 			throw new IllegalArgumentException("The size of filters and active differ");
 		}
@@ -103,6 +135,7 @@ public class FiltersVector extends Vector<Filter> {
 				activeFilters.add(new Integer(i));
 			} 
 		}
+		filtersChanged();
 	}
 	
 	/**
@@ -111,7 +144,7 @@ public class FiltersVector extends Vector<Filter> {
 	 * 
 	 * @param flts The vector of filters
 	 */
-	public void setFilters(FiltersVector flts) {
+	public synchronized void setFilters(FiltersVector flts) {
 		if (flts==null) {
 			throw new IllegalArgumentException("Invalid null filters vector");
 		}
@@ -125,12 +158,12 @@ public class FiltersVector extends Vector<Filter> {
 			add(f);
 		}
 		int[] activesIdx=flts.getAppliedFiltersIndexes();
-		if (activesIdx==null) {
-			return;
-		}
-		for (int t=0; t<activesIdx.length; t++) {
-			activeFilters.add(activesIdx[t]);
+		if (activesIdx!=null) {
+			for (int t=0; t<activesIdx.length; t++) {
+				activeFilters.add(activesIdx[t]);
+			}
 		}
+		filtersChanged();
 	}
 
 	/**
@@ -138,7 +171,7 @@ public class FiltersVector extends Vector<Filter> {
 	 * 
 	 * @return The array of the indexes of the active filters
 	 */
-	public int[] getAppliedFiltersIndexes() {
+	public synchronized int[] getAppliedFiltersIndexes() {
 		if (activeFilters.size()==0) {
 			// No active filters
 			return null;
@@ -170,19 +203,61 @@ public class FiltersVector extends Vector<Filter> {
 	}
 	
 	/**
-	 * Apply the (active) filters to a log
+	 * Apply the (active) filters to a log.
+	 * <P>
+	 * The active filters are applied by means of the {@link CompiledFilters}
+	 * returned by {@link #getCompiledFilters()}.
 	 * 
 	 * @param log The log to check 
 	 * @return true if the log pass all the active filters check
 	 */
 	public boolean applyFilters(ILogEntry log) {
-		boolean testPassed=activeFilters.size()>=0;
-		
-		// Check the log against all the active Filters (if any)
-		for (int t=0; t<activeFilters.size() && testPassed; t++) {
-			testPassed=(get(activeFilters.get(t).intValue())).applyTo(log, false);
+		return getCompiledFilters().matches(log);
+	}
+	
+	/**
+	 * Return the active filters compiled in a single predicate to apply
+	 * at GUI level (i.e. not lethal).
+	 * <P>
+	 * The predicate is built once and reused until the filters in the vector change.
+	 * 
+	 * @return The compiled active filters
+	 */
+	public synchronized CompiledFilters getCompiledFilters() {
+		if (compiledFilters==null || compiledModCount!=modCount || compiledVersion!=filtersVersion) {
+			Filter[] actives = new Filter[activeFilters.size()];
+			for (int t=0; t<actives.length; t++) {
+				actives[t]=get(activeFilters.get(t).intValue());
+			}
+			compiledFilters = new CompiledFilters(actives, false);
+			compiledModCount=modCount;
+			compiledVersion=filtersVersion;
 		}
-		return testPassed;
+		return compiledFilters;
+	}
+	
+	/**
+	 * Signal that the filters or the active filters changed
+	 * so that {@link #getCompiledFilters()} rebuilds the compiled filters.
+	 * <P>
+	 * It must be called while holding the lock of the vector,
+	 * in the same critical section that changes the filters.
+	 */
+	private synchronized void filtersChanged() {
+		filtersVersion++;
+	}
+	
+	/**
+	 * Replace the filter in the given position.
+	 * <P>
+	 * Overridden to rebuild the compiled filters.
+	 * 
+	 * @see Vector#set(int, Object)
+	 */
+	@Override
+	public synchronized Filter set(int index, Filter element) {
+		filtersChanged();
+		return super.set(index, element);
 	}
 	
 	/**
@@ -207,9 +282,10 @@ public class FiltersVector extends Vector<Filter> {
 	/**
 	 * Delete all the filters (and the active vector)
 	 */
-	public void clear() {
+	public synchronized void clear() {
 		super.clear();
 		activeFilters.clear();
+		filtersChanged();
 	}
 	
 	/**
@@ -485,7 +561,7 @@ public class FiltersVector extends Vector<Filter> {
 	 * (We need to override this method because we need to keep the
 	 * activeFilters aligned) 
 	 */
-	public Filter remove(int index) {
+	public synchronized Filter remove(int index) {
 		if (index<0 || index>=this.size()) {
 			throw new IndexOutOfBoundsException("Invalid index");
 		}
@@ -509,6 +585,7 @@ public class FiltersVector extends Vector<Filter> {
 		if (pos!=-1) {
 			activeFilters.remove(pos);
 		}
+		filtersChanged();
 		return f;
 	}
 	
@@ -518,7 +595,7 @@ public class FiltersVector extends Vector<Filter> {
 	 * @param f The filter to activate/deactivate
 	 * @param active If true, activate the filter
 	 */
-	public void activateFilter(Filter f, boolean active) {
+	public synchronized void activateFilter(Filter f, boolean active) {
 		if (f==null) {
 			throw new IllegalArgumentException("Invalid null filter");
 		}
@@ -533,6 +610,7 @@ public class FiltersVector extends Vector<Filter> {
 		} else {
 			activeFilters.remove(pos);
 		}
+		filtersChanged();
 	}
 
 }
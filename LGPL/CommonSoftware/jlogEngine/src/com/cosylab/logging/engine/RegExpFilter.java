@@ -131,4 +131,11 @@ public class RegExpFilter extends Filter {
 		return regularExpression;
 	}
 	
+	/**
+	 * @return the pattern compiled from the regular expression
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+	
 }
@@ -0,0 +1,497 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package com.cosylab.logging.engine.log;
+
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Vector;
+
+import alma.acs.util.IsoDateFormat;
+
+/**
+ * A compact implementation of {@link ILogEntry} to keep in memory
+ * a big number of logs.
+ * <P>
+ * Differently from {@link LogEntry}:
+ * <UL>
+ * 	<LI>the timestamp and the integer fields are stored as primitives
+ * 		(<code>null</code> values are recorded in a bit mask)
+ * 	<LI>the strings that assume few distinct values over many logs 
+ * 		(see {@link #DICTIONARY_FIELDS}) are stored as <code>int</code> codes 
+ * 		of a dictionary shared by all the compact logs
+ * 	<LI>the additional data are stored in an array and the <code>Vector</code> 
+ * 		returned by {@link #getAdditionalData()} is built only when requested
+ * </UL>
+ * The shared dictionary is never cleared: it holds one instance of each distinct
+ * string of the {@link #DICTIONARY_FIELDS} of all the logs created in the JVM,
+ * up to {@link #DICTIONARY_SIZE_PROPERTY_NAME} strings.
+ * When the dictionary is full, the compact logs keep the new strings
+ * as plain strings.
+ * <P>
+ * The string representation of a compact log is the same of a {@link LogEntry}
+ * with the same content.
+ */
+public class CompactLogEntry implements ILogEntry {
+	
+	/**
+	 * The fields encoded by the shared dictionary
+	 */
+	public static final LogField[] DICTIONARY_FIELDS = {
+		LogField.FILE,
+		LogField.ROUTINE,
+		LogField.HOST,
+		LogField.PROCESS,
+		LogField.CONTEXT,
+		LogField.THREAD,
+		LogField.SOURCEOBJECT,
+		LogField.AUDIENCE,
+		LogField.ARRAY,
+		LogField.ANTENNA,
+		LogField.URI
+	};
+	
+	/**
+	 * The position of each field in {@link #codes} or -1 
+	 * if the field is not encoded by the dictionary
+	 */
+	private static final int[] codePositions = new int[LogField.values().length];
+	
+	static {
+		for (int t=0; t<codePositions.length; t++) {
+			codePositions[t]=-1;
+		}
+		for (int t=0; t<DICTIONARY_FIELDS.length; t++) {
+			codePositions[DICTIONARY_FIELDS[t].ordinal()]=t;
+		}
+	}
+	
+	/**
+	 * The name of the property to set the max number of strings
+	 * in the shared dictionary
+	 */
+	public static final String DICTIONARY_SIZE_PROPERTY_NAME = "jlog.compact.dictionary.size";
+	
+	/**
+	 * The default max number of strings in the shared dictionary
+	 */
+	public static final int DEFAULT_DICTIONARY_SIZE = 65536;
+	
+	/**
+	 * The dictionary shared by all the compact logs
+	 */
+	private static final LogStringDictionary dictionary = new LogStringDictionary(
+			Integer.getInteger(DICTIONARY_SIZE_PROPERTY_NAME, DEFAULT_DICTIONARY_SIZE));
+	
+	// The bits of the null mask
+	private static final byte NULL_DATE = 1;
+	private static final byte NULL_LINE = 2;
+	private static final byte NULL_PRIORITY = 4;
+	private static final byte NULL_STACKLEVEL = 8;
+	
+	private final long date;
+	private final byte type;
+	
+	/**
+	 * The bits of the primitive fields whose value is <code>null</code>
+	 */
+	private final byte nullMask;
+	
+	private final int line;
+	private final int priority;
+	private final int stackLevel;
+	
+	/**
+	 * The codes of the {@link #DICTIONARY_FIELDS}, in the same order
+	 */
+	private final int[] codes = new int[DICTIONARY_FIELDS.length];
+	
+	/**
+	 * The strings of the {@link #DICTIONARY_FIELDS} that have not been encoded 
+	 * because the dictionary was full, in the same order of {@link #codes}.
+	 * <P>
+	 * <code>null</code> if all the strings have been encoded.
+	 */
+	private String[] plainStrings = null;
+	
+	private final String logId;
+	private final String stackId;
+	private final String logMessage;
+	
+	/**
+	 * The additional data or <code>null</code> if the log has no additional data
+	 */
+	private AdditionalData[] additionalData = null;
+	
+	/**
+	 * Builds a compact log from the value of its fields.
+	 * <P>
+	 * The parameters are the same of the 
+	 * {@link LogEntry#LogEntry(Long, Integer, String, Integer, String, String, String, String, String, String, Integer, String, String, Integer, String, String, String, String, String, Vector)}
+	 * 
+	 * @see LogEntry
+	 */
+	public CompactLogEntry(
+			Long milliseconds,
+			Integer entrytype,
+			String file,
+			Integer line,
+			String routine,
+			String host,
+			String process,
+			String context,
+			String thread,
+			String logid,
+			Integer priority,
+			String uri,
+			String stackid,
+			Integer stacklevel,
+			String logmessage,
+	        String srcObject,
+	        String audience,
+	        String array,
+	        String antenna,
+	        Vector<AdditionalData> addDatas) {
+		byte mask=0;
+		if (milliseconds==null) {
+			mask|=NULL_DATE;
+			this.date=0;
+		} else {
+			this.date=milliseconds.longValue();
+		}
+		this.type=(byte)LogTypeHelper.values()[entrytype].ordinal();
+		if (line==null) {
+			mask|=NULL_LINE;
+			this.line=0;
+		} else {
+			this.line=line.intValue();
+		}
+		if (priority==null) {
+			mask|=NULL_PRIORITY;
+			this.priority=0;
+		} else {
+			this.priority=priority.intValue();
+		}
+		if (stacklevel==null) {
+			mask|=NULL_STACKLEVEL;
+			this.stackLevel=0;
+		} else {
+			this.stackLevel=stacklevel.intValue();
+		}
+		this.nullMask=mask;
+		setCode(LogField.FILE, file);
+		setCode(LogField.ROUTINE, routine);
+		setCode(LogField.HOST, host);
+		setCode(LogField.PROCESS, process);
+		setCode(LogField.CONTEXT, context);
+		setCode(LogField.THREAD, thread);
+		setCode(LogField.SOURCEOBJECT, srcObject);
+		setCode(LogField.AUDIENCE, audience);
+		setCode(LogField.ARRAY, array);
+		setCode(LogField.ANTENNA, antenna);
+		setCode(LogField.URI, uri);
+		this.logId=logid;
+		this.stackId=stackid;
+		this.logMessage=logmessage;
+		if (addDatas!=null) {
+			additionalData=addDatas.toArray(new AdditionalData[addDatas.size()]);
+		}
+	}
+	
+	/**
+	 * Build a compact log with the same content of the passed log
+	 * 
+	 * @param log The log to copy
+	 */
+	public CompactLogEntry(ILogEntry log) {
+		this(
+			(Long)log.getField(LogField.TIMESTAMP),
+			Integer.valueOf(log.getType().ordinal()),
+			(String)log.getField(LogField.FILE),
+			(Integer)log.getField(LogField.LINE),
+			(String)log.getField(LogField.ROUTINE),
+			(String)log.getField(LogField.HOST),
+			(String)log.getField(LogField.PROCESS),
+			(String)log.getField(LogField.CONTEXT),
+			(String)log.getField(LogField.THREAD),
+			(String)log.getField(LogField.LOGID),
+			(Integer)log.getField(LogField.PRIORITY),
+			(String)log.getField(LogField.URI),
+			(String)log.getField(LogField.STACKID),
+			(Integer)log.getField(LogField.STACKLEVEL),
+			(String)log.getField(LogField.LOGMESSAGE),
+			(String)log.getField(LogField.SOURCEOBJECT),
+			(String)log.getField(LogField.AUDIENCE),
+			(String)log.getField(LogField.ARRAY),
+			(String)log.getField(LogField.ANTENNA),
+			log.getAdditionalData());
+	}
+	
+	/**
+	 * Return a compact version of the passed log
+	 * 
+	 * @param log The log 
+	 * @return The passed log if it is already compact, a compact copy otherwise
+	 */
+	public static CompactLogEntry valueOf(ILogEntry log) {
+		if (log==null) {
+			throw new IllegalArgumentException("The log can't be null");
+		}
+		if (log instanceof CompactLogEntry) {
+			return (CompactLogEntry)log;
+		}
+		return new CompactLogEntry(log);
+	}
+	
+	/**
+	 * Encode the passed string and store its code
+	 */
+	private void setCode(LogField field, String value) {
+		int pos=codePositions[field.ordinal()];
+		codes[pos]=dictionary.encode(value);
+		if (codes[pos]==LogStringDictionary.UNKNOWN_CODE) {
+			if (plainStrings==null) {
+				plainStrings = new String[DICTIONARY_FIELDS.length];
+			}
+			plainStrings[pos]=value;
+		}
+	}
+	
+	/**
+	 * @return The (bounded) dictionary shared by all the compact logs
+	 */
+	public static LogStringDictionary getDictionary() {
+		return dictionary;
+	}
+	
+	/**
+	 * Return the code of a field in the shared dictionary
+	 * 
+	 * @param field One of the {@link #DICTIONARY_FIELDS}
+	 * @return The code of the field in the dictionary returned by {@link #getDictionary()}
+	 * 		or {@link LogStringDictionary#UNKNOWN_CODE} if the string has not been encoded
+	 * 		because the dictionary was full
+	 */
+	public int getFieldCode(LogField field) {
+		int pos=codePositions[field.ordinal()];
+		if (pos==-1) {
+			throw new IllegalArgumentException("The field "+field+" is not encoded");
+		}
+		return codes[pos];
+	}
+	
+	/**
+	 * @return The time of the log in msec or <code>0</code> if the log has no timestamp
+	 */
+	public long getTimestamp() {
+		return date;
+	}
+	
+	/**
+	 * @see ILogEntry
+	 */
+	public Object getField(LogField field) {
+		int pos=codePositions[field.ordinal()];
+		if (pos!=-1) {
+			if (codes[pos]==LogStringDictionary.UNKNOWN_CODE) {
+				return plainStrings[pos];
+			}
+			return dictionary.decode(codes[pos]);
+		}
+		switch (field) {
+			case TIMESTAMP: {
+				return ((nullMask & NULL_DATE)==0)? Long.valueOf(date) : null;
+			}
+			case ENTRYTYPE: {
+				return getType();
+			}
+			case LINE: {
+				return ((nullMask & NULL_LINE)==0)? Integer.valueOf(line) : null;
+			}
+			case LOGID: {
+				return logId;
+			}
+			case PRIORITY: {
+				return ((nullMask & NULL_PRIORITY)==0)? Integer.valueOf(priority) : null;
+			}
+			case STACKID: {
+				return stackId;
+			}
+			case STACKLEVEL: {
+				return ((nullMask & NULL_STACKLEVEL)==0)? Integer.valueOf(stackLevel) : null;
+			}
+			case LOGMESSAGE: {
+				return logMessage;
+			}
+			default: {
+				throw new IllegalArgumentException("Unsupported field "+field);
+			}
+		}
+	}
+	
+	/**
+	 * @see ILogEntry
+	 */
+	public LogTypeHelper getType() {
+		return LogTypeHelper.values()[type];
+	}
+	
+	/**
+	 * @see ILogEntry
+	 */
+	public boolean hasDatas() {
+		return additionalData!=null && additionalData.length>0;
+	}
+	
+	/**
+	 * @see ILogEntry
+	 */
+	public synchronized void addData(String name, String value) {
+		if (name==null || value==null) {
+			throw new IllegalArgumentException("Parameter can't be null");
+		}
+		if (name.isEmpty() || value.isEmpty()) {
+			throw new IllegalArgumentException("Parameters can't be empty");
+		}
+		AdditionalData data =new AdditionalData(name,value);
+		if (additionalData==null) {
+			additionalData = new AdditionalData[] { data };
+			return;
+		}
+		for (AdditionalData d: additionalData) {
+			if (d.equals(data)) {
+				return;
+			}
+		}
+		AdditionalData[] temp = new AdditionalData[additionalData.length+1];
+		System.arraycopy(additionalData, 0, temp, 0, additionalData.length);
+		temp[additionalData.length]=data;
+		additionalData=temp;
+	}
+	
+	/**
+	 * Return the additional data.
+	 * <P>
+	 * The vector is built when this method is called: changing its 
+	 * content does not change the additional data of the log.
+	 * 
+	 * @see ILogEntry
+	 */
+	public Vector<AdditionalData> getAdditionalData() {
+		AdditionalData[] temp = additionalData;
+		if (temp==null) {
+			return null;
+		}
+		Vector<AdditionalData> ret = new Vector<AdditionalData>(temp.length);
+		for (AdditionalData d: temp) {
+			ret.add(d);
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return an XML string representing this log
+	 * @see LogEntry#toXMLString()
+	 */
+	public String toXMLString() {
+		StringBuilder sb = new StringBuilder();
+		LogTypeHelper logType=getType();
+		sb.append("<"+logType.logEntryType);
+		
+		for (LogField t: LogField.values()) {
+			if (t==LogField.LOGMESSAGE || t==LogField.ENTRYTYPE) {
+				continue;
+			}
+			Object attrValue = getField(t);
+			if (attrValue!=null) {
+				if (t==LogField.TIMESTAMP) {
+					SimpleDateFormat df = new IsoDateFormat();
+					Date dt = new Date(date);
+					StringBuffer dateSB = new StringBuffer();
+					FieldPosition pos = new FieldPosition(0);
+					df.format(dt,dateSB,pos);
+					attrValue=dateSB.toString();
+				}
+				String attrValStr = attrValue.toString();
+				attrValStr=attrValStr.replaceAll("<","&lt;");
+				attrValStr=attrValStr.replaceAll(">","&gt;");
+				sb.append(" "+t.getTagAttribute()+"=\""+attrValStr+"\"");
+			}
+		}
+		
+		if (logType==LogTypeHelper.TRACE && !hasDatas() && logMessage!=null && logMessage.trim().isEmpty()) {
+			sb.append("/>");
+		} else {
+			sb.append(">");
+			if (logMessage!=null) {
+				sb.append("<![CDATA["+logMessage+"]]>");
+			}
+			AdditionalData[] datas=additionalData;
+			if (datas!=null) {
+				for (AdditionalData temp: datas) {
+					String tempName=temp.name.replaceAll("<","&lt;").replaceAll(">","&gt;").trim();
+					String tempValue=temp.value.replaceAll("<","&lt;").replaceAll(">","&gt;").trim();
+					sb.append("<Data Name=\""+tempName+"\"><![CDATA[");
+					sb.append(tempValue);
+					sb.append("]]></Data>");
+				}
+			}
+			sb.append("</"+logType.logEntryType+">");
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Return a string representation of this entry
+	 * 
+	 * @see LogEntry#toString()
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer("--- LogEntry ---\n");
+		
+		for (LogField f: LogField.values()) {
+			Object value = getField(f);
+			if (value != null) {
+				sb.append(f.getName() + ": ");
+				if (f == LogField.ENTRYTYPE) {
+					sb.append(getType().logEntryType);
+				} else if(f==LogField.TIMESTAMP) {
+					SimpleDateFormat df = new IsoDateFormat();
+					FieldPosition pos = new FieldPosition(0);
+					df.format(value,sb,pos);
+				} else {
+					sb.append(value);
+				}
+				sb.append("\n");
+			}
+		}
+		
+		AdditionalData[] datas=additionalData;
+		if (datas != null) {
+			sb.append("Datas: \n");
+			for (AdditionalData temp: datas) {
+				sb.append("\t"+temp.name+" : "+temp.value);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package com.cosylab.logging.engine.log;
+
+import java.util.HashMap;
+
+/**
+ * A dictionary of strings that associates each distinct string with
+ * a unique <code>int</code> code.
+ * <P>
+ * The fields of the logs like the host, the process or the source object
+ * assume few distinct values over millions of logs: storing the code
+ * in place of the string allows to save a lot of memory (and disk space).
+ * <P>
+ * Codes are assigned in increasing order starting from 0 and never change
+ * for the life time of the dictionary.
+ * <code>null</code> strings are encoded with {@link #NULL_CODE}.
+ * <P>
+ * A dictionary can be bounded to a maximum number of strings: when it is full,
+ * {@link #encode(String)} returns {@link #UNKNOWN_CODE} for the strings
+ * not already in the dictionary and the caller has to keep the plain string.
+ * <P>
+ * Encoding is synchronized; decoding does not lock the dictionary.
+ */
+public class LogStringDictionary {
+
+	/**
+	 * The code of the <code>null</code> string
+	 */
+	public static final int NULL_CODE=-1;
+
+	/**
+	 * The code returned by {@link #lookup(String)} for strings
+	 * not in the dictionary
+	 */
+	public static final int UNKNOWN_CODE=-2;
+
+	/**
+	 * The initial capacity of the array of strings
+	 */
+	private static final int INITIAL_CAPACITY=256;
+
+	/**
+	 * The max number of strings in the dictionary
+	 */
+	private final int maxSize;
+
+	/**
+	 * The codes of the strings in the dictionary
+	 */
+	private final HashMap<String, Integer> codes = new HashMap<String, Integer>();
+
+	/**
+	 * The strings in the dictionary: the code of each string is
+	 * its position in the array.
+	 * <P>
+	 * The array is replaced (never shrunk) when there is no more room
+	 * for new strings.
+	 */
+	private volatile String[] strings = new String[INITIAL_CAPACITY];
+
+	/**
+	 * The number of strings in the dictionary
+	 */
+	private volatile int size=0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize The max number of strings in the dictionary
+	 */
+	public LogStringDictionary(int maxSize) {
+		if (maxSize<=0) {
+			throw new IllegalArgumentException("Invalid max size "+maxSize);
+		}
+		this.maxSize=maxSize;
+	}
+
+	/**
+	 * Constructor of a dictionary with no limit on the number of strings
+	 */
+	public LogStringDictionary() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Return the code of the passed string adding the string
+	 * to the dictionary if it is not already there.
+	 *
+	 * @param str The string to encode (can be <code>null</code>)
+	 * @return The code of the string or {@link #UNKNOWN_CODE} if the
+	 *         string is not in the dictionary and the dictionary is full
+	 */
+	public synchronized int encode(String str) {
+		if (str==null) {
+			return NULL_CODE;
+		}
+		Integer code = codes.get(str);
+		if (code!=null) {
+			return code.intValue();
+		}
+		if (size>=maxSize) {
+			return UNKNOWN_CODE;
+		}
+		String[] temp=strings;
+		if (size==temp.length) {
+			String[] newStrings = new String[temp.length*2];
+			System.arraycopy(temp, 0, newStrings, 0, size);
+			temp=newStrings;
+		}
+		temp[size]=str;
+		// Publish the array before the new size
+		strings=temp;
+		codes.put(str, Integer.valueOf(size));
+		return size++;
+	}
+
+	/**
+	 * Return the string with the given code.
+	 *
+	 * @param code The code of the string
+	 * @return The string with the passed code
+	 *         or <code>null</code> if the code is {@link #NULL_CODE}
+	 * @throws IndexOutOfBoundsException If the code is not in the dictionary
+	 */
+	public String decode(int code) {
+		if (code==NULL_CODE) {
+			return null;
+		}
+		if (code<0 || code>=size) {
+			throw new IndexOutOfBoundsException("Code "+code+" not in dictionary [0,"+size+"[");
+		}
+		return strings[code];
+	}
+
+	/**
+	 * Return the code of a string without adding the string to the dictionary.
+	 *
+	 * @param str The string to look for (can be <code>null</code>)
+	 * @return The code of the string or {@link #UNKNOWN_CODE} if the string
+	 *         is not in the dictionary
+	 */
+	public synchronized int lookup(String str) {
+		if (str==null) {
+			return NULL_CODE;
+		}
+		Integer code = codes.get(str);
+		return (code==null)? UNKNOWN_CODE : code.intValue();
+	}
+
+	/**
+	 * @return The number of strings in the dictionary
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The max number of strings in the dictionary
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Remove all the strings from the dictionary.
+	 * <P>
+	 * <B>Note</B>: the codes returned before clearing the dictionary
+	 * are not valid anymore.
+	 */
+	public synchronized void clear() {
+		codes.clear();
+		strings=new String[INITIAL_CAPACITY];
+		size=0;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.jlog.test;
+
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import com.cosylab.logging.engine.log.CompactLogEntry;
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
+import com.cosylab.logging.engine.log.LogEntry;
+import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogStringDictionary;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * Test {@link CompactLogEntry} by comparing its content with that
+ * of the {@link LogEntry} it is built from.
+ */
+public class CompactLogEntryTest extends TestCase {
+	
+	/**
+	 * The number of logs to check
+	 */
+	private static final int NUM_OF_LOGS = 1000;
+	
+	/**
+	 * The logs to compare with the compact logs
+	 */
+	private LogEntry[] logs;
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Random rnd = new Random(2015);
+		logs = new LogEntry[NUM_OF_LOGS];
+		for (int t=0; t<NUM_OF_LOGS; t++) {
+			Vector<AdditionalData> datas=null;
+			if (rnd.nextInt(4)==0) {
+				datas = new Vector<AdditionalData>();
+				for (int d=0; d<=rnd.nextInt(3); d++) {
+					datas.add(new AdditionalData("Name"+d, "Value"+rnd.nextInt(10)));
+				}
+			}
+			logs[t]= new LogEntry(
+					(rnd.nextInt(50)==0)?null:Long.valueOf(System.currentTimeMillis()+t), 
+					rnd.nextInt(LogTypeHelper.values().length-1), 
+					"File"+rnd.nextInt(5)+".java", 
+					(rnd.nextInt(10)==0)?null:Integer.valueOf(rnd.nextInt(500)), 
+					"File#routine()", 
+					"host"+rnd.nextInt(4), 
+					"process"+rnd.nextInt(8), 
+					(rnd.nextInt(3)==0)?null:"context", 
+					"thread"+rnd.nextInt(3), 
+					"log id "+t, 
+					(rnd.nextInt(10)==0)?null:Integer.valueOf(rnd.nextInt(15)), 
+					null, 
+					"stack id "+rnd.nextInt(100), 
+					(rnd.nextInt(10)==0)?null:Integer.valueOf(rnd.nextInt(20)), 
+					(rnd.nextInt(20)==0)?" ":"A <message> "+t, 
+					(rnd.nextInt(10)==0)?null:"source"+rnd.nextInt(10), 
+					(rnd.nextInt(2)==0)?null:"Audience", 
+					"array name", 
+					"antenna"+rnd.nextInt(66), 
+					datas);
+		}
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		logs=null;
+		super.tearDown();
+	}
+	
+	/**
+	 * Check that the compact logs have the same content and the same
+	 * string representations of the original logs
+	 */
+	public void testContent() throws Exception {
+		for (LogEntry log: logs) {
+			CompactLogEntry compact = new CompactLogEntry(log);
+			for (LogField f: LogField.values()) {
+				assertEquals(f.toString(), log.getField(f), compact.getField(f));
+			}
+			assertEquals(log.getType(), compact.getType());
+			assertEquals(log.hasDatas(), compact.hasDatas());
+			assertEquals(log.getAdditionalData(), compact.getAdditionalData());
+			assertEquals(log.toString(), compact.toString());
+			assertEquals(log.toXMLString(), compact.toXMLString());
+		}
+	}
+	
+	/**
+	 * Check that the strings are encoded by the shared dictionary
+	 */
+	public void testDictionary() throws Exception {
+		for (LogEntry log: logs) {
+			CompactLogEntry compact = CompactLogEntry.valueOf(log);
+			assertSame(compact, CompactLogEntry.valueOf(compact));
+			for (LogField f: CompactLogEntry.DICTIONARY_FIELDS) {
+				int code = compact.getFieldCode(f);
+				assertEquals(CompactLogEntry.getDictionary().lookup((String)log.getField(f)), code);
+				if (code!=LogStringDictionary.UNKNOWN_CODE) {
+					// testFullDictionary might have been executed before
+					assertEquals(log.getField(f), CompactLogEntry.getDictionary().decode(code));
+				}
+			}
+		}
+		// Equal strings are shared by the compact logs
+		ILogEntry c1 = new CompactLogEntry(logs[0]);
+		ILogEntry c2 = new CompactLogEntry(logs[0]);
+		assertSame(c1.getField(LogField.HOST), c2.getField(LogField.HOST));
+		try {
+			new CompactLogEntry(logs[0]).getFieldCode(LogField.LOGMESSAGE);
+			fail("LOGMESSAGE is not encoded by the dictionary");
+		} catch (IllegalArgumentException e) {}
+	}
+	
+	/**
+	 * Check that a bounded dictionary does not encode new strings when full
+	 */
+	public void testBoundedDictionary() throws Exception {
+		LogStringDictionary dictionary = new LogStringDictionary(2);
+		assertEquals(0, dictionary.encode("A"));
+		assertEquals(1, dictionary.encode("B"));
+		assertEquals(LogStringDictionary.UNKNOWN_CODE, dictionary.encode("C"));
+		assertEquals(LogStringDictionary.NULL_CODE, dictionary.encode(null));
+		// Strings already in the dictionary are still encoded
+		assertEquals(0, dictionary.encode("A"));
+		assertEquals(2, dictionary.size());
+		dictionary.clear();
+		assertEquals(0, dictionary.encode("C"));
+	}
+	
+	/**
+	 * Check that the compact logs keep the plain strings 
+	 * when the shared dictionary is full
+	 */
+	public void testFullDictionary() throws Exception {
+		LogStringDictionary dictionary = CompactLogEntry.getDictionary();
+		assertEquals(CompactLogEntry.DEFAULT_DICTIONARY_SIZE, dictionary.getMaxSize());
+		int t=0;
+		while (dictionary.size()<dictionary.getMaxSize()) {
+			dictionary.encode("Filler "+(t++));
+		}
+		for (LogEntry log: logs) {
+			CompactLogEntry compact = new CompactLogEntry(log);
+			for (LogField f: LogField.values()) {
+				assertEquals(f.toString(), log.getField(f), compact.getField(f));
+			}
+			assertEquals(log.toXMLString(), compact.toXMLString());
+		}
+		LogEntry log = new LogEntry(
+				Long.valueOf(System.currentTimeMillis()), 
+				LogTypeHelper.INFO.ordinal(), 
+				"NotInDictionary.java", 
+				null, null, "Not in dictionary host", null, null, null, null, null, null, null, null, 
+				"A message", null, null, null, null, null);
+		CompactLogEntry compact = new CompactLogEntry(log);
+		assertEquals(LogStringDictionary.UNKNOWN_CODE, compact.getFieldCode(LogField.HOST));
+		assertEquals("Not in dictionary host", compact.getField(LogField.HOST));
+		assertEquals("NotInDictionary.java", compact.getField(LogField.FILE));
+		assertEquals(LogStringDictionary.NULL_CODE, compact.getFieldCode(LogField.PROCESS));
+		assertNull(compact.getField(LogField.PROCESS));
+		assertEquals(CompactLogEntry.DEFAULT_DICTIONARY_SIZE, dictionary.size());
+	}
+	
+	/**
+	 * Test the adding of additional data
+	 */
+	public void testAddData() throws Exception {
+		for (LogEntry log: logs) {
+			CompactLogEntry compact = new CompactLogEntry(log);
+			log.addData("Added", "data");
+			compact.addData("Added", "data");
+			// Duplicated data are discarded
+			log.addData("Added", "data");
+			compact.addData("Added", "data");
+			assertTrue(compact.hasDatas());
+			assertEquals(log.getAdditionalData(), compact.getAdditionalData());
+			assertEquals(log.toXMLString(), compact.toXMLString());
+			// Changing the returned vector does not change the log
+			compact.getAdditionalData().clear();
+			assertEquals(log.getAdditionalData(), compact.getAdditionalData());
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.jlog.test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.cosylab.logging.engine.CompiledFilters;
+import com.cosylab.logging.engine.ExactFilter;
+import com.cosylab.logging.engine.Filter;
+import com.cosylab.logging.engine.FiltersVector;
+import com.cosylab.logging.engine.MinMaxFilter;
+import com.cosylab.logging.engine.RegExpFilter;
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.LogEntry;
+import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * Test {@link CompiledFilters} by comparing its results with those
+ * of the {@link Filter}s it is built from.
+ */
+public class CompiledFiltersTest extends TestCase {
+	
+	/**
+	 * The number of logs to check
+	 */
+	private static final int NUM_OF_LOGS = 20000;
+	
+	/**
+	 * The logs to check against the filters
+	 */
+	private ILogEntry[] logs;
+	
+	/**
+	 * The time of the first log
+	 */
+	private final long startTime = System.currentTimeMillis();
+	
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Random rnd = new Random(2015);
+		logs = new ILogEntry[NUM_OF_LOGS];
+		for (int t=0; t<NUM_OF_LOGS; t++) {
+			logs[t]= new LogEntry(
+					startTime+t*10, 
+					rnd.nextInt(LogTypeHelper.values().length-1), 
+					"File.java", 
+					rnd.nextInt(500), 
+					"File#routine()", 
+					"host"+rnd.nextInt(4), 
+					"process"+rnd.nextInt(8), 
+					"context", 
+					"java thread", 
+					"log id", 
+					(rnd.nextInt(10)==0)?null:Integer.valueOf(rnd.nextInt(15)), 
+					"URI", 
+					"stack id", 
+					rnd.nextInt(20), 
+					"Message "+rnd.nextInt(100), 
+					(rnd.nextInt(10)==0)?null:"source"+rnd.nextInt(10), 
+					"Audience", 
+					"array name", 
+					"antenna name", 
+					null);
+		}
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		logs=null;
+		super.tearDown();
+	}
+	
+	/**
+	 * Check the compiled filters against the filters applied one by one
+	 * 
+	 * @param filters The filters to check
+	 * @param lethal The circumstances to apply the filters
+	 */
+	private void checkFilters(Filter[] filters, boolean lethal) {
+		CompiledFilters compiled = new CompiledFilters(filters, lethal);
+		int matches=0;
+		for (ILogEntry log: logs) {
+			boolean expected=true;
+			for (Filter f: filters) {
+				expected = expected && f.applyTo(log, lethal);
+			}
+			assertEquals(expected, compiled.matches(log));
+			if (expected) {
+				matches++;
+			}
+		}
+		// Ensure that the test is significant
+		assertTrue("No log matched", matches>0);
+		assertTrue("All the logs matched", matches<logs.length || compiled.isEmpty());
+	}
+	
+	/**
+	 * Test each kind of filter, with and without the NOT policy
+	 */
+	public void testSingleFilters() throws Exception {
+		for (int t=0; t<2; t++) {
+			boolean not = t==1;
+			checkFilters(new Filter[] { new MinMaxFilter(LogField.TIMESTAMP, false, startTime+1000, startTime+50000, not) }, false);
+			checkFilters(new Filter[] { new MinMaxFilter(LogField.TIMESTAMP, false, startTime+1000, null, not) }, false);
+			checkFilters(new Filter[] { new ExactFilter(LogField.TIMESTAMP, false, startTime+1000, not) }, false);
+			checkFilters(new Filter[] { new MinMaxFilter(LogField.ENTRYTYPE, false, LogTypeHelper.DEBUG, LogTypeHelper.WARNING, not) }, false);
+			checkFilters(new Filter[] { new ExactFilter(LogField.ENTRYTYPE, false, LogTypeHelper.INFO, not) }, false);
+			checkFilters(new Filter[] { new MinMaxFilter(LogField.LINE, false, 100, 200, not) }, false);
+			checkFilters(new Filter[] { new MinMaxFilter(LogField.PRIORITY, false, null, 7, not) }, false);
+			checkFilters(new Filter[] { new ExactFilter(LogField.STACKLEVEL, false, 3, not) }, false);
+			checkFilters(new Filter[] { new ExactFilter(LogField.HOST, false, "host1", not) }, false);
+			checkFilters(new Filter[] { new ExactFilter(LogField.SOURCEOBJECT, false, "source3", not) }, false);
+			checkFilters(new Filter[] { new MinMaxFilter(LogField.PROCESS, false, "process2", "process5", not) }, false);
+			checkFilters(new Filter[] { new RegExpFilter(LogField.LOGMESSAGE, false, "Message 1.*", not) }, false);
+			checkFilters(new Filter[] { new RegExpFilter(LogField.SOURCEOBJECT, false, "source[0-4]", not) }, false);
+		}
+	}
+	
+	/**
+	 * Test filters in AND together with lethal filters that
+	 * must be ignored at GUI level and non lethal filters that must
+	 * be ignored at engine level
+	 */
+	public void testFiltersInAnd() throws Exception {
+		Filter[] filters = new Filter[] {
+				new RegExpFilter(LogField.LOGMESSAGE, false, "Message [0-7].*", false),
+				new ExactFilter(LogField.HOST, false, "host1", true),
+				new MinMaxFilter(LogField.ENTRYTYPE, true, LogTypeHelper.INFO, null, false),
+				new MinMaxFilter(LogField.TIMESTAMP, false, startTime+5000, startTime+150000, false),
+				new MinMaxFilter(LogField.LINE, true, null, 250, false)
+		};
+		checkFilters(filters, false);
+		checkFilters(filters, true);
+	}
+	
+	/**
+	 * Check that the most selective filters are moved to the
+	 * beginning and that the order does not change the result
+	 */
+	public void testReordering() throws Exception {
+		Filter regExp = new RegExpFilter(LogField.LOGMESSAGE, false, "Message.*", false);
+		Filter host = new ExactFilter(LogField.HOST, false, "host2", false);
+		Filter time = new MinMaxFilter(LogField.TIMESTAMP, false, startTime, startTime+10*NUM_OF_LOGS/20, false);
+		checkFilters(new Filter[] { regExp, host, time }, false);
+		
+		CompiledFilters compiled = new CompiledFilters(new Filter[] { regExp, host, time }, false);
+		for (int t=0; t<CompiledFilters.REORDER_INTERVAL*3; t++) {
+			compiled.matches(logs[logs.length-1-t%(logs.length/2)]);
+		}
+		Filter[] ordered = compiled.getFilters();
+		assertEquals(3, ordered.length);
+		// The time filter rejects all the logs checked 
+		assertSame(time, ordered[0]);
+		// The regular expression matches all the logs and is expensive
+		assertSame(regExp, ordered[2]);
+	}
+	
+	/**
+	 * Check that {@link FiltersVector} rebuilds the compiled
+	 * filters when its content changes
+	 */
+	public void testFiltersVector() throws Exception {
+		FiltersVector filters = new FiltersVector();
+		assertTrue(filters.getCompiledFilters().isEmpty());
+		Filter host = new ExactFilter(LogField.HOST, false, "host2", false);
+		filters.addFilter(host, true);
+		CompiledFilters compiled = filters.getCompiledFilters();
+		assertSame(compiled, filters.getCompiledFilters());
+		assertEquals(1, compiled.getFilters().length);
+		
+		// Not active filter
+		filters.addFilter(new ExactFilter(LogField.PROCESS, false, "process2", false), false);
+		assertNotSame(compiled, filters.getCompiledFilters());
+		assertEquals(1, filters.getCompiledFilters().getFilters().length);
+		
+		Filter process = new ExactFilter(LogField.PROCESS, false, "process1", false);
+		filters.set(0, process);
+		assertSame(process, filters.getCompiledFilters().getFilters()[0]);
+		for (ILogEntry log: logs) {
+			assertEquals(process.applyTo(log, false), filters.applyFilters(log));
+		}
+		
+		// Activating/deactivating a filter does not change the modCount
+		filters.activateFilter(process, false);
+		assertTrue(filters.getCompiledFilters().isEmpty());
+		filters.activateFilter(filters.get(1), true);
+		assertEquals(1, filters.getCompiledFilters().getFilters().length);
+		assertSame(filters.get(1), filters.getCompiledFilters().getFilters()[0]);
+		
+		filters.clear();
+		assertTrue(filters.getCompiledFilters().isEmpty());
+	}
+	
+	/**
+	 * Check that the compiled filters are not stale when the active
+	 * filters change while other threads apply the filters
+	 */
+	public void testConcurrentChanges() throws Exception {
+		final FiltersVector filters = new FiltersVector();
+		final Filter host = new ExactFilter(LogField.HOST, false, "host2", false);
+		final Filter process = new ExactFilter(LogField.PROCESS, false, "process1", false);
+		filters.addFilter(host, true);
+		filters.addFilter(process, false);
+		
+		final int iterations = 20000;
+		Thread toggler = new Thread(new Runnable() {
+			public void run() {
+				for (int t=0; t<iterations; t++) {
+					filters.activateFilter(process, t%2==0);
+				}
+			}
+		}, "FiltersToggler");
+		toggler.start();
+		while (toggler.isAlive()) {
+			for (ILogEntry log: logs) {
+				filters.applyFilters(log);
+			}
+		}
+		toggler.join();
+		
+		// The last iteration deactivated the filter on the process
+		Filter[] compiled = filters.getCompiledFilters().getFilters();
+		assertEquals(1, compiled.length);
+		assertSame(host, compiled[0]);
+		filters.activateFilter(process, true);
+		assertEquals(2, filters.getCompiledFilters().getFilters().length);
+	}
+}
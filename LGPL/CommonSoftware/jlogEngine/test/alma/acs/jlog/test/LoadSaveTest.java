@@ -22,6 +22,7 @@
 package alma.acs.jlog.test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.util.Collection;
 import java.util.Iterator;
@@ -29,6 +30,7 @@ import java.util.Properties;
 import java.util.Vector;
 
 import junit.framework.TestCase;
+import alma.acs.logging.engine.io.ColumnarLogWriter;
 import alma.acs.logging.engine.io.IOHelper;
 import alma.acs.logging.engine.io.IOPorgressListener;
 import alma.acs.logging.engine.parser.ACSLogParser;
@@ -36,9 +38,11 @@ import alma.acs.logging.engine.parser.ACSLogParserFactory;
 
 import com.cosylab.logging.engine.ACS.ACSRemoteErrorListener;
 import com.cosylab.logging.engine.ACS.ACSRemoteLogListener;
+import com.cosylab.logging.engine.ACS.ACSRemoteRawLogListener;
 import com.cosylab.logging.engine.log.ILogEntry;
 import com.cosylab.logging.engine.log.ILogEntry.AdditionalData;
 import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogTypeHelper;
 
 /**
  * A class testing the load and save facilities
@@ -460,4 +464,51 @@ public class LoadSaveTest extends TestCase implements IOPorgressListener, ACSRem
 			}
 		}
 	}
+	
+	/**
+	 * Check that the logs discarded by the {@link IOHelper} are sent to the 
+	 * <code>ACSRemoteRawLogListener</code> in the same way 
+	 * for XML and for columnar files.
+	 */
+	public void testLoadRawDiscardedLogs() throws Exception {
+		final Vector<String> xmlsRead = new Vector<String>();
+		ACSRemoteRawLogListener rawListener = new ACSRemoteRawLogListener() {
+			@Override
+			public void xmlEntryReceived(String xmlLogString) {
+				xmlsRead.add(xmlLogString);
+			}
+		};
+		IOHelper ioHelper = new IOHelper();
+		ioHelper.setDiscardLevel(LogTypeHelper.INFO);
+		int expected=0;
+		for (ILogEntry log: logs) {
+			if (log.getType().ordinal()>LogTypeHelper.INFO.ordinal()) {
+				expected++;
+			}
+		}
+		
+		// XML
+		ioHelper.saveLogs(fileName, logs, this, false,false);
+		ioHelper.loadLogs(fileName, this, rawListener, this, this,false);
+		assertEquals(expected, logsRead.size());
+		assertEquals(logs.size(), xmlsRead.size());
+		
+		// Columnar
+		logsRead.clear();
+		xmlsRead.clear();
+		File binFile = new File(fileName+ColumnarLogWriter.FILE_EXTENSION);
+		binFile.deleteOnExit();
+		ColumnarLogWriter writer = new ColumnarLogWriter(new FileOutputStream(binFile));
+		for (ILogEntry log: logs) {
+			writer.write(log);
+		}
+		writer.close();
+		ioHelper.loadLogs(binFile.getAbsolutePath(), this, rawListener, this, this);
+		assertEquals(expected, logsRead.size());
+		assertEquals(logs.size(), xmlsRead.size());
+		int t=0;
+		for (ILogEntry log: logs) {
+			assertEquals(log.toXMLString(), xmlsRead.get(t++));
+		}
+	}
 }
@@ -0,0 +1,121 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2015
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, 
+ *    MA 02111-1307  USA
+ */
+package alma.acs.jlog.test;
+
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import alma.acs.logging.engine.io.LogBlockScanner;
+
+/**
+ * Test the {@link LogBlockScanner}
+ */
+public class LogBlockScannerTest extends TestCase {
+	
+	/**
+	 * The header of the file
+	 */
+	private static final String header = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<Log>\n<Header Name=\"NameForXmlDocument\" Type=\"LOGFILE\" />\n";
+	
+	/**
+	 * The records to find
+	 */
+	private static final String[] records = {
+		"<Info TimeStamp=\"2015-06-01T10:00:00.000\" File=\"a.java\"><![CDATA[A message]]></Info>",
+		"<Trace TimeStamp=\"2015-06-01T10:00:00.001\" File=\"b.java\"/>",
+		"<Warning TimeStamp=\"2015-06-01T10:00:00.002\" Routine=\"a->b\"><![CDATA[</Warning> in the message]]><Data Name=\"d1\"><![CDATA[</Warning>]]></Data></Warning>",
+		"<Debug TimeStamp=\"2015-06-01T10:00:00.003\">A <message> with tags<Data Name=\"d1\">Value</Data></Debug>",
+		"<Info\nTimeStamp=\"2015-06-01T10:00:00.004\"></Info>",
+		"<Error TimeStamp=\"2015-06-01T10:00:00.005\"><![CDATA[Message with ]] and ]>]]></Error>",
+		"<Emergency TimeStamp=\"2015-06-01T10:00:00.006\" />"
+	};
+	
+	/**
+	 * @return The content of a file with all the records
+	 */
+	private char[] buildFile() {
+		StringBuilder sb = new StringBuilder(header);
+		for (int t=0; t<records.length; t++) {
+			sb.append(records[t]);
+			// Some garbage between records
+			sb.append((t%2==0)?"\n":"\n<Information>\n");
+		}
+		sb.append("</Log>");
+		return sb.toString().toCharArray();
+	}
+	
+	/**
+	 * Scan the whole buffer at once
+	 */
+	public void testScan() throws Exception {
+		char[] file = buildFile();
+		LogBlockScanner scanner = new LogBlockScanner();
+		LogBlockScanner.Records found = new LogBlockScanner.Records();
+		int restart=scanner.scan(file, 0, file.length, found);
+		// The closing </Log> is too short to be recognized and must be scanned again 
+		assertEquals(file.length-"</Log>".length(), restart);
+		assertEquals(records.length, found.size());
+		for (int t=0; t<records.length; t++) {
+			assertEquals(records[t], new String(file, found.getStart(t), found.getEnd(t)-found.getStart(t)));
+		}
+	}
+	
+	/**
+	 * Scan the file in blocks of all the possible sizes: the records must
+	 * be found independently of the positions where the blocks split the file
+	 */
+	public void testScanBlocks() throws Exception {
+		char[] file = buildFile();
+		LogBlockScanner scanner = new LogBlockScanner();
+		LogBlockScanner.Records found = new LogBlockScanner.Records();
+		for (int blockSize=1; blockSize<=file.length; blockSize++) {
+			Vector<String> recordsFound = new Vector<String>();
+			int from=0;
+			int to=0;
+			while (to<file.length) {
+				to=Math.min(file.length, to+blockSize);
+				found.clear();
+				from=scanner.scan(file, from, to, found);
+				for (int t=0; t<found.size(); t++) {
+					recordsFound.add(new String(file, found.getStart(t), found.getEnd(t)-found.getStart(t)));
+				}
+			}
+			assertEquals("Block size "+blockSize, records.length, recordsFound.size());
+			for (int t=0; t<records.length; t++) {
+				assertEquals(records[t], recordsFound.get(t));
+			}
+		}
+	}
+	
+	/**
+	 * A record not terminated must be scanned again
+	 */
+	public void testIncompleteRecord() throws Exception {
+		char[] file = (header+records[0]+records[2].substring(0, 50)).toCharArray();
+		LogBlockScanner scanner = new LogBlockScanner();
+		LogBlockScanner.Records found = new LogBlockScanner.Records();
+		int restart=scanner.scan(file, 0, file.length, found);
+		assertEquals(1, found.size());
+		assertEquals(header.length()+records[0].length(), restart);
+	}
+}
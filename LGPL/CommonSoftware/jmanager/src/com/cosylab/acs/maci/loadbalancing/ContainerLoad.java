@@ -0,0 +1,87 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.loadbalancing;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the load metrics of a container.
+ * Negative values denote unknown (not reported) metrics.
+ * @version $id$
+ */
+public class ContainerLoad implements Serializable {
+
+	private static final long serialVersionUID = 2386475120926537043L;
+
+	/**
+	 * Used heap as a fraction of the max. heap (0 - 1).
+	 */
+	private final double heapUsage;
+
+	/**
+	 * Number of live threads.
+	 */
+	private final int threadCount;
+
+	/**
+	 * Round-trip time of the manager's ping (in ms).
+	 */
+	private final long pingTime;
+
+	/**
+	 * Time when the metrics were taken (Java time).
+	 */
+	private final long timestamp;
+
+	/**
+	 * Constructor.
+	 * @param heapUsage		used heap as a fraction of the max. heap (0 - 1), negative if unknown.
+	 * @param threadCount	number of live threads, negative if unknown.
+	 * @param pingTime		round-trip time of the manager's ping (in ms), negative if unknown.
+	 * @param timestamp		time when the metrics were taken (Java time).
+	 */
+	public ContainerLoad(double heapUsage, int threadCount, long pingTime, long timestamp) {
+		this.heapUsage = heapUsage;
+		this.threadCount = threadCount;
+		this.pingTime = pingTime;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return used heap as a fraction of the max. heap (0 - 1), negative if unknown.
+	 */
+	public double getHeapUsage() {
+		return heapUsage;
+	}
+
+	/**
+	 * @return number of live threads, negative if unknown.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * @return round-trip time of the manager's ping (in ms), negative if unknown.
+	 */
+	public long getPingTime() {
+		return pingTime;
+	}
+
+	/**
+	 * @return time when the metrics were taken (Java time).
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "ContainerLoad[heapUsage=" + heapUsage + ", threadCount=" + threadCount +
+			", pingTime=" + pingTime + ", timestamp=" + timestamp + "]";
+	}
+}
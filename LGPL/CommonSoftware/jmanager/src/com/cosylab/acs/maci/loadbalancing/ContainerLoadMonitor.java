@@ -0,0 +1,42 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.loadbalancing;
+
+/**
+ * Interface to be implemented by load balancing strategies that want to be informed about
+ * the load of the containers, as observed by the manager or reported for the containers.
+ * @version $id$
+ */
+public interface ContainerLoadMonitor {
+
+	/**
+	 * Reports the latest load metrics of the container, only the known (non-negative) metrics are updated.
+	 * Manager reports the round-trip time of every successful ping of the container,
+	 * other metrics can be pushed through <code>ManagerImpl.reportContainerLoad</code>.
+	 * @param containerName	name of the container.
+	 * @param load			load metrics, non-<code>null</code>.
+	 */
+	public void updateLoad(String containerName, ContainerLoad load);
+
+	/**
+	 * Reports completion (successful or not) of a component activation on the container.
+	 * @param containerName	name of the container.
+	 * @param latencyNanos	duration of the activation in ns.
+	 */
+	public void activationCompleted(String containerName, long latencyNanos);
+
+	/**
+	 * Reports that the request of a component placed on the container by <code>selectContainer</code>
+	 * has completed (successfully or not). Called exactly once for every container selected.
+	 * @param containerName	name of the container returned by <code>selectContainer</code>.
+	 */
+	public void placementCompleted(String containerName);
+
+	/**
+	 * Reports that the container has logged out.
+	 * @param containerName	name of the container.
+	 */
+	public void containerLoggedOut(String containerName);
+}
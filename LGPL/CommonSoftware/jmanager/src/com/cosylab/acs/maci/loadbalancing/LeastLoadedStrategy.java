@@ -0,0 +1,308 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.loadbalancing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cosylab.acs.maci.ClientInfo;
+import com.cosylab.acs.maci.ContainerInfo;
+
+/**
+ * Load balancing strategy selecting the least loaded container.
+ * <p>
+ * Every logged in container is given a score, a weighted sum of:
+ * <ul>
+ * 	<li>number of components (activated components plus components placed on the container
+ * 		whose request has not completed yet, relative to the max. of all the containers),</li>
+ * 	<li>activation latency (moving average of the latencies observed by the manager, relative to the max.),</li>
+ * 	<li>ping round-trip time (moving average of the round-trip times of the manager's pings, relative to the max.),</li>
+ * 	<li>heap usage (as reported through {@link #updateLoad(String, ContainerLoad)}),</li>
+ * 	<li>number of threads (as reported, relative to the max.).</li>
+ * </ul>
+ * The container with the lowest score is selected. To avoid oscillation the previously selected
+ * container is kept as long as its score is within the hysteresis of the lowest one.
+ * Reported metrics older than the metrics timeout are ignored; a container with an unknown
+ * (not reported or expired) metric is given the average of the known values of the other containers.
+ * <p>
+ * Weights are pluggable, either through the constructor or the system properties
+ * (<code>ACS.LoadBalancing.componentWeight</code>, <code>ACS.LoadBalancing.latencyWeight</code>,
+ * <code>ACS.LoadBalancing.pingWeight</code>, <code>ACS.LoadBalancing.heapWeight</code>,
+ * <code>ACS.LoadBalancing.threadWeight</code>, <code>ACS.LoadBalancing.hysteresis</code>
+ * and <code>ACS.LoadBalancing.metricsTimeout</code> in ms) when the strategy is registered
+ * via <code>ACS.LoadBalancingStrategy</code> system property.
+ * @version $id$
+ */
+public class LeastLoadedStrategy implements LoadBalancingStrategy, ContainerLoadMonitor {
+
+	/**
+	 * Smoothing factor of the activation latency and ping round-trip time moving averages.
+	 */
+	private static final double LATENCY_SMOOTHING = 0.2;
+
+	/**
+	 * Load state of a container.
+	 */
+	private static class State {
+		double latency = -1;
+		int pending;
+		double pingTime = -1;
+		long pingTimestamp;
+		double heapUsage = -1;
+		long heapTimestamp;
+		int threadCount = -1;
+		long threadTimestamp;
+	}
+
+	private final double componentWeight;
+	private final double latencyWeight;
+	private final double pingWeight;
+	private final double heapWeight;
+	private final double threadWeight;
+	private final double hysteresis;
+	private final long metricsTimeout;
+
+	/**
+	 * Load states (container name -> state).
+	 */
+	private final Map<String, State> states = new HashMap<String, State>();
+
+	/**
+	 * Name of the previously selected container.
+	 */
+	private String lastSelected;
+
+	/**
+	 * Constructor reading the weights from the system properties.
+	 */
+	public LeastLoadedStrategy() {
+		this(getDouble("ACS.LoadBalancing.componentWeight", 1.0),
+			 getDouble("ACS.LoadBalancing.latencyWeight", 0.5),
+			 getDouble("ACS.LoadBalancing.pingWeight", 0.5),
+			 getDouble("ACS.LoadBalancing.heapWeight", 1.0),
+			 getDouble("ACS.LoadBalancing.threadWeight", 0.5),
+			 getDouble("ACS.LoadBalancing.hysteresis", 0.05),
+			 Long.getLong("ACS.LoadBalancing.metricsTimeout", 60000).longValue());
+	}
+
+	/**
+	 * Constructor using only the metrics observed by the activations (no ping, heap and thread metrics).
+	 * @param componentWeight	weight of the (relative) number of components.
+	 * @param latencyWeight		weight of the (relative) activation latency.
+	 * @param hysteresis		score difference needed to move away from the previously selected container.
+	 */
+	public LeastLoadedStrategy(double componentWeight, double latencyWeight, double hysteresis) {
+		this(componentWeight, latencyWeight, 0, 0, 0, hysteresis, 0);
+	}
+
+	/**
+	 * Constructor.
+	 * @param componentWeight	weight of the (relative) number of components.
+	 * @param latencyWeight		weight of the (relative) activation latency.
+	 * @param pingWeight		weight of the (relative) ping round-trip time.
+	 * @param heapWeight		weight of the heap usage.
+	 * @param threadWeight		weight of the (relative) number of threads.
+	 * @param hysteresis		score difference needed to move away from the previously selected container.
+	 * @param metricsTimeout	time (in ms) after which the reported metrics are ignored.
+	 */
+	public LeastLoadedStrategy(double componentWeight, double latencyWeight, double pingWeight,
+							   double heapWeight, double threadWeight, double hysteresis, long metricsTimeout) {
+		this.componentWeight = Math.max(0, componentWeight);
+		this.latencyWeight = Math.max(0, latencyWeight);
+		this.pingWeight = Math.max(0, pingWeight);
+		this.heapWeight = Math.max(0, heapWeight);
+		this.threadWeight = Math.max(0, threadWeight);
+		this.hysteresis = Math.max(0, hysteresis);
+		this.metricsTimeout = Math.max(0, metricsTimeout);
+	}
+
+	private static double getDouble(String name, double defaultValue) {
+		try {
+			String value = System.getProperty(name);
+			return (value != null) ? Double.parseDouble(value) : defaultValue;
+		} catch (NumberFormatException nfe) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.loadbalancing.LoadBalancingStrategy#selectContainer(com.cosylab.acs.maci.ClientInfo, com.cosylab.acs.maci.ContainerInfo[])
+	 */
+	public synchronized String selectContainer(ClientInfo requestor, ContainerInfo[] containers) {
+		if (containers == null || containers.length == 0)
+			return null;
+
+		long now = System.currentTimeMillis();
+
+		// collect metrics of eligible (logged in) containers, unknown reported metrics are negative
+		int n = 0;
+		String[] names = new String[containers.length];
+		State[] eligible = new State[containers.length];
+		double[] components = new double[containers.length];
+		double[] latency = new double[containers.length];
+		double[] ping = new double[containers.length];
+		double[] heap = new double[containers.length];
+		double[] threads = new double[containers.length];
+		double maxComponents = 0, maxLatency = 0;
+		for (int i = 0; i < containers.length; i++) {
+			ContainerInfo info = containers[i];
+			if (info == null || info.getName() == null || info.getContainer() == null)
+				continue;
+
+			State state = getState(info.getName());
+
+			names[n] = info.getName();
+			eligible[n] = state;
+			components[n] = info.getComponents().size() + state.pending;
+			latency[n] = Math.max(0, state.latency);
+			ping[n] = fresh(state.pingTimestamp, now) ? state.pingTime : -1;
+			heap[n] = fresh(state.heapTimestamp, now) ? Math.min(1.0, state.heapUsage) : -1;
+			threads[n] = fresh(state.threadTimestamp, now) ? state.threadCount : -1;
+
+			maxComponents = Math.max(maxComponents, components[n]);
+			maxLatency = Math.max(maxLatency, latency[n]);
+			n++;
+		}
+
+		if (n == 0)
+			return null;
+
+		double maxPing = fillUnknown(ping, n);
+		fillUnknown(heap, n);
+		double maxThreads = fillUnknown(threads, n);
+
+		// score
+		int best = -1, last = -1;
+		double bestScore = Double.MAX_VALUE;
+		double[] scores = new double[n];
+		for (int i = 0; i < n; i++) {
+			scores[i] = componentWeight * (maxComponents > 0 ? components[i] / maxComponents : 0) +
+						latencyWeight * (maxLatency > 0 ? latency[i] / maxLatency : 0) +
+						pingWeight * (maxPing > 0 ? ping[i] / maxPing : 0) +
+						heapWeight * heap[i] +
+						threadWeight * (maxThreads > 0 ? threads[i] / maxThreads : 0);
+			if (scores[i] < bestScore) {
+				bestScore = scores[i];
+				best = i;
+			}
+			if (names[i].equals(lastSelected))
+				last = i;
+		}
+
+		// stick to the previously selected container if not (significantly) worse
+		if (last >= 0 && scores[last] <= bestScore + hysteresis)
+			best = last;
+
+		eligible[best].pending++;
+		lastSelected = names[best];
+		return lastSelected;
+	}
+
+	/**
+	 * Checks whether the reported metric is not older than the metrics timeout.
+	 */
+	private boolean fresh(long timestamp, long now) {
+		return timestamp > 0 && now - timestamp <= metricsTimeout;
+	}
+
+	/**
+	 * Replaces the unknown (negative) values with the average of the known ones (<code>0</code> if none is known).
+	 * @return the max. value.
+	 */
+	private static double fillUnknown(double[] values, int n) {
+		double sum = 0, max = 0;
+		int known = 0;
+		for (int i = 0; i < n; i++) {
+			if (values[i] >= 0) {
+				sum += values[i];
+				max = Math.max(max, values[i]);
+				known++;
+			}
+		}
+
+		double average = (known > 0) ? sum / known : 0;
+		for (int i = 0; i < n; i++)
+			if (values[i] < 0)
+				values[i] = average;
+		return max;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.loadbalancing.ContainerLoadMonitor#updateLoad(java.lang.String, com.cosylab.acs.maci.loadbalancing.ContainerLoad)
+	 */
+	public synchronized void updateLoad(String containerName, ContainerLoad load) {
+		if (containerName == null || load == null)
+			return;
+
+		State state = getState(containerName);
+		long timestamp = load.getTimestamp();
+		if (load.getPingTime() >= 0) {
+			if (state.pingTime < 0 || !fresh(state.pingTimestamp, timestamp))
+				state.pingTime = load.getPingTime();
+			else
+				state.pingTime += LATENCY_SMOOTHING * (load.getPingTime() - state.pingTime);
+			state.pingTimestamp = timestamp;
+		}
+		if (load.getHeapUsage() >= 0) {
+			state.heapUsage = load.getHeapUsage();
+			state.heapTimestamp = timestamp;
+		}
+		if (load.getThreadCount() >= 0) {
+			state.threadCount = load.getThreadCount();
+			state.threadTimestamp = timestamp;
+		}
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.loadbalancing.ContainerLoadMonitor#activationCompleted(java.lang.String, long)
+	 */
+	public synchronized void activationCompleted(String containerName, long latencyNanos) {
+		if (containerName == null)
+			return;
+
+		State state = getState(containerName);
+		double millis = Math.max(0, latencyNanos) / 1e6;
+		if (state.latency < 0)
+			state.latency = millis;
+		else
+			state.latency += LATENCY_SMOOTHING * (millis - state.latency);
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.loadbalancing.ContainerLoadMonitor#placementCompleted(java.lang.String)
+	 */
+	public synchronized void placementCompleted(String containerName) {
+		if (containerName == null)
+			return;
+
+		State state = states.get(containerName);
+		if (state != null && state.pending > 0)
+			state.pending--;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.loadbalancing.ContainerLoadMonitor#containerLoggedOut(java.lang.String)
+	 */
+	public synchronized void containerLoggedOut(String containerName) {
+		if (containerName == null)
+			return;
+
+		states.remove(containerName);
+		if (containerName.equals(lastSelected))
+			lastSelected = null;
+	}
+
+	/**
+	 * Returns (and creates if necessary) the state of the container.
+	 */
+	private State getState(String containerName) {
+		State state = states.get(containerName);
+		if (state == null) {
+			state = new State();
+			states.put(containerName, state);
+		}
+		return state;
+	}
+}
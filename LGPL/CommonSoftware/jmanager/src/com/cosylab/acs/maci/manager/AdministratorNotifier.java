@@ -0,0 +1,738 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cosylab.acs.maci.Administrator;
+import com.cosylab.acs.maci.ClientInfo;
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.ContainerInfo;
+import com.cosylab.acs.maci.IntArray;
+import com.cosylab.acs.maci.RemoteException;
+import com.cosylab.acs.maci.RemoteTransientException;
+import com.cosylab.acs.maci.SynchronousAdministrator;
+
+import alma.acs.concurrent.DaemonThreadFactory;
+
+/**
+ * Notification pipeline of the administrators.
+ *
+ * Events are queued per administrator and delivered by a single task per administrator
+ * (at most one thread is occupied by a slow administrator), in the order they were queued;
+ * this includes <code>components_available</code> and <code>components_unavailable</code> notifications
+ * the administrators receive as clients. The first event of an idle administrator
+ * is delivered after a short coalescing window, all the events queued in the meantime are delivered
+ * by the same task; consecutive <code>components_requested</code> (<code>components_released</code>,
+ * <code>components_available</code>, <code>components_unavailable</code>) events are merged into a single call.
+ *
+ * When the number of events queued for an administrator exceeds <code>maxPending</code>
+ * (i.e. administrator does not keep up), the queue is dropped to a snapshot: only the last event
+ * of every container, client, component, component availability and client-component relation is kept.
+ * Memory used is then bounded by the number of the entities and not by the number of the events.
+ * NOTE: a snapshot does not preserve the order of the events, it is delivered grouped by the event type
+ * in the order container logins, client logins, component activations, availabilities, requests, releases,
+ * unavailabilities, component deactivations, client logouts, container logouts.
+ * E.g. a component deactivated before another one was activated is reported after it.
+ *
+ * A failed call (e.g. a transient failure of the administrator) does not stop the delivery
+ * of the remaining events, the events of the failed call are logged and counted as dropped.
+ *
+ * <code>SynchronousAdministrator</code>s are notified immediately, in the caller thread.
+ *
+ * @version	@@VERSION@@
+ */
+public class AdministratorNotifier
+{
+
+	/**
+	 * Event types, in the order of the snapshot delivery.
+	 */
+	private static final int CONTAINER_LOGGED_IN = 0;
+	private static final int CLIENT_LOGGED_IN = 1;
+	private static final int COMPONENT_ACTIVATED = 2;
+	private static final int COMPONENTS_AVAILABLE = 3;
+	private static final int COMPONENTS_REQUESTED = 4;
+	private static final int COMPONENTS_RELEASED = 5;
+	private static final int COMPONENTS_UNAVAILABLE = 6;
+	private static final int COMPONENT_DEACTIVATED = 7;
+	private static final int CLIENT_LOGGED_OUT = 8;
+	private static final int CONTAINER_LOGGED_OUT = 9;
+
+	/**
+	 * Event.
+	 */
+	private static class Event
+	{
+		final int type;
+		final long timeStamp;
+		final long executionId;
+		final int handle;
+		final Object info;
+		final int[] clients;
+		final int[] components;
+
+		Event(int type, int handle, Object info, long timeStamp, long executionId)
+		{
+			this.type = type;
+			this.handle = handle;
+			this.info = info;
+			this.timeStamp = timeStamp;
+			this.executionId = executionId;
+			this.clients = null;
+			this.components = null;
+		}
+
+		Event(int type, int[] clients, int[] components, long timeStamp)
+		{
+			this.type = type;
+			this.handle = 0;
+			this.info = null;
+			this.timeStamp = timeStamp;
+			this.executionId = 0;
+			this.clients = clients;
+			this.components = components;
+		}
+	}
+
+	/**
+	 * Snapshot of the events of a slow administrator, last event per entity.
+	 */
+	private static class Snapshot
+	{
+		private final Map<Integer, Event> containers = new LinkedHashMap<Integer, Event>();
+		private final Map<Integer, Event> clients = new LinkedHashMap<Integer, Event>();
+		private final Map<Integer, Event> components = new LinkedHashMap<Integer, Event>();
+		// (client << 32 | component) -> event
+		private final Map<Long, Event> relations = new LinkedHashMap<Long, Event>();
+		// component name -> event
+		private final Map<String, Event> availability = new LinkedHashMap<String, Event>();
+
+		/**
+		 * Number of events merged into the snapshot.
+		 */
+		int merged = 0;
+
+		void add(Event event)
+		{
+			merged++;
+			switch (event.type)
+			{
+				case CONTAINER_LOGGED_IN:
+				case CONTAINER_LOGGED_OUT:
+					put(containers, event.handle, event);
+					break;
+				case CLIENT_LOGGED_IN:
+				case CLIENT_LOGGED_OUT:
+					put(clients, event.handle, event);
+					break;
+				case COMPONENT_ACTIVATED:
+				case COMPONENT_DEACTIVATED:
+					put(components, event.handle, event);
+					break;
+				case COMPONENTS_REQUESTED:
+				case COMPONENTS_RELEASED:
+					// i-th component was requested/released by the i-th client
+					int len = Math.min(event.clients.length, event.components.length);
+					for (int i = 0; i < len; i++)
+					{
+						Long key = Long.valueOf(((long)event.clients[i] << 32) | (event.components[i] & 0xFFFFFFFFL));
+						relations.remove(key);
+						relations.put(key, new Event(event.type, new int[] { event.clients[i] }, new int[] { event.components[i] }, event.timeStamp));
+					}
+					break;
+				case COMPONENTS_AVAILABLE:
+				{
+					ComponentInfo[] infos = (ComponentInfo[])event.info;
+					for (int i = 0; i < infos.length; i++)
+					{
+						availability.remove(infos[i].getName());
+						availability.put(infos[i].getName(), new Event(event.type, 0, new ComponentInfo[] { infos[i] }, event.timeStamp, 0));
+					}
+					break;
+				}
+				case COMPONENTS_UNAVAILABLE:
+				{
+					String[] names = (String[])event.info;
+					for (int i = 0; i < names.length; i++)
+					{
+						availability.remove(names[i]);
+						availability.put(names[i], new Event(event.type, 0, new String[] { names[i] }, event.timeStamp, 0));
+					}
+					break;
+				}
+			}
+		}
+
+		private static void put(Map<Integer, Event> map, int handle, Event event)
+		{
+			// (re)insert at the end
+			Integer key = Integer.valueOf(handle);
+			map.remove(key);
+			map.put(key, event);
+		}
+
+		/**
+		 * Returns the events to be delivered, in the delivery order.
+		 * @return the events to be delivered.
+		 */
+		List<Event> toEvents()
+		{
+			List<List<Event>> byType = new ArrayList<List<Event>>(CONTAINER_LOGGED_OUT + 1);
+			for (int i = 0; i <= CONTAINER_LOGGED_OUT; i++)
+				byType.add(new ArrayList<Event>());
+
+			for (Event event : containers.values())
+				byType.get(event.type).add(event);
+			for (Event event : clients.values())
+				byType.get(event.type).add(event);
+			for (Event event : components.values())
+				byType.get(event.type).add(event);
+			for (Event event : relations.values())
+				byType.get(event.type).add(event);
+			for (Event event : availability.values())
+				byType.get(event.type).add(event);
+
+			List<Event> events = new ArrayList<Event>(containers.size() + clients.size() + components.size() + relations.size() + availability.size());
+			for (List<Event> list : byType)
+				events.addAll(list);
+			return events;
+		}
+	}
+
+	/**
+	 * Notification channel of an administrator.
+	 */
+	private class Channel implements Runnable
+	{
+		private final Object key;
+		private final ClientInfo administratorInfo;
+
+		// synced to channels
+		private List<Event> pending = new ArrayList<Event>();
+		private Snapshot snapshot = null;
+		// true when dispatched to the executor
+		private boolean dispatched = false;
+
+		Channel(Object key, ClientInfo administratorInfo)
+		{
+			this.key = key;
+			this.administratorInfo = administratorInfo;
+		}
+
+		// must be synced outside
+		void add(Event event)
+		{
+			if (snapshot != null)
+			{
+				snapshot.add(event);
+				return;
+			}
+
+			pending.add(event);
+			if (pending.size() > maxPending)
+			{
+				snapshot = new Snapshot();
+				for (Event e : pending)
+					snapshot.add(e);
+				pending = new ArrayList<Event>();
+				snapshots.incrementAndGet();
+				logger.log(Level.INFO, "Administrator " + administratorInfo + " does not keep up with the notifications, dropping queued notifications to a snapshot.");
+			}
+		}
+
+		// must be synced outside
+		int size()
+		{
+			return pending.size() + (snapshot != null ? snapshot.merged : 0);
+		}
+
+		public void run()
+		{
+			while (true)
+			{
+				List<Event> events;
+				synchronized (channels)
+				{
+					if (snapshot != null)
+					{
+						events = snapshot.toEvents();
+						dropped.addAndGet(Math.max(0, snapshot.merged - events.size()));
+						snapshot = null;
+					}
+					else
+					{
+						events = pending;
+						pending = new ArrayList<Event>();
+					}
+
+					if (events.isEmpty())
+					{
+						channels.remove(key);
+						break;
+					}
+				}
+
+				deliver(administratorInfo, events);
+			}
+		}
+	}
+
+	/**
+	 * Channels (administrator -> channel), only administrators with queued events have a channel.
+	 */
+	private final Map<Object, Channel> channels = new HashMap<Object, Channel>();
+
+	/**
+	 * Executor delivering the notifications.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Timer of the coalescing windows.
+	 */
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * Coalescing window in ms.
+	 */
+	private final long window;
+
+	/**
+	 * Max. number of queued events per administrator before dropping to a snapshot.
+	 */
+	private final int maxPending;
+
+	/**
+	 * Logger.
+	 */
+	private final Logger logger;
+
+	/**
+	 * Statistics.
+	 */
+	private final AtomicLong events = new AtomicLong(0);
+	private final AtomicLong calls = new AtomicLong(0);
+	private final AtomicLong dropped = new AtomicLong(0);
+	private final AtomicLong snapshots = new AtomicLong(0);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param	executor	executor delivering the notifications.
+	 * @param	window		coalescing window in ms, <code>0</code> to deliver immediately.
+	 * @param	maxPending	max. number of queued events per administrator before dropping to a snapshot.
+	 * @param	logger		logger.
+	 */
+	public AdministratorNotifier(Executor executor, long window, int maxPending, Logger logger)
+	{
+		this.executor = executor;
+		this.window = window;
+		this.maxPending = maxPending;
+		this.logger = logger;
+
+		timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("managerNotifyTimer"));
+	}
+
+	/**
+	 * Notifies administrators about newly logged container.
+	 */
+	public void containerLoggedIn(ClientInfo[] admins, ContainerInfo info, long timeStamp, long executionId)
+	{
+		notify(admins, new Event(CONTAINER_LOGGED_IN, info.getHandle(), info, timeStamp, executionId));
+	}
+
+	/**
+	 * Notifies administrators about container logout.
+	 */
+	public void containerLoggedOut(ClientInfo[] admins, int handle, long timeStamp)
+	{
+		notify(admins, new Event(CONTAINER_LOGGED_OUT, handle, null, timeStamp, 0));
+	}
+
+	/**
+	 * Notifies administrators about newly logged client.
+	 */
+	public void clientLoggedIn(ClientInfo[] admins, ClientInfo info, long timeStamp, long executionId)
+	{
+		notify(admins, new Event(CLIENT_LOGGED_IN, info.getHandle(), info, timeStamp, executionId));
+	}
+
+	/**
+	 * Notifies administrators about client logout.
+	 */
+	public void clientLoggedOut(ClientInfo[] admins, int handle, long timeStamp)
+	{
+		notify(admins, new Event(CLIENT_LOGGED_OUT, handle, null, timeStamp, 0));
+	}
+
+	/**
+	 * Notifies administrators about component activation.
+	 */
+	public void componentActivated(ClientInfo[] admins, ComponentInfo info, long timeStamp, long executionId)
+	{
+		notify(admins, new Event(COMPONENT_ACTIVATED, info.getHandle(), info, timeStamp, executionId));
+	}
+
+	/**
+	 * Notifies administrators about component deactivation.
+	 */
+	public void componentDeactivated(ClientInfo[] admins, int handle, long timeStamp)
+	{
+		notify(admins, new Event(COMPONENT_DEACTIVATED, handle, null, timeStamp, 0));
+	}
+
+	/**
+	 * Notifies administrators about component request.
+	 */
+	public void componentsRequested(ClientInfo[] admins, int[] clients, int[] components, long timeStamp)
+	{
+		notify(admins, new Event(COMPONENTS_REQUESTED, clients, components, timeStamp));
+	}
+
+	/**
+	 * Notifies administrators about component release.
+	 */
+	public void componentsReleased(ClientInfo[] admins, int[] clients, int[] components, long timeStamp)
+	{
+		notify(admins, new Event(COMPONENTS_RELEASED, clients, components, timeStamp));
+	}
+
+	/**
+	 * Notifies administrators (as clients) about available components.
+	 */
+	public void componentsAvailable(ClientInfo[] admins, ComponentInfo[] info)
+	{
+		notify(admins, new Event(COMPONENTS_AVAILABLE, 0, info, 0, 0));
+	}
+
+	/**
+	 * Notifies administrators (as clients) about unavailable components.
+	 */
+	public void componentsUnavailable(ClientInfo[] admins, String[] names)
+	{
+		notify(admins, new Event(COMPONENTS_UNAVAILABLE, 0, names, 0, 0));
+	}
+
+	/**
+	 * Queues the event to all the administrators.
+	 */
+	private void notify(ClientInfo[] admins, Event event)
+	{
+		for (int i = 0; i < admins.length; i++)
+		{
+			events.incrementAndGet();
+
+			if (admins[i].getClient() instanceof SynchronousAdministrator)
+			{
+				List<Event> list = new ArrayList<Event>(1);
+				list.add(event);
+				deliver(admins[i], list);
+				continue;
+			}
+
+			Object key = admins[i].getClient();
+			final Channel channel;
+			synchronized (channels)
+			{
+				Channel existing = channels.get(key);
+				if (existing != null)
+				{
+					existing.add(event);
+					continue;
+				}
+
+				channel = new Channel(key, admins[i]);
+				channel.add(event);
+				channels.put(key, channel);
+			}
+
+			if (window > 0)
+			{
+				try
+				{
+					timer.schedule(new Runnable()
+					{
+						public void run()
+						{
+							dispatch(channel);
+						}
+					}, window, TimeUnit.MILLISECONDS);
+					continue;
+				}
+				catch (RejectedExecutionException ree)
+				{
+					// shutting down, no coalescing anymore
+				}
+			}
+
+			dispatch(channel);
+		}
+	}
+
+	/**
+	 * Dispatches the channel to the executor (once).
+	 */
+	private void dispatch(Channel channel)
+	{
+		synchronized (channels)
+		{
+			if (channel.dispatched)
+				return;
+			channel.dispatched = true;
+		}
+
+		try
+		{
+			executor.execute(channel);
+		}
+		catch (RejectedExecutionException ree)
+		{
+			// shutting down
+			int lost;
+			synchronized (channels)
+			{
+				lost = channel.size();
+				channels.remove(channel.key);
+			}
+			dropped.addAndGet(lost);
+			logger.log(Level.WARNING, "Manager is shutting down, " + lost + " notification(s) to " + channel.administratorInfo + " lost.");
+		}
+	}
+
+	/**
+	 * Delivers the events to the administrator, consecutive <code>components_requested</code>
+	 * (<code>components_released</code>) events are merged (time-stamp of the last one is used).
+	 *
+	 * Events of a failed call are lost (logged and counted as dropped), delivery continues with the next events.
+	 *
+	 * @param	administratorInfo	administrator.
+	 * @param	list				events to deliver.
+	 */
+	private void deliver(ClientInfo administratorInfo, List<Event> list)
+	{
+		Administrator administrator = (Administrator)administratorInfo.getClient();
+
+		Iterator<Event> iterator = list.iterator();
+		Event next = iterator.hasNext() ? iterator.next() : null;
+		while (next != null)
+		{
+			Event event = next;
+			next = iterator.hasNext() ? iterator.next() : null;
+
+			String method = null;
+			// number of events delivered by the call
+			int count = 1;
+			try
+			{
+				switch (event.type)
+				{
+					case CONTAINER_LOGGED_IN:
+						method = "containerLoggedIn";
+						administrator.containerLoggedIn((ContainerInfo)event.info, event.timeStamp, event.executionId);
+						break;
+					case CONTAINER_LOGGED_OUT:
+						method = "containerLoggedOut";
+						administrator.containerLoggedOut(event.handle, event.timeStamp);
+						break;
+					case CLIENT_LOGGED_IN:
+						method = "clientLoggedIn";
+						administrator.clientLoggedIn((ClientInfo)event.info, event.timeStamp, event.executionId);
+						break;
+					case CLIENT_LOGGED_OUT:
+						method = "clientLoggedOut";
+						administrator.clientLoggedOut(event.handle, event.timeStamp);
+						break;
+					case COMPONENT_ACTIVATED:
+						method = "component_activated";
+						administrator.component_activated((ComponentInfo)event.info, event.timeStamp, event.executionId);
+						break;
+					case COMPONENT_DEACTIVATED:
+						method = "component_deactivated";
+						administrator.component_deactivated(event.handle, event.timeStamp);
+						break;
+					case COMPONENTS_REQUESTED:
+					case COMPONENTS_RELEASED:
+					{
+						// merge with the following events of the same type
+						long timeStamp = event.timeStamp;
+						IntArray clients = null;
+						IntArray components = null;
+						while (next != null && next.type == event.type)
+						{
+							if (clients == null)
+							{
+								clients = new IntArray();
+								components = new IntArray();
+								addPairs(clients, components, event);
+							}
+							addPairs(clients, components, next);
+							timeStamp = next.timeStamp;
+							count++;
+							next = iterator.hasNext() ? iterator.next() : null;
+						}
+
+						int[] c = (clients == null) ? event.clients : clients.toArray();
+						int[] h = (components == null) ? event.components : components.toArray();
+						if (event.type == COMPONENTS_REQUESTED)
+						{
+							method = "components_requested";
+							administrator.components_requested(c, h, timeStamp);
+						}
+						else
+						{
+							method = "components_released";
+							administrator.components_released(c, h, timeStamp);
+						}
+						break;
+					}
+					case COMPONENTS_AVAILABLE:
+					{
+						// merge with the following events of the same type
+						List<ComponentInfo> infos = null;
+						while (next != null && next.type == event.type)
+						{
+							if (infos == null)
+							{
+								infos = new ArrayList<ComponentInfo>();
+								infos.addAll(Arrays.asList((ComponentInfo[])event.info));
+							}
+							infos.addAll(Arrays.asList((ComponentInfo[])next.info));
+							count++;
+							next = iterator.hasNext() ? iterator.next() : null;
+						}
+
+						method = "components_available";
+						administrator.components_available(infos == null ? (ComponentInfo[])event.info : infos.toArray(new ComponentInfo[infos.size()]));
+						break;
+					}
+					case COMPONENTS_UNAVAILABLE:
+					{
+						// merge with the following events of the same type
+						List<String> names = null;
+						while (next != null && next.type == event.type)
+						{
+							if (names == null)
+							{
+								names = new ArrayList<String>();
+								names.addAll(Arrays.asList((String[])event.info));
+							}
+							names.addAll(Arrays.asList((String[])next.info));
+							count++;
+							next = iterator.hasNext() ? iterator.next() : null;
+						}
+
+						method = "components_unavailable";
+						administrator.components_unavailable(names == null ? (String[])event.info : names.toArray(new String[names.size()]));
+						break;
+					}
+				}
+				calls.incrementAndGet();
+			}
+			catch (RemoteTransientException re)
+			{
+				dropped.addAndGet(count);
+				logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator." + method + "' on " + administratorInfo + ", " + count + " notification(s) lost.", re);
+			}
+			catch (RemoteException re)
+			{
+				dropped.addAndGet(count);
+				logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator." + method + "' on " + administratorInfo + ", " + count + " notification(s) lost.", re);
+			}
+			catch (Throwable th)
+			{
+				dropped.addAndGet(count);
+				logger.log(Level.SEVERE, "Unhandeled exception caught, " + count + " notification(s) lost.", th);
+			}
+		}
+	}
+
+	/**
+	 * Adds (client, component) pairs of the event, i-th component was requested (released) by the i-th client.
+	 */
+	private static void addPairs(IntArray clients, IntArray components, Event event)
+	{
+		int len = Math.min(event.clients.length, event.components.length);
+		clients.add(event.clients, 0, len);
+		components.add(event.components, 0, len);
+	}
+
+	/**
+	 * Returns the number of events (per administrator).
+	 * @return	the number of queued events.
+	 */
+	public long getEventCount()
+	{
+		return events.get();
+	}
+
+	/**
+	 * Returns the number of remote calls made.
+	 * @return	the number of remote calls made.
+	 */
+	public long getCallCount()
+	{
+		return calls.get();
+	}
+
+	/**
+	 * Returns the number of events dropped by snapshots or lost by failed calls.
+	 * @return	the number of dropped events.
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of times queued events of an administrator were dropped to a snapshot.
+	 * @return	the number of snapshots.
+	 */
+	public long getSnapshotCount()
+	{
+		return snapshots.get();
+	}
+
+	/**
+	 * Stops the coalescing timer and flushes the queued notifications to the executor
+	 * (they are delivered if the executor still accepts and completes them, otherwise they are logged as lost).
+	 */
+	public void shutdown()
+	{
+		timer.shutdownNow();
+
+		List<Channel> waiting = new ArrayList<Channel>();
+		int queued = 0;
+		synchronized (channels)
+		{
+			for (Channel channel : channels.values())
+			{
+				queued += channel.size();
+				if (!channel.dispatched)
+					waiting.add(channel);
+			}
+		}
+
+		if (queued > 0)
+			logger.log(Level.FINE, "Flushing " + queued + " queued notification(s) to " + waiting.size() + " waiting administrator(s).");
+
+		for (Channel channel : waiting)
+			dispatch(channel);
+	}
+
+}
@@ -0,0 +1,402 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.HandleConstants;
+
+/**
+ * Lock-free view of the components stored in the manager's components <code>HandleDataStore</code>.
+ *
+ * <code>HandleDataStore</code> is not thread-safe and it is protected by manager's <code>componentsLock</code>.
+ * Looking up a component by name there means walking the whole store with the lock held,
+ * which serializes all the concurrent <code>getComponent</code> requests.
+ * This registry mirrors the store (it is updated by the recovery commands that modify it)
+ * and allows to read <code>ComponentInfo</code> instances by handle and by name without any locking.
+ *
+ * Mirrored semantics:
+ * <UL>
+ * 	<LI>{@link #get(int)} returns the data of every allocated handle, also of preallocated ones
+ * 		(as <code>HandleDataStore#isAllocated</code> followed by <code>HandleDataStore#get</code>),</LI>
+ * 	<LI>{@link #get(String)} returns only completely allocated components
+ * 		(as walking the store from <code>HandleDataStore#first</code>).</LI>
+ * </UL>
+ *
+ * Handles are allocated by the store (the registry only mirrors the allocations in a {@link HandleTable})
+ * and component handles do not carry a generation, so a lookup by a component handle resolves
+ * the component currently stored with its index, exactly as <code>HandleDataStore#get</code> does.
+ *
+ * Completely allocated components are also indexed by name and type in sorted maps
+ * (generation-tagged table handles are kept per type, so an entry of a deallocated component
+ * never resolves to a component that reused its index), this allows to resolve wildchar queries
+ * with a literal prefix (see {@link #find(WildcharPattern, WildcharPattern)}) without walking all the components.
+ *
+ * The registry also provides a fixed set of lock stripes, a stripe is chosen by the name of the component.
+ * Stripes are used to guard short critical sections that touch a single component (or its
+ * activation synchronization lock) instead of the global <code>componentsLock</code>.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentRegistry
+{
+
+	/**
+	 * Number of lock stripes (power of 2).
+	 */
+	private static final int STRIPES = 64;
+
+	/**
+	 * Components by (masked) handle, includes preallocated handles.
+	 * Table index is the masked handle, table handles (with the generation) are used only internally.
+	 */
+	private final HandleTable<ComponentInfo> byHandle = new HandleTable<ComponentInfo>(HandleConstants.HANDLE_MASK);
+
+	/**
+	 * Completely allocated components by name.
+	 */
+	private final ConcurrentHashMap<String, ComponentInfo> byName = new ConcurrentHashMap<String, ComponentInfo>(256);
+
+	/**
+	 * Completely allocated components sorted by name (prefix index).
+	 */
+	private final ConcurrentSkipListMap<String, ComponentInfo> sortedByName = new ConcurrentSkipListMap<String, ComponentInfo>();
+
+	/**
+	 * Table handles of completely allocated components sorted by type (prefix index).
+	 */
+	private final ConcurrentSkipListMap<String, Set<Integer>> byType = new ConcurrentSkipListMap<String, Set<Integer>>();
+
+	/**
+	 * Preallocated (not yet acknowledged) handles.
+	 */
+	private final Set<Integer> preallocated = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+	/**
+	 * Lock stripes.
+	 */
+	private final Object[] stripes = new Object[STRIPES];
+
+	/**
+	 * Constructor.
+	 */
+	public ComponentRegistry()
+	{
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new Object();
+	}
+
+	/**
+	 * Returns the lock stripe of the given name.
+	 *
+	 * @param	name	name of the component, non-<code>null</code>
+	 * @return	object to synchronize on.
+	 */
+	public Object getStripe(String name)
+	{
+		int h = name.hashCode();
+		h ^= (h >>> 16);
+		return stripes[h & (STRIPES - 1)];
+	}
+
+	/**
+	 * Returns component info of allocated (or preallocated) handle.
+	 * Component handles carry no generation, the component currently allocated with the handle is returned.
+	 *
+	 * @param	handle	handle (without type mask)
+	 * @return	component info, <code>null</code> if handle is not allocated or has no data set.
+	 */
+	public ComponentInfo get(int handle)
+	{
+		return byHandle.get(byHandle.handle(handle));
+	}
+
+	/**
+	 * Returns component info of completely allocated component with given name.
+	 *
+	 * @param	name	name of the component, non-<code>null</code>
+	 * @return	component info, <code>null</code> if there is no such component.
+	 */
+	public ComponentInfo get(String name)
+	{
+		return byName.get(name);
+	}
+
+	/**
+	 * Notifies about handle allocation.
+	 *
+	 * @param	handle		allocated handle, <code>0</code> if allocation failed.
+	 * @param	preallocate	<code>true</code> if handle was only preallocated.
+	 */
+	public void allocated(int handle, boolean preallocate)
+	{
+		if (handle == 0)
+			return;
+
+		byHandle.allocate(handle);
+
+		if (preallocate)
+			preallocated.add(handle);
+		else
+			preallocated.remove(handle);
+	}
+
+	/**
+	 * Notifies about acknowledged allocation of preallocated handle.
+	 *
+	 * @param	handle	handle whose allocation was acknowledged.
+	 */
+	public void ackAllocation(int handle)
+	{
+		preallocated.remove(handle);
+
+		ComponentInfo info = get(handle);
+		if (info != null)
+			putName(info);
+	}
+
+	/**
+	 * Notifies about data being set to the handle.
+	 *
+	 * @param	handle	handle of the data.
+	 * @param	info	component info, non-<code>null</code>
+	 */
+	public void set(int handle, ComponentInfo info)
+	{
+		int h = byHandle.handle(handle);
+		if (h == 0)
+			h = byHandle.allocate(handle);
+		ComponentInfo old = byHandle.get(h);
+		if (old != null && old != info)
+			removeName(old);
+		byHandle.set(h, info);
+
+		if (!preallocated.contains(handle))
+			putName(info);
+	}
+
+	/**
+	 * Notifies about handle deallocation.
+	 *
+	 * @param	handle	deallocated handle.
+	 */
+	public void deallocate(int handle)
+	{
+		preallocated.remove(handle);
+
+		int h = byHandle.handle(handle);
+		ComponentInfo old = byHandle.get(h);
+		// type index is keyed by the table handle, remove before it becomes stale
+		if (old != null)
+			removeName(old);
+		byHandle.deallocate(h);
+	}
+
+	/**
+	 * Adds component to the name and type indexes.
+	 * @param	info	component info
+	 */
+	private void putName(ComponentInfo info)
+	{
+		ComponentInfo old = byName.put(info.getName(), info);
+		sortedByName.put(info.getName(), info);
+		if (old != null && old != info)
+			removeType(old);
+		addType(info);
+	}
+
+	/**
+	 * Removes component from the name and type indexes (only if it is still indexed).
+	 * @param	info	component info
+	 */
+	private void removeName(ComponentInfo info)
+	{
+		if (byName.remove(info.getName(), info))
+		{
+			sortedByName.remove(info.getName(), info);
+			removeType(info);
+		}
+	}
+
+	/**
+	 * Returns the table handle of the component.
+	 * @param	info	component info
+	 * @return	the table handle, <code>0</code> if the component is not stored in the table.
+	 */
+	private int tableHandle(ComponentInfo info)
+	{
+		int h = byHandle.handle(info.getHandle() & HandleConstants.HANDLE_MASK);
+		return byHandle.get(h) == info ? h : 0;
+	}
+
+	/**
+	 * Adds component (table) handle to the set of its type.
+	 * @param	info	component info
+	 */
+	private void addType(ComponentInfo info)
+	{
+		if (info.getType() == null)
+			return;
+
+		int h = tableHandle(info);
+		if (h == 0)
+			return;
+
+		Set<Integer> handles = byType.get(info.getType());
+		if (handles == null)
+		{
+			handles = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+			Set<Integer> existing = byType.putIfAbsent(info.getType(), handles);
+			if (existing != null)
+				handles = existing;
+		}
+		handles.add(h);
+	}
+
+	/**
+	 * Removes component (table) handle from the set of its type.
+	 * @param	info	component info
+	 */
+	private void removeType(ComponentInfo info)
+	{
+		if (info.getType() == null)
+			return;
+
+		int h = tableHandle(info);
+		Set<Integer> handles = byType.get(info.getType());
+		if (handles != null && h != 0)
+			handles.remove(h);
+	}
+
+	/**
+	 * Returns the view of the sorted map with the keys starting with the given prefix.
+	 * @param	map		sorted map
+	 * @param	prefix	prefix, empty prefix selects the whole map
+	 * @return	the view of the map.
+	 */
+	private static <V> NavigableMap<String, V> prefixRange(ConcurrentSkipListMap<String, V> map, String prefix)
+	{
+		int len = prefix.length();
+		if (len == 0)
+			return map;
+
+		char last = prefix.charAt(len - 1);
+		if (last == Character.MAX_VALUE)
+			return map.tailMap(prefix, true);
+
+		String end = prefix.substring(0, len - 1) + (char)(last + 1);
+		return map.subMap(prefix, true, end, false);
+	}
+
+	/**
+	 * Finds completely allocated components matching given name and type patterns.
+	 *
+	 * Literal name is looked up directly, a name pattern with a literal prefix visits
+	 * only the components whose names start with the prefix, otherwise a type pattern with
+	 * a literal prefix selects the types to be visited. Only a query without any literal prefix
+	 * visits all the components.
+	 *
+	 * @param	namePattern	name pattern, non-<code>null</code>
+	 * @param	typePattern	type pattern, non-<code>null</code>
+	 * @return	list of matching components, non-<code>null</code>
+	 */
+	public List<ComponentInfo> find(WildcharPattern namePattern, WildcharPattern typePattern)
+	{
+		List<ComponentInfo> list = new ArrayList<ComponentInfo>();
+
+		if (namePattern.isLiteral())
+		{
+			ComponentInfo info = byName.get(namePattern.getPattern());
+			if (info != null && info.getType() != null && typePattern.matches(info.getType()))
+				list.add(info);
+		}
+		else if (namePattern.getPrefix().length() > 0 || typePattern.getPrefix().length() == 0)
+		{
+			for (ComponentInfo info : prefixRange(sortedByName, namePattern.getPrefix()).values())
+				if (namePattern.matches(info.getName()) &&
+					info.getType() != null && typePattern.matches(info.getType()))
+					list.add(info);
+		}
+		else
+		{
+			for (Map.Entry<String, Set<Integer>> entry : prefixRange(byType, typePattern.getPrefix()).entrySet())
+			{
+				if (!typePattern.matches(entry.getKey()))
+					continue;
+
+				for (Integer handle : entry.getValue())
+				{
+					// lookup with the generation, stale handle returns null
+					ComponentInfo info = byHandle.get(handle);
+					if (info != null && byName.get(info.getName()) == info &&
+						entry.getKey().equals(info.getType()) &&
+						namePattern.matches(info.getName()))
+						list.add(info);
+				}
+			}
+		}
+
+		return list;
+	}
+
+	/**
+	 * Rebuilds the registry from the given store (e.g. after deserialization).
+	 * Access to the store must be synchronized by the caller.
+	 *
+	 * @param	components	the components store, non-<code>null</code>
+	 */
+	public void rebuild(HandleDataStore components)
+	{
+		byHandle.clear();
+		byName.clear();
+		sortedByName.clear();
+		byType.clear();
+		preallocated.clear();
+
+		// all allocated handles, also preallocated ones
+		int capacity = components.capacity();
+		for (int h = 1; h <= capacity; h++)
+		{
+			if (components.isAllocated(h))
+			{
+				int th = byHandle.allocate(h);
+				ComponentInfo info = (ComponentInfo)components.get(h);
+				if (info != null)
+					byHandle.set(th, info);
+				preallocated.add(h);
+			}
+		}
+
+		// listed are completely allocated
+		int h = components.first();
+		while (h != 0)
+		{
+			preallocated.remove(h);
+			ComponentInfo info = (ComponentInfo)components.get(h);
+			if (info != null && !byName.containsKey(info.getName()))
+				putName(info);
+			h = components.next(h);
+		}
+	}
+
+	/**
+	 * Returns the number of components (including preallocated ones).
+	 *
+	 * @return	the number of components.
+	 */
+	public int size()
+	{
+		return byHandle.size();
+	}
+
+}
@@ -0,0 +1,575 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free table of elements referred to using generation-tagged handles.
+ *
+ * Unlike <code>HandleDataStore</code> (which relies on the callers' locks) all the operations
+ * of this table are thread-safe without locking:
+ * <UL>
+ * 	<LI><B>allocation</B> - lock-free O(1), free indices are kept in a stack (with a stamped head to avoid ABA),
+ * 							never used indices are taken when the stack is empty.</LI>
+ * 	<LI><B>deallocation</B> - lock-free O(1), the generation of the slot is incremented, so the deallocated
+ * 							  handle (and all the copies of it) become stale.</LI>
+ * 	<LI><B>retrieval</B> - lock-free O(1) (retried only if the slot changes while being read),
+ * 						   stale handles return <code>null</code>.</LI>
+ * 	<LI><B>update</B> - lock-free, elements are stored tagged with the handle they were set with,
+ * 						an element set with a handle deallocated (and reallocated) in the meantime never
+ * 						replaces nor is returned as the element of the new handle.</LI>
+ * 	<LI><B>enumeration</B> - over a compact <code>int[]</code> snapshot of allocated handles.</LI>
+ * </UL>
+ *
+ * Handle is composed of the generation (bits 16 to 30) and the index (bits 0 to 15, <code>0</code> is reserved),
+ * handle <code>0</code> is never allocated. Slots are kept in lazily created chunks, memory is
+ * not allocated for unused handles.
+ *
+ * Indices can also be assigned by another allocator, see {@link #allocate(int)}.
+ * The manager does so: component handles are still allocated by the (serialized) components
+ * <code>HandleDataStore</code> under the manager's locks and <code>ComponentRegistry</code> mirrors
+ * them into this table to serve the lock-free reads, i.e. there the allocation itself is not lock-free.
+ *
+ * @version	@@VERSION@@
+ */
+public class HandleTable<T>
+{
+
+	/**
+	 * Number of bits of the index.
+	 */
+	private static final int INDEX_BITS = 16;
+
+	/**
+	 * Index mask of the handle.
+	 */
+	public static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+	/**
+	 * Generation mask (after shifting), keeps handles positive.
+	 */
+	private static final int GENERATION_MASK = 0x7FFF;
+
+	/**
+	 * Slot state bits (generation is stored above them).
+	 */
+	private static final int ALLOCATED = 1;
+	private static final int IN_FREE_LIST = 2;
+	private static final int STATE_BITS = 2;
+
+	/**
+	 * Chunk size (power of 2).
+	 */
+	private static final int CHUNK_BITS = 8;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Element tagged with its handle.
+	 */
+	private static class Entry
+	{
+		final int handle;
+		final Object value;
+
+		Entry(int handle, Object value)
+		{
+			this.handle = handle;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Chunk of slots.
+	 */
+	private static class Chunk
+	{
+		/**
+		 * State of the slots (generation, allocated and in free list bits).
+		 */
+		final AtomicIntegerArray state = new AtomicIntegerArray(CHUNK_SIZE);
+
+		/**
+		 * Next index in the free list.
+		 */
+		final AtomicIntegerArray next = new AtomicIntegerArray(CHUNK_SIZE);
+
+		/**
+		 * Data of the slots.
+		 */
+		final AtomicReferenceArray<Entry> data = new AtomicReferenceArray<Entry>(CHUNK_SIZE);
+	}
+
+	/**
+	 * Chunks.
+	 */
+	private final AtomicReferenceArray<Chunk> chunks;
+
+	/**
+	 * Max. index.
+	 */
+	private final int maxIndex;
+
+	/**
+	 * Free list head (stamp in upper 32 bits, index in lower 32 bits, <code>0</code> index means empty).
+	 */
+	private final AtomicLong freeHead = new AtomicLong(0);
+
+	/**
+	 * Lowest never used index.
+	 */
+	private final AtomicInteger unused = new AtomicInteger(1);
+
+	/**
+	 * Number of allocated handles.
+	 */
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	/**
+	 * Constructs table with max. index of <code>INDEX_MASK</code>.
+	 */
+	public HandleTable()
+	{
+		this(INDEX_MASK);
+	}
+
+	/**
+	 * Constructs table.
+	 *
+	 * @param	maxIndex	max. index (i.e. capacity) of the table, at most <code>INDEX_MASK</code>.
+	 * @exception	IllegalArgumentException if the specified max. index is out of range.
+	 */
+	public HandleTable(int maxIndex)
+	{
+		if (maxIndex <= 0 || maxIndex > INDEX_MASK)
+			throw new IllegalArgumentException("Illegal maxIndex: " + maxIndex);
+
+		this.maxIndex = maxIndex;
+		this.chunks = new AtomicReferenceArray<Chunk>((maxIndex >>> CHUNK_BITS) + 1);
+	}
+
+	/**
+	 * Returns the index of the handle.
+	 *
+	 * @param	handle	handle.
+	 * @return	the index of the handle.
+	 */
+	public static int index(int handle)
+	{
+		return handle & INDEX_MASK;
+	}
+
+	/**
+	 * Returns the chunk of the index, <code>null</code> if not created.
+	 */
+	private Chunk chunk(int index)
+	{
+		return chunks.get(index >>> CHUNK_BITS);
+	}
+
+	/**
+	 * Returns the chunk of the index, creates it if necessary.
+	 */
+	private Chunk ensureChunk(int index)
+	{
+		int c = index >>> CHUNK_BITS;
+		Chunk chunk = chunks.get(c);
+		if (chunk == null)
+		{
+			chunks.compareAndSet(c, null, new Chunk());
+			chunk = chunks.get(c);
+		}
+		return chunk;
+	}
+
+	/**
+	 * Composes the handle.
+	 */
+	private static int handle(int state, int index)
+	{
+		return ((state >>> STATE_BITS) << INDEX_BITS) | index;
+	}
+
+	/**
+	 * Returns the state with the next generation (generation <code>0</code> is skipped).
+	 */
+	private static int nextGeneration(int state)
+	{
+		int generation = ((state >>> STATE_BITS) + 1) & GENERATION_MASK;
+		if (generation == 0)
+			generation = 1;
+		return generation << STATE_BITS;
+	}
+
+	/**
+	 * Allocates a handle.
+	 *
+	 * @return	newly allocated handle if allocation was successful, otherwise <code>0</code>
+	 */
+	public int allocate()
+	{
+		while (true)
+		{
+			int index = pop();
+			if (index == 0)
+			{
+				index = takeUnused();
+				if (index == 0)
+					return 0;
+			}
+
+			Chunk chunk = ensureChunk(index);
+			int slot = index & CHUNK_MASK;
+			while (true)
+			{
+				int state = chunk.state.get(slot);
+				int newState = state & ~IN_FREE_LIST;
+				if ((state & ALLOCATED) != 0)
+				{
+					// allocated explicitly while in the free list, skip it
+					if (chunk.state.compareAndSet(slot, state, newState))
+						break;
+				}
+				else
+				{
+					if ((newState >>> STATE_BITS) == 0)
+						newState = nextGeneration(newState);
+					chunk.data.set(slot, null);
+					newState |= ALLOCATED;
+					if (chunk.state.compareAndSet(slot, state, newState))
+					{
+						size.incrementAndGet();
+						return handle(newState, index);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Allocates the handle with the given index (e.g. to mirror an existing handle allocation).
+	 *
+	 * @param	index	index to be allocated.
+	 * @return	newly allocated handle if allocation was successful, otherwise <code>0</code>
+	 */
+	public int allocate(int index)
+	{
+		if (index <= 0 || index > maxIndex)
+			return 0;
+
+		// skipped never used indices are put to the free list
+		while (true)
+		{
+			int u = unused.get();
+			if (index < u)
+				break;
+			if (unused.compareAndSet(u, index + 1))
+			{
+				for (int i = u; i < index; i++)
+					release(ensureChunk(i), i & CHUNK_MASK, i);
+				break;
+			}
+		}
+
+		Chunk chunk = ensureChunk(index);
+		int slot = index & CHUNK_MASK;
+		while (true)
+		{
+			int state = chunk.state.get(slot);
+			if ((state & ALLOCATED) != 0)
+				return 0;
+
+			int newState = state;
+			if ((newState >>> STATE_BITS) == 0)
+				newState = nextGeneration(newState) | (state & IN_FREE_LIST);
+			chunk.data.set(slot, null);
+			newState |= ALLOCATED;
+			if (chunk.state.compareAndSet(slot, state, newState))
+			{
+				size.incrementAndGet();
+				return handle(newState, index);
+			}
+		}
+	}
+
+	/**
+	 * Deallocates the handle, the handle becomes stale.
+	 *
+	 * @param	handle	handle to be deallocated.
+	 * @return	<code>true</code> if handle was deallocated, <code>false</code> if it was not allocated (or stale).
+	 */
+	public boolean deallocate(int handle)
+	{
+		int index = handle & INDEX_MASK;
+		if (index == 0 || index > maxIndex)
+			return false;
+
+		Chunk chunk = chunk(index);
+		if (chunk == null)
+			return false;
+
+		int slot = index & CHUNK_MASK;
+		while (true)
+		{
+			int state = chunk.state.get(slot);
+			if ((state & ALLOCATED) == 0 || handle(state, index) != handle)
+				return false;
+
+			// cleared before, slot can be reused immediately after the state changes
+			chunk.data.set(slot, null);
+
+			int newState = nextGeneration(state) | IN_FREE_LIST;
+			if (chunk.state.compareAndSet(slot, state, newState))
+			{
+				size.decrementAndGet();
+				// already in the free list if it was allocated explicitly
+				if ((state & IN_FREE_LIST) == 0)
+					push(chunk, slot, index);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the element of the handle.
+	 *
+	 * @param	handle	handle of the element.
+	 * @return	the element, <code>null</code> if handle is not allocated (or stale) or has no element set.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int handle)
+	{
+		int index = handle & INDEX_MASK;
+		if (index == 0 || index > maxIndex)
+			return null;
+
+		Chunk chunk = chunk(index);
+		if (chunk == null)
+			return null;
+
+		int slot = index & CHUNK_MASK;
+		while (true)
+		{
+			int state = chunk.state.get(slot);
+			if ((state & ALLOCATED) == 0 || handle(state, index) != handle)
+				return null;
+
+			Entry entry = chunk.data.get(slot);
+			// slot did not change while reading
+			if (chunk.state.get(slot) == state)
+				return (entry != null && entry.handle == handle) ? (T)entry.value : null;
+		}
+	}
+
+	/**
+	 * Sets the element of the handle.
+	 *
+	 * @param	handle	handle of the element.
+	 * @param	data	element to be set.
+	 * @return	<code>true</code> if element was set, <code>false</code> if handle is not allocated (or stale).
+	 */
+	public boolean set(int handle, T data)
+	{
+		int index = handle & INDEX_MASK;
+		Entry entry = new Entry(handle, data);
+		while (true)
+		{
+			if (!isAllocated(handle))
+				return false;
+
+			Chunk chunk = chunk(index);
+			int slot = index & CHUNK_MASK;
+			// current entry is either of this handle or a stale one, both can be replaced
+			Entry current = chunk.data.get(slot);
+			if (!chunk.data.compareAndSet(slot, current, entry))
+				continue;
+
+			if (isAllocated(handle))
+				return true;
+
+			// deallocated in the meantime, remove the entry unless already replaced by the new generation
+			chunk.data.compareAndSet(slot, entry, null);
+			return false;
+		}
+	}
+
+	/**
+	 * Determines whether a given handle is allocated (and not stale).
+	 *
+	 * @param	handle	the handle in question.
+	 * @return	<code>true</code> if handle is allocated.
+	 */
+	public boolean isAllocated(int handle)
+	{
+		int index = handle & INDEX_MASK;
+		if (index == 0 || index > maxIndex)
+			return false;
+
+		Chunk chunk = chunk(index);
+		if (chunk == null)
+			return false;
+
+		int state = chunk.state.get(index & CHUNK_MASK);
+		return (state & ALLOCATED) != 0 && handle(state, index) == handle;
+	}
+
+	/**
+	 * Returns the current handle of the index.
+	 *
+	 * @param	index	index.
+	 * @return	the handle currently allocated with the given index, <code>0</code> if index is not allocated.
+	 */
+	public int handle(int index)
+	{
+		if (index <= 0 || index > maxIndex)
+			return 0;
+
+		Chunk chunk = chunk(index);
+		if (chunk == null)
+			return 0;
+
+		int state = chunk.state.get(index & CHUNK_MASK);
+		return (state & ALLOCATED) != 0 ? handle(state, index) : 0;
+	}
+
+	/**
+	 * Returns a snapshot of the allocated handles, in the order of their indices.
+	 *
+	 * @return	allocated handles.
+	 */
+	public int[] handles()
+	{
+		int limit = Math.min(unused.get(), maxIndex + 1);
+		int[] handles = new int[Math.max(size.get(), 16)];
+		int count = 0;
+		for (int c = 0; c <= (limit - 1) >>> CHUNK_BITS; c++)
+		{
+			Chunk chunk = chunks.get(c);
+			if (chunk == null)
+				continue;
+
+			int from = Math.max(1, c << CHUNK_BITS);
+			int to = Math.min(limit, (c + 1) << CHUNK_BITS);
+			for (int index = from; index < to; index++)
+			{
+				int state = chunk.state.get(index & CHUNK_MASK);
+				if ((state & ALLOCATED) != 0)
+				{
+					if (count == handles.length)
+						handles = Arrays.copyOf(handles, count * 2);
+					handles[count++] = handle(state, index);
+				}
+			}
+		}
+		return count == handles.length ? handles : Arrays.copyOf(handles, count);
+	}
+
+	/**
+	 * Deallocates all the handles.
+	 */
+	public void clear()
+	{
+		int[] handles = handles();
+		for (int i = 0; i < handles.length; i++)
+			deallocate(handles[i]);
+	}
+
+	/**
+	 * Returns the number of allocated handles.
+	 *
+	 * @return	the number of allocated handles.
+	 */
+	public int size()
+	{
+		return size.get();
+	}
+
+	/**
+	 * Returns the max. index (capacity) of this table.
+	 *
+	 * @return	the max. index.
+	 */
+	public int capacity()
+	{
+		return maxIndex;
+	}
+
+	/**
+	 * Takes never used index.
+	 *
+	 * @return	never used index, <code>0</code> if capacity is exhausted.
+	 */
+	private int takeUnused()
+	{
+		while (true)
+		{
+			int index = unused.get();
+			if (index > maxIndex)
+				return 0;
+			if (unused.compareAndSet(index, index + 1))
+				return index;
+		}
+	}
+
+	/**
+	 * Puts never used index to the free list.
+	 */
+	private void release(Chunk chunk, int slot, int index)
+	{
+		while (true)
+		{
+			int state = chunk.state.get(slot);
+			if ((state & (ALLOCATED | IN_FREE_LIST)) != 0)
+				return;
+			if (chunk.state.compareAndSet(slot, state, state | IN_FREE_LIST))
+			{
+				push(chunk, slot, index);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Pushes the index to the free list.
+	 */
+	private void push(Chunk chunk, int slot, int index)
+	{
+		while (true)
+		{
+			long head = freeHead.get();
+			chunk.next.set(slot, (int)head);
+			long newHead = (((head >>> 32) + 1) << 32) | index;
+			if (freeHead.compareAndSet(head, newHead))
+				return;
+		}
+	}
+
+	/**
+	 * Pops the index from the free list.
+	 *
+	 * @return	free index, <code>0</code> if free list is empty.
+	 */
+	private int pop()
+	{
+		while (true)
+		{
+			long head = freeHead.get();
+			int index = (int)head;
+			if (index == 0)
+				return 0;
+
+			int next = chunk(index).next.get(index & CHUNK_MASK);
+			long newHead = (((head >>> 32) + 1) << 32) | (next & 0xFFFFFFFFL);
+			if (freeHead.compareAndSet(head, newHead))
+				return index;
+		}
+	}
+
+}
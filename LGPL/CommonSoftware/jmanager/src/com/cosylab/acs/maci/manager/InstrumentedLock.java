@@ -0,0 +1,100 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A <code>Lock</code> that delegates to another lock and records the time
+ * callers wait to acquire it into a {@link LatencyHistogram}.
+ *
+ * Unlike {@link ProfilingReentrantLock} (which logs every lock usage and is meant for debugging)
+ * recording costs only two <code>System.nanoTime()</code> calls, so it can be always on.
+ *
+ * @version	@@VERSION@@
+ */
+public class InstrumentedLock implements Lock
+{
+
+	/**
+	 * Lock delegate.
+	 */
+	private final Lock delegate;
+
+	/**
+	 * Histogram of the lock waits.
+	 */
+	private final LatencyHistogram waits;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param	delegate	lock to delegate to, non-<code>null</code>
+	 * @param	waits		histogram of the lock waits, non-<code>null</code>
+	 */
+	public InstrumentedLock(Lock delegate, LatencyHistogram waits)
+	{
+		this.delegate = delegate;
+		this.waits = waits;
+	}
+
+	/**
+	 * @see java.util.concurrent.locks.Lock#lock()
+	 */
+	public void lock()
+	{
+		long start = System.nanoTime();
+		delegate.lock();
+		waits.recordSince(start);
+	}
+
+	/**
+	 * @see java.util.concurrent.locks.Lock#lockInterruptibly()
+	 */
+	public void lockInterruptibly() throws InterruptedException
+	{
+		long start = System.nanoTime();
+		delegate.lockInterruptibly();
+		waits.recordSince(start);
+	}
+
+	/**
+	 * @see java.util.concurrent.locks.Lock#tryLock()
+	 */
+	public boolean tryLock()
+	{
+		return delegate.tryLock();
+	}
+
+	/**
+	 * @see java.util.concurrent.locks.Lock#tryLock(long, java.util.concurrent.TimeUnit)
+	 */
+	public boolean tryLock(long time, TimeUnit unit) throws InterruptedException
+	{
+		long start = System.nanoTime();
+		boolean locked = delegate.tryLock(time, unit);
+		waits.recordSince(start);
+		return locked;
+	}
+
+	/**
+	 * @see java.util.concurrent.locks.Lock#unlock()
+	 */
+	public void unlock()
+	{
+		delegate.unlock();
+	}
+
+	/**
+	 * @see java.util.concurrent.locks.Lock#newCondition()
+	 */
+	public Condition newCondition()
+	{
+		return delegate.newCondition();
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies (in nanoseconds).
+ *
+ * Latencies are counted in power-of-2 buckets (bucket <code>i</code> holds latencies
+ * in range <code>[2^(i-1), 2^i)</code> ns), recording is a few atomic increments,
+ * so the histogram can be always on. Percentiles are estimated as the upper bound of the bucket,
+ * i.e. they are accurate within a factor of 2.
+ *
+ * @version	@@VERSION@@
+ */
+public class LatencyHistogram
+{
+
+	/**
+	 * Number of buckets.
+	 */
+	public static final int BUCKETS = 64;
+
+	/**
+	 * Counts per bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Number of recorded latencies.
+	 */
+	private final AtomicLong count = new AtomicLong(0);
+
+	/**
+	 * Sum of recorded latencies.
+	 */
+	private final AtomicLong total = new AtomicLong(0);
+
+	/**
+	 * Max. recorded latency.
+	 */
+	private final AtomicLong max = new AtomicLong(0);
+
+	/**
+	 * Records the latency.
+	 *
+	 * @param	nanos	latency in ns.
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+			nanos = 0;
+
+		buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+
+		long m = max.get();
+		while (nanos > m && !max.compareAndSet(m, nanos))
+			m = max.get();
+	}
+
+	/**
+	 * Records the latency since the given start.
+	 *
+	 * @param	startNanos	start time as returned by <code>System.nanoTime()</code>.
+	 */
+	public void recordSince(long startNanos)
+	{
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Returns the number of recorded latencies.
+	 * @return	the number of recorded latencies.
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * Returns the sum of recorded latencies in ns.
+	 * @return	the sum of recorded latencies in ns.
+	 */
+	public long getTotal()
+	{
+		return total.get();
+	}
+
+	/**
+	 * Returns the max. recorded latency in ns.
+	 * @return	the max. recorded latency in ns.
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Returns the copy of the bucket counts.
+	 * @return	the copy of the bucket counts.
+	 */
+	public long[] getBuckets()
+	{
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			copy[i] = buckets.get(i);
+		return copy;
+	}
+
+	/**
+	 * Returns the estimated percentile in ns.
+	 *
+	 * @param	percentile	percentile (0 - 100).
+	 * @return	the estimated percentile in ns (upper bound of the bucket).
+	 */
+	public long getPercentile(double percentile)
+	{
+		return percentile(getBuckets(), percentile);
+	}
+
+	/**
+	 * Returns the estimated percentile of given bucket counts.
+	 *
+	 * @param	counts		bucket counts.
+	 * @param	percentile	percentile (0 - 100).
+	 * @return	the estimated percentile in ns (upper bound of the bucket), <code>0</code> if there are no counts.
+	 */
+	public static long percentile(long[] counts, double percentile)
+	{
+		long n = 0;
+		for (int i = 0; i < counts.length; i++)
+			n += counts[i];
+		if (n == 0)
+			return 0;
+
+		long rank = (long)Math.ceil(n * percentile / 100.0);
+		if (rank < 1)
+			rank = 1;
+
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			cumulative += counts[i];
+			if (cumulative >= rank)
+				return upperBound(i);
+		}
+		return upperBound(counts.length - 1);
+	}
+
+	/**
+	 * Returns the upper bound of the bucket in ns.
+	 */
+	private static long upperBound(int bucket)
+	{
+		return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket);
+	}
+
+}
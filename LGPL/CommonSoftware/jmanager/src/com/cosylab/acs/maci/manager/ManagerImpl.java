@@ -12,6 +12,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
@@ -22,6 +23,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -29,7 +31,9 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -99,9 +103,10 @@ import com.cosylab.acs.maci.RemoteException;
 import com.cosylab.acs.maci.RemoteTransientException;
 import com.cosylab.acs.maci.ServiceDaemon;
 import com.cosylab.acs.maci.StatusHolder;
-import com.cosylab.acs.maci.SynchronousAdministrator;
 import com.cosylab.acs.maci.TimeoutRemoteException;
 import com.cosylab.acs.maci.Transport;
+import com.cosylab.acs.maci.loadbalancing.ContainerLoad;
+import com.cosylab.acs.maci.loadbalancing.ContainerLoadMonitor;
 import com.cosylab.acs.maci.loadbalancing.LoadBalancingStrategy;
 import com.cosylab.acs.maci.manager.app.ManagerContainerServices;
 import com.cosylab.acs.maci.manager.recovery.AdministratorCommandAllocate;
@@ -114,6 +119,7 @@ import com.cosylab.acs.maci.manager.recovery.ClientCommandDeallocate;
 import com.cosylab.acs.maci.manager.recovery.ClientCommandSet;
 import com.cosylab.acs.maci.manager.recovery.ClientInfoCommandComponentAdd;
 import com.cosylab.acs.maci.manager.recovery.ClientInfoCommandComponentRemove;
+import com.cosylab.acs.maci.manager.recovery.CommandNotDurableException;
 import com.cosylab.acs.maci.manager.recovery.ComponentCommandAckAlloc;
 import com.cosylab.acs.maci.manager.recovery.ComponentCommandAllocate;
 import com.cosylab.acs.maci.manager.recovery.ComponentCommandAllocateHandle;
@@ -131,13 +137,13 @@ import com.cosylab.acs.maci.manager.recovery.ContainerCommandUpdate;
 import com.cosylab.acs.maci.manager.recovery.ContainerInfoCommandComponentAdd;
 import com.cosylab.acs.maci.manager.recovery.ContainerInfoCommandComponentRemove;
 import com.cosylab.acs.maci.manager.recovery.DefaultComponentCommandPut;
+import com.cosylab.acs.maci.manager.recovery.JournalPrevayler;
 import com.cosylab.acs.maci.manager.recovery.UnavailableComponentCommandPut;
 import com.cosylab.acs.maci.manager.recovery.UnavailableComponentCommandRemove;
 import com.cosylab.acs.maci.plug.ManagerProxy;
 import com.cosylab.cdb.client.CDBAccess;
 import com.cosylab.cdb.client.DAOProxy;
 import com.cosylab.cdb.client.DAOProxyConnectionListener;
-import com.cosylab.util.WildcharMatcher;
 
 /**
  * This class is an implementation of MACI com.cosylab.acs.maci.Manager.
@@ -374,6 +380,16 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	
 	private transient Map<Object, GroupedNotifyTask> groupedNotifyTaskMap;
 
+	/**
+	 * Coalescing notifier of the administrators.
+	 */
+	private transient AdministratorNotifier administratorNotifier;
+
+	/**
+	 * Latency and contention statistics.
+	 */
+	private transient ManagerStatistics statistics;
+
 	interface GroupedRunnable extends Runnable {
 		public void cancelAll();
 		public boolean isCancelAll();
@@ -654,6 +670,17 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient Lock componentsLock = null;
 
+	/**
+	 * Lock-free view of {@link #components}, updated by the recovery commands.
+	 * Used to lookup components by handle and by name without acquiring {@link #componentsLock},
+	 * which is needed only to modify (and walk) the <code>components</code> store.
+	 * Operations on a single component are serialized by its activation synchronization lock
+	 * (see {@link #acquireSynchronizationObject(String, long, String)}).
+	 * The clients and the components lists of a component are read and modified
+	 * only holding the stripe of its name (see {@link ComponentRegistry#getStripe(String)}).
+	 */
+	private transient ComponentRegistry componentRegistry = null;
+
 	public enum WhyUnloadedReason { REMOVED, TIMEOUT, DISAPPEARED, REPLACED };
 	/**
 	 * Monitor entry generated at every handle removal.
@@ -726,6 +753,11 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient Timer heartbeatTask = null;
 
+	/**
+	 * Ping scheduler.
+	 */
+	private transient PingScheduler pingScheduler = null;
+
 	/**
 	 * Delayed release timer.
 	 */
@@ -771,6 +803,12 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient ThreadPoolExecutor threadPool;
 
+	/**
+	 * Executor of the startup component activations (they must not wait on the ordered thread pool
+	 * since container post-login activation runs on it).
+	 */
+	private transient ThreadPoolExecutor startupActivationExecutor;
+
 	/**
 	 * Default manager domain.
 	 */
@@ -836,6 +874,11 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient String[] componentListCache = null;
 
+	/**
+	 * Sorted copy of {@link #componentListCache}, used for wildchar queries.
+	 */
+	private transient volatile String[] sortedComponentListCache = null;
+
 	/**
 	 * CDB component specification system property name.
 	 */
@@ -974,6 +1017,105 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private static final String NAME_SYNC_ACTIVATE = "manager.sync_activate";
 
+	/**
+	 * Max. number of concurrent pings.
+	 */
+	private static final String NAME_PING_MAX_IN_FLIGHT = "manager.pingMaxInFlight";
+
+	/**
+	 * Default max. number of concurrent pings.
+	 */
+	private static final int PING_MAX_IN_FLIGHT = 16;
+
+	/**
+	 * Max. number of concurrent pings.
+	 */
+	private transient int pingMaxInFlight;
+
+	/**
+	 * Time (in ms) after which a ping that did not return is counted as timed-out.
+	 */
+	private static final String NAME_PING_DEADLINE = "manager.pingDeadline";
+
+	/**
+	 * Default time (in ms) after which a ping that did not return is counted as timed-out.
+	 */
+	private static final int PING_DEADLINE = 120000;
+
+	/**
+	 * Time (in ms) after which a ping that did not return is counted as timed-out.
+	 */
+	private transient int pingDeadline;
+
+	/**
+	 * Coalescing window of the administrator notifications (in ms).
+	 */
+	private static final String NAME_NOTIFICATION_WINDOW = "manager.notificationWindow";
+
+	/**
+	 * Default coalescing window of the administrator notifications (in ms).
+	 */
+	private static final int NOTIFICATION_WINDOW = 10;
+
+	/**
+	 * Coalescing window of the administrator notifications (in ms).
+	 */
+	private transient int notificationWindow;
+
+	/**
+	 * Max. number of queued notifications per administrator before they are dropped to a snapshot.
+	 */
+	private static final String NAME_NOTIFICATION_MAX_PENDING = "manager.notificationMaxPending";
+
+	/**
+	 * Default max. number of queued notifications per administrator.
+	 */
+	private static final int NOTIFICATION_MAX_PENDING = 1000;
+
+	/**
+	 * Max. number of queued notifications per administrator before they are dropped to a snapshot.
+	 */
+	private transient int notificationMaxPending;
+
+	/**
+	 * Max. number of concurrent startup component activations per container.
+	 */
+	private static final String NAME_STARTUP_ACTIVATION_PARALLELISM = "manager.startupActivationParallelism";
+
+	/**
+	 * Default max. number of concurrent startup component activations per container.
+	 * NOTE: with more than one concurrent activation the autostart components are no longer activated
+	 * strictly in the configured order, only the (declared and observed) dependencies between them are respected;
+	 * set <code>manager.startupActivationParallelism</code> to 1 to get the old, sequential, order.
+	 */
+	private static final int STARTUP_ACTIVATION_PARALLELISM = 4;
+
+	/**
+	 * Max. number of concurrent startup component activations per container.
+	 */
+	private transient int startupActivationParallelism;
+
+	/**
+	 * Interval of the manager statistics log (in seconds), 0 to disable.
+	 */
+	private static final String NAME_STATISTICS_LOG_INTERVAL = "manager.statisticsLogInterval";
+
+	/**
+	 * Default interval of the manager statistics log (in seconds).
+	 */
+	private static final int STATISTICS_LOG_INTERVAL = 600;
+
+	/**
+	 * Interval of the manager statistics log (in seconds), 0 to disable.
+	 */
+	private transient int statisticsLogInterval;
+
+	/**
+	 * Observed dependencies between components (name of the component -> names of the components it requested).
+	 * Used to plan the activation of startup components.
+	 */
+	private transient ConcurrentHashMap<String, Set<String>> observedDependencies;
+
 	/**
 	 * Allows setting the current percentage of used connection threads, 
 	 * which would typically be updated by an ORB profiler.
@@ -1011,24 +1153,47 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 		readManagerConfiguration();
 
-		componentsLock = (ProfilingReentrantLock.isProfilingEnabled 
+		statistics = new ManagerStatistics(logger);
+		componentsLock = new InstrumentedLock(ProfilingReentrantLock.isProfilingEnabled 
 				? new ProfilingReentrantLock("componentsLock")
-				: new ReentrantLock() );
+				: new ReentrantLock(),
+				statistics.getHistogram(ManagerStatistics.LockType.COMPONENTS));
+
+		// needs to be done here, since deserialization is used
+		componentRegistry = new ComponentRegistry();
+		componentsLock.lock();
+		try {
+			componentRegistry.rebuild(components);
+		} finally {
+			componentsLock.unlock();
+		}
 
 		random = new Random();
 		heartbeatTask = new Timer(true);
+		pingScheduler = new PingScheduler(pingMaxInFlight, pingDeadline, logger);
+		statistics.setPingScheduler(pingScheduler);
 		delayedDeactivationTask = new Timer(true);
 
 		containerLoggedInMonitor = new Object();
 
-		activationSynchronization = new HashMap<String, ReferenceCountingLock>();
+		activationSynchronization = new ConcurrentHashMap<String, ReferenceCountingLock>();
+		observedDependencies = new ConcurrentHashMap<String, Set<String>>();
 		activationPendingRWLock = new ReaderPreferenceReadWriteLock();
+		activationPendingRWLock.setWaitHistograms(
+				statistics.getHistogram(ManagerStatistics.LockType.ACTIVATION_PENDING_READ),
+				statistics.getHistogram(ManagerStatistics.LockType.ACTIVATION_PENDING_WRITE));
 		shutdown = new AtomicBoolean(false);
 		
 		threadPool = new ThreadPoolExecutor(poolThreads, poolThreads,
 				  Long.MAX_VALUE, TimeUnit.NANOSECONDS,
 				  new LinkedBlockingQueue(),
 				  new DaemonThreadFactory("managerThreadPool"));
+		statistics.setThreadPool(threadPool);
+
+		startupActivationExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+				  60L, TimeUnit.SECONDS,
+				  new SynchronousQueue<Runnable>(),
+				  new DaemonThreadFactory("startupActivation"));
 
 		managerCache = new HashMap<String, Manager>();
 
@@ -1039,6 +1204,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		clientMessageQueue = new HashMap<Client, LinkedList<ClientMessageTask>>();
 		
 		groupedNotifyTaskMap = new HashMap<Object, GroupedNotifyTask>();
+		administratorNotifier = new AdministratorNotifier(threadPool, notificationWindow, notificationMaxPending, logger);
 		
 		threadsUsedPercentage = new AtomicInteger(0);
 		
@@ -1094,6 +1260,23 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			}, 0, timeInMs);
 		}
 
+		// statistics
+		statistics.register();
+		if (statisticsLogInterval > 0)
+		{
+			final long intervalInMs = statisticsLogInterval*1000L;
+			heartbeatTask.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					try {
+						statistics.logSummary();
+					} catch (Throwable th) {
+						logger.log(Level.SEVERE, "Unexpected exception in statistics log task.", th);
+					}
+				}
+			}, intervalInMs, intervalInMs);
+		}
+
 		// start topology sort manager
 		topologySortManager = new ComponentInfoTopologicalSortManager(
 				components, containers, activationPendingRWLock,
@@ -1142,7 +1325,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register container to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, alarmSource);
 			containerInfo.setTask(task);
-			heartbeatTask.schedule(task, 0, containerInfo.getPingInterval());
+			pingScheduler.schedule(task, 0, containerInfo.getPingInterval());
 	    }
 
 	    // administrators
@@ -1156,7 +1339,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register administrator to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, adminInfo, null);
 			adminInfo.setTask(task);
-			heartbeatTask.schedule(task, 0, administratorPingInterval);
+			pingScheduler.schedule(task, 0, administratorPingInterval);
 	    }
 
 	    // clients
@@ -1170,7 +1353,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register client to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, null);
 			clientInfo.setTask(task);
-			heartbeatTask.schedule(task, 0, clientPingInterval);
+			pingScheduler.schedule(task, 0, clientPingInterval);
 	    }
 	}
 
@@ -1207,6 +1390,113 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		}
 	}
 
+	/**
+	 * Reports the activation latency to the load balancing strategy (if it monitors container load).
+	 * @param containerName	name of the container.
+	 * @param latencyNanos	duration of the activation in ns.
+	 */
+	private void reportActivationLatency(String containerName, long latencyNanos)
+	{
+		LoadBalancingStrategy strategy = loadBalancingStrategy;
+		if (strategy instanceof ContainerLoadMonitor)
+		{
+			try
+			{
+				((ContainerLoadMonitor)strategy).activationCompleted(containerName, latencyNanos);
+			}
+			catch (Throwable t)
+			{
+				logger.log(Level.FINE, "Load balancing strategy failed to process activation latency.", t);
+			}
+		}
+	}
+
+	/**
+	 * Reports completion of the request of a component placed by the load balancing strategy (if it monitors container load).
+	 * @param containerName	name of the container selected by the strategy.
+	 */
+	private void reportPlacementCompleted(String containerName)
+	{
+		LoadBalancingStrategy strategy = loadBalancingStrategy;
+		if (strategy instanceof ContainerLoadMonitor)
+		{
+			try
+			{
+				((ContainerLoadMonitor)strategy).placementCompleted(containerName);
+			}
+			catch (Throwable t)
+			{
+				logger.log(Level.FINE, "Load balancing strategy failed to process placement completion.", t);
+			}
+		}
+	}
+
+	/**
+	 * Reports container logout to the load balancing strategy (if it monitors container load).
+	 * @param containerName	name of the container.
+	 */
+	private void reportContainerLoggedOut(String containerName)
+	{
+		LoadBalancingStrategy strategy = loadBalancingStrategy;
+		if (strategy instanceof ContainerLoadMonitor)
+		{
+			try
+			{
+				((ContainerLoadMonitor)strategy).containerLoggedOut(containerName);
+			}
+			catch (Throwable t)
+			{
+				logger.log(Level.FINE, "Load balancing strategy failed to process container logout.", t);
+			}
+		}
+	}
+
+	/**
+	 * Reports the round-trip time of a successful ping to the load balancing strategy (if it monitors container load),
+	 * only pings of the containers are reported.
+	 * @param clientInfo	pinged client.
+	 * @param rtt			round-trip time of the ping in ms.
+	 */
+	void reportPingTime(ClientInfo clientInfo, long rtt)
+	{
+		if ((clientInfo.getHandle() & TYPE_MASK) == CONTAINER_MASK)
+			reportContainerLoad(clientInfo.getName(), new ContainerLoad(-1, -1, Math.max(0, rtt), System.currentTimeMillis()));
+	}
+
+	/**
+	 * Reports the load metrics of the container to the load balancing strategy (if it monitors container load).
+	 * The manager itself reports only the ping round-trip times, this is the entry point for the agents
+	 * (e.g. a container monitoring service) reporting the other metrics (heap usage and number of threads).
+	 * @param containerName	name of the container.
+	 * @param load			load metrics, unknown metrics are negative.
+	 */
+	public void reportContainerLoad(String containerName, ContainerLoad load)
+	{
+		LoadBalancingStrategy strategy = loadBalancingStrategy;
+		if (strategy instanceof ContainerLoadMonitor)
+		{
+			try
+			{
+				((ContainerLoadMonitor)strategy).updateLoad(containerName, load);
+			}
+			catch (Throwable t)
+			{
+				logger.log(Level.FINE, "Load balancing strategy failed to process container load.", t);
+			}
+		}
+	}
+
+	/**
+	 * Returns the load balancing strategy.
+	 * Strategies implementing <code>ContainerLoadMonitor</code> are informed about the activations,
+	 * the completed placements, the container logouts and the container load metrics.
+	 * @return load balancing strategy, <code>null</code> if none is registered.
+	 */
+	public LoadBalancingStrategy getLoadBalancingStrategy()
+	{
+		return loadBalancingStrategy;
+	}
+
 	/**
 	 * Called from client code after all manager initialization is done.
 	 */
@@ -1327,6 +1617,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 			// list of client matching search pattern
 			ArrayList<ContainerInfo> list = new ArrayList<ContainerInfo>();
+			WildcharPattern namePattern = WildcharPattern.compile(name_wc);
 
 			// check clients
 			synchronized (containers)
@@ -1337,7 +1628,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			    	ContainerInfo containerInfo = (ContainerInfo)containers.get(h);
 					/*Matcher m = pattern.matcher(containerInfo.getName());
 					if (m.matches())*/
-					if (WildcharMatcher.match(name_wc, containerInfo.getName()))
+					if (namePattern.matches(containerInfo.getName()))
 						list.add(containerInfo);
 
 					h = containers.next(h);
@@ -1426,6 +1717,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 			// list of clients matching search pattern
 			ArrayList<ClientInfo> list = new ArrayList<ClientInfo>();
+			WildcharPattern namePattern = WildcharPattern.compile(name_wc);
 
 			// check clients
 			synchronized (clients)
@@ -1438,7 +1730,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					Matcher m = pattern.matcher(clientInfo.getName());
 					if (m.matches())
 					*/
-					if (WildcharMatcher.match(name_wc, clientInfo.getName()))
+					if (namePattern.matches(clientInfo.getName()))
 						list.add(clientInfo);
 
 					h = clients.next(h);
@@ -1456,7 +1748,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					Matcher m = pattern.matcher(clientInfo.getName());
 					if (m.matches())
 					*/
-					if (WildcharMatcher.match(name_wc, clientInfo.getName()))
+					if (namePattern.matches(clientInfo.getName()))
 						list.add(clientInfo);
 
 					h = administrators.next(h);
@@ -1592,27 +1884,19 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// map of components to be returned
 			Map<String, ComponentInfo> map = new HashMap<String, ComponentInfo>();
 
-			// read active/registered components
-			componentsLock.lock();
-			try {
-				int h = components.first();
-				while (h != 0)
-				{
-					ComponentInfo componentInfo = (ComponentInfo)components.get(h);
-					if (componentInfo.getComponent() != null &&
-						WildcharMatcher.match(name_wc, componentInfo.getName()) &&
-						WildcharMatcher.match(type_wc, componentInfo.getType()))
-						{
-							// access rights to be checked here...
+			WildcharPattern namePattern = WildcharPattern.compile(name_wc);
+			WildcharPattern typePattern = WildcharPattern.compile(type_wc);
 
-							// found the match, add existing info to list
-							map.put(componentInfo.getName(), componentInfo);
-						}
+			// read active/registered components (indexed lookup)
+			for (ComponentInfo componentInfo : componentRegistry.find(namePattern, typePattern))
+			{
+				if (componentInfo.getComponent() != null)
+				{
+					// access rights to be checked here...
 
-					h = components.next(h);
+					// found the match, add existing info to list
+					map.put(componentInfo.getName(), componentInfo);
 				}
-			} finally {
-				componentsLock.unlock();
 			}
 
 			// add also non-active, if requested
@@ -1625,12 +1909,21 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 					try
 					{
-						// get names of all components
+						// get names of all components (sorted, only the range with the literal prefix of the pattern is tested)
 						/*String[] ids =*/ componentsDAO.get_field_data(""); /// @TODO here to check if CDB is available
-					    String[] ids = getComponentsList();
+					    String[] ids = sortedComponentListCache;
+					    int from = 0, to = ids.length;
+					    String prefix = namePattern.getPrefix();
+					    if (prefix.length() > 0)
+					    {
+					    	from = prefixRangeStart(ids, prefix);
+					    	to = from;
+					    	while (to < ids.length && ids[to].startsWith(prefix))
+					    		to++;
+					    }
 
 						// test names
-						for (int i = 0; i < ids.length; i++)
+						for (int i = from; i < to; i++)
 						{
 							// read name
 							String name = ids[i]; //readStringCharacteristics(componentsDAO, ids[i]+"/Name");
@@ -1644,7 +1937,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 							if (!map.containsKey(name) &&
 								//!name.equals(ComponentSpec.COMPSPEC_ANY) &&
 							    name.indexOf(ComponentSpec.COMPSPEC_ANY) != 0 &&
-								WildcharMatcher.match(name_wc, name))
+								namePattern.matches(name))
 							{
 
 								// read type
@@ -1657,7 +1950,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 								// test type
 								if (!type.equals(ComponentSpec.COMPSPEC_ANY) &&
-									WildcharMatcher.match(type_wc, type))
+									typePattern.matches(type))
 								{
 									// read code
 									String code = readStringCharacteristics(componentsDAO, ids[i]+"/Code");
@@ -1734,7 +2027,12 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	public Component getComponent(int id, URI curl, boolean activate, StatusHolder status)
 		throws AcsJCannotGetComponentEx, AcsJNoPermissionEx
 	{
-		return getComponent(id, curl, activate, status, false);
+		long start = System.nanoTime();
+		try {
+			return getComponent(id, curl, activate, status, false);
+		} finally {
+			recordLatency(ManagerStatistics.Operation.GET_COMPONENT, start);
+		}
 	}
 
 	/**
@@ -1916,22 +2214,9 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		logger.log(Level.FINE,"'" + requestorName + "' requested non-sticky component '" + curl + "'.");
 	
 		Component component = null;
-		componentsLock.lock();
-		try {
-			int h = components.first();
-			while (h != 0)
-		    {
-		    	ComponentInfo ci = (ComponentInfo)components.get(h);
-				if (ci.getName().equals(name))
-				{
-					component = ci.getComponent();
-					break;
-				}
-				h = components.next(h);
-		    }
-		} finally {
-			componentsLock.unlock();
-		}
+		ComponentInfo ci = componentRegistry.get(name);
+		if (ci != null)
+			component = ci.getComponent();
 	
 		// log info
 		if (component != null && component.getObject() != null)
@@ -1969,37 +2254,26 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		/****************************************************************/
 
 
-		int h;
-		ComponentInfo componentInfo = null;
+		ComponentInfo componentInfo = componentRegistry.get(name);
 
-		componentsLock.lock();
-		try {
-			h = components.first();
-			while (h != 0)
-		    {
-		    	componentInfo = (ComponentInfo)components.get(h);
-				if (componentInfo.getName().equals(name))
-				{
-					h = componentInfo.getHandle();
-					break;
-				}
-				h = components.next(h);
-		    }
+		// component not yet activated check
+		if (componentInfo == null)
+		{
+			NoResourcesException af = new NoResourcesException("Component not activated.");
+			throw af;
+		}
 
-			// component not yet activated check
-			if (h == 0)
-			{
-				NoResourcesException af = new NoResourcesException("Component not activated.");
-				throw af;
-			}
+		int h = componentInfo.getHandle();
 
-			// if not an owner of the component, check administrator rights
-			if (!componentInfo.getClients().contains(id))
-			{
-				securityCheck(id, AccessRights.INTROSPECT_MANAGER);
-			}
+		// if not an owner of the component, check administrator rights
+		if (!isComponentClient(componentInfo, id))
+		{
+			securityCheck(id, AccessRights.INTROSPECT_MANAGER);
+		}
 
-			if (immortalState)
+		if (immortalState)
+		{
+			synchronized (componentRegistry.getStripe(name))
 			{
 				// finally, add manager as an owner
 				if (!componentInfo.getClients().contains(this.getHandle()))
@@ -2008,10 +2282,8 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					executeCommand(new ComponentCommandClientAdd(componentInfo.getHandle() & HANDLE_MASK, this.getHandle()));
 					//componentInfo.getClients().add(this.getHandle());
 				}
-				logger.log(Level.INFO,"Component " + name + " was made immortal.");
 			}
-		} finally {
-			componentsLock.unlock();
+			logger.log(Level.INFO,"Component " + name + " was made immortal.");
 		}
 
 		// this must be done outside component sync. block
@@ -2032,6 +2304,19 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 * @see com.cosylab.acs.maci.Manager#login(Client)
 	 */
 	public ClientInfo login(Client reference) throws AcsJNoPermissionEx
+	{
+		long start = System.nanoTime();
+		try {
+			return internalLogin(reference);
+		} finally {
+			recordLatency(ManagerStatistics.Operation.LOGIN, start);
+		}
+	}
+
+	/**
+	 * @see #login(Client)
+	 */
+	private ClientInfo internalLogin(Client reference) throws AcsJNoPermissionEx
 	{
 
 		// check if already shutdown
@@ -2191,6 +2476,19 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 * @see com.cosylab.acs.maci.Manager#logout(int)
 	 */
 	public void logout(int id, boolean pingFailed) throws AcsJNoPermissionEx
+	{
+		long start = System.nanoTime();
+		try {
+			internalLogout(id, pingFailed);
+		} finally {
+			recordLatency(ManagerStatistics.Operation.LOGOUT, start);
+		}
+	}
+
+	/**
+	 * @see #logout(int, boolean)
+	 */
+	private void internalLogout(int id, boolean pingFailed) throws AcsJNoPermissionEx
 	{
 		if (pingFailed)
 			logger.log(Level.FINE,"Client with handle '" + HandleHelper.toString(id) + "' is being forcefully logged out due to its unresponsiveness.");
@@ -2282,11 +2580,14 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					if (registeredComponentInfo.getType().equals(type))
 					{
 						// it is already activated, add manager as an owner and return handle
-						if (!registeredComponentInfo.getClients().contains(this.getHandle()))
+						synchronized (componentRegistry.getStripe(name))
 						{
-							// ACID - !!!
-							executeCommand(new ComponentCommandClientAdd(registeredComponentInfo.getHandle() & HANDLE_MASK, this.getHandle()));
-							//registredComponentInfo.getClients().add(this.getHandle());
+							if (!registeredComponentInfo.getClients().contains(this.getHandle()))
+							{
+								// ACID - !!!
+								executeCommand(new ComponentCommandClientAdd(registeredComponentInfo.getHandle() & HANDLE_MASK, this.getHandle()));
+								//registredComponentInfo.getClients().add(this.getHandle());
+							}
 						}
 
 						return registeredComponentInfo.getHandle();
@@ -2434,7 +2735,13 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		String requestorName = getRequestorName(id);
 		logger.log(Level.INFO,"'" + requestorName + "' requested release of component '" + curl + "'.");
 
-		int owners = internalReleaseComponent(id, curl, id == this.getHandle()).owners;
+		long start = System.nanoTime();
+		int owners;
+		try {
+			owners = internalReleaseComponent(id, curl, id == this.getHandle()).owners;
+		} finally {
+			recordLatency(ManagerStatistics.Operation.RELEASE_COMPONENT, start);
+		}
 
 		logger.log(Level.INFO,"Component '" + curl + "' released by '" + requestorName + "'.");
 
@@ -2757,6 +3064,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		logger.log(Level.FINER,"Canceling heartbeat task.");
 		// cancel hertbeat task
 		heartbeatTask.cancel();
+		pingScheduler.cancel();
 		topologySortManager.destroy();
 
 		/*
@@ -2798,7 +3106,9 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		// process tasks in thread pool
 		// !!! NOTE: this could block (for a long time)
 		logger.log(Level.FINER,"Waiting for tasks in thread pool to complete...");
+		administratorNotifier.shutdown();
 		threadPool.shutdown();
+		startupActivationExecutor.shutdownNow();
         try {
             if (!threadPool.awaitTermination(3, TimeUnit.SECONDS))
             	threadPool.shutdownNow();
@@ -2808,6 +3118,8 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
             alarmSource.tearDown();
         }
         
+		statistics.unregister();
+
 		// unbind Manager
 		unbind("Manager", null);
 
@@ -2963,7 +3275,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 				// register container to the heartbeat manager
 				PingTimerTask task = new PingTimerTask(this, logger, clientInfo, alarmSource);
 				containerInfo.setTask(task);
-				heartbeatTask.schedule(task, containerInfo.getPingInterval(), containerInfo.getPingInterval());
+				pingScheduler.schedule(task, containerInfo.getPingInterval(), containerInfo.getPingInterval());
 
 				// !!! ACID - register AddContainerCommand
 				executeCommand(new ContainerCommandSet(handle, containerInfo));
@@ -3123,6 +3435,9 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 		}
 
+		// Manager.Startup array is an ordered list
+		final int orderedStartupCount = activationRequestsList.size();
+
 		//
 		// autostart components (<component>.Autostart attribute)
 		//
@@ -3300,10 +3615,13 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			{
 				ComponentInfo componentInfo = iter.next();
 
+				// remember what it depended on, startup activation plan uses it
+				recordObservedDependencies(componentInfo);
+
 				componentsLock.lock();
 				try {
 					// remove from its owners list ...
-					int[] owners = componentInfo.getClients().toArray();
+					int[] owners = getComponentClients(componentInfo);
 					for (int j = 0; j < owners.length; j++)
 						removeComponentOwner(componentInfo.getHandle(), owners[j]);
 
@@ -3334,47 +3652,183 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		sendMessage(containerInfo.getContainer(), "Startup statistics: " + activationRequestsList.size() +
 					" components queued to be activated.", MessageType.MSG_INFORMATION, ClientOperations.MSGID_AUTOLOAD_START);
 
-		// activate startup components
-		int activated = 0;
-		StatusHolder status = new StatusHolder();
-		Iterator<URI> iterator = activationRequestsList.iterator();
-		while (iterator.hasNext())
+		// activate startup components, independent ones in parallel
+		final Map<String, URI> activationURIs = new HashMap<String, URI>(activationRequestsList.size() * 2);
+		ArrayList<String> activationNames = new ArrayList<String>(activationRequestsList.size());
+		int orderedNamesCount = 0;
+		for (int i = 0; i < activationRequestsList.size(); i++)
 		{
-			URI uri = iterator.next();
-			try
-			{
-				String name = extractName(uri);
-
-				int requestor = activationRequests.get(name);
-
-				internalRequestComponent(requestor, uri, status);
-
-				if (status.getStatus() != ComponentStatus.COMPONENT_ACTIVATED)
-					logger.log(Level.WARNING,"Failed to activate autostart component '"+uri+"', reason: '"+status.getStatus()+"'.");
-				else
-					activated++;
-			}
-			catch (Throwable ex)
+			URI uri = activationRequestsList.get(i);
+			String name = extractName(uri);
+			if (!activationURIs.containsKey(name))
 			{
-				logger.log(Level.WARNING,"Failed to activate autostart component '"+uri+"'.", ex);
+				activationURIs.put(name, uri);
+				activationNames.add(name);
 			}
+			if (i < orderedStartupCount)
+				orderedNamesCount = activationNames.size();
 		}
 
-		logger.log(Level.INFO,"Container '"+containerInfo.getName()+"' startup statistics: " +
-							activated + " of " + activationRequestsList.size() + " components activated.");
-
-		// send message to the container
-		sendMessage(containerInfo.getContainer(), "Startup statistics: " + activated + " of " +
-					activationRequestsList.size() + " components activated.", MessageType.MSG_INFORMATION, ClientOperations.MSGID_AUTOLOAD_END);
+		StartupActivationPlan plan = new StartupActivationPlan(activationNames);
+		addStartupActivationDependencies(plan, activationNames, orderedNamesCount, componentsDAO);
 
-		// notify about new container login
-		synchronized (containerLoggedInMonitor)
+		final Map<String, Integer> requestors = activationRequests;
+		int activated = 0;
+		try
+		{
+			activated = plan.execute(new StartupActivationPlan.Activator()
+			{
+				public void activate(final String name, final StartupActivationPlan.ActivationCallback callback)
+				{
+					// internalRequestComponent returns when container's done callback of activate_component_async arrives
+					startupActivationExecutor.execute(new Runnable()
+					{
+						public void run()
+						{
+							URI uri = activationURIs.get(name);
+							boolean activated = false;
+							try
+							{
+								StatusHolder status = new StatusHolder();
+								internalRequestComponent(requestors.get(name), uri, status);
+
+								if (status.getStatus() != ComponentStatus.COMPONENT_ACTIVATED)
+									logger.log(Level.WARNING,"Failed to activate autostart component '"+uri+"', reason: '"+status.getStatus()+"'.");
+								else
+									activated = true;
+							}
+							catch (Throwable ex)
+							{
+								logger.log(Level.WARNING,"Failed to activate autostart component '"+uri+"'.", ex);
+							}
+							finally
+							{
+								callback.done(activated);
+							}
+						}
+					});
+				}
+			}, startupActivationParallelism);
+		}
+		catch (InterruptedException ie)
+		{
+			logger.log(Level.WARNING,"Activation of startup components of container '"+containerInfo.getName()+"' interrupted.");
+		}
+
+		logger.log(Level.INFO,"Container '"+containerInfo.getName()+"' startup statistics: " +
+							activated + " of " + activationRequestsList.size() + " components activated.");
+
+		// send message to the container
+		sendMessage(containerInfo.getContainer(), "Startup statistics: " + activated + " of " +
+					activationRequestsList.size() + " components activated.", MessageType.MSG_INFORMATION, ClientOperations.MSGID_AUTOLOAD_END);
+
+		// notify about new container login
+		synchronized (containerLoggedInMonitor)
 		{
 			containerLoggedInMonitor.notifyAll();
 		}
 
 	}
 
+	/**
+	 * Adds dependencies to the startup activation plan:
+	 * <UL>
+	 * 	<LI><code>Manager.Startup</code> components are activated in the configured order,</LI>
+	 * 	<LI>components are activated after the components declared in their <code>Dependencies</code> CDB attribute,</LI>
+	 * 	<LI>components are activated after the components they requested when they were activated before
+	 * 		(observed during lifetime of the manager, or recovered from the components' owned components lists).</LI>
+	 * </UL>
+	 *
+	 * @param	plan				plan to add dependencies to.
+	 * @param	names				names of the components in the plan, in order.
+	 * @param	orderedCount		number of leading components whose order is to be preserved.
+	 * @param	componentsDAO		components DAO, can be <code>null</code>.
+	 */
+	private void addStartupActivationDependencies(StartupActivationPlan plan, List<String> names, int orderedCount, DAOProxy componentsDAO)
+	{
+		for (int i = 1; i < orderedCount; i++)
+			plan.addDependency(names.get(i), names.get(i - 1));
+
+		int declared = 0;
+		int added = 0;
+		for (String name : names)
+		{
+			if (componentsDAO != null)
+			{
+				String dependencies = readStringCharacteristics(componentsDAO, name+"/Dependencies", true);
+				if (dependencies != null)
+				{
+					String[] dependsOn = dependencies.split("[\\s,]+");
+					for (int i = 0; i < dependsOn.length; i++)
+						if (dependsOn[i].length() > 0 && plan.addDependency(name, dependsOn[i]))
+							declared++;
+				}
+			}
+
+			ComponentInfo info = componentRegistry.get(name);
+			if (info == null)
+			{
+				synchronized (unavailableComponents)
+				{
+					info = unavailableComponents.get(name);
+				}
+			}
+			if (info != null)
+				recordObservedDependencies(info);
+
+			Set<String> dependencies = observedDependencies.get(name);
+			if (dependencies != null)
+				for (String dependency : dependencies)
+					if (plan.addDependency(name, dependency))
+						added++;
+		}
+
+		if (declared > 0 || added > 0)
+			logger.log(Level.FINE, "Startup activation plan of " + plan.size() + " components uses " + declared + " declared and " + added + " observed dependencies.");
+	}
+
+	/**
+	 * Records components owned by the component as its dependencies.
+	 *
+	 * @param	componentInfo	component info, non-<code>null</code>
+	 */
+	private void recordObservedDependencies(ComponentInfo componentInfo)
+	{
+		int[] subcomponents;
+		synchronized (componentRegistry.getStripe(componentInfo.getName()))
+		{
+			subcomponents = componentInfo.getComponents().toArray();
+		}
+		for (int i = 0; i < subcomponents.length; i++)
+		{
+			ComponentInfo dependency = componentRegistry.get(subcomponents[i] & HANDLE_MASK);
+			if (dependency != null)
+				recordObservedDependency(componentInfo.getName(), dependency.getName());
+		}
+	}
+
+	/**
+	 * Records dependency between components.
+	 *
+	 * @param	name		name of the component.
+	 * @param	dependsOn	name of the component requested by the component.
+	 */
+	private void recordObservedDependency(String name, String dependsOn)
+	{
+		if (name.equals(dependsOn))
+			return;
+
+		Set<String> dependencies = observedDependencies.get(name);
+		if (dependencies == null)
+		{
+			dependencies = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			Set<String> existing = observedDependencies.putIfAbsent(name, dependencies);
+			if (existing != null)
+				dependencies = existing;
+		}
+		dependencies.add(dependsOn);
+	}
+
 
 	/**
 	 * Retrieve container's internal state and merge it with manager's.
@@ -3542,7 +3996,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 				    		executeCommand(new UnavailableComponentCommandRemove(componentInfo.getName()));
 				    		//unavailableComponents.remove(componentInfo.getName());
 				    	}
-						int clients[] = componentInfo.getClients().toArray();
+						int clients[] = getComponentClients(componentInfo);
 						notifyComponentAvailable(0, clients, new ComponentInfo[] { componentInfo });
 					}
 					else
@@ -3639,7 +4093,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 						// discard all Component information
 
 						// remove from its owners list ...
-						int[] owners = componentInfo.getClients().toArray();
+						int[] owners = getComponentClients(componentInfo);
 						for (int j = 0; j < owners.length; j++)
 							removeComponentOwner(componentHandle, owners[j]);
 
@@ -4007,7 +4461,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register administrator to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, null);
 			clientInfo.setTask(task);
-			heartbeatTask.schedule(task, administratorPingInterval, administratorPingInterval);
+			pingScheduler.schedule(task, administratorPingInterval, administratorPingInterval);
 
 			// !!! ACID - register AddAdministratorCommand
 			executeCommand(new AdministratorCommandSet(handle, clientInfo));
@@ -4084,7 +4538,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register client to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, null);
 			clientInfo.setTask(task);
-			heartbeatTask.schedule(task, clientPingInterval, clientPingInterval);
+			pingScheduler.schedule(task, clientPingInterval, clientPingInterval);
 
 			// !!! ACID - register AddClientCommand
 			executeCommand(new ClientCommandSet(handle, clientInfo));
@@ -4136,6 +4590,9 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		// deregister container from the heartbeat manager
 		containerInfo.getTask().cancel();
 
+		// forget container load
+		reportContainerLoggedOut(containerInfo.getName());
+
 		// make all container components unavailable
 		markContainersComponentsUnavailable(containerInfo);
 
@@ -4207,7 +4664,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			if (notificationNeeded)
 			{
 				componentName = componentInfo.getName();
-				clients = componentInfo.getClients().toArray();
+				clients = getComponentClients(componentInfo);
 			}
 
 			// clear component reference and container
@@ -4523,13 +4980,11 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			{
 				// needed since execute is sync. and action
 				// ComponentInfoCommandComponentRemove then sync. componentInfo
-				componentsLock.lock();
-				try {
+				synchronized (componentRegistry.getStripe(componentInfo.getName()))
+				{
 					// !!! ACID 3
 					executeCommand(new ComponentInfoCommandComponentRemove(owner & HANDLE_MASK, componentHandle));
 					//ci.getComponents().remove(componentHandle);
-				} finally {
-					componentsLock.unlock();
 				}
 			}
 		}
@@ -4567,15 +5022,17 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			{
 				// needed since execute is sync. and action
 				// ComponentInfoCommandComponentAdd then sync. componentInfo
-				componentsLock.lock();
-				try {
+				synchronized (componentRegistry.getStripe(componentInfo.getName()))
+				{
 					// !!! ACID 3
 					if (!componentInfo.getComponents().contains(componentHandle))
 						executeCommand(new ComponentInfoCommandComponentAdd(owner & HANDLE_MASK, componentHandle));
 					//ci.getComponents().add(componentHandle);
-				} finally {
-					componentsLock.unlock();
 				}
+
+				ComponentInfo dependency = componentRegistry.get(componentHandle & HANDLE_MASK);
+				if (dependency != null)
+					recordObservedDependency(componentInfo.getName(), dependency.getName());
 			}
 		}
 		else
@@ -4610,59 +5067,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(clientInfo.getHandle());
 
 		if (admins != null)
-		{
-			/**
-			 * Task thats invokes <code>Administrator#clientLoggedIn</code> method.
-			 */
-			class ClientLoggedInTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-				private ClientInfo clientInfo;
-
-				public ClientLoggedInTask(ClientInfo administratorInfo, ClientInfo clientInfo)
-				{
-					this.administratorInfo = administratorInfo;
-					this.clientInfo = clientInfo;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).clientLoggedIn(clientInfo, timeStamp, executionId);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.clientLoggedIn' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.clientLoggedIn' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ClientLoggedInTask(admins[i], clientInfo);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-
-		}
-
+			administratorNotifier.clientLoggedIn(admins, clientInfo, timeStamp, executionId);
 	}
 
 	/**
@@ -4677,59 +5082,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(containerInfo.getHandle());
 
 		if (admins != null)
-		{
-			/**
-			 * Task thats invokes <code>Administrator#containerLoggedIn</code> method.
-			 */
-			class ContainerLoggedInTask  extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-				private ContainerInfo containerInfo;
-
-				public ContainerLoggedInTask(ClientInfo administratorInfo, ContainerInfo containerInfo)
-				{
-					this.administratorInfo = administratorInfo;
-					this.containerInfo = containerInfo;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).containerLoggedIn(containerInfo, timeStamp, executionId);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.containerLoggedIn' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.containerLoggedIn' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ContainerLoggedInTask(admins[i], containerInfo);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-
-		}
-
+			administratorNotifier.containerLoggedIn(admins, containerInfo, timeStamp, executionId);
 	}
 
 
@@ -4746,60 +5099,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(clientInfo.getHandle());
 
 		if (admins != null)
-		{
-
-			/**
-			 * Task thats invokes <code>Administrator#clientLoggedOut</code> method.
-			 */
-			class ClientLoggedOutTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-				private ClientInfo clientInfo;
-
-				public ClientLoggedOutTask(ClientInfo administratorInfo, ClientInfo clientInfo)
-				{
-					this.administratorInfo = administratorInfo;
-					this.clientInfo = clientInfo;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).clientLoggedOut(clientInfo.getHandle(), timeStamp);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.clientLoggedOut' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.clientLoggedOut' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ClientLoggedOutTask(admins[i], clientInfo);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-
-		}
-
+			administratorNotifier.clientLoggedOut(admins, clientInfo.getHandle(), timeStamp);
 	}
 
 
@@ -4815,59 +5115,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(containerInfo.getHandle());
 
 		if (admins != null)
-		{
-
-			/**
-			 * Task thats invokes <code>Administrator#containerLoggedIn</code> method.
-			 */
-			class ContainerLoggedOutTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-				private ContainerInfo containerInfo;
-
-				public ContainerLoggedOutTask(ClientInfo administratorInfo, ContainerInfo containerInfo)
-				{
-					this.administratorInfo = administratorInfo;
-					this.containerInfo = containerInfo;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).containerLoggedOut(containerInfo.getHandle(), timeStamp);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.containerLoggedOut' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.containerLoggedOut' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ContainerLoggedOutTask(admins[i], containerInfo);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-
-		}
-
+			administratorNotifier.containerLoggedOut(admins, containerInfo.getHandle(), timeStamp);
 	}
 
 	/**
@@ -5084,62 +5332,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(0);
 
 		if (admins != null)
-		{
-
-			/**
-			 * Task thats invokes <code>Administrator#components_requested</code> method.
-			 */
-			class ComponentRequestedTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-				private int[] requestors;
-				private int[] components;
-
-				public ComponentRequestedTask(ClientInfo administratorInfo, int[] requestors, int[] components)
-				{
-					this.administratorInfo = administratorInfo;
-					this.requestors = requestors;
-					this.components = components;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).components_requested(requestors, components, timeStamp);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.components_requested' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.components_requested' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ComponentRequestedTask(admins[i], requestors, components);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-
-		}
-
+			administratorNotifier.componentsRequested(admins, requestors, components, timeStamp);
 	}
 
 	/**
@@ -5154,57 +5347,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(0);
 
 		if (admins != null)
-		{
-
-			/**
-			 * Task thats invokes <code>Administrator#component_activated</code> method.
-			 */
-			class ComponentActivatedTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-
-				public ComponentActivatedTask(ClientInfo administratorInfo)
-				{
-					this.administratorInfo = administratorInfo;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).component_activated(componentInfo, timeStamp, executionId);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.component_activated' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.component_activated' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ComponentActivatedTask(admins[i]);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-		}
-
+			administratorNotifier.componentActivated(admins, componentInfo, timeStamp, executionId);
 	}
 
 	/**
@@ -5219,58 +5362,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(0);
 
 		if (admins != null)
-		{
-
-			/**
-			 * Task thats invokes <code>Administrator#component_deactivated</code> method.
-			 */
-			class ComponentDeactivatedTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-
-				public ComponentDeactivatedTask(ClientInfo administratorInfo)
-				{
-					this.administratorInfo = administratorInfo;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).component_deactivated(handle, timeStamp);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.component_deactivated' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.component_deactivated' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ComponentDeactivatedTask(admins[i]);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-
-		}
-
+			administratorNotifier.componentDeactivated(admins, handle, timeStamp);
 	}
 
 	/**
@@ -5287,62 +5379,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		ClientInfo[] admins = getAdministrators(0);
 
 		if (admins != null)
-		{
-
-			/**
-			 * Task thats invokes <code>Administrator#components_requested</code> method.
-			 */
-			class ComponentReleasedTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo administratorInfo;
-				private int[] requestors;
-				private int[] components;
-
-				public ComponentReleasedTask(ClientInfo administratorInfo, int[] requestors, int[] components)
-				{
-					this.administratorInfo = administratorInfo;
-					this.requestors = requestors;
-					this.components = components;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							((Administrator)administratorInfo.getClient()).components_released(requestors, components, timeStamp);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Administrator.components_released' on "+administratorInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Administrator.components_released' on "+administratorInfo+".", re);
-						}
-					}
-				}
-			}
-
-
-			// spawn new task which surely does not block
-			for (int i = 0; i < admins.length; i++)
-			{
-				GroupedRunnable task = new ComponentReleasedTask(admins[i], requestors, components);
-				if (admins[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(admins[i].getClient(), task);
-					//threadPool.execute(task);
-			}
-
-		}
-
+			administratorNotifier.componentsReleased(admins, requestors, components, timeStamp);
 	}
 
 	/**
@@ -5401,17 +5438,28 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			}
 
 
+			// administrators are notified through their notification channel (keeps order with the other notifications)
+			ArrayList<ClientInfo> admins = null;
+
 			// spawn new task which surely does not block
 			for (int i = 0; i < clients.length; i++)
 			{
+				if (clients[i].getClient() instanceof Administrator)
+				{
+					if (admins == null)
+						admins = new ArrayList<ClientInfo>();
+					admins.add(clients[i]);
+					continue;
+				}
+
 				GroupedRunnable task = new ComponentAvailableTask(clients[i], info);
-				if (clients[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(clients[i].getClient(), task);
-					//threadPool.execute(task);
+				registerGroupedNotifyTaks(clients[i].getClient(), task);
+				//threadPool.execute(task);
 			}
 
+			if (admins != null)
+				administratorNotifier.componentsAvailable(admins.toArray(new ClientInfo[admins.size()]), info);
+
 		}
 
 	}
@@ -5472,17 +5520,28 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			}
 
 
+			// administrators are notified through their notification channel (keeps order with the other notifications)
+			ArrayList<ClientInfo> admins = null;
+
 			// spawn new task which surely does not block
 			for (int i = 0; i < clients.length; i++)
 			{
+				if (clients[i].getClient() instanceof Administrator)
+				{
+					if (admins == null)
+						admins = new ArrayList<ClientInfo>();
+					admins.add(clients[i]);
+					continue;
+				}
+
 				GroupedRunnable task = new ComponentUnavailableTask(clients[i], names);
-				if (clients[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(clients[i].getClient(), task);
-					//threadPool.execute(task);
+				registerGroupedNotifyTaks(clients[i].getClient(), task);
+				//threadPool.execute(task);
 			}
 
+			if (admins != null)
+				administratorNotifier.componentsUnavailable(admins.toArray(new ClientInfo[admins.size()]), names);
+
 		}
 
 	}
@@ -5673,17 +5732,14 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					break;
 
 				case COMPONENT_MASK:
-					componentsLock.lock();
-					try {
-						if (components.isAllocated(handle))
+					{
+						ComponentInfo info = componentRegistry.get(handle);
+						if (info != null)
 						{
-							ComponentInfo info = (ComponentInfo)components.get(handle);
-							if (info != null && info.getHandle() == id)
+							if (info.getHandle() == id)
 								invalidHandle = false;
 							grantedRights = AccessRights.REGISTER_COMPONENT;
 						}
-					} finally {
-						componentsLock.unlock();
 					}
 					break;
 
@@ -5883,18 +5939,8 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		// parse handle part
 		int handle	= id & HANDLE_MASK;
 
-		// info to be returned
-		ComponentInfo info = null;
-
-		componentsLock.lock();
-		try {
-			if (components.isAllocated(handle))
-				info = (ComponentInfo)components.get(handle);
-		} finally {
-			componentsLock.unlock();
-		}
-
-		return info;
+		// lock-free lookup
+		return componentRegistry.get(handle);
 	}
 
 	/*****************************************************************************/
@@ -5996,31 +6042,31 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private ArrayList<ComponentInfo> doCycleCheck(int requestor, int requested)
 	{
-		componentsLock.lock();
-		try {
-			ComponentInfo info = (ComponentInfo)components.get(requested & HANDLE_MASK);
-			if (info == null)
-				return null;
+		ComponentInfo info = componentRegistry.get(requested & HANDLE_MASK);
+		if (info == null)
+			return null;
 
-			if (requested == requestor)
-			{
-				// detected
-				ArrayList<ComponentInfo> list = new ArrayList<ComponentInfo>();
+		if (requested == requestor)
+		{
+			// detected
+			ArrayList<ComponentInfo> list = new ArrayList<ComponentInfo>();
+			list.add(info);
+			return list;
+		}
+
+		// owned components list is modified under component's stripe (see addComponentOwner)
+		int[] subcomponents;
+		synchronized (componentRegistry.getStripe(info.getName()))
+		{
+			subcomponents = info.getComponents().toArray();
+		}
+		for (int i = 0; i < subcomponents.length; i++)
+		{
+			ArrayList<ComponentInfo> list = doCycleCheck(requestor, subcomponents[i]);
+			if (list != null) {
 				list.add(info);
 				return list;
 			}
-
-			int[] subcomponents = info.getComponents().toArray();
-			for (int i = 0; i < subcomponents.length; i++)
-			{
-				ArrayList<ComponentInfo> list = doCycleCheck(requestor, subcomponents[i]);
-				if (list != null) {
-					list.add(info);
-					return list;
-				}
-			}
-		} finally {
-			componentsLock.unlock();
 		}
 		return null;
 	}
@@ -6039,64 +6085,46 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			return;
 
 		// check if requested component is already activated (and pending activations)
-		ComponentInfo componentInfo = null;
-		componentsLock.lock();
-		try {
-			int h = components.first();
-			while (h != 0)
-			{
-				ComponentInfo info = (ComponentInfo)components.get(h);
-				if (info.getName().equals(requestedComponentName))
-				{
-					// yes, component is already activated
-					componentInfo = info;
-					break;
-				}
-				else
-					h = components.next(h);
-			}
+		ComponentInfo componentInfo = componentRegistry.get(requestedComponentName);
 
-			// check pending activations...
-			ComponentInfo pendingComponentInfo;
-			synchronized (pendingActivations)
-			{
-				pendingComponentInfo = pendingActivations.get(requestedComponentName);
-			}
+		// check pending activations...
+		ComponentInfo pendingComponentInfo;
+		synchronized (pendingActivations)
+		{
+			pendingComponentInfo = pendingActivations.get(requestedComponentName);
+		}
 
-			// if component is already completely activated, we allow cyclic dependencies (but their usage is discouraged)
-			if (componentInfo != null && pendingComponentInfo == null)
-				return;
+		// if component is already completely activated, we allow cyclic dependencies (but their usage is discouraged)
+		if (componentInfo != null && pendingComponentInfo == null)
+			return;
 
-			// take pending activation...
-			if (componentInfo == null)
-				componentInfo = pendingComponentInfo;
+		// take pending activation...
+		if (componentInfo == null)
+			componentInfo = pendingComponentInfo;
 
-			// not activated yet, so no cyclic dependency is possible
-			if (componentInfo == null)
-				return;
+		// not activated yet, so no cyclic dependency is possible
+		if (componentInfo == null)
+			return;
 
-			ArrayList<ComponentInfo> pathList = doCycleCheck(requestor, componentInfo.getHandle());
-			// no dependency detected
-			if (pathList == null)
-				return;
+		ArrayList<ComponentInfo> pathList = doCycleCheck(requestor, componentInfo.getHandle());
+		// no dependency detected
+		if (pathList == null)
+			return;
 
-			// stringify
-			StringBuffer pathBuffer = new StringBuffer();
-			for (int i = pathList.size()-1; i >= 0; i--)
-				pathBuffer.append(pathList.get(i).getName()).append(" -> ");
-			pathBuffer.append(componentInfo.getName());
-			// TODO @todo no pathBuffer is used, printed-out
-			
-			// If we get to this point there is a cyclical dependency and we throw the exception
-			
-			// not an owner
-			AcsJCyclicDependencyDetectedEx cde = new AcsJCyclicDependencyDetectedEx();
-			cde.setCURL(requestedComponentName);
-			cde.setRequestor(requestor);
-			throw cde;
-		} finally {
-			componentsLock.unlock();
-		}
+		// stringify
+		StringBuffer pathBuffer = new StringBuffer();
+		for (int i = pathList.size()-1; i >= 0; i--)
+			pathBuffer.append(pathList.get(i).getName()).append(" -> ");
+		pathBuffer.append(componentInfo.getName());
+		// TODO @todo no pathBuffer is used, printed-out
+		
+		// If we get to this point there is a cyclical dependency and we throw the exception
+		
+		// not an owner
+		AcsJCyclicDependencyDetectedEx cde = new AcsJCyclicDependencyDetectedEx();
+		cde.setCURL(requestedComponentName);
+		cde.setRequestor(requestor);
+		throw cde;
 
 	}
 
@@ -6217,102 +6245,91 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 		// if true, component with handle h will be reactivated
 		boolean reactivate = false;
-		ComponentInfo componentInfo = null;
-
-		componentsLock.lock();
-		try {
-			h = components.first();
-			while (h != 0)
-			{
-				componentInfo = (ComponentInfo)components.get(h);
-				if (componentInfo.getName().equals(name))
-				{
-					// yes, component is already activated
-
-					// check if component is unavailable
-					synchronized (unavailableComponents)
-					{
-						if (unavailableComponents.containsKey(name))
-						{
-							// try to reactivate, possible component reallocation
-							reactivate = true;
-						}
-					}
-
 
-					// check for consistency
-					ContainerInfo containerInfo = getContainerInfo(componentInfo.getContainer());
-
-					if ((type != null && !componentInfo.getType().equals(type)) ||
-					    (code != null && componentInfo.getCode() != null && !componentInfo.getCode().equals(code)) ||
-						(!reactivate && containerInfo != null &&
-						 containerName != null && !containerInfo.getName().equals(containerName)))
-					{
-						AcsJComponentSpecIncompatibleWithActiveComponentEx ciwace =
-							new AcsJComponentSpecIncompatibleWithActiveComponentEx();
-						ciwace.setCURL(componentInfo.getName());
-						ciwace.setComponentType(componentInfo.getType());
-						ciwace.setComponentCode(componentInfo.getCode() != null ? componentInfo.getCode() : "<unknown>");
-						ciwace.setContainerName(containerInfo != null ? containerInfo.getName() : "<none>");
-						throw ciwace;
-					}
-
-
-					if (activate)
-					{
+		// lock-free lookup, caller holds activation synchronization lock of the component
+		ComponentInfo componentInfo = componentRegistry.get(name);
+		h = (componentInfo == null) ? 0 : (componentInfo.getHandle() & HANDLE_MASK);
+		if (componentInfo != null)
+		{
+			// yes, component is already activated
 
-						// bail out and reactivate
-						if (reactivate)
-							break;
+			// check if component is unavailable
+			synchronized (unavailableComponents)
+			{
+				if (unavailableComponents.containsKey(name))
+				{
+					// try to reactivate, possible component reallocation
+					reactivate = true;
+				}
+			}
 
 
-						// add client/component as an owner (if requestor is not 'reactivation')
-						if (requestor != 0)
-						{
-							// !!! ACID
-							if (!componentInfo.getClients().contains(requestor))
-								executeCommand(new ComponentCommandClientAdd(componentInfo.getHandle() & HANDLE_MASK, requestor));
-								//componentInfo.getClients().add(requestor);
-						}
+			// check for consistency
+			ContainerInfo containerInfo = getContainerInfo(componentInfo.getContainer());
 
-						// add component to client component list (if requestor is not manager or 'reactivation')
-						if (requestor != this.getHandle() && requestor != 0)
-							addComponentOwner(componentInfo.getHandle(), requestor);
+			if ((type != null && !componentInfo.getType().equals(type)) ||
+			    (code != null && componentInfo.getCode() != null && !componentInfo.getCode().equals(code)) ||
+				(!reactivate && containerInfo != null &&
+				 containerName != null && !containerInfo.getName().equals(containerName)))
+			{
+				AcsJComponentSpecIncompatibleWithActiveComponentEx ciwace =
+					new AcsJComponentSpecIncompatibleWithActiveComponentEx();
+				ciwace.setCURL(componentInfo.getName());
+				ciwace.setComponentType(componentInfo.getType());
+				ciwace.setComponentCode(componentInfo.getCode() != null ? componentInfo.getCode() : "<unknown>");
+				ciwace.setContainerName(containerInfo != null ? containerInfo.getName() : "<none>");
+				throw ciwace;
+			}
 
-						// inform administrators about component request
-						notifyComponentRequested(new int[] { requestor }, new int[] { componentInfo.getHandle() }, System.currentTimeMillis());
 
-						// notify about the change (only if on the same container)
-						// on complete system shutdown sort will be done anyway
-						if ((requestor & TYPE_MASK) == COMPONENT_MASK)
-						{
-							ComponentInfo requestorComponentInfo = getComponentInfo(requestor);
-							if (requestorComponentInfo != null &&
-								requestorComponentInfo.getContainerName() != null &&
-								requestorComponentInfo.getContainerName().equals(componentInfo.getContainerName()))
-								topologySortManager.notifyTopologyChange(componentInfo.getContainer());
-						}
+			// if reactivation is needed bail out and reactivate
+			if (activate && !reactivate)
+			{
 
-						// return info
-						status.setStatus(ComponentStatus.COMPONENT_ACTIVATED);
-						return componentInfo;
-					}
-					else
+				// add client/component as an owner (if requestor is not 'reactivation')
+				if (requestor != 0)
+				{
+					synchronized (componentRegistry.getStripe(name))
 					{
-						if (reactivate)
-							status.setStatus(ComponentStatus.COMPONENT_NOT_ACTIVATED);
-						else
-							status.setStatus(ComponentStatus.COMPONENT_ACTIVATED);
-
-						return componentInfo;
+						// !!! ACID
+						if (!componentInfo.getClients().contains(requestor))
+							executeCommand(new ComponentCommandClientAdd(componentInfo.getHandle() & HANDLE_MASK, requestor));
+							//componentInfo.getClients().add(requestor);
 					}
+				}
+
+				// add component to client component list (if requestor is not manager or 'reactivation')
+				if (requestor != this.getHandle() && requestor != 0)
+					addComponentOwner(componentInfo.getHandle(), requestor);
 
+				// inform administrators about component request
+				notifyComponentRequested(new int[] { requestor }, new int[] { componentInfo.getHandle() }, System.currentTimeMillis());
 
+				// notify about the change (only if on the same container)
+				// on complete system shutdown sort will be done anyway
+				if ((requestor & TYPE_MASK) == COMPONENT_MASK)
+				{
+					ComponentInfo requestorComponentInfo = getComponentInfo(requestor);
+					if (requestorComponentInfo != null &&
+						requestorComponentInfo.getContainerName() != null &&
+						requestorComponentInfo.getContainerName().equals(componentInfo.getContainerName()))
+						topologySortManager.notifyTopologyChange(componentInfo.getContainer());
 				}
-				h = components.next(h);
+
+				// return info
+				status.setStatus(ComponentStatus.COMPONENT_ACTIVATED);
+				return componentInfo;
 			}
-		} finally {
-			componentsLock.unlock();
+			else if (!activate)
+			{
+				if (reactivate)
+					status.setStatus(ComponentStatus.COMPONENT_NOT_ACTIVATED);
+				else
+					status.setStatus(ComponentStatus.COMPONENT_ACTIVATED);
+
+				return componentInfo;
+			}
+
 		}
 		
 		// if we have to reactivate a dynamic component,
@@ -6630,7 +6647,12 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 				{
 					executionId = generateExecutionId();
 					activationTime = System.currentTimeMillis();
-					componentInfo = container.activate_component(h | COMPONENT_MASK, executionId, name, code, type);
+					long activationStart = statistics.activationStarted();
+					try {
+						componentInfo = container.activate_component(h | COMPONENT_MASK, executionId, name, code, type);
+					} finally {
+						reportActivationLatency(containerName, statistics.activationFinished(activationStart));
+					}
 				}
 				catch (Throwable ex)
 				{
@@ -6657,25 +6679,30 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					
 					addPendingContainerAsyncRequest(containerName, callback);
 					
-					try {
-						container.activate_component_async(h | COMPONENT_MASK, executionId, name, code, type, callback);
-					}
-					catch (Throwable t) {
-						// failed call, remove async request from the list
-						removePendingContainerAsyncRequest(containerName, callback);
-						throw t;
-					}
-					
-					logger.log(AcsLogLevel.DELOUSE, "Asynchronous activation of component '"+name+"' (" + handleReadable + ") is running on container '" + containerInfo.getName() + "'.");
-					
 					ComponentInfo ret;
+					long activationStart = statistics.activationStarted();
 					try {
-						ret = callback.waitUntilActivated(getLockTimeout());
-					}
-					catch (Throwable t) {
-						// failed call (most likely timeout), remove async request from the list
-						removePendingContainerAsyncRequest(containerName, callback);
-						throw t;
+						try {
+							container.activate_component_async(h | COMPONENT_MASK, executionId, name, code, type, callback);
+						}
+						catch (Throwable t) {
+							// failed call, remove async request from the list
+							removePendingContainerAsyncRequest(containerName, callback);
+							throw t;
+						}
+						
+						logger.log(AcsLogLevel.DELOUSE, "Asynchronous activation of component '"+name+"' (" + handleReadable + ") is running on container '" + containerInfo.getName() + "'.");
+						
+						try {
+							ret = callback.waitUntilActivated(getLockTimeout());
+						}
+						catch (Throwable t) {
+							// failed call (most likely timeout), remove async request from the list
+							removePendingContainerAsyncRequest(containerName, callback);
+							throw t;
+						}
+					} finally {
+						reportActivationLatency(containerName, statistics.activationFinished(activationStart));
 					}
 
 					logger.log(AcsLogLevel.DELOUSE, "Asynchronous activation of component '"+name+"' (" + handleReadable + ") has finished on container '" + containerInfo.getName() + "'.");
@@ -7061,19 +7088,23 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 			// create a new ComponentInfo - do not trust containers
 			ComponentInfo data = new ComponentInfo(componentInfo.getHandle(), name, type, code, componentInfo.getComponent());
-			if (existingData != null)
+			// the lists of existingData are shared with data
+			synchronized (componentRegistry.getStripe(name))
 			{
-					data.setClients(existingData.getClients());
-					data.setComponents(existingData.getComponents());
-			}
+				if (existingData != null)
+				{
+						data.setClients(existingData.getClients());
+						data.setComponents(existingData.getComponents());
+				}
 
-			if (requestor != 0)
-				if (!data.getClients().contains(requestor))		// hierarchical components need this check
-					data.getClients().add(requestor);
+				if (requestor != 0)
+					if (!data.getClients().contains(requestor))		// hierarchical components need this check
+						data.getClients().add(requestor);
 
-			if (keepAliveTime <= RELEASE_NEVER)
-				if (!data.getClients().contains(this.getHandle()))		// make component immortal
-					data.getClients().add(this.getHandle());
+				if (keepAliveTime <= RELEASE_NEVER)
+					if (!data.getClients().contains(this.getHandle()))		// make component immortal
+						data.getClients().add(this.getHandle());
+			}
 
 			data.setKeepAliveTime(keepAliveTime);	// remember keep alive time
 
@@ -7109,7 +7140,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 			componentInfo = data;
 
-			clients = componentInfo.getClients().toArray();
+			clients = getComponentClients(componentInfo);
 		} finally {
 			componentsLock.unlock();
 		}
@@ -7327,7 +7358,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 						if (ci.getName().equals(name))
 						{
 							// a new owner detected, leave component activated
-							if (ci.getClients().size() > 0)
+							if (getComponentClients(ci).length > 0)
 								return;
 							componentInfo = ci;
 							break;
@@ -7380,36 +7411,25 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	{
 
 		// extract name
-		String name = null;
-		componentsLock.lock();
-		try {
-			int handle = h & HANDLE_MASK;
-			ComponentInfo componentInfo = null;
-			if (components.isAllocated(handle))
-				componentInfo = (ComponentInfo)components.get(handle);
-
-			if (componentInfo == null)
-			{
-				// invalid Component handle
-				AcsJBadParameterEx ex = new AcsJBadParameterEx();
-				ex.setParameter("componentInfo");
-				ex.setParameterValue("null");
-				throw ex;			
-			}
-			if (componentInfo.getHandle() != h)
-			{
-				// invalid Component handle
-				AcsJBadParameterEx ex = new AcsJBadParameterEx();
-				ex.setParameter("h");
-				throw ex;			
-			}
-
-			name = componentInfo.getName();
-
-		} finally {
-			componentsLock.unlock();
+		ComponentInfo componentInfo = componentRegistry.get(h & HANDLE_MASK);
+		if (componentInfo == null)
+		{
+			// invalid Component handle
+			AcsJBadParameterEx ex = new AcsJBadParameterEx();
+			ex.setParameter("componentInfo");
+			ex.setParameterValue("null");
+			throw ex;			
+		}
+		if (componentInfo.getHandle() != h)
+		{
+			// invalid Component handle
+			AcsJBadParameterEx ex = new AcsJBadParameterEx();
+			ex.setParameter("h");
+			throw ex;			
 		}
 
+		String name = componentInfo.getName();
+
 		// try to acquire lock
 		String lockNotAcquiredCause = acquireSynchronizationObject(name, lockTimeout, "release component " + name);
 		if (lockNotAcquiredCause == null)
@@ -7453,73 +7473,73 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		int handle = h & HANDLE_MASK;
 		int owners = 0;
 
-		ComponentInfo componentInfo = null;
-		componentsLock.lock();
-		try {
-			if (components.isAllocated(handle))
-				componentInfo = (ComponentInfo)components.get(handle);
-
-			if (componentInfo == null || componentInfo.getHandle() != h)
-			{
-				// invalid component handle
-				BadParametersException af = new BadParametersException("Invalid component handle.");
-				throw af;
-			}
+		// caller holds activation synchronization lock of the component
+		ComponentInfo componentInfo = componentRegistry.get(handle);
+		if (componentInfo == null || componentInfo.getHandle() != h)
+		{
+			// invalid component handle
+			BadParametersException af = new BadParametersException("Invalid component handle.");
+			throw af;
+		}
 
-			// remove ownership of the component
-			if (!componentInfo.getClients().contains(owner))
-			{
-				if (!force)
-				{
-					// not an owner
-					AcsJNoPermissionEx npe = new AcsJNoPermissionEx();
-					npe.setReason("Unregistering component that client does not own.");
-					npe.setID(HandleHelper.toString(owner));
-					npe.setProtectedResource(componentInfo.getName());
-					throw npe;
-				}
-			}
-			else
+		boolean isOwner;
+		synchronized (componentRegistry.getStripe(componentInfo.getName()))
+		{
+			isOwner = componentInfo.getClients().contains(owner);
+			if (isOwner)
 			{
-
 				// ACID - !!!
 
 				// remove client/component as an owner
 				executeCommand(new ComponentCommandClientRemove(componentInfo.getHandle() & HANDLE_MASK, owner));
 				//componentInfo.getClients().remove(owner);
-
-				// remove component from client component list
-				if (owner != this.getHandle())
-					removeComponentOwner(componentInfo.getHandle(), owner);
 			}
 
 			owners = componentInfo.getClients().size();
+		}
 
-			if (owners == 0)
+		// remove ownership of the component
+		if (!isOwner)
+		{
+			if (!force)
 			{
-				// !!! ACID
+				// not an owner
+				AcsJNoPermissionEx npe = new AcsJNoPermissionEx();
+				npe.setReason("Unregistering component that client does not own.");
+				npe.setID(HandleHelper.toString(owner));
+				npe.setProtectedResource(componentInfo.getName());
+				throw npe;
+			}
+		}
+		else
+		{
+			// remove component from client component list
+			if (owner != this.getHandle())
+				removeComponentOwner(componentInfo.getHandle(), owner);
+		}
 
-				// this should not be done here (this will throw no permission exception to the component releasing its subcomponents)
-				// deallocate Component
-				//executeCommand(new ComponentCommandDeallocate(handle));
-				////components.deallocate(handle);
+		if (owners == 0)
+		{
+			// !!! ACID
 
+			// this should not be done here (this will throw no permission exception to the component releasing its subcomponents)
+			// deallocate Component
+			//executeCommand(new ComponentCommandDeallocate(handle));
+			////components.deallocate(handle);
 
-				// remove from unavailable list
-				// there is not owner to be unavailable for
-				synchronized (unavailableComponents)
+
+			// remove from unavailable list
+			// there is not owner to be unavailable for
+			synchronized (unavailableComponents)
+			{
+				if (unavailableComponents.containsKey(componentInfo.getName()))
 				{
-					if (unavailableComponents.containsKey(componentInfo.getName()))
-					{
-						// !!! ACID
-						executeCommand(new UnavailableComponentCommandRemove(componentInfo.getName()));
-						//unavailableComponents.remove(componentInfo.getName());
-					}
+					// !!! ACID
+					executeCommand(new UnavailableComponentCommandRemove(componentInfo.getName()));
+					//unavailableComponents.remove(componentInfo.getName());
 				}
-
 			}
-		} finally {
-			componentsLock.unlock();
+
 		}
 
 		/****************** component deactivation ******************/
@@ -7603,7 +7623,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		//unbind(convertToHiearachical(componentInfo.getName()), "O");
 
 		int handle = componentInfo.getHandle() & HANDLE_MASK;
-		int owners = componentInfo.getClients().size();
+		int owners = getComponentClients(componentInfo).length;
 
 		try
 		{
@@ -8075,7 +8095,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			}
 
 			// remove ownership of the component
-			if (!componentInfo.getClients().contains(owner))
+			if (!isComponentClient(componentInfo, owner))
 			{
 				// not an owner
 				AcsJNoPermissionEx npe = new AcsJNoPermissionEx();
@@ -8788,7 +8808,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					// note that name cannot be overriden
 					else if (processingNameField &&
 					         (fieldValue.indexOf(ComponentSpec.COMPSPEC_ANY) == -1 ||
-					         !WildcharMatcher.match(fieldValue, requiredValues[i])))
+					         !WildcharPattern.compile(fieldValue).matches(requiredValues[i])))
 						break;
 
 				}
@@ -8914,6 +8934,9 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		IntHolder keepAliveTimeHolder = new IntHolder(RELEASE_TIME_UNDEFINED);
 		String[] result = prohibitSearch ? null : searchDynamicComponent(fieldNames, requiredValues, equalityRequired, equalityPoints, keepAliveTimeHolder);
 
+		// container selected by the load balancing strategy
+		String placedContainer = null;
+
 		// none found
 		if (result == null)
 		{
@@ -8940,6 +8963,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					{
 						result = new String[] { componentSpec.getName(), componentSpec.getType(),
 									componentSpec.getCode(), containerName };
+						placedContainer = containerName;
 						failed = false;
 					}
 				}
@@ -8953,57 +8977,67 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			}
 		}
 
-		// override...
-		for (int i = 0; i < result.length; i++)
-			if (!requiredValues[i].equals(ComponentSpec.COMPSPEC_ANY))
-				result[i] = requiredValues[i];
-
-		// check completeness
-		int i = 0;
-		if (allowNameGeneration) i++;
-		for (; i < result.length; i++)
-			if (result[i].equals(ComponentSpec.COMPSPEC_ANY))
-			{
-				// only container not speficied...
-				// if load balancing strategy is registered, use it to determine container name
-				if (fieldNames[i].equals("Container") &&
-					loadBalancingStrategy != null)
-				{
-					String containerName = loadBalancingStrategy.selectContainer(getClientInfo(requestor), getContainersInfo());
-					if (containerName != null)
+		try
+		{
+			// override...
+			for (int i = 0; i < result.length; i++)
+				if (!requiredValues[i].equals(ComponentSpec.COMPSPEC_ANY))
+					result[i] = requiredValues[i];
+
+			// check completeness
+			int i = 0;
+			if (allowNameGeneration) i++;
+			for (; i < result.length; i++)
+				if (result[i].equals(ComponentSpec.COMPSPEC_ANY))
+				{
+					// only container not speficied...
+					// if load balancing strategy is registered, use it to determine container name
+					if (fieldNames[i].equals("Container") &&
+						loadBalancingStrategy != null)
 					{
-						result[i] = containerName;
-						continue;
+						String containerName = loadBalancingStrategy.selectContainer(getClientInfo(requestor), getContainersInfo());
+						if (containerName != null)
+						{
+							result[i] = containerName;
+							placedContainer = containerName;
+							continue;
+						}
 					}
-				}
 
-				AcsJIncompleteComponentSpecEx ex = new AcsJIncompleteComponentSpecEx();
-				ex.setReason("'" + fieldNames[i] + "' equals '" + ComponentSpec.COMPSPEC_ANY +"'.");
-				throw ex;
-			}
+					AcsJIncompleteComponentSpecEx ex = new AcsJIncompleteComponentSpecEx();
+					ex.setReason("'" + fieldNames[i] + "' equals '" + ComponentSpec.COMPSPEC_ANY +"'.");
+					throw ex;
+				}
 
-		// generate name if necessary
-		if (allowNameGeneration && result[0].endsWith(ComponentSpec.COMPSPEC_ANY))
-		{
-			synchronized (this)
+			// generate name if necessary
+			if (allowNameGeneration && result[0].endsWith(ComponentSpec.COMPSPEC_ANY))
 			{
-				/// @todo not perfect
-			    if (result[0].equals(ComponentSpec.COMPSPEC_ANY))
-			        result[0] = result[1] + "_" + System.currentTimeMillis();
-			    else // ends with case
-			        result[0] = result[0].substring(0, result[0].length()-1) + "_" + System.currentTimeMillis();
+				synchronized (this)
+				{
+					/// @todo not perfect
+				    if (result[0].equals(ComponentSpec.COMPSPEC_ANY))
+				        result[0] = result[1] + "_" + System.currentTimeMillis();
+				    else // ends with case
+				        result[0] = result[0].substring(0, result[0].length()-1) + "_" + System.currentTimeMillis();
 
-				// flatten hierarchical name (remove IDL separators)
-				if (result[0].indexOf('/') >= 0)
-					result[0] = result[0].replaceAll("/", "_");
+					// flatten hierarchical name (remove IDL separators)
+					if (result[0].indexOf('/') >= 0)
+						result[0] = result[0].replaceAll("/", "_");
+				}
 			}
-		}
 
-		StatusHolder statusHolder = new StatusHolder();
+			StatusHolder statusHolder = new StatusHolder();
 		
-		// Same exceptions are let flying up
-		return internalRequestComponent(requestor, result[0], result[1],
-									    result[2], result[3], keepAliveTimeHolder.value, statusHolder, true);
+			// Same exceptions are let flying up
+			return internalRequestComponent(requestor, result[0], result[1],
+										    result[2], result[3], keepAliveTimeHolder.value, statusHolder, true);
+		}
+		finally
+		{
+			// release the placement made by the load balancing strategy
+			if (placedContainer != null)
+				reportPlacementCompleted(placedContainer);
+		}
 	}
 
 	/*****************************************************************************/
@@ -9437,20 +9471,14 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 			case COMPONENT_MASK:
 				//name.append("Component ");
-				componentsLock.lock();
-				try {
-					if (components.isAllocated(reqHandle))
+				{
+					ComponentInfo info = componentRegistry.get(reqHandle);
+					// do additional preallocation check
+					if (info != null && info.getHandle() == id)
 					{
-						ComponentInfo info = (ComponentInfo)components.get(reqHandle);
-						// do additional preallocation check
-						if (info != null && info.getHandle() == id)
-						{
-							invalidHandle = false;
-							name.append(info.getName());
-						}
+						invalidHandle = false;
+						name.append(info.getName());
 					}
-				} finally {
-					componentsLock.unlock();
 				}
 				break;
 
@@ -9619,7 +9647,8 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			
 		ReferenceCountingLock lock;
 
-		synchronized (activationSynchronization)
+		// all the operations on the lock of the given name are serialized by its stripe
+		synchronized (componentRegistry.getStripe(name))
 		{
 			// get synchronization object
 			lock = activationSynchronization.get(name);
@@ -9666,7 +9695,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private void releaseSynchronizationObject(String name, boolean release)
 	{
-		synchronized (activationSynchronization)
+		synchronized (componentRegistry.getStripe(name))
 		{
 			// get synchronization object
 			ReferenceCountingLock lock = activationSynchronization.get(name);
@@ -9714,6 +9743,12 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	{
 		enableHandleMonitoring = System.getProperties().containsKey(NAME_HANDLE_MONITORING);
 		enableHandleMonitoringDurationMins = Integer.getInteger(NAME_HANDLE_MONITORING_TIME, HANDLE_MONITORING_TIME_MIN);
+		pingMaxInFlight = Math.max(1, Integer.getInteger(NAME_PING_MAX_IN_FLIGHT, PING_MAX_IN_FLIGHT));
+		pingDeadline = Math.max(1000, Integer.getInteger(NAME_PING_DEADLINE, PING_DEADLINE));
+		startupActivationParallelism = Math.max(1, Integer.getInteger(NAME_STARTUP_ACTIVATION_PARALLELISM, STARTUP_ACTIVATION_PARALLELISM));
+		notificationWindow = Math.max(0, Integer.getInteger(NAME_NOTIFICATION_WINDOW, NOTIFICATION_WINDOW));
+		notificationMaxPending = Math.max(1, Integer.getInteger(NAME_NOTIFICATION_MAX_PENDING, NOTIFICATION_MAX_PENDING));
+		statisticsLogInterval = Math.max(0, Integer.getInteger(NAME_STATISTICS_LOG_INTERVAL, STATISTICS_LOG_INTERVAL));
 		
 		DAOProxy managerDAO = getManagerDAOProxy();
 		if (managerDAO == null)
@@ -9778,13 +9813,13 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			if (componentsDAO != null)
 			{
 			    // initial refresh
-			    componentListCache = refreshComponentsList(componentsDAO);
+			    setComponentsList(refreshComponentsList(componentsDAO));
 			    // ... and install link listener (to refresh after reconnect)
 			    componentsDAO.addConnectionListener(
 			            new DAOProxyConnectionListener()
 			            {
 			            	public void connected(DAOProxy proxy) {
-		                    	componentListCache = refreshComponentsList(proxy);
+		                    	setComponentsList(refreshComponentsList(proxy));
 		                    }
 			            	public void disconnected(DAOProxy proxy) { /* noop */ }
 			        }
@@ -9805,6 +9840,30 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	    return componentListCache;
 	}
 
+	/**
+	 * Sets list of all component entries in the CDB (and its sorted copy).
+	 * @param	list	list of all component entries in the CDB.
+	 */
+	private void setComponentsList(String[] list)
+	{
+		String[] sorted = list.clone();
+		Arrays.sort(sorted);
+		sortedComponentListCache = sorted;
+		componentListCache = list;
+	}
+
+	/**
+	 * Returns index of the first element of the sorted array not less than the prefix.
+	 * @param	sorted	sorted array.
+	 * @param	prefix	prefix.
+	 * @return	index of the first element of the range of elements starting with the prefix.
+	 */
+	private static int prefixRangeStart(String[] sorted, String prefix)
+	{
+		int index = Arrays.binarySearch(sorted, prefix);
+		return (index >= 0) ? index : -(index + 1);
+	}
+
 	/**
 	 * Searches dao for all potential (nodes containing Name attribute) ComponentInfo nodes.
 	 * @param dc	dao to be searched.
@@ -10316,30 +10375,31 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		
 		if (prevayler != null)
 		{
-			synchronized (prevayler) {
-				// on enable, first take current snapshot to start with clean state
-				if (enable)
-				{
-					// already enabled check
-					if (statePersitenceFlag.get())
-						return;
-					
-					try {
-						synchronized (prevayler) {
-							statePersitenceFlag.set(true);
-							((SnapshotPrevayler)prevayler).takeSnapshot();
-						}
-					}
-					catch (IOException e) {
-						// @todo better exception
-						statePersitenceFlag.set(false);
-						throw new NoResourcesException("Failed to create current state snapshot: " + e.toString());
-					}
-				}
-				else
+			// flag is changed under the execution lock, commands bypassing the prevayler hold it too
+			synchronized (getExecutionLock())
+			{
+				if (!enable)
 				{
 					statePersitenceFlag.set(false);
+					return;
 				}
+				
+				// already enabled check
+				if (statePersitenceFlag.get())
+					return;
+				
+				statePersitenceFlag.set(true);
+			}
+
+			// on enable, take current snapshot to start with clean state
+			// (not under the execution lock, snapshot acquires it after its own lock)
+			try {
+				takeSnapshot();
+			}
+			catch (IOException e) {
+				// @todo better exception
+				statePersitenceFlag.set(false);
+				throw new NoResourcesException("Failed to create current state snapshot: " + e.toString());
 			}
 		}
 	}
@@ -10348,7 +10408,58 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	{
 		return statePersitenceFlag;
 	}
+
+	/**
+	 * Returns the lock serializing the command executions of the prevayler.
+	 * @return	the execution lock.
+	 */
+	private Object getExecutionLock()
+	{
+		if (prevayler instanceof JournalPrevayler)
+			return ((JournalPrevayler)prevayler).getExecutionLock();
+		else
+			return prevayler;
+	}
+
+	/**
+	 * Takes snapshot of the manager state.
+	 * @throws IOException
+	 */
+	private void takeSnapshot() throws IOException
+	{
+		if (prevayler instanceof JournalPrevayler)
+			((JournalPrevayler)prevayler).takeSnapshot();
+		else
+			((SnapshotPrevayler)prevayler).takeSnapshot();
+	}
 	
+	/**
+	 * Returns the clients of the component, read under the stripe of its name.
+	 * @param	componentInfo	component info, non-<code>null</code>
+	 * @return	the handles of the clients of the component.
+	 */
+	private int[] getComponentClients(ComponentInfo componentInfo)
+	{
+		synchronized (componentRegistry.getStripe(componentInfo.getName()))
+		{
+			return componentInfo.getClients().toArray();
+		}
+	}
+
+	/**
+	 * Checks if the client is a client of the component, under the stripe of its name.
+	 * @param	componentInfo	component info, non-<code>null</code>
+	 * @param	client			handle of the client.
+	 * @return	<code>true</code> if <code>client</code> is a client of the component.
+	 */
+	private boolean isComponentClient(ComponentInfo componentInfo, int client)
+	{
+		synchronized (componentRegistry.getStripe(componentInfo.getName()))
+		{
+			return componentInfo.getClients().contains(client);
+		}
+	}
+
 	/**
 	 * @param command
 	 * @return
@@ -10356,19 +10467,39 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	
 	private Serializable executeCommand(Command command) throws NoResourcesException
 	{
+		long start = System.nanoTime();
+		try {
+			return internalExecuteCommand(command);
+		} finally {
+			recordLatency(ManagerStatistics.Operation.EXECUTE_COMMAND, start);
+		}
+	}
+
+	/**
+	 * @see #executeCommand(Command)
+	 */
+	private Serializable internalExecuteCommand(Command command) throws NoResourcesException
+	{
+		boolean persistenceFailed = false;
 		if (prevayler != null && statePersitenceFlag.get())
 		{
 			try {
-				final Serializable retVal;
-				synchronized (prevayler) {
-					retVal = prevayler.executeCommand(command);
-				}
+				// prevayler is thread-safe, JournalPrevayler waits for the disk without holding a lock
+				final Serializable retVal = prevayler.executeCommand(command);
 				reportPrevaylerState(false, null);
 				return retVal;
+			} catch (CommandNotDurableException cnde) {
+				// command already executed, only its journal record failed to reach the disk
+				// log and raise alarm, but do not execute it again
+				reportPrevaylerState(true, cnde);
+				if (cnde.getCommandFailure() != null)
+					throw new NoResourcesException("Failed to execute command.", cnde.getCommandFailure());
+				return cnde.getResult();
 			} catch (IOException ioex) {
 				// filesystem error, prevailey failed
 				// log, raise alarm and bypass prevayler (do not return here)
 				reportPrevaylerState(true, ioex);
+				persistenceFailed = true;
 			} catch (Throwable th) {
 				// most likely command execution error
 				throw new NoResourcesException("Failed to execute command.", th);
@@ -10378,12 +10509,53 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		
 		// bypass prevayler
 		try {
+			if (prevayler != null && !persistenceFailed)
+			{
+				// serialized with the journaled commands and with the enabling of the state persistence
+				synchronized (getExecutionLock())
+				{
+					// enabled in the meantime, the command has to be journaled not to be lost
+					if (statePersitenceFlag.get())
+						return prevayler.executeCommand(command);
+					return command.execute(this);
+				}
+			}
 			return command.execute(this);
 		} catch (Throwable th) {
 			throw new NoResourcesException("Failed to execute command.", th);
 		}
 	}
 
+	/**
+	 * Records the latency of the operation (if statistics are already initialized).
+	 * @param operation	measured operation.
+	 * @param start	start time as returned by <code>System.nanoTime()</code>.
+	 */
+	private void recordLatency(ManagerStatistics.Operation operation, long start)
+	{
+		ManagerStatistics stats = statistics;
+		if (stats != null)
+			stats.record(operation, start);
+	}
+
+	/**
+	 * Returns the lock-free view of the components.
+	 * @return ComponentRegistry, <code>null</code> if manager is not initialized
+	 */
+	public ComponentRegistry getComponentRegistry()
+	{
+		return componentRegistry;
+	}
+
+	/**
+	 * Returns the latency and contention statistics.
+	 * @return ManagerStatistics, <code>null</code> if manager is not initialized
+	 */
+	public ManagerStatistics getStatistics()
+	{
+		return statistics;
+	}
+
 	/**
 	 * Returns the containers.
 	 * @return HandleDataStore
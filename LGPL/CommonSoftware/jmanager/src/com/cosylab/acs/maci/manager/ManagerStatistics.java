@@ -0,0 +1,469 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.cosylab.acs.maci.HandleHelper;
+
+/**
+ * Always-on statistics of the manager: latency histograms per operation, wait histograms per lock,
+ * number of activations in progress, the depth of the manager's thread pool queue
+ * and the ping round-trip times of the monitored clients.
+ *
+ * Statistics are exposed through JMX (see {@link ManagerStatisticsMBean}) and logged periodically,
+ * the periodic log reports only the operations executed since the previous log.
+ *
+ * @version	@@VERSION@@
+ */
+public class ManagerStatistics implements ManagerStatisticsMBean
+{
+
+	/**
+	 * Measured operations.
+	 */
+	public enum Operation { LOGIN, LOGOUT, GET_COMPONENT, RELEASE_COMPONENT, ACTIVATION, EXECUTE_COMMAND };
+
+	/**
+	 * Measured locks.
+	 */
+	public enum LockType { COMPONENTS, ACTIVATION_PENDING_READ, ACTIVATION_PENDING_WRITE };
+
+	/**
+	 * JMX name.
+	 */
+	public static final String OBJECT_NAME = "alma.acs.manager:type=ManagerStatistics";
+
+	/**
+	 * Latencies per operation.
+	 */
+	private final LatencyHistogram[] operations = new LatencyHistogram[Operation.values().length];
+
+	/**
+	 * Waits per lock.
+	 */
+	private final LatencyHistogram[] locks = new LatencyHistogram[LockType.values().length];
+
+	/**
+	 * Bucket counts at the time of the last periodic log.
+	 */
+	private final long[][] lastOperations = new long[Operation.values().length][];
+	private final long[][] lastLocks = new long[LockType.values().length][];
+
+	/**
+	 * Number of activations in progress.
+	 */
+	private final AtomicInteger inFlightActivations = new AtomicInteger(0);
+
+	/**
+	 * Max. number of activations in progress since the last periodic log.
+	 */
+	private final AtomicInteger maxInFlightActivations = new AtomicInteger(0);
+
+	/**
+	 * Manager's thread pool.
+	 */
+	private volatile ThreadPoolExecutor threadPool;
+
+	/**
+	 * Scheduler of the pings.
+	 */
+	private volatile PingScheduler pingScheduler;
+
+	/**
+	 * Logger.
+	 */
+	private final Logger logger;
+
+	/**
+	 * Registered JMX name, <code>null</code> if not registered.
+	 */
+	private ObjectName objectName;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param	logger	logger.
+	 */
+	public ManagerStatistics(Logger logger)
+	{
+		this.logger = logger;
+
+		for (int i = 0; i < operations.length; i++)
+		{
+			operations[i] = new LatencyHistogram();
+			lastOperations[i] = new long[LatencyHistogram.BUCKETS];
+		}
+		for (int i = 0; i < locks.length; i++)
+		{
+			locks[i] = new LatencyHistogram();
+			lastLocks[i] = new long[LatencyHistogram.BUCKETS];
+		}
+	}
+
+	/**
+	 * Records the latency of the operation.
+	 *
+	 * @param	operation	operation.
+	 * @param	startNanos	start time as returned by <code>System.nanoTime()</code>.
+	 */
+	public void record(Operation operation, long startNanos)
+	{
+		operations[operation.ordinal()].recordSince(startNanos);
+	}
+
+	/**
+	 * Returns the latency histogram of the operation.
+	 *
+	 * @param	operation	operation.
+	 * @return	the latency histogram of the operation.
+	 */
+	public LatencyHistogram getHistogram(Operation operation)
+	{
+		return operations[operation.ordinal()];
+	}
+
+	/**
+	 * Returns the wait histogram of the lock.
+	 *
+	 * @param	lock	lock.
+	 * @return	the wait histogram of the lock.
+	 */
+	public LatencyHistogram getHistogram(LockType lock)
+	{
+		return locks[lock.ordinal()];
+	}
+
+	/**
+	 * Marks the start of an activation.
+	 *
+	 * @return	start time to be passed to {@link #activationFinished(long)}.
+	 */
+	public long activationStarted()
+	{
+		int inFlight = inFlightActivations.incrementAndGet();
+		int max = maxInFlightActivations.get();
+		while (inFlight > max && !maxInFlightActivations.compareAndSet(max, inFlight))
+			max = maxInFlightActivations.get();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of an activation.
+	 *
+	 * @param	startNanos	start time as returned by {@link #activationStarted()}.
+	 * @return	duration of the activation in ns.
+	 */
+	public long activationFinished(long startNanos)
+	{
+		inFlightActivations.decrementAndGet();
+		long latency = System.nanoTime() - startNanos;
+		operations[Operation.ACTIVATION.ordinal()].record(latency);
+		return latency;
+	}
+
+	/**
+	 * Sets the manager's thread pool.
+	 *
+	 * @param	threadPool	the manager's thread pool.
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool)
+	{
+		this.threadPool = threadPool;
+	}
+
+	/**
+	 * Sets the scheduler of the pings.
+	 *
+	 * @param	pingScheduler	the scheduler of the pings.
+	 */
+	public void setPingScheduler(PingScheduler pingScheduler)
+	{
+		this.pingScheduler = pingScheduler;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getOperationLatencies()
+	 */
+	public String[] getOperationLatencies()
+	{
+		Operation[] values = Operation.values();
+		String[] lines = new String[values.length];
+		for (int i = 0; i < values.length; i++)
+			lines[i] = format(values[i].name(), operations[i].getBuckets(), operations[i].getTotal(), operations[i].getMax());
+		return lines;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getLockWaits()
+	 */
+	public String[] getLockWaits()
+	{
+		LockType[] values = LockType.values();
+		String[] lines = new String[values.length];
+		for (int i = 0; i < values.length; i++)
+			lines[i] = format(values[i].name(), locks[i].getBuckets(), locks[i].getTotal(), locks[i].getMax());
+		return lines;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getInFlightActivations()
+	 */
+	public int getInFlightActivations()
+	{
+		return inFlightActivations.get();
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getThreadPoolQueueDepth()
+	 */
+	public int getThreadPoolQueueDepth()
+	{
+		ThreadPoolExecutor pool = threadPool;
+		return pool == null ? 0 : pool.getQueue().size();
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getThreadPoolActiveCount()
+	 */
+	public int getThreadPoolActiveCount()
+	{
+		ThreadPoolExecutor pool = threadPool;
+		return pool == null ? 0 : pool.getActiveCount();
+	}
+
+	/**
+	 * Returns the scheduled ping tasks, sorted by the handle of the client.
+	 */
+	private PingTimerTask[] getPingTasks()
+	{
+		PingScheduler scheduler = pingScheduler;
+		if (scheduler == null)
+			return new PingTimerTask[0];
+
+		PingTimerTask[] tasks = scheduler.getTasks();
+		Arrays.sort(tasks, new Comparator<PingTimerTask>()
+		{
+			public int compare(PingTimerTask t1, PingTimerTask t2)
+			{
+				int h1 = t1.getClientInfo().getHandle();
+				int h2 = t2.getClientInfo().getHandle();
+				return h1 < h2 ? -1 : (h1 == h2 ? 0 : 1);
+			}
+		});
+		return tasks;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getPingRoundTripTimes()
+	 */
+	public String[] getPingRoundTripTimes()
+	{
+		PingTimerTask[] tasks = getPingTasks();
+		String[] lines = new String[tasks.length];
+		for (int i = 0; i < tasks.length; i++)
+		{
+			PingTimerTask task = tasks[i];
+			StringBuffer sbuff = new StringBuffer(128);
+			sbuff.append(task.getClientInfo().getName());
+			sbuff.append(" [").append(HandleHelper.toString(task.getClientInfo().getHandle())).append("]: ");
+			sbuff.append(task.getPingCount()).append(" pings");
+			if (task.getPingCount() > 0)
+			{
+				sbuff.append(", last ").append(task.getLastRTT());
+				sbuff.append(" ms, min ").append(task.getMinRTT());
+				sbuff.append(" ms, avg ").append((long)task.getAverageRTT());
+				sbuff.append(" ms, max ").append(task.getMaxRTT()).append(" ms");
+			}
+			lines[i] = sbuff.toString();
+		}
+		return lines;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getPingsInFlight()
+	 */
+	public int getPingsInFlight()
+	{
+		PingScheduler scheduler = pingScheduler;
+		return scheduler == null ? 0 : scheduler.getInFlight();
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getMaxAveragePingRoundTripTime()
+	 */
+	public double getMaxAveragePingRoundTripTime()
+	{
+		double max = -1;
+		PingTimerTask[] tasks = getPingTasks();
+		for (int i = 0; i < tasks.length; i++)
+			max = Math.max(max, tasks[i].getAverageRTT());
+		return max;
+	}
+
+	/**
+	 * @see com.cosylab.acs.maci.manager.ManagerStatisticsMBean#getSummary()
+	 */
+	public String getSummary()
+	{
+		StringBuffer sbuff = new StringBuffer(1024);
+		sbuff.append("activations in progress: ").append(getInFlightActivations());
+		sbuff.append(", thread pool: ").append(getThreadPoolActiveCount()).append(" busy, ");
+		sbuff.append(getThreadPoolQueueDepth()).append(" queued");
+		sbuff.append(", pings in progress: ").append(getPingsInFlight());
+		double maxAverageRTT = getMaxAveragePingRoundTripTime();
+		if (maxAverageRTT >= 0)
+			sbuff.append(", max. average ping round-trip time: ").append((long)maxAverageRTT).append(" ms");
+		String[] lines = getOperationLatencies();
+		for (int i = 0; i < lines.length; i++)
+			sbuff.append("\n\t").append(lines[i]);
+		lines = getLockWaits();
+		for (int i = 0; i < lines.length; i++)
+			sbuff.append("\n\tlock wait ").append(lines[i]);
+		return sbuff.toString();
+	}
+
+	/**
+	 * Logs the statistics of the operations executed since the previous call, nothing is logged if there were none.
+	 */
+	public synchronized void logSummary()
+	{
+		StringBuffer sbuff = new StringBuffer(1024);
+		boolean active = false;
+
+		Operation[] values = Operation.values();
+		for (int i = 0; i < values.length; i++)
+		{
+			long[] delta = delta(operations[i], lastOperations[i]);
+			if (delta != null)
+			{
+				active = true;
+				sbuff.append("\n\t").append(format(values[i].name(), delta, -1, -1));
+			}
+		}
+
+		LockType[] lockValues = LockType.values();
+		for (int i = 0; i < lockValues.length; i++)
+		{
+			long[] delta = delta(locks[i], lastLocks[i]);
+			if (delta != null)
+				sbuff.append("\n\tlock wait ").append(format(lockValues[i].name(), delta, -1, -1));
+		}
+
+		int maxInFlight = maxInFlightActivations.getAndSet(inFlightActivations.get());
+		if (!active)
+			return;
+
+		logger.log(Level.INFO, "Manager statistics since the last report (max. activations in progress: " + maxInFlight +
+				", thread pool: " + getThreadPoolActiveCount() + " busy, " + getThreadPoolQueueDepth() + " queued):" + sbuff);
+	}
+
+	/**
+	 * Returns bucket counts recorded since the last call (and remembers the current ones).
+	 *
+	 * @return	bucket counts recorded since the last call, <code>null</code> if there were none.
+	 */
+	private static long[] delta(LatencyHistogram histogram, long[] last)
+	{
+		long[] current = histogram.getBuckets();
+		long[] delta = new long[current.length];
+		boolean any = false;
+		for (int i = 0; i < current.length; i++)
+		{
+			delta[i] = current[i] - last[i];
+			if (delta[i] != 0)
+				any = true;
+			last[i] = current[i];
+		}
+		return any ? delta : null;
+	}
+
+	/**
+	 * Formats the statistics line.
+	 *
+	 * @param	name	name of the operation or lock.
+	 * @param	buckets	bucket counts.
+	 * @param	total	sum of latencies in ns, <code>-1</code> if unknown.
+	 * @param	max		max. latency in ns, <code>-1</code> if unknown.
+	 * @return	statistics line.
+	 */
+	private static String format(String name, long[] buckets, long total, long max)
+	{
+		long count = 0;
+		for (int i = 0; i < buckets.length; i++)
+			count += buckets[i];
+
+		StringBuffer sbuff = new StringBuffer(128);
+		sbuff.append(name).append(": count = ").append(count);
+		if (count > 0)
+		{
+			if (total >= 0)
+				sbuff.append(", mean = ").append(millis(total / count)).append(" ms");
+			sbuff.append(", p50 < ").append(millis(LatencyHistogram.percentile(buckets, 50))).append(" ms");
+			sbuff.append(", p99 < ").append(millis(LatencyHistogram.percentile(buckets, 99))).append(" ms");
+			sbuff.append(", p99.9 < ").append(millis(LatencyHistogram.percentile(buckets, 99.9))).append(" ms");
+			if (max >= 0)
+				sbuff.append(", max = ").append(millis(max)).append(" ms");
+		}
+		return sbuff.toString();
+	}
+
+	/**
+	 * Converts ns to ms (3 decimals).
+	 */
+	private static String millis(long nanos)
+	{
+		return String.valueOf(Math.round(nanos / 1000.0) / 1000.0);
+	}
+
+	/**
+	 * Registers the statistics to the platform MBean server.
+	 */
+	public synchronized void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(this, name);
+			objectName = name;
+		}
+		catch (Throwable th)
+		{
+			logger.log(Level.FINE, "Failed to register manager statistics MBean.", th);
+		}
+	}
+
+	/**
+	 * Unregisters the statistics from the platform MBean server.
+	 */
+	public synchronized void unregister()
+	{
+		if (objectName == null)
+			return;
+
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch (Throwable th)
+		{
+			logger.log(Level.FINE, "Failed to unregister manager statistics MBean.", th);
+		}
+		objectName = null;
+	}
+
+}
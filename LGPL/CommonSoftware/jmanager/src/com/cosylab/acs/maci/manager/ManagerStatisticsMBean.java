@@ -0,0 +1,69 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+/**
+ * JMX interface of the {@link ManagerStatistics}.
+ *
+ * @version	@@VERSION@@
+ */
+public interface ManagerStatisticsMBean
+{
+
+	/**
+	 * Returns the latencies of the manager operations, one line per operation.
+	 * @return	the latencies of the manager operations.
+	 */
+	public String[] getOperationLatencies();
+
+	/**
+	 * Returns the wait times of the manager locks, one line per lock.
+	 * @return	the wait times of the manager locks.
+	 */
+	public String[] getLockWaits();
+
+	/**
+	 * Returns the number of activations in progress.
+	 * @return	the number of activations in progress.
+	 */
+	public int getInFlightActivations();
+
+	/**
+	 * Returns the number of tasks waiting in the manager's thread pool.
+	 * @return	the number of tasks waiting in the manager's thread pool.
+	 */
+	public int getThreadPoolQueueDepth();
+
+	/**
+	 * Returns the number of busy threads of the manager's thread pool.
+	 * @return	the number of busy threads of the manager's thread pool.
+	 */
+	public int getThreadPoolActiveCount();
+
+	/**
+	 * Returns the ping round-trip times of the monitored clients, one line per client.
+	 * @return	the ping round-trip times of the monitored clients.
+	 */
+	public String[] getPingRoundTripTimes();
+
+	/**
+	 * Returns the number of pings in progress.
+	 * @return	the number of pings in progress.
+	 */
+	public int getPingsInFlight();
+
+	/**
+	 * Returns the max. of the average ping round-trip times of the monitored clients in ms.
+	 * @return	the max. of the average ping round-trip times in ms, <code>-1</code> if there was no ping.
+	 */
+	public double getMaxAveragePingRoundTripTime();
+
+	/**
+	 * Returns the summary of all the statistics.
+	 * @return	the summary of all the statistics.
+	 */
+	public String getSummary();
+
+}
@@ -0,0 +1,281 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cosylab.acs.maci.HandleHelper;
+
+import alma.acs.concurrent.DaemonThreadFactory;
+
+/**
+ * Scheduler of the <code>PingTimerTask</code>s.
+ *
+ * A single <code>java.util.Timer</code> thread invoking the (synchronous, remote) pings one after another
+ * is delayed by every hung client. Here the timer thread only dispatches the pings to a pool of
+ * (at most <code>maxInFlight</code>) ping threads and never waits for them:
+ * <UL>
+ * 	<LI>the first ping of every task is delayed by a random part of its period and every next ping
+ * 		is jittered a bit, so pings of the clients logged in (or recovered) at the same time are spread
+ * 		across the interval,</LI>
+ * 	<LI>if the previous ping of the task is still in progress when the next one is due, no new ping is issued;
+ * 		a slow client is not a failure, only when the ping is in progress for longer than the deadline
+ * 		every due ping is counted as timed-out (see {@link PingTimerTask#timedOut()}),</LI>
+ * 	<LI>if the previous ping of the task is still waiting for a free ping thread, the due ping is skipped.</LI>
+ * </UL>
+ * The scheduled tasks (and so their round-trip times) are available through {@link #getTasks()}.
+ *
+ * @version	@@VERSION@@
+ */
+public class PingScheduler
+{
+
+	/**
+	 * Jitter of the period (fraction of the period).
+	 */
+	private static final double JITTER = 0.05;
+
+	/**
+	 * Task states.
+	 */
+	private static final int IDLE = 0;
+	private static final int QUEUED = 1;
+	private static final int RUNNING = 2;
+
+	/**
+	 * Timer (dispatching) executor.
+	 */
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * Ping executor.
+	 */
+	private final ThreadPoolExecutor pingers;
+
+	/**
+	 * Random generator used for jitter (guarded by itself).
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * Logger.
+	 */
+	private final Logger logger;
+
+	/**
+	 * Number of pings in progress.
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+
+	/**
+	 * Time (in ms) after which a ping in progress is counted as timed-out.
+	 */
+	private final long deadline;
+
+	/**
+	 * Tasks that are scheduled and not cancelled yet.
+	 */
+	private final Set<PingTimerTask> tasks = Collections.newSetFromMap(new ConcurrentHashMap<PingTimerTask, Boolean>());
+
+	/**
+	 * Scheduled task.
+	 */
+	private class Entry implements Runnable
+	{
+		/**
+		 * Ping task.
+		 */
+		final PingTimerTask task;
+
+		/**
+		 * Period in ms.
+		 */
+		final long period;
+
+		/**
+		 * State of the ping.
+		 */
+		final AtomicInteger state = new AtomicInteger(IDLE);
+
+		/**
+		 * Start time of the ping in progress (set before the state is set to <code>RUNNING</code>).
+		 */
+		volatile long started;
+
+		/**
+		 * Ping runnable.
+		 */
+		final Runnable ping = new Runnable()
+		{
+			public void run()
+			{
+				started = System.currentTimeMillis();
+				state.set(RUNNING);
+				inFlight.incrementAndGet();
+				try {
+					if (!task.isCancelled())
+						task.run();
+				} catch (Throwable th) {
+					logger.log(Level.FINE, "Unexpected exception in ping task.", th);
+				} finally {
+					inFlight.decrementAndGet();
+					state.set(IDLE);
+				}
+			}
+		};
+
+		Entry(PingTimerTask task, long period)
+		{
+			this.task = task;
+			this.period = period;
+		}
+
+		/**
+		 * Dispatches the ping (never blocks) and schedules the next one.
+		 */
+		public void run()
+		{
+			if (task.isCancelled())
+			{
+				tasks.remove(task);
+				return;
+			}
+
+			try {
+				int current = state.get();
+				if (current == RUNNING)
+				{
+					// previous ping still did not return, no failure until the deadline
+					if (System.currentTimeMillis() - started > deadline)
+						task.timedOut();
+					else if (logger.isLoggable(Level.FINEST))
+						logger.finest("Ping of " + HandleHelper.toString(task.getClientInfo().getHandle()) + " still in progress, skipped.");
+				}
+				else if (current == IDLE && state.compareAndSet(IDLE, QUEUED))
+				{
+					pingers.execute(ping);
+				}
+				else if (logger.isLoggable(Level.FINEST))
+				{
+					logger.finest("Ping of " + HandleHelper.toString(task.getClientInfo().getHandle()) + " still waiting for a free ping thread, skipped.");
+				}
+			} catch (Throwable th) {
+				// rejected execution on shutdown or unexpected exception, keep the schedule
+				state.set(IDLE);
+				logger.log(Level.FINE, "Failed to dispatch ping task.", th);
+			}
+
+			if (!task.isCancelled() && !timer.isShutdown())
+				timer.schedule(this, jitter(period), TimeUnit.MILLISECONDS);
+			else
+				tasks.remove(task);
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param	maxInFlight	maximum number of concurrent pings.
+	 * @param	deadline	time in ms after which a ping in progress is counted as timed-out.
+	 * @param	logger		logger.
+	 */
+	public PingScheduler(int maxInFlight, long deadline, Logger logger)
+	{
+		this.deadline = deadline;
+		this.logger = logger;
+
+		timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("managerPingTimer"));
+		pingers = new ThreadPoolExecutor(maxInFlight, maxInFlight,
+				60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory("managerPing"));
+		pingers.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Schedules ping task.
+	 *
+	 * @param	task	task to schedule, scheduling ends when task is cancelled.
+	 * @param	delay	delay in ms before the first ping, a random part of the period is added.
+	 * @param	period	period in ms.
+	 */
+	public void schedule(PingTimerTask task, long delay, long period)
+	{
+		long spread;
+		synchronized (random)
+		{
+			spread = (long)(random.nextDouble() * period);
+		}
+		tasks.add(task);
+		timer.schedule(new Entry(task, period), delay + spread, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns jittered period.
+	 *
+	 * @param	period	period in ms.
+	 * @return	jittered period in ms.
+	 */
+	private long jitter(long period)
+	{
+		double factor;
+		synchronized (random)
+		{
+			factor = 1.0 + JITTER * (2 * random.nextDouble() - 1.0);
+		}
+		return Math.max(1, (long)(period * factor));
+	}
+
+	/**
+	 * Returns the number of pings in progress.
+	 *
+	 * @return	the number of pings in progress.
+	 */
+	public int getInFlight()
+	{
+		return inFlight.get();
+	}
+
+	/**
+	 * Returns the number of pings waiting for a free ping thread.
+	 *
+	 * @return	the number of pings waiting for a free ping thread.
+	 */
+	public int getQueued()
+	{
+		return pingers.getQueue().size();
+	}
+
+	/**
+	 * Returns the scheduled tasks, a cancelled task is removed at its next due ping.
+	 *
+	 * @return	the scheduled tasks.
+	 */
+	public PingTimerTask[] getTasks()
+	{
+		return tasks.toArray(new PingTimerTask[0]);
+	}
+
+	/**
+	 * Cancels all the scheduled pings, pings in progress are not waited for.
+	 */
+	public void cancel()
+	{
+		timer.shutdownNow();
+		pingers.shutdownNow();
+		tasks.clear();
+	}
+
+}
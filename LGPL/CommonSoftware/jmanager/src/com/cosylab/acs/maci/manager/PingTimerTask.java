@@ -17,7 +17,7 @@ import alma.acs.alarmsystem.source.AlarmSource;
 import alma.alarmsystem.source.ACSFaultState;
 
 /**
- * Implementation of ping task executed by <code>java.util.Timer</class>.
+ * Implementation of ping task executed by <code>PingScheduler</code>.
  * 
  * Manager pings its clients (both GUI clients, as well as Containers) repeatedly to verify that they still exist.
  * The return value of <code>Client#ping()</code> can be either "true", indicating that everything is OK with the client,
@@ -28,6 +28,8 @@ import alma.alarmsystem.source.ACSFaultState;
  * If another exception is thrown, the client may be immediately assumed to be malfunctioning.
  * Once the client is found to be malfunctioning, the Manager makes an implicit logout of the client.
  * 
+ * Round-trip times of the successful pings are recorded, see {@link #getLastRTT()}, {@link #getAverageRTT()}.
+ * 
  * @author		Matej Sekoranja (matej.sekoranja@cosylab.com)
  * @version	@@VERSION@@
  */
@@ -46,6 +48,36 @@ public class PingTimerTask extends TimerTask
 	 */
 	private int transientCount;
 
+	/**
+	 * Cancellation flag (<code>TimerTask</code> does not expose it).
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Number of successful pings.
+	 */
+	private long pingCount = 0;
+
+	/**
+	 * Last ping round-trip time in ms.
+	 */
+	private long lastRTT = -1;
+
+	/**
+	 * Min. ping round-trip time in ms.
+	 */
+	private long minRTT = Long.MAX_VALUE;
+
+	/**
+	 * Max. ping round-trip time in ms.
+	 */
+	private long maxRTT = 0;
+
+	/**
+	 * Sum of the ping round-trip times in ms.
+	 */
+	private long totalRTT = 0;
+
 	/**
 	 * Manager to which the client is logged in.
 	 */
@@ -90,6 +122,33 @@ public class PingTimerTask extends TimerTask
 		this.transientCount = 0;
 	}
 
+	/**
+	 * @see java.util.TimerTask#cancel()
+	 */
+	public boolean cancel()
+	{
+		cancelled = true;
+		return super.cancel();
+	}
+
+	/**
+	 * Returns <code>true</code> if the task was cancelled.
+	 * @return <code>true</code> if the task was cancelled.
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Returns monitored client's info.
+	 * @return monitored client's info.
+	 */
+	public ClientInfo getClientInfo()
+	{
+		return clientInfo;
+	}
+
 	/**
 	 * Terminates this task and logs the client out.
 	 */
@@ -121,8 +180,17 @@ public class PingTimerTask extends TimerTask
 			
 			logger.finest("Invoking ping on "+HandleHelper.toString(clientInfo.getHandle())+"].");
 
+			final long start = System.currentTimeMillis();
+			final boolean ok = clientInfo.getClient().ping();
+			final long rtt = System.currentTimeMillis() - start;
+			recordRTT(rtt);
+
+			// client logged out in the meantime (e.g. ping timed-out)
+			if (cancelled)
+				return;
+
 			// malfunctioning client check
-			if (clientInfo.getClient().ping() == false)
+			if (ok == false)
 			{
 				logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] announced itself as malfunctioning.");
 
@@ -136,15 +204,20 @@ public class PingTimerTask extends TimerTask
 			clear_alarm(clientInfo.getName());
 			
 			// reset transientCount to zero
-			transientCount = 0;
+			synchronized (this) {
+				transientCount = 0;
+			}
+
+			// container load metric
+			if (ok)
+				manager.reportPingTime(clientInfo, rtt);
 		}
 		catch (RemoteTransientException rte)
 		{
 			//logger.log(Level.INFO, "Invoking client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method thrown transient exception.", rte);
 
 			// client not reachable
-			transientCount++;
-			if (transientCount >= MAX_TRANSIENT_COUNT)
+			if (incrementTransientCount())
 			{
 				logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] is unreachable, logging it out.");
 
@@ -159,18 +232,7 @@ public class PingTimerTask extends TimerTask
 		{
 			//logger.log(Level.INFO, "Invoking client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method thrown timeout exception.", rtoe);
 			
-			// client not reachable
-			transientCount++;
-			if (transientCount >= MAX_TRANSIENT_COUNT)
-			{
-				logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method timed-out several times, logging it out.");
-
-				// An alarm is raised for those clients that define an alarm interface
-				raise_alarm(clientInfo.getName());
-
-				logout();
-			}
-		
+			timedOut();
 		}
 		catch (Throwable ex)
 		{
@@ -186,6 +248,97 @@ public class PingTimerTask extends TimerTask
 
 	}
 
+	/**
+	 * Notifies the task about the timed-out ping, i.e. ping that thrown <code>RemoteTimeoutException</code>
+	 * or ping that is in progress for longer than the deadline of the <code>PingScheduler</code>.
+	 */
+	public void timedOut()
+	{
+		if (cancelled)
+			return;
+
+		// client not reachable
+		if (incrementTransientCount())
+		{
+			logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method timed-out several times, logging it out.");
+
+			// An alarm is raised for those clients that define an alarm interface
+			raise_alarm(clientInfo.getName());
+
+			logout();
+		}
+	}
+
+	/**
+	 * Increments transient count.
+	 * @return <code>true</code> if maximum transient count was reached.
+	 */
+	private synchronized boolean incrementTransientCount()
+	{
+		transientCount++;
+		return transientCount >= MAX_TRANSIENT_COUNT;
+	}
+
+	/**
+	 * Records ping round-trip time.
+	 * @param rtt round-trip time in ms.
+	 */
+	private synchronized void recordRTT(long rtt)
+	{
+		pingCount++;
+		lastRTT = rtt;
+		totalRTT += rtt;
+		if (rtt < minRTT)
+			minRTT = rtt;
+		if (rtt > maxRTT)
+			maxRTT = rtt;
+	}
+
+	/**
+	 * Returns the number of returned pings.
+	 * @return the number of returned pings.
+	 */
+	public synchronized long getPingCount()
+	{
+		return pingCount;
+	}
+
+	/**
+	 * Returns last ping round-trip time in ms.
+	 * @return last ping round-trip time in ms, <code>-1</code> if there was no ping.
+	 */
+	public synchronized long getLastRTT()
+	{
+		return lastRTT;
+	}
+
+	/**
+	 * Returns min. ping round-trip time in ms.
+	 * @return min. ping round-trip time in ms, <code>-1</code> if there was no ping.
+	 */
+	public synchronized long getMinRTT()
+	{
+		return pingCount == 0 ? -1 : minRTT;
+	}
+
+	/**
+	 * Returns max. ping round-trip time in ms.
+	 * @return max. ping round-trip time in ms, <code>-1</code> if there was no ping.
+	 */
+	public synchronized long getMaxRTT()
+	{
+		return pingCount == 0 ? -1 : maxRTT;
+	}
+
+	/**
+	 * Returns average ping round-trip time in ms.
+	 * @return average ping round-trip time in ms, <code>-1</code> if there was no ping.
+	 */
+	public synchronized double getAverageRTT()
+	{
+		return pingCount == 0 ? -1 : totalRTT / (double)pingCount;
+	}
+
 	/**
 	 * Returns a single-line rendition of this instance into text.
 	 * 
@@ -201,6 +354,10 @@ public class PingTimerTask extends TimerTask
 		sbuff.append(clientInfo);
 		sbuff.append(", transientCount = '");
 		sbuff.append(transientCount);
+		sbuff.append("', lastRTT = '");
+		sbuff.append(getLastRTT());
+		sbuff.append("', averageRTT = '");
+		sbuff.append(getAverageRTT());
 		sbuff.append("' }");
 		return new String(sbuff);
 	}
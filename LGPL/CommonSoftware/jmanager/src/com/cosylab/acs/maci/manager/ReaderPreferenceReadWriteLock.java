@@ -28,6 +28,24 @@ public class ReaderPreferenceReadWriteLock {
 
 	protected final WriterLock writerLock_ = new WriterLock();
 
+	/**
+	 * Histograms of the read and write lock waits, <code>null</code> if not measured.
+	 */
+	protected volatile LatencyHistogram readerWaits_ = null;
+
+	protected volatile LatencyHistogram writerWaits_ = null;
+
+	/**
+	 * Sets the histograms recording the time spent waiting for the read and write lock.
+	 * 
+	 * @param readerWaits	histogram of the read lock waits, <code>null</code> to disable.
+	 * @param writerWaits	histogram of the write lock waits, <code>null</code> to disable.
+	 */
+	public void setWaitHistograms(LatencyHistogram readerWaits, LatencyHistogram writerWaits) {
+		readerWaits_ = readerWaits;
+		writerWaits_ = writerWaits;
+	}
+
 	public Sync writeLock() {
 		return writerLock_;
 	}
@@ -498,6 +516,17 @@ public class ReaderPreferenceReadWriteLock {
 	protected class ReaderLock extends Signaller implements Sync {
 
 		public void lock() {
+			LatencyHistogram waits = readerWaits_;
+			if (waits == null) {
+				acquire();
+			} else {
+				long start = System.nanoTime();
+				acquire();
+				waits.recordSince(start);
+			}
+		}
+
+		private void acquire() {
 			InterruptedException ie = null;
 			synchronized (this) {
 				if (!startReadFromNewReader()) {
@@ -578,6 +607,17 @@ public class ReaderPreferenceReadWriteLock {
 	protected class WriterLock extends Signaller implements Sync {
 
 		public void lock() {
+			LatencyHistogram waits = writerWaits_;
+			if (waits == null) {
+				acquire();
+			} else {
+				long start = System.nanoTime();
+				acquire();
+				waits.recordSince(start);
+			}
+		}
+
+		private void acquire() {
 			InterruptedException ie = null;
 			synchronized (this) {
 				if (!startWriteFromNewWriter()) {
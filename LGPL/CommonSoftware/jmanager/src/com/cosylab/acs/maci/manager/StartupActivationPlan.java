@@ -0,0 +1,232 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plan of the activation of the startup components of a container.
+ *
+ * Components are nodes of a dependency DAG, a component is activated only when all the components it depends on
+ * (and are part of the plan) completed their activation. Independent components are activated in parallel,
+ * with at most <code>parallelism</code> activations in progress. Among the components ready to be activated
+ * the one listed first is always activated first, therefore the plan executed with parallelism of <code>1</code>
+ * activates the components in the listed order (if dependencies allow it). With higher parallelism
+ * the activations of independent components overlap and complete in any order, i.e. only the dependencies
+ * (and not the listed order) are guaranteed.
+ *
+ * Activations are asynchronous: the {@link Activator} only starts the activation and reports its completion
+ * to the given {@link ActivationCallback}, the plan itself uses no threads besides the one executing it.
+ *
+ * Dependency cycles do not block the plan, when no component is ready and no activation is running
+ * the first listed component not yet activated is activated regardless of its dependencies.
+ *
+ * @version	@@VERSION@@
+ */
+public class StartupActivationPlan
+{
+
+	/**
+	 * Activator of the components.
+	 */
+	public interface Activator
+	{
+		/**
+		 * Starts the activation of the component, called by the thread executing the plan.
+		 * The method should not wait for the activation, its completion is reported to the callback.
+		 * @param	name		name of the component.
+		 * @param	callback	callback to be notified (once) when the activation completes.
+		 */
+		void activate(String name, ActivationCallback callback);
+	}
+
+	/**
+	 * Callback notified when the activation of a component completes.
+	 */
+	public interface ActivationCallback
+	{
+		/**
+		 * Called when the activation completed, can be called from any thread.
+		 * @param	activated	<code>true</code> if component was activated.
+		 */
+		void done(boolean activated);
+	}
+
+	/**
+	 * Completed activation.
+	 */
+	private static class Completion
+	{
+		final int index;
+		final boolean activated;
+
+		Completion(int index, boolean activated)
+		{
+			this.index = index;
+			this.activated = activated;
+		}
+	}
+
+	/**
+	 * Names of the components, in order.
+	 */
+	private final List<String> names;
+
+	/**
+	 * Name to index map.
+	 */
+	private final Map<String, Integer> indices;
+
+	/**
+	 * Dependents of the components (index of dependency -> indices of dependents).
+	 */
+	private final List<List<Integer>> dependents;
+
+	/**
+	 * Number of (distinct) dependencies of the components.
+	 */
+	private final int[] dependencyCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param	names	names of the components to be activated, in order, non-<code>null</code>
+	 */
+	public StartupActivationPlan(List<String> names)
+	{
+		this.names = new ArrayList<String>(names);
+		this.indices = new HashMap<String, Integer>(names.size() * 2);
+		this.dependents = new ArrayList<List<Integer>>(names.size());
+		this.dependencyCount = new int[names.size()];
+
+		for (int i = 0; i < this.names.size(); i++)
+		{
+			indices.put(this.names.get(i), i);
+			dependents.add(new ArrayList<Integer>(2));
+		}
+	}
+
+	/**
+	 * Adds dependency, dependencies on the components not in the plan are ignored
+	 * (they are activated on demand).
+	 *
+	 * @param	name		name of the component.
+	 * @param	dependsOn	name of the component <code>name</code> depends on.
+	 * @return	<code>true</code> if dependency was added.
+	 */
+	public boolean addDependency(String name, String dependsOn)
+	{
+		Integer dependent = indices.get(name);
+		Integer dependency = indices.get(dependsOn);
+		if (dependent == null || dependency == null || dependent.equals(dependency))
+			return false;
+
+		List<Integer> list = dependents.get(dependency);
+		if (list.contains(dependent))
+			return false;
+
+		list.add(dependent);
+		dependencyCount[dependent]++;
+		return true;
+	}
+
+	/**
+	 * Returns the number of components in the plan.
+	 * @return the number of components in the plan.
+	 */
+	public int size()
+	{
+		return names.size();
+	}
+
+	/**
+	 * Executes the plan, the method returns when all the activations completed.
+	 *
+	 * @param	activator	activator of the components.
+	 * @param	parallelism	max. number of activations in progress.
+	 * @return	number of activated components.
+	 * @throws	InterruptedException
+	 */
+	public int execute(Activator activator, int parallelism) throws InterruptedException
+	{
+		final int size = names.size();
+		if (size == 0)
+			return 0;
+
+		parallelism = Math.max(1, Math.min(parallelism, size));
+
+		final BlockingQueue<Completion> completions = new LinkedBlockingQueue<Completion>();
+
+		int[] pending = dependencyCount.clone();
+		boolean[] started = new boolean[size];
+		PriorityQueue<Integer> ready = new PriorityQueue<Integer>();
+		for (int i = 0; i < size; i++)
+			if (pending[i] == 0)
+				ready.add(i);
+
+		int activated = 0;
+		int completed = 0;
+		int running = 0;
+		int nextUnstarted = 0;
+		while (completed < size)
+		{
+			while (running < parallelism && !ready.isEmpty())
+			{
+				final int index = ready.poll();
+				if (started[index])
+					continue;
+				started[index] = true;
+				running++;
+
+				final AtomicBoolean reported = new AtomicBoolean(false);
+				ActivationCallback callback = new ActivationCallback()
+				{
+					public void done(boolean success)
+					{
+						// only the first report counts
+						if (reported.compareAndSet(false, true))
+							completions.add(new Completion(index, success));
+					}
+				};
+				try {
+					activator.activate(names.get(index), callback);
+				} catch (Throwable th) {
+					// counts as failed activation
+					callback.done(false);
+				}
+			}
+
+			if (running == 0)
+			{
+				// dependency cycle, break it in order
+				while (started[nextUnstarted])
+					nextUnstarted++;
+				ready.add(nextUnstarted);
+				continue;
+			}
+
+			Completion completion = completions.take();
+			running--;
+			completed++;
+			if (completion.activated)
+				activated++;
+
+			// dependents are activated also if activation failed, they might recover
+			for (Integer dependent : dependents.get(completion.index))
+				if (--pending[dependent] == 0 && !started[dependent])
+					ready.add(dependent);
+		}
+
+		return activated;
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.cosylab.util.WildcharMatcher;
+
+/**
+ * Compiled <code>WildcharMatcher</code> pattern.
+ *
+ * Compilation extracts the literal prefix of the pattern (the characters before the first
+ * '*', '?' or '['), which allows to reject most of the non-matching strings without
+ * parsing the pattern and to use sorted indexes to lookup only the strings with the given prefix.
+ * Literal patterns and patterns of form <code>prefix*</code> are matched without
+ * invoking <code>WildcharMatcher</code> at all.
+ *
+ * Compiled patterns are immutable and cached, see {@link #compile(String)}.
+ *
+ * @version	@@VERSION@@
+ */
+public class WildcharPattern
+{
+
+	/**
+	 * Max number of cached patterns.
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	/**
+	 * LRU cache of compiled patterns.
+	 */
+	private static final Map<String, WildcharPattern> cache =
+		new LinkedHashMap<String, WildcharPattern>(CACHE_SIZE, 0.75f, true)
+		{
+			private static final long serialVersionUID = 7937446357738574214L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, WildcharPattern> eldest)
+			{
+				return size() > CACHE_SIZE;
+			}
+		};
+
+	/**
+	 * Pattern.
+	 */
+	private final String pattern;
+
+	/**
+	 * Literal prefix of the pattern.
+	 */
+	private final String prefix;
+
+	/**
+	 * <code>true</code> if pattern contains no wildchars.
+	 */
+	private final boolean literal;
+
+	/**
+	 * <code>true</code> if pattern is of form <code>prefix*</code>.
+	 */
+	private final boolean prefixOnly;
+
+	/**
+	 * Constructor.
+	 * @param pattern	the pattern, non-<code>null</code>
+	 */
+	private WildcharPattern(String pattern)
+	{
+		this.pattern = pattern;
+
+		int len = pattern.length();
+		int i = 0;
+		while (i < len)
+		{
+			char ch = pattern.charAt(i);
+			if (ch == '*' || ch == '?' || ch == '[')
+				break;
+			i++;
+		}
+
+		prefix = pattern.substring(0, i);
+		literal = (i == len);
+
+		// prefix followed only by '*'s
+		boolean onlyStars = (i < len);
+		for (int j = i; j < len && onlyStars; j++)
+			if (pattern.charAt(j) != '*')
+				onlyStars = false;
+		prefixOnly = onlyStars;
+	}
+
+	/**
+	 * Returns compiled (and cached) pattern.
+	 *
+	 * @param	pattern	the pattern, non-<code>null</code>
+	 * @return	compiled pattern.
+	 */
+	public static WildcharPattern compile(String pattern)
+	{
+		synchronized (cache)
+		{
+			WildcharPattern compiled = cache.get(pattern);
+			if (compiled == null)
+			{
+				compiled = new WildcharPattern(pattern);
+				cache.put(pattern, compiled);
+			}
+			return compiled;
+		}
+	}
+
+	/**
+	 * Matches string against the pattern.
+	 * Same as <code>WildcharMatcher.match(pattern, str)</code>.
+	 *
+	 * @param	str	string to be matched, non-<code>null</code>
+	 * @return	<code>true</code> if string matches the pattern.
+	 */
+	public boolean matches(String str)
+	{
+		if (literal)
+			return pattern.equals(str);
+		else if (!str.startsWith(prefix))
+			return false;
+		else if (prefixOnly)
+			return true;
+		else
+			return WildcharMatcher.parse(pattern, prefix.length(), str, prefix.length());
+	}
+
+	/**
+	 * Returns the pattern.
+	 * @return the pattern.
+	 */
+	public String getPattern()
+	{
+		return pattern;
+	}
+
+	/**
+	 * Returns literal prefix of the pattern (can be empty).
+	 * @return literal prefix of the pattern.
+	 */
+	public String getPrefix()
+	{
+		return prefix;
+	}
+
+	/**
+	 * Returns <code>true</code> if pattern contains no wildchars.
+	 * @return <code>true</code> if pattern contains no wildchars.
+	 */
+	public boolean isLiteral()
+	{
+		return literal;
+	}
+
+	/**
+	 * Returns <code>true</code> if pattern matches any string.
+	 * @return <code>true</code> if pattern matches any string.
+	 */
+	public boolean matchesAll()
+	{
+		return prefixOnly && prefix.length() == 0;
+	}
+
+}
@@ -18,12 +18,13 @@ import org.omg.CosNaming.NamingContextHelper;
 import org.omg.PortableServer.IdAssignmentPolicyValue;
 import org.omg.PortableServer.LifespanPolicyValue;
 import org.omg.PortableServer.POA;
-import org.prevayler.implementation.SnapshotPrevayler;
 
 import com.cosylab.acs.maci.CoreException;
 import com.cosylab.acs.maci.HandleConstants;
 import com.cosylab.acs.maci.manager.ManagerImpl;
 import com.cosylab.acs.maci.manager.ManagerShutdown;
+import com.cosylab.acs.maci.manager.recovery.CommandJournal;
+import com.cosylab.acs.maci.manager.recovery.JournalPrevayler;
 import com.cosylab.acs.maci.plug.CORBAReferenceSerializator;
 import com.cosylab.acs.maci.plug.CORBATransport;
 import com.cosylab.acs.maci.plug.DefaultCORBAService;
@@ -245,7 +246,7 @@ public class ManagerEngine
 			// That can lead to unwanted or illegal state so we will refuse to continue
 			files = recoveryDir.listFiles();
 			for (int i = 0; files != null && i < files.length; i++) {
-				if( files[i].getName().endsWith(".commandLog") )
+				if( files[i].getName().endsWith(".commandLog") || files[i].getName().endsWith("." + CommandJournal.SUFFIX) )
 					throw new Exception("Some recovery files are left in recovery location probably because of permission\nUnable to start without recovery state!");
 			}
 		}
@@ -255,14 +256,19 @@ public class ManagerEngine
 			RecoveryFilesRemover.removeRecoveryFiles(new File(recoveryLocation));
 		}
 		
-	    SnapshotPrevayler prevayler = null;
+	    JournalPrevayler prevayler = null;
 		if (isPrevaylerDisabled)
 		{
 			System.out.println( "Prevayler disabled!");
 		}
 		else
 		{
-			prevayler = new SnapshotPrevayler(manager, recoveryLocation);
+			// migrate recovery files of the old (SnapshotPrevayler) implementation
+			boolean migrate = JournalPrevayler.listLegacyFiles(recoveryLocation).length > 0 && !JournalPrevayler.hasRecoveryFiles(recoveryLocation);
+			if (migrate)
+				manager = (ManagerImpl)JournalPrevayler.recoverLegacySystem(manager, recoveryLocation);
+			
+			prevayler = new JournalPrevayler(manager, recoveryLocation);
 		
 			if( readRecovery.equalsIgnoreCase("false") ) {
 				// just to invalidate prevaylers message
@@ -270,6 +276,15 @@ public class ManagerEngine
 			}
 	
 			manager = (ManagerImpl)prevayler.system();
+			
+			if (migrate)
+			{
+				// migrated state is in the snapshot, remove all the old files
+				prevayler.takeSnapshot();
+				File[] legacyFiles = JournalPrevayler.listLegacyFiles(recoveryLocation);
+				for (int i = 0; i < legacyFiles.length; i++)
+					legacyFiles[i].delete();
+			}
 		}
 		
 	    CDBAccess cdbAccess = new CDBAccess(orb, logger);
@@ -6,8 +6,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.prevayler.implementation.SnapshotPrevayler;
-
+import com.cosylab.acs.maci.manager.recovery.JournalPrevayler;
 import com.cosylab.util.FileHelper;
 
 /**
@@ -21,11 +20,11 @@ import com.cosylab.util.FileHelper;
 public class RecoverySnapshotTask extends TimerTask {
 
 	private final Timer t = new Timer(true);
-	private final SnapshotPrevayler prevayler;
+	private final JournalPrevayler prevayler;
 	private final String recoveryLocation;
 	private final AtomicBoolean enableFlag;
 
-	public RecoverySnapshotTask( SnapshotPrevayler prevayler, long period, String recoveryLocation, AtomicBoolean enableFlag ) {
+	public RecoverySnapshotTask( JournalPrevayler prevayler, long period, String recoveryLocation, AtomicBoolean enableFlag ) {
 		super();
 		this.prevayler = prevayler;
 		this.recoveryLocation = recoveryLocation;
@@ -38,11 +37,9 @@ public class RecoverySnapshotTask extends TimerTask {
 	 */
 	public void run() {
 		try {
-			// make new snapshot
-			synchronized (prevayler) {
-				if (enableFlag.get())
-					prevayler.takeSnapshot();
-			}
+			// make new snapshot (skipped by prevayler if there were no changes)
+			if (enableFlag.get())
+				prevayler.takeSnapshot();
 			//add rights to group in order to be able to start with '-n'
 			FileHelper.setFileAttributes( "g+w", recoveryLocation );
 			
@@ -19,9 +19,9 @@ import org.prevayler.PrevalentSystem;
  */
 public class AdministratorCommandDeallocate implements Command {
 	
-	private final int handle;
-	private final int fullHandle;
-	private final WhyUnloadedReason reason;
+	final int handle;
+	final int fullHandle;
+	final WhyUnloadedReason reason;
 	
 	/**
 	 * Constructor for AddCOBCommand.
@@ -17,7 +17,7 @@ import org.prevayler.PrevalentSystem;
  */
 public class AlarmRaised implements Command {
 
-	private final String faultMember;
+	final String faultMember;
 	
 	/**
 	 * Constructor for AlarmRaised.
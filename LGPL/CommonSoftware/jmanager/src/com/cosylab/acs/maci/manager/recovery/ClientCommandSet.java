@@ -17,8 +17,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ClientCommandSet implements Command {
 	
-	private final int handle;
-	private final Object data;
+	final int handle;
+	final Object data;
 	
 	/**
 	 * Constructor for AddCOBCommand.
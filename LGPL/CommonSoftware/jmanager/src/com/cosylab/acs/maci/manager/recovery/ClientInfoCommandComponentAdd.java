@@ -18,8 +18,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ClientInfoCommandComponentAdd implements Command {
 	
-	private final int id;
-	private final int handle;
+	final int id;
+	final int handle;
 	
 	/**
 	 * Constructor for AddCOBCommand.
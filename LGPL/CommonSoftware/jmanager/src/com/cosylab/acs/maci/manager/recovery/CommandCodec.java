@@ -0,0 +1,464 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager.recovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+
+import org.prevayler.Command;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.Container;
+import com.cosylab.acs.maci.manager.ManagerImpl.WhyUnloadedReason;
+
+/**
+ * Compact binary encoding of the recovery commands.
+ *
+ * Every known command is encoded as a tag byte followed by its fields written by <code>DataOutput</code>,
+ * which is an order of magnitude smaller (and faster to produce) than the Java serialization
+ * of the command used by Prevayler (class descriptors are written for every logged command).
+ * Only the info objects carried by the <code>*Set</code> and <code>*Put</code> commands
+ * (and the unknown commands) are embedded as Java serialized objects.
+ *
+ * @version	@@VERSION@@
+ */
+public final class CommandCodec
+{
+
+	/**
+	 * Command serialized by Java serialization.
+	 */
+	private static final byte SERIALIZED = 0;
+
+	private static final byte ADMINISTRATOR_ALLOCATE = 1;
+	private static final byte ADMINISTRATOR_DEALLOCATE = 2;
+	private static final byte ADMINISTRATOR_SET = 3;
+	private static final byte CLIENT_ALLOCATE = 4;
+	private static final byte CLIENT_DEALLOCATE = 5;
+	private static final byte CLIENT_SET = 6;
+	private static final byte CLIENT_INFO_COMPONENT_ADD = 7;
+	private static final byte CLIENT_INFO_COMPONENT_REMOVE = 8;
+	private static final byte COMPONENT_ACK_ALLOC = 9;
+	private static final byte COMPONENT_ALLOCATE = 10;
+	private static final byte COMPONENT_ALLOCATE_HANDLE = 11;
+	private static final byte COMPONENT_CLIENT_ADD = 12;
+	private static final byte COMPONENT_CLIENT_REMOVE = 13;
+	private static final byte COMPONENT_DEALLOCATE = 14;
+	private static final byte COMPONENT_PREALLOCATE = 15;
+	private static final byte COMPONENT_SET = 16;
+	private static final byte COMPONENT_INFO_COMPONENT_ADD = 17;
+	private static final byte COMPONENT_INFO_COMPONENT_REMOVE = 18;
+	private static final byte CONTAINER_ALLOCATE = 19;
+	private static final byte CONTAINER_DEALLOCATE = 20;
+	private static final byte CONTAINER_SET = 21;
+	private static final byte CONTAINER_UPDATE = 22;
+	private static final byte CONTAINER_INFO_COMPONENT_ADD = 23;
+	private static final byte CONTAINER_INFO_COMPONENT_REMOVE = 24;
+	private static final byte DEFAULT_COMPONENT_PUT = 25;
+	private static final byte UNAVAILABLE_COMPONENT_PUT = 26;
+	private static final byte UNAVAILABLE_COMPONENT_REMOVE = 27;
+	private static final byte ALARM_RAISED = 28;
+	private static final byte ALARM_CLEARED = 29;
+
+	/**
+	 * Cached reasons (<code>values()</code> clones the array).
+	 */
+	private static final WhyUnloadedReason[] REASONS = WhyUnloadedReason.values();
+
+	/**
+	 * Not instantiable.
+	 */
+	private CommandCodec()
+	{
+	}
+
+	/**
+	 * Encodes the command.
+	 *
+	 * @param	command	command to encode, non-<code>null</code>
+	 * @return	encoded command.
+	 * @throws	IOException
+	 */
+	public static byte[] encode(Command command) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		encode(command, out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes the command.
+	 *
+	 * @param	buffer	buffer with encoded command.
+	 * @param	offset	offset of the encoded command.
+	 * @param	length	length of the encoded command.
+	 * @return	decoded command.
+	 * @throws	IOException
+	 */
+	public static Command decode(byte[] buffer, int offset, int length) throws IOException
+	{
+		return decode(new DataInputStream(new ByteArrayInputStream(buffer, offset, length)));
+	}
+
+	/**
+	 * Encodes the command to the stream.
+	 *
+	 * @param	command	command to encode, non-<code>null</code>
+	 * @param	out		stream to write to.
+	 * @throws	IOException
+	 */
+	private static void encode(Command command, DataOutputStream out) throws IOException
+	{
+		Class<?> type = command.getClass();
+
+		if (type == AdministratorCommandAllocate.class)
+			out.writeByte(ADMINISTRATOR_ALLOCATE);
+		else if (type == AdministratorCommandDeallocate.class)
+		{
+			AdministratorCommandDeallocate c = (AdministratorCommandDeallocate)command;
+			out.writeByte(ADMINISTRATOR_DEALLOCATE);
+			writeDeallocate(out, c.handle, c.fullHandle, c.reason);
+		}
+		else if (type == AdministratorCommandSet.class)
+		{
+			AdministratorCommandSet c = (AdministratorCommandSet)command;
+			out.writeByte(ADMINISTRATOR_SET);
+			out.writeInt(c.handle);
+			writeObject(out, c.data);
+		}
+		else if (type == ClientCommandAllocate.class)
+			out.writeByte(CLIENT_ALLOCATE);
+		else if (type == ClientCommandDeallocate.class)
+		{
+			ClientCommandDeallocate c = (ClientCommandDeallocate)command;
+			out.writeByte(CLIENT_DEALLOCATE);
+			writeDeallocate(out, c.handle, c.fullHandle, c.reason);
+		}
+		else if (type == ClientCommandSet.class)
+		{
+			ClientCommandSet c = (ClientCommandSet)command;
+			out.writeByte(CLIENT_SET);
+			out.writeInt(c.handle);
+			writeObject(out, c.data);
+		}
+		else if (type == ClientInfoCommandComponentAdd.class)
+		{
+			ClientInfoCommandComponentAdd c = (ClientInfoCommandComponentAdd)command;
+			out.writeByte(CLIENT_INFO_COMPONENT_ADD);
+			out.writeInt(c.id);
+			out.writeInt(c.handle);
+		}
+		else if (type == ClientInfoCommandComponentRemove.class)
+		{
+			ClientInfoCommandComponentRemove c = (ClientInfoCommandComponentRemove)command;
+			out.writeByte(CLIENT_INFO_COMPONENT_REMOVE);
+			out.writeInt(c.id);
+			out.writeInt(c.handle);
+		}
+		else if (type == ComponentCommandAckAlloc.class)
+		{
+			out.writeByte(COMPONENT_ACK_ALLOC);
+			out.writeInt(((ComponentCommandAckAlloc)command).handle);
+		}
+		else if (type == ComponentCommandAllocate.class)
+			out.writeByte(COMPONENT_ALLOCATE);
+		else if (type == ComponentCommandAllocateHandle.class)
+		{
+			ComponentCommandAllocateHandle c = (ComponentCommandAllocateHandle)command;
+			out.writeByte(COMPONENT_ALLOCATE_HANDLE);
+			out.writeInt(c.handle);
+			out.writeBoolean(c.preallocate);
+		}
+		else if (type == ComponentCommandClientAdd.class)
+		{
+			ComponentCommandClientAdd c = (ComponentCommandClientAdd)command;
+			out.writeByte(COMPONENT_CLIENT_ADD);
+			out.writeInt(c.handle);
+			out.writeInt(c.clientHandle);
+		}
+		else if (type == ComponentCommandClientRemove.class)
+		{
+			ComponentCommandClientRemove c = (ComponentCommandClientRemove)command;
+			out.writeByte(COMPONENT_CLIENT_REMOVE);
+			out.writeInt(c.handle);
+			out.writeInt(c.clientHandle);
+		}
+		else if (type == ComponentCommandDeallocate.class)
+		{
+			ComponentCommandDeallocate c = (ComponentCommandDeallocate)command;
+			out.writeByte(COMPONENT_DEALLOCATE);
+			writeDeallocate(out, c.handle, c.fullHandle, c.reason);
+			out.writeBoolean(c.depreallocate);
+		}
+		else if (type == ComponentCommandPreallocate.class)
+			out.writeByte(COMPONENT_PREALLOCATE);
+		else if (type == ComponentCommandSet.class)
+		{
+			ComponentCommandSet c = (ComponentCommandSet)command;
+			out.writeByte(COMPONENT_SET);
+			out.writeInt(c.handle);
+			writeObject(out, c.data);
+		}
+		else if (type == ComponentInfoCommandComponentAdd.class)
+		{
+			ComponentInfoCommandComponentAdd c = (ComponentInfoCommandComponentAdd)command;
+			out.writeByte(COMPONENT_INFO_COMPONENT_ADD);
+			out.writeInt(c.hid);
+			out.writeInt(c.handle);
+		}
+		else if (type == ComponentInfoCommandComponentRemove.class)
+		{
+			ComponentInfoCommandComponentRemove c = (ComponentInfoCommandComponentRemove)command;
+			out.writeByte(COMPONENT_INFO_COMPONENT_REMOVE);
+			out.writeInt(c.hid);
+			out.writeInt(c.handle);
+		}
+		else if (type == ContainerCommandAllocate.class)
+			out.writeByte(CONTAINER_ALLOCATE);
+		else if (type == ContainerCommandDeallocate.class)
+		{
+			ContainerCommandDeallocate c = (ContainerCommandDeallocate)command;
+			out.writeByte(CONTAINER_DEALLOCATE);
+			writeDeallocate(out, c.handle, c.fullHandle, c.reason);
+		}
+		else if (type == ContainerCommandSet.class)
+		{
+			ContainerCommandSet c = (ContainerCommandSet)command;
+			out.writeByte(CONTAINER_SET);
+			out.writeInt(c.handle);
+			writeObject(out, c.data);
+		}
+		else if (type == ContainerCommandUpdate.class)
+		{
+			ContainerCommandUpdate c = (ContainerCommandUpdate)command;
+			out.writeByte(CONTAINER_UPDATE);
+			out.writeInt(c.handle);
+			writeObject(out, c.container);
+		}
+		else if (type == ContainerInfoCommandComponentAdd.class)
+		{
+			ContainerInfoCommandComponentAdd c = (ContainerInfoCommandComponentAdd)command;
+			out.writeByte(CONTAINER_INFO_COMPONENT_ADD);
+			out.writeInt(c.handle);
+			out.writeInt(c.cobHandle);
+		}
+		else if (type == ContainerInfoCommandComponentRemove.class)
+		{
+			ContainerInfoCommandComponentRemove c = (ContainerInfoCommandComponentRemove)command;
+			out.writeByte(CONTAINER_INFO_COMPONENT_REMOVE);
+			out.writeInt(c.handle);
+			out.writeInt(c.cobHandle);
+		}
+		else if (type == DefaultComponentCommandPut.class)
+		{
+			DefaultComponentCommandPut c = (DefaultComponentCommandPut)command;
+			out.writeByte(DEFAULT_COMPONENT_PUT);
+			writeString(out, c.type);
+			writeObject(out, c.componentInfo);
+		}
+		else if (type == UnavailableComponentCommandPut.class)
+		{
+			UnavailableComponentCommandPut c = (UnavailableComponentCommandPut)command;
+			out.writeByte(UNAVAILABLE_COMPONENT_PUT);
+			writeString(out, c.name);
+			writeObject(out, c.cobInfo);
+		}
+		else if (type == UnavailableComponentCommandRemove.class)
+		{
+			out.writeByte(UNAVAILABLE_COMPONENT_REMOVE);
+			writeString(out, ((UnavailableComponentCommandRemove)command).name);
+		}
+		else if (type == AlarmRaised.class)
+		{
+			out.writeByte(ALARM_RAISED);
+			writeString(out, ((AlarmRaised)command).faultMember);
+		}
+		else if (type == AlarmCleared.class)
+		{
+			out.writeByte(ALARM_CLEARED);
+			writeString(out, ((AlarmCleared)command).faultMember);
+		}
+		else
+		{
+			out.writeByte(SERIALIZED);
+			writeObject(out, command);
+		}
+	}
+
+	/**
+	 * Decodes the command from the stream.
+	 *
+	 * @param	in	stream to read from.
+	 * @return	decoded command.
+	 * @throws	IOException
+	 */
+	private static Command decode(DataInputStream in) throws IOException
+	{
+		byte tag = in.readByte();
+		switch (tag)
+		{
+			case SERIALIZED:
+				return (Command)readObject(in);
+			case ADMINISTRATOR_ALLOCATE:
+				return new AdministratorCommandAllocate();
+			case ADMINISTRATOR_DEALLOCATE:
+				return new AdministratorCommandDeallocate(in.readInt(), in.readInt(), readReason(in));
+			case ADMINISTRATOR_SET:
+				return new AdministratorCommandSet(in.readInt(), readObject(in));
+			case CLIENT_ALLOCATE:
+				return new ClientCommandAllocate();
+			case CLIENT_DEALLOCATE:
+				return new ClientCommandDeallocate(in.readInt(), in.readInt(), readReason(in));
+			case CLIENT_SET:
+				return new ClientCommandSet(in.readInt(), readObject(in));
+			case CLIENT_INFO_COMPONENT_ADD:
+				return new ClientInfoCommandComponentAdd(in.readInt(), in.readInt());
+			case CLIENT_INFO_COMPONENT_REMOVE:
+				return new ClientInfoCommandComponentRemove(in.readInt(), in.readInt());
+			case COMPONENT_ACK_ALLOC:
+				return new ComponentCommandAckAlloc(in.readInt());
+			case COMPONENT_ALLOCATE:
+				return new ComponentCommandAllocate();
+			case COMPONENT_ALLOCATE_HANDLE:
+				return new ComponentCommandAllocateHandle(in.readInt(), in.readBoolean());
+			case COMPONENT_CLIENT_ADD:
+				return new ComponentCommandClientAdd(in.readInt(), in.readInt());
+			case COMPONENT_CLIENT_REMOVE:
+				return new ComponentCommandClientRemove(in.readInt(), in.readInt());
+			case COMPONENT_DEALLOCATE:
+				return new ComponentCommandDeallocate(in.readInt(), in.readInt(), readReason(in), in.readBoolean());
+			case COMPONENT_PREALLOCATE:
+				return new ComponentCommandPreallocate();
+			case COMPONENT_SET:
+				return new ComponentCommandSet(in.readInt(), readObject(in));
+			case COMPONENT_INFO_COMPONENT_ADD:
+				return new ComponentInfoCommandComponentAdd(in.readInt(), in.readInt());
+			case COMPONENT_INFO_COMPONENT_REMOVE:
+				return new ComponentInfoCommandComponentRemove(in.readInt(), in.readInt());
+			case CONTAINER_ALLOCATE:
+				return new ContainerCommandAllocate();
+			case CONTAINER_DEALLOCATE:
+				return new ContainerCommandDeallocate(in.readInt(), in.readInt(), readReason(in));
+			case CONTAINER_SET:
+				return new ContainerCommandSet(in.readInt(), readObject(in));
+			case CONTAINER_UPDATE:
+				return new ContainerCommandUpdate(in.readInt(), (Container)readObject(in));
+			case CONTAINER_INFO_COMPONENT_ADD:
+				return new ContainerInfoCommandComponentAdd(in.readInt(), in.readInt());
+			case CONTAINER_INFO_COMPONENT_REMOVE:
+				return new ContainerInfoCommandComponentRemove(in.readInt(), in.readInt());
+			case DEFAULT_COMPONENT_PUT:
+				return new DefaultComponentCommandPut(readString(in), (ComponentInfo)readObject(in));
+			case UNAVAILABLE_COMPONENT_PUT:
+				return new UnavailableComponentCommandPut(readString(in), (ComponentInfo)readObject(in));
+			case UNAVAILABLE_COMPONENT_REMOVE:
+				return new UnavailableComponentCommandRemove(readString(in));
+			case ALARM_RAISED:
+				return new AlarmRaised(readString(in));
+			case ALARM_CLEARED:
+				return new AlarmCleared(readString(in));
+			default:
+				throw new StreamCorruptedException("Unknown command tag: " + tag);
+		}
+	}
+
+	/**
+	 * Writes fields common to all deallocate commands.
+	 */
+	private static void writeDeallocate(DataOutputStream out, int handle, int fullHandle, WhyUnloadedReason reason) throws IOException
+	{
+		out.writeInt(handle);
+		out.writeInt(fullHandle);
+		out.writeByte(reason == null ? -1 : reason.ordinal());
+	}
+
+	/**
+	 * Reads the reason written by <code>writeDeallocate</code>.
+	 */
+	private static WhyUnloadedReason readReason(DataInputStream in) throws IOException
+	{
+		byte ordinal = in.readByte();
+		if (ordinal < 0)
+			return null;
+		else if (ordinal >= REASONS.length)
+			throw new StreamCorruptedException("Unknown reason: " + ordinal);
+		else
+			return REASONS[ordinal];
+	}
+
+	/**
+	 * Writes (<code>null</code>able) string.
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+
+	/**
+	 * Reads string written by <code>writeString</code>.
+	 */
+	private static String readString(DataInputStream in) throws IOException
+	{
+		if (in.readBoolean())
+			return in.readUTF();
+		else
+			return null;
+	}
+
+	/**
+	 * Writes (<code>null</code>able) object using Java serialization.
+	 */
+	private static void writeObject(DataOutputStream out, Object value) throws IOException
+	{
+		if (value == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(value);
+		oos.close();
+
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+	/**
+	 * Reads object written by <code>writeObject</code>.
+	 */
+	private static Object readObject(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return ois.readObject();
+		} catch (ClassNotFoundException cnfe) {
+			IOException ioe = new StreamCorruptedException("Failed to deserialize object: " + cnfe.getMessage());
+			ioe.initCause(cnfe);
+			throw ioe;
+		} finally {
+			ois.close();
+		}
+	}
+
+}
@@ -0,0 +1,485 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager.recovery;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.cosylab.util.FileHelper;
+
+/**
+ * Append-only journal of encoded commands stored in memory-mapped segment files.
+ *
+ * Records are appended to the mapped segment (a memory copy, no system call) and made durable
+ * by {@link #sync(long)}. Concurrent callers of <code>sync</code> are group-committed: the first of them
+ * forces the segment to the disk for all the records appended so far, the others only
+ * wait for it and return without touching the disk.
+ *
+ * Record layout is <code>[int length][int CRC32][length bytes]</code>, unused part of the segment
+ * is zero-filled, so a zero length (or a checksum mismatch of a torn write) marks the end of the segment.
+ *
+ * Segments are preallocated by writing zeros before they are mapped (not by extending the file, which
+ * creates a sparse file), so a full disk fails the creation of the segment and not a write to the mapping.
+ * Any failure of the mapped segment (e.g. an <code>InternalError</code> of a faulted memory access)
+ * is reported as an <code>IOException</code>, after which the journal continues in a new segment.
+ * Segments are named <code>&lt;number&gt;.journal</code>, the journal always starts a new segment
+ * when opened and at {@link #rotate()}, existing segments are never appended to.
+ *
+ * @version	@@VERSION@@
+ */
+public class CommandJournal
+{
+
+	/**
+	 * Suffix of the segment files.
+	 */
+	public static final String SUFFIX = "journal";
+
+	/**
+	 * Default size of the segment.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 4*1024*1024;
+
+	/**
+	 * Size of the record header.
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * Journal directory.
+	 */
+	private final File directory;
+
+	/**
+	 * Size of the segment.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * Number of the current segment.
+	 */
+	private long segmentNumber;
+
+	/**
+	 * Channel of the current segment.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Mapped current segment.
+	 */
+	private MappedByteBuffer buffer;
+
+	/**
+	 * Set when an append to the current segment failed, the segment might contain a torn record.
+	 */
+	private boolean broken = false;
+
+	/**
+	 * Sequence number of the last appended record.
+	 */
+	private long appendedSequence = 0;
+
+	/**
+	 * Sequence number of the last record on the disk.
+	 */
+	private volatile long durableSequence = 0;
+
+	/**
+	 * Segment buffers that were rotated out, but are not yet forced to the disk.
+	 */
+	private final List<MappedByteBuffer> pending = new ArrayList<MappedByteBuffer>();
+
+	/**
+	 * Lock serializing the forcing of the segments, never held while appending.
+	 */
+	private final Object syncLock = new Object();
+
+	/**
+	 * Checksum (guarded by <code>this</code>).
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Opens the journal, a new segment is started after the last existing one.
+	 *
+	 * @param	directory	journal directory, non-<code>null</code>
+	 * @param	segmentSize	size of a segment in bytes.
+	 * @throws	IOException
+	 */
+	public CommandJournal(File directory, int segmentSize) throws IOException
+	{
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		File[] segments = listFiles(directory, SUFFIX);
+		segmentNumber = segments.length > 0 ? number(segments[segments.length - 1]) : 0;
+		openSegment(segmentNumber + 1, segmentSize);
+	}
+
+	/**
+	 * Appends the record to the journal.
+	 * The record is not durable until {@link #sync(long)} with returned sequence number returns.
+	 *
+	 * @param	record	record to append, non-<code>null</code>
+	 * @return	sequence number of the record.
+	 * @throws	IOException
+	 */
+	public synchronized long append(byte[] record) throws IOException
+	{
+		// records after a torn one would not be read, continue in a new segment
+		if (buffer == null || broken || buffer.remaining() < record.length + HEADER_SIZE)
+		{
+			if (buffer != null)
+			{
+				pending.add(buffer);
+				buffer = null;
+				closeChannel();
+			}
+			openSegment(segmentNumber + 1, Math.max(segmentSize, record.length + HEADER_SIZE));
+			broken = false;
+		}
+
+		crc.reset();
+		crc.update(record, 0, record.length);
+
+		try {
+			buffer.putInt(record.length);
+			buffer.putInt((int)crc.getValue());
+			buffer.put(record);
+		} catch (RuntimeException re) {
+			broken = true;
+			throw new IOException("Failed to append to journal segment " + segmentNumber + ".", re);
+		} catch (InternalError ie) {
+			// faulted access to the mapping
+			broken = true;
+			throw new IOException("Failed to append to journal segment " + segmentNumber + ".", ie);
+		}
+
+		return ++appendedSequence;
+	}
+
+	/**
+	 * Waits until the record with the given sequence number (and all the previous ones) is on the disk.
+	 *
+	 * @param	sequence	sequence number returned by {@link #append(byte[])}
+	 * @throws	IOException
+	 */
+	public void sync(long sequence) throws IOException
+	{
+		if (durableSequence >= sequence)
+			return;
+
+		synchronized (syncLock)
+		{
+			// synced by the previous holder of the lock
+			if (durableSequence >= sequence)
+				return;
+
+			// everything appended so far will be forced (group commit)
+			final long target;
+			final MappedByteBuffer current;
+			final MappedByteBuffer[] rotated;
+			synchronized (this)
+			{
+				target = appendedSequence;
+				current = buffer;
+				rotated = pending.toArray(new MappedByteBuffer[pending.size()]);
+				pending.clear();
+			}
+
+			// rotated segments are complete, release their mapping right away
+			int forced = 0;
+			try {
+				for (; forced < rotated.length; forced++)
+				{
+					force(rotated[forced]);
+					FileHelper.unmap(rotated[forced]);
+				}
+				if (current != null)
+					force(current);
+			} catch (IOException ioe) {
+				// retried by the next sync
+				synchronized (this)
+				{
+					pending.addAll(0, Arrays.asList(rotated).subList(forced, rotated.length));
+				}
+				throw ioe;
+			}
+
+			durableSequence = target;
+		}
+	}
+
+	/**
+	 * Starts a new segment, the records appended so far are forced to the disk
+	 * by the next {@link #sync(long)}.
+	 *
+	 * @return	number of the new segment, records appended after this call are stored
+	 * 			in the segments with this or higher number.
+	 * @throws	IOException
+	 */
+	public synchronized long rotate() throws IOException
+	{
+		if (buffer != null)
+		{
+			pending.add(buffer);
+			buffer = null;
+			closeChannel();
+		}
+		openSegment(segmentNumber + 1, segmentSize);
+		broken = false;
+		return segmentNumber;
+	}
+
+	/**
+	 * Returns the sequence number of the last appended record.
+	 *
+	 * @return	the sequence number of the last appended record.
+	 */
+	public synchronized long getAppendedSequence()
+	{
+		return appendedSequence;
+	}
+
+	/**
+	 * Deletes segments with number lower than given.
+	 *
+	 * @param	number	number of the first segment to keep.
+	 */
+	public void deleteSegmentsBefore(long number)
+	{
+		File[] segments = listFiles(directory, SUFFIX);
+		for (File segment : segments)
+			if (number(segment) < number)
+				segment.delete();
+	}
+
+	/**
+	 * Closes the journal, appended records are forced to the disk.
+	 *
+	 * @throws	IOException
+	 */
+	public void close() throws IOException
+	{
+		sync(getAppendedSequence());
+		synchronized (this)
+		{
+			if (buffer != null)
+				closeChannel();
+		}
+	}
+
+	/**
+	 * Creates, preallocates and maps a new segment.
+	 * On failure the segment is deleted and there is no current segment until the next successful call.
+	 */
+	private void openSegment(long number, int size) throws IOException
+	{
+		// the number is taken even if the segment cannot be created
+		segmentNumber = number;
+
+		File file = new File(directory, fileName(number, SUFFIX));
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		boolean created = false;
+		try {
+			FileChannel newChannel = raf.getChannel();
+			preallocate(newChannel, size);
+			buffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			channel = newChannel;
+			created = true;
+		} finally {
+			if (!created)
+			{
+				raf.close();
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Writes zeros to the whole segment, so that the disk space is allocated before the segment is mapped.
+	 */
+	private static void preallocate(FileChannel channel, int size) throws IOException
+	{
+		ByteBuffer zeros = ByteBuffer.allocate(Math.min(size, 64*1024));
+		long position = 0;
+		while (position < size)
+		{
+			zeros.clear();
+			zeros.limit((int)Math.min(zeros.capacity(), size - position));
+			position += channel.write(zeros, position);
+		}
+	}
+
+	/**
+	 * Forces the mapped segment to the disk.
+	 */
+	private static void force(MappedByteBuffer segment) throws IOException
+	{
+		try {
+			segment.force();
+		} catch (RuntimeException re) {
+			throw new IOException("Failed to force journal segment to the disk.", re);
+		} catch (InternalError ie) {
+			// faulted access to the mapping
+			throw new IOException("Failed to force journal segment to the disk.", ie);
+		}
+	}
+
+	/**
+	 * Closes the channel of the current segment (mapping stays valid).
+	 */
+	private void closeChannel()
+	{
+		try {
+			channel.close();
+		} catch (IOException ioe) {
+			// noop, mapping is still valid
+		}
+	}
+
+	/**
+	 * Reader of the records of the segments.
+	 */
+	public interface RecordHandler
+	{
+		/**
+		 * Called for every valid record.
+		 * @param	record	buffer containing the record.
+		 * @param	offset	offset of the record in the buffer.
+		 * @param	length	length of the record.
+		 */
+		void record(byte[] record, int offset, int length);
+	}
+
+	/**
+	 * Reads records of all the segments with number equal or higher than given, in order.
+	 * Reading of a segment stops at its first empty or corrupted record.
+	 *
+	 * @param	directory	journal directory.
+	 * @param	fromNumber	number of the first segment to read.
+	 * @param	handler		handler of the records.
+	 * @return	number of records read.
+	 * @throws	IOException
+	 */
+	public static int read(File directory, long fromNumber, RecordHandler handler) throws IOException
+	{
+		int count = 0;
+		CRC32 crc = new CRC32();
+		File[] segments = listFiles(directory, SUFFIX);
+		for (File segment : segments)
+		{
+			if (number(segment) < fromNumber)
+				continue;
+
+			byte[] data = new byte[(int)segment.length()];
+			RandomAccessFile raf = new RandomAccessFile(segment, "r");
+			try {
+				raf.readFully(data);
+			} finally {
+				raf.close();
+			}
+
+			int pos = 0;
+			while (pos + HEADER_SIZE <= data.length)
+			{
+				int length = readInt(data, pos);
+				if (length <= 0 || pos + HEADER_SIZE + length > data.length)
+					break;
+
+				crc.reset();
+				crc.update(data, pos + HEADER_SIZE, length);
+				if ((int)crc.getValue() != readInt(data, pos + 4))
+					break;
+
+				handler.record(data, pos + HEADER_SIZE, length);
+				count++;
+				pos += HEADER_SIZE + length;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Reads big-endian int.
+	 */
+	private static int readInt(byte[] data, int pos)
+	{
+		return ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16) |
+			   ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+	}
+
+	/**
+	 * Returns file name of a numbered file.
+	 *
+	 * @param	number	number of the file.
+	 * @param	suffix	suffix of the file.
+	 * @return	file name.
+	 */
+	static String fileName(long number, String suffix)
+	{
+		String digits = String.valueOf(number);
+		StringBuffer name = new StringBuffer(20 + suffix.length());
+		for (int i = digits.length(); i < 19; i++)
+			name.append('0');
+		return name.append(digits).append('.').append(suffix).toString();
+	}
+
+	/**
+	 * Returns number of a numbered file.
+	 *
+	 * @param	file	numbered file.
+	 * @return	number of the file, <code>-1</code> if file is not numbered.
+	 */
+	static long number(File file)
+	{
+		String name = file.getName();
+		int pos = name.indexOf('.');
+		if (pos <= 0)
+			return -1;
+
+		try {
+			return Long.parseLong(name.substring(0, pos));
+		} catch (NumberFormatException nfe) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns sorted (by number) list of numbered files with the given suffix.
+	 *
+	 * @param	directory	directory to list.
+	 * @param	suffix		suffix of the files.
+	 * @return	sorted list of files, non-<code>null</code>
+	 */
+	static File[] listFiles(File directory, final String suffix)
+	{
+		File[] files = directory.listFiles(new FileFilter()
+		{
+			public boolean accept(File file)
+			{
+				return file.getName().endsWith("." + suffix) && number(file) >= 0;
+			}
+		});
+
+		if (files == null)
+			return new File[0];
+
+		// numbers are zero-padded to the same length
+		Arrays.sort(files);
+		return files;
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager.recovery;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Thrown by {@link JournalPrevayler#executeCommand(org.prevayler.Command)} when the command was journaled
+ * and executed, but the journal could not be forced to the disk.
+ *
+ * The state of the system already reflects the command, so the command must not be executed again.
+ * The exception carries the outcome of the execution, i.e. the result or the failure of the command.
+ *
+ * @version	@@VERSION@@
+ */
+public class CommandNotDurableException extends IOException
+{
+
+	private static final long serialVersionUID = -3260427814316542917L;
+
+	/**
+	 * Result of the command.
+	 */
+	private final Serializable result;
+
+	/**
+	 * Failure of the command, <code>null</code> if the command succeeded.
+	 */
+	private final Exception commandFailure;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param	cause			failure of the journal.
+	 * @param	result			result of the command.
+	 * @param	commandFailure	failure of the command, <code>null</code> if the command succeeded.
+	 */
+	public CommandNotDurableException(IOException cause, Serializable result, Exception commandFailure)
+	{
+		super("Command executed, but the journal could not be forced to the disk.", cause);
+		this.result = result;
+		this.commandFailure = commandFailure;
+	}
+
+	/**
+	 * Returns the result of the command.
+	 *
+	 * @return	the result of the command.
+	 */
+	public Serializable getResult()
+	{
+		return result;
+	}
+
+	/**
+	 * Returns the failure of the command.
+	 *
+	 * @return	the failure of the command, <code>null</code> if the command succeeded.
+	 */
+	public Exception getCommandFailure()
+	{
+		return commandFailure;
+	}
+
+}
@@ -17,7 +17,7 @@ import org.prevayler.PrevalentSystem;
  */
 public class ComponentCommandAckAlloc implements Command {
 
-	private final int handle;
+	final int handle;
 
 	/**
 	 * Constructor for COBCommandAckAlloc.
@@ -31,7 +31,10 @@ public class ComponentCommandAckAlloc implements Command {
 	 * @see Command#execute(PrevalentSystem)
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
-		((ManagerImpl)system).getComponents().ackAllocation(handle);
+		ManagerImpl manager = (ManagerImpl)system;
+		manager.getComponents().ackAllocation(handle);
+		if (manager.getComponentRegistry() != null)
+			manager.getComponentRegistry().ackAllocation(handle);
 		return null;
 	}
 
@@ -28,7 +28,11 @@ public class ComponentCommandAllocate implements Command {
 	 * @see Command#execute(PrevalentSystem)
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
-		return new Integer(((ManagerImpl)system).getComponents().allocate());
+		ManagerImpl manager = (ManagerImpl)system;
+		int handle = manager.getComponents().allocate();
+		if (manager.getComponentRegistry() != null)
+			manager.getComponentRegistry().allocated(handle, false);
+		return new Integer(handle);
 	}
 
 }
@@ -17,8 +17,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ComponentCommandAllocateHandle implements Command {
 
-	private final int handle;
-	private final boolean preallocate;
+	final int handle;
+	final boolean preallocate;
 
 	public ComponentCommandAllocateHandle(int handle) {
 		super();
@@ -36,7 +36,10 @@ public class ComponentCommandAllocateHandle implements Command {
 	 * @see Command#execute(PrevalentSystem)
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
-		int newHandle = ((ManagerImpl)system).getComponents().allocate(handle, preallocate);
+		ManagerImpl manager = (ManagerImpl)system;
+		int newHandle = manager.getComponents().allocate(handle, preallocate);
+		if (manager.getComponentRegistry() != null)
+			manager.getComponentRegistry().allocated(newHandle, preallocate);
 		return new Integer(newHandle);
 	}
 
@@ -18,8 +18,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ComponentCommandClientRemove implements Command {
 	
-	private final int handle;
-	private final int clientHandle;
+	final int handle;
+	final int clientHandle;
 	
 	/**
 	 * Constructor for AddCOBCommand.
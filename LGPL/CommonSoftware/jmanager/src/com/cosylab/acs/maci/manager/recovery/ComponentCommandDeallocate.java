@@ -19,10 +19,10 @@ import org.prevayler.PrevalentSystem;
  */
 public class ComponentCommandDeallocate implements Command {
 
-	private final int handle;
-	private final int fullHandle;
-	private final WhyUnloadedReason reason;
-	private final boolean depreallocate;
+	final int handle;
+	final int fullHandle;
+	final WhyUnloadedReason reason;
+	final boolean depreallocate;
 
 	/**
 	 * Constructor for COBCommandAckAlloc.
@@ -47,8 +47,11 @@ public class ComponentCommandDeallocate implements Command {
 	 * @see Command#execute(PrevalentSystem)
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
-		((ManagerImpl)system).logHandleRelease(fullHandle, reason);
-		((ManagerImpl)system).getComponents().deallocate(handle, depreallocate);
+		ManagerImpl manager = (ManagerImpl)system;
+		manager.logHandleRelease(fullHandle, reason);
+		manager.getComponents().deallocate(handle, depreallocate);
+		if (manager.getComponentRegistry() != null)
+			manager.getComponentRegistry().deallocate(handle);
 		return null;
 	}
 
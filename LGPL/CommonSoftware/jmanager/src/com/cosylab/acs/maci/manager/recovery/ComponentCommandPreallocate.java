@@ -28,7 +28,11 @@ public class ComponentCommandPreallocate implements Command {
 	 * @see Command#execute(PrevalentSystem)
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
-		return new Integer(((ManagerImpl)system).getComponents().preallocate());
+		ManagerImpl manager = (ManagerImpl)system;
+		int handle = manager.getComponents().preallocate();
+		if (manager.getComponentRegistry() != null)
+			manager.getComponentRegistry().allocated(handle, true);
+		return new Integer(handle);
 	}
 
 }
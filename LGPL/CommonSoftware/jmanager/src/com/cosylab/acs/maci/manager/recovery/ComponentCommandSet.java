@@ -2,6 +2,7 @@ package com.cosylab.acs.maci.manager.recovery;
 
 import java.io.Serializable;
 
+import com.cosylab.acs.maci.ComponentInfo;
 import com.cosylab.acs.maci.manager.ManagerImpl;
 
 import org.prevayler.Command;
@@ -17,8 +18,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ComponentCommandSet implements Command {
 	
-	private final int handle;
-	private final Object data;
+	final int handle;
+	final Object data;
 	
 	/**
 	 * Constructor for COBCommandSet.
@@ -33,7 +34,10 @@ public class ComponentCommandSet implements Command {
 	 * @see Command#execute(PrevalentSystem)
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
-		((ManagerImpl)system).getComponents().set(handle, data);
+		ManagerImpl manager = (ManagerImpl)system;
+		manager.getComponents().set(handle, data);
+		if (manager.getComponentRegistry() != null)
+			manager.getComponentRegistry().set(handle, (ComponentInfo)data);
 		return null;
 	}
 }
@@ -18,8 +18,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ComponentInfoCommandComponentAdd implements Command {
 	
-	private final int hid;
-	private final int handle;
+	final int hid;
+	final int handle;
 	
 	/**
 	 * Constructor for AddCOBCommand.
@@ -19,8 +19,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ContainerCommandUpdate implements Command {
 	
-	private final int handle;
-	private final Container container;
+	final int handle;
+	final Container container;
 	
 	/**
 	 * Constructor for AddCOBCommand.
@@ -18,8 +18,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class ContainerInfoCommandComponentAdd implements Command {
 	
-	private final int handle;
-	private final int cobHandle;
+	final int handle;
+	final int cobHandle;
 	
 	/**
 	 * Constructor for AddCOBCommand.
@@ -18,8 +18,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class DefaultComponentCommandPut implements Command {
 
-	private final String type;
-	private final ComponentInfo componentInfo;
+	final String type;
+	final ComponentInfo componentInfo;
 
 	/**
 	 */
@@ -0,0 +1,391 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager.recovery;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.prevayler.Command;
+import org.prevayler.PrevalentSystem;
+import org.prevayler.Prevayler;
+import org.prevayler.implementation.SystemClock;
+
+/**
+ * <code>Prevayler</code> implementation that logs the commands to a group-committed {@link CommandJournal}.
+ *
+ * Unlike <code>SnapshotPrevayler</code>, which serializes the command and flushes the log file
+ * while holding its monitor (i.e. every request of the manager waits for the disk, one after another),
+ * only the encoding of the command into the mapped journal and the execution of the command
+ * are serialized here. The caller then waits for the group commit outside of any lock,
+ * so many concurrent commands share a single disk flush.
+ *
+ * A failure to append the command is thrown as an <code>IOException</code> before the command is executed.
+ * A failure of the group commit is thrown as a {@link CommandNotDurableException}, since the command
+ * has already been executed at that time.
+ *
+ * State snapshots are named <code>&lt;number&gt;.state</code>, where number is the number
+ * of the first journal segment not included in the snapshot. Only the serialization
+ * of the system into memory blocks the commands, writing it to the disk does not.
+ * A snapshot is skipped if no command was journaled since the last one.
+ * Recovery loads the last snapshot and replays the journal segments that follow it.
+ *
+ * @version	@@VERSION@@
+ */
+public class JournalPrevayler implements Prevayler
+{
+
+	/**
+	 * Suffix of the snapshot files.
+	 */
+	public static final String SNAPSHOT_SUFFIX = "state";
+
+	/**
+	 * Suffix of the snapshot files of <code>SnapshotPrevayler</code>.
+	 */
+	public static final String LEGACY_SNAPSHOT_SUFFIX = "snapshot";
+
+	/**
+	 * Suffix of the command log files of <code>SnapshotPrevayler</code>.
+	 */
+	public static final String LEGACY_LOG_SUFFIX = "commandLog";
+
+	/**
+	 * Recovery directory.
+	 */
+	private final File directory;
+
+	/**
+	 * Prevalent system.
+	 */
+	private final PrevalentSystem system;
+
+	/**
+	 * Command journal.
+	 */
+	private final CommandJournal journal;
+
+	/**
+	 * Lock serializing journal appends and command executions (order of both must be the same).
+	 */
+	private final Object executionLock = new Object();
+
+	/**
+	 * Lock serializing snapshots.
+	 */
+	private final Object snapshotLock = new Object();
+
+	/**
+	 * Journal sequence number at the time of the last snapshot.
+	 */
+	private long snapshotSequence = -1;
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger logger = Logger.getLogger(JournalPrevayler.class.getName());
+
+	/**
+	 * Recovers the system from the given directory.
+	 *
+	 * @param	newSystem	system to be used if there is no snapshot in the directory.
+	 * @param	directory	recovery directory.
+	 * @throws	IOException
+	 * @throws	ClassNotFoundException
+	 */
+	public JournalPrevayler(PrevalentSystem newSystem, String directory) throws IOException, ClassNotFoundException
+	{
+		this.directory = new File(directory);
+		if (!this.directory.exists() && !this.directory.mkdirs())
+			throw new IOException("Failed to create recovery directory: " + directory);
+
+		// load last snapshot
+		long fromSegment = 0;
+		PrevalentSystem recovered = newSystem;
+		File[] snapshots = CommandJournal.listFiles(this.directory, SNAPSHOT_SUFFIX);
+		if (snapshots.length > 0)
+		{
+			File snapshot = snapshots[snapshots.length - 1];
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(snapshot)));
+			try {
+				recovered = (PrevalentSystem)in.readObject();
+			} finally {
+				in.close();
+			}
+			fromSegment = CommandJournal.number(snapshot);
+		}
+
+		system = recovered;
+		// clock is serialized with the system (and it can only be set once)
+		if (system.clock() == null)
+			system.clock(new SystemClock());
+
+		// replay the journal
+		final int[] failed = new int[1];
+		int replayed = CommandJournal.read(this.directory, fromSegment, new CommandJournal.RecordHandler()
+		{
+			public void record(byte[] record, int offset, int length)
+			{
+				try {
+					CommandCodec.decode(record, offset, length).execute(system);
+				} catch (Throwable th) {
+					// command failed also when it was executed for the first time
+					failed[0]++;
+					logger.log(Level.FINER, "Failed to replay command.", th);
+				}
+			}
+		});
+		if (replayed > 0)
+			logger.log(Level.FINE, "Replayed " + replayed + " command(s) from the recovery journal, " + failed[0] + " of them failed.");
+
+		journal = new CommandJournal(this.directory, CommandJournal.DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @see org.prevayler.Prevayler#system()
+	 */
+	public PrevalentSystem system()
+	{
+		return system;
+	}
+
+	/**
+	 * Executes the command, the method returns when the command is stored in the journal.
+	 * No lock is held while waiting for the disk.
+	 *
+	 * @throws	CommandNotDurableException	if the command was executed, but the journal could not be forced to the disk.
+	 * @throws	IOException	if the command could not be journaled, the command was not executed.
+	 * @see org.prevayler.Prevayler#executeCommand(org.prevayler.Command)
+	 */
+	public Serializable executeCommand(Command command) throws Exception
+	{
+		final long sequence;
+		Serializable result = null;
+		Exception failure = null;
+		synchronized (executionLock)
+		{
+			// commands refer to the (mutable) infos of the system, encode them while they cannot change
+			byte[] record = CommandCodec.encode(command);
+			sequence = journal.append(record);
+			try {
+				result = command.execute(system);
+			} catch (Exception ex) {
+				// journaled anyway, replay will fail the same way
+				failure = ex;
+			}
+		}
+
+		// group commit
+		try {
+			journal.sync(sequence);
+		} catch (IOException ioe) {
+			throw new CommandNotDurableException(ioe, result, failure);
+		}
+
+		if (failure != null)
+			throw failure;
+		return result;
+	}
+
+	/**
+	 * Returns the lock serializing the command executions.
+	 * Commands executed on the system bypassing this prevayler have to hold it.
+	 *
+	 * @return	the execution lock.
+	 */
+	public Object getExecutionLock()
+	{
+		return executionLock;
+	}
+
+	/**
+	 * Takes a snapshot of the system, skipped if no command was executed since the last snapshot.
+	 * Journal segments preceding the snapshot are deleted.
+	 *
+	 * @throws	IOException
+	 */
+	public void takeSnapshot() throws IOException
+	{
+		synchronized (snapshotLock)
+		{
+			final long segment;
+			final long sequence;
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64*1024);
+			synchronized (executionLock)
+			{
+				sequence = journal.getAppendedSequence();
+				if (sequence == snapshotSequence)
+					return;
+
+				segment = journal.rotate();
+
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				out.writeObject(system);
+				out.close();
+			}
+
+			// the segments the snapshot replaces have to be on the disk before the snapshot,
+			// they are forced without blocking the commands
+			journal.sync(sequence);
+
+			// write to the disk without blocking the commands
+			File snapshot = new File(directory, CommandJournal.fileName(segment, SNAPSHOT_SUFFIX));
+			File tmp = new File(directory, snapshot.getName() + ".tmp");
+			FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				bytes.writeTo(out);
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(snapshot))
+			{
+				tmp.delete();
+				// journal segments are not deleted, recovery will use the previous snapshot
+				throw new IOException("Failed to rename snapshot file " + tmp + " to " + snapshot);
+			}
+			snapshotSequence = sequence;
+
+			// remove obsolete files
+			for (File old : CommandJournal.listFiles(directory, SNAPSHOT_SUFFIX))
+				if (CommandJournal.number(old) < segment)
+					old.delete();
+			journal.deleteSegmentsBefore(segment);
+		}
+	}
+
+	/**
+	 * Closes the journal.
+	 *
+	 * @throws	IOException
+	 */
+	public void close() throws IOException
+	{
+		journal.close();
+	}
+
+	/**
+	 * Checks if the directory contains any recovery files of this implementation.
+	 *
+	 * @param	directory	recovery directory.
+	 * @return	<code>true</code> if directory contains a snapshot or a journal segment.
+	 */
+	public static boolean hasRecoveryFiles(String directory)
+	{
+		File dir = new File(directory);
+		return CommandJournal.listFiles(dir, SNAPSHOT_SUFFIX).length > 0 ||
+			   CommandJournal.listFiles(dir, CommandJournal.SUFFIX).length > 0;
+	}
+
+	/**
+	 * Recovers the system from the recovery files of <code>SnapshotPrevayler</code>, i.e. the last
+	 * snapshot and the command logs that follow it. Unlike <code>SnapshotPrevayler</code>
+	 * no prevayler (and no new command log) is opened on the directory.
+	 *
+	 * @param	newSystem	system to be used if there is no snapshot in the directory.
+	 * @param	directory	recovery directory.
+	 * @return	recovered system.
+	 * @throws	IOException
+	 * @throws	ClassNotFoundException
+	 */
+	public static PrevalentSystem recoverLegacySystem(PrevalentSystem newSystem, String directory) throws IOException, ClassNotFoundException
+	{
+		File dir = new File(directory);
+
+		// load last snapshot
+		long snapshotNumber = 0;
+		PrevalentSystem system = newSystem;
+		File[] snapshots = CommandJournal.listFiles(dir, LEGACY_SNAPSHOT_SUFFIX);
+		if (snapshots.length > 0)
+		{
+			File snapshot = snapshots[snapshots.length - 1];
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(snapshot)));
+			try {
+				system = (PrevalentSystem)in.readObject();
+			} finally {
+				in.close();
+			}
+			snapshotNumber = CommandJournal.number(snapshot);
+		}
+
+		// logged commands recover the (paused) clock
+		if (system.clock() == null)
+			system.clock(new SystemClock());
+
+		// replay the logs, they are numbered consecutively after the snapshot
+		int replayed = 0;
+		int failed = 0;
+		long expected = -1;
+		File[] logs = CommandJournal.listFiles(dir, LEGACY_LOG_SUFFIX);
+		for (File log : logs)
+		{
+			long number = CommandJournal.number(log);
+			if (number <= snapshotNumber)
+				continue;
+			if (expected >= 0 && number != expected)
+				break;
+			expected = number + 1;
+
+			ObjectInputStream in = null;
+			try {
+				in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(log)));
+				while (true)
+				{
+					Command command = (Command)in.readObject();
+					try {
+						command.execute(system);
+					} catch (Throwable th) {
+						// command failed also when it was executed for the first time
+						failed++;
+						logger.log(Level.FINER, "Failed to replay command.", th);
+					}
+					replayed++;
+				}
+			} catch (EOFException eof) {
+				// end of the log
+			} catch (IOException ioe) {
+				logger.log(Level.WARNING, "Failed to read command log '" + log + "', some commands might have been lost.", ioe);
+			} catch (RuntimeException re) {
+				logger.log(Level.WARNING, "Failed to read command log '" + log + "', some commands might have been lost.", re);
+			} finally {
+				if (in != null)
+					in.close();
+			}
+		}
+		if (replayed > 0)
+			logger.log(Level.FINE, "Replayed " + replayed + " command(s) from the legacy command logs, " + failed + " of them failed.");
+
+		return system;
+	}
+
+	/**
+	 * Lists all the recovery files of <code>SnapshotPrevayler</code> in the directory.
+	 *
+	 * @param	directory	recovery directory.
+	 * @return	snapshot and command log files, non-<code>null</code>
+	 */
+	public static File[] listLegacyFiles(String directory)
+	{
+		File[] files = new File(directory).listFiles(new FileFilter()
+		{
+			public boolean accept(File file)
+			{
+				return file.getName().endsWith("." + LEGACY_LOG_SUFFIX) || file.getName().endsWith("." + LEGACY_SNAPSHOT_SUFFIX);
+			}
+		});
+		return files != null ? files : new File[0];
+	}
+
+}
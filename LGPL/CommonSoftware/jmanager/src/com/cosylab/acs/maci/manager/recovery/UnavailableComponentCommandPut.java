@@ -18,8 +18,8 @@ import org.prevayler.PrevalentSystem;
  */
 public class UnavailableComponentCommandPut implements Command {
 
-	private final String name;
-	private final ComponentInfo cobInfo;
+	final String name;
+	final ComponentInfo cobInfo;
 
 	/**
 	 */
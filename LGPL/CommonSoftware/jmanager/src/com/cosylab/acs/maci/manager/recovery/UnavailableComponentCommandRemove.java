@@ -17,7 +17,7 @@ import org.prevayler.PrevalentSystem;
  */
 public class UnavailableComponentCommandRemove implements Command {
 
-	private final String name;
+	final String name;
 	/**
 	 */
 	public UnavailableComponentCommandRemove(String name) {
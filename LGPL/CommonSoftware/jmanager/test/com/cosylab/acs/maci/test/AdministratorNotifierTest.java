@@ -0,0 +1,311 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.cosylab.acs.maci.ClientInfo;
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.RemoteException;
+import com.cosylab.acs.maci.RemoteTransientException;
+import com.cosylab.acs.maci.manager.AdministratorNotifier;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for AdministratorNotifier.
+ *
+ * @version	@@VERSION@@
+ */
+public class AdministratorNotifierTest extends TestCase
+{
+
+	/**
+	 * Administrator recording the notifications.
+	 */
+	static class RecordingAdministrator extends TestAdministrator
+	{
+		int calls = 0;
+		int requested = 0;
+		// component handle -> last state (true if activated)
+		final Map<Integer, Boolean> components = new HashMap<Integer, Boolean>();
+		// delivered notifications, in order
+		final List<String> log = new ArrayList<String>();
+		CountDownLatch block = null;
+		// number of the next calls to fail
+		int failures = 0;
+
+		RecordingAdministrator(String name)
+		{
+			super(name);
+		}
+
+		private void called() throws RemoteException
+		{
+			CountDownLatch latch;
+			synchronized (this)
+			{
+				calls++;
+				latch = block;
+				if (failures > 0)
+				{
+					failures--;
+					throw new RemoteTransientException("Simulated transient failure.");
+				}
+			}
+			if (latch != null)
+			{
+				try {
+					latch.await();
+				} catch (InterruptedException ie) {
+					// noop
+				}
+			}
+		}
+
+		public void components_requested(int[] clients, int[] components, long timeStamp) throws RemoteException
+		{
+			called();
+			synchronized (this)
+			{
+				requested += components.length;
+			}
+		}
+
+		public void component_activated(ComponentInfo info, long timeStamp, long executionId) throws RemoteException
+		{
+			called();
+			synchronized (this)
+			{
+				components.put(new Integer(info.getHandle()), Boolean.TRUE);
+				log.add("activated " + info.getName());
+			}
+		}
+
+		public void components_available(ComponentInfo[] infos) throws RemoteException
+		{
+			called();
+			synchronized (this)
+			{
+				for (int i = 0; i < infos.length; i++)
+					log.add("available " + infos[i].getName());
+			}
+		}
+
+		public void components_unavailable(String[] names) throws RemoteException
+		{
+			called();
+			synchronized (this)
+			{
+				for (int i = 0; i < names.length; i++)
+					log.add("unavailable " + names[i]);
+			}
+		}
+
+		public void component_deactivated(int handle, long timeStamp) throws RemoteException
+		{
+			called();
+			synchronized (this)
+			{
+				components.put(new Integer(handle), Boolean.FALSE);
+			}
+		}
+	}
+
+	private ExecutorService executor;
+	private Logger logger;
+
+	/**
+	 */
+	public AdministratorNotifierTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(AdministratorNotifierTest.class);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		executor = Executors.newFixedThreadPool(2);
+		// keep the test output clean
+		logger = Logger.getAnonymousLogger();
+		logger.setUseParentHandlers(false);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Waits until all the notifications are delivered.
+	 */
+	private void waitDelivered() throws InterruptedException
+	{
+		// coalescing timer dispatches to the executor
+		Thread.sleep(300);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Requests within the coalescing window have to be delivered in a single call.
+	 */
+	public void testCoalescing() throws InterruptedException
+	{
+		RecordingAdministrator admin = new RecordingAdministrator("admin");
+		ClientInfo[] admins = new ClientInfo[] { new ClientInfo(0x05000001, "admin", admin) };
+		AdministratorNotifier notifier = new AdministratorNotifier(executor, 200, 1000, logger);
+
+		for (int i = 1; i <= 100; i++)
+			notifier.componentsRequested(admins, new int[] { 0x02000001 }, new int[] { 0x03000000 + i }, i);
+
+		waitDelivered();
+		notifier.shutdown();
+
+		assertEquals(100, admin.requested);
+		assertEquals(1, admin.calls);
+		assertEquals(100, notifier.getEventCount());
+		assertEquals(1, notifier.getCallCount());
+	}
+
+	/**
+	 * Events queued for a slow administrator have to be dropped to a snapshot
+	 * which still delivers the last state of every component.
+	 */
+	public void testSnapshot() throws InterruptedException
+	{
+		RecordingAdministrator admin = new RecordingAdministrator("admin");
+		admin.block = new CountDownLatch(1);
+		ClientInfo[] admins = new ClientInfo[] { new ClientInfo(0x05000001, "admin", admin) };
+		AdministratorNotifier notifier = new AdministratorNotifier(executor, 0, 10, logger);
+
+		final int COMPONENTS = 5;
+		// first one blocks the delivery
+		notifier.componentDeactivated(admins, 0x03000000, 0);
+		Thread.sleep(100);
+		for (int n = 0; n < 100; n++)
+			for (int i = 1; i <= COMPONENTS; i++)
+			{
+				ComponentInfo info = new ComponentInfo(0x03000000 + i, "C" + i, "type", "code", null);
+				notifier.componentActivated(admins, info, n, n);
+				if (i != COMPONENTS)
+					notifier.componentDeactivated(admins, info.getHandle(), n);
+			}
+
+		synchronized (admin)
+		{
+			admin.block.countDown();
+			admin.block = null;
+		}
+		waitDelivered();
+		notifier.shutdown();
+
+		assertEquals(1, notifier.getSnapshotCount());
+		assertTrue(notifier.getDroppedCount() > 0);
+		// blocked call + last state of all the components
+		assertEquals(1 + COMPONENTS, admin.calls);
+		for (int i = 1; i <= COMPONENTS; i++)
+			assertEquals(i == COMPONENTS ? Boolean.TRUE : Boolean.FALSE, admin.components.get(new Integer(0x03000000 + i)));
+	}
+
+	/**
+	 * A transient failure loses only the events of the failed call, the rest are still delivered.
+	 */
+	public void testTransientFailure() throws InterruptedException
+	{
+		RecordingAdministrator admin = new RecordingAdministrator("admin");
+		admin.failures = 1;
+		ClientInfo[] admins = new ClientInfo[] { new ClientInfo(0x05000001, "admin", admin) };
+		AdministratorNotifier notifier = new AdministratorNotifier(executor, 200, 1000, logger);
+
+		final int COMPONENTS = 5;
+		for (int i = 1; i <= COMPONENTS; i++)
+			notifier.componentDeactivated(admins, 0x03000000 + i, i);
+
+		waitDelivered();
+		notifier.shutdown();
+
+		assertEquals(COMPONENTS, admin.calls);
+		assertEquals(COMPONENTS - 1, notifier.getCallCount());
+		assertEquals(1, notifier.getDroppedCount());
+		assertNull(admin.components.get(new Integer(0x03000001)));
+		for (int i = 2; i <= COMPONENTS; i++)
+			assertEquals(Boolean.FALSE, admin.components.get(new Integer(0x03000000 + i)));
+	}
+
+	/**
+	 * Availability notifications have to be delivered in order with the other notifications.
+	 */
+	public void testAvailabilityOrder() throws InterruptedException
+	{
+		RecordingAdministrator admin = new RecordingAdministrator("admin");
+		ClientInfo[] admins = new ClientInfo[] { new ClientInfo(0x05000001, "admin", admin) };
+		AdministratorNotifier notifier = new AdministratorNotifier(executor, 200, 1000, logger);
+
+		ComponentInfo c1 = new ComponentInfo(0x03000001, "C1", "type", "code", null);
+		ComponentInfo c2 = new ComponentInfo(0x03000002, "C2", "type", "code", null);
+		notifier.componentActivated(admins, c1, 0, 0);
+		notifier.componentsAvailable(admins, new ComponentInfo[] { c1 });
+		notifier.componentsAvailable(admins, new ComponentInfo[] { c2 });
+		notifier.componentsUnavailable(admins, new String[] { "C1" });
+		notifier.componentActivated(admins, c2, 0, 0);
+
+		waitDelivered();
+		notifier.shutdown();
+
+		assertEquals(Arrays.asList(new String[] { "activated C1", "available C1", "available C2", "unavailable C1", "activated C2" }), admin.log);
+		// consecutive availability notifications are merged
+		assertEquals(4, admin.calls);
+	}
+
+	/**
+	 * Notifications still waiting in the coalescing window have to be flushed on shutdown.
+	 */
+	public void testShutdownFlush() throws InterruptedException
+	{
+		RecordingAdministrator admin = new RecordingAdministrator("admin");
+		ClientInfo[] admins = new ClientInfo[] { new ClientInfo(0x05000001, "admin", admin) };
+		AdministratorNotifier notifier = new AdministratorNotifier(executor, 60000, 1000, logger);
+
+		final int COMPONENTS = 5;
+		for (int i = 1; i <= COMPONENTS; i++)
+			notifier.componentDeactivated(admins, 0x03000000 + i, i);
+
+		notifier.shutdown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+		// executor does not accept the notifications anymore
+		notifier.componentDeactivated(admins, 0x03000000, 0);
+
+		assertEquals(COMPONENTS, admin.calls);
+		for (int i = 1; i <= COMPONENTS; i++)
+			assertEquals(Boolean.FALSE, admin.components.get(new Integer(0x03000000 + i)));
+		assertEquals(1, notifier.getDroppedCount());
+	}
+
+}
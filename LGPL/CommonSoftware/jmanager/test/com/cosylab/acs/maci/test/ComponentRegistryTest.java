@@ -0,0 +1,197 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.manager.ComponentRegistry;
+import com.cosylab.acs.maci.manager.HandleDataStore;
+import com.cosylab.acs.maci.manager.WildcharPattern;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for ComponentRegistry.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentRegistryTest extends TestCase
+{
+
+	/**
+	 */
+	public ComponentRegistryTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(ComponentRegistryTest.class);
+	}
+
+	/**
+	 * Preallocated components are visible by handle, but not by name.
+	 */
+	public void testPreallocation()
+	{
+		ComponentRegistry registry = new ComponentRegistry();
+
+		registry.allocated(1, true);
+		ComponentInfo pending = new ComponentInfo(1, "MOUNT1", "IDL:MOUNT:1.0", "mount", null);
+		registry.set(1, pending);
+
+		assertSame(pending, registry.get(1));
+		assertNull(registry.get("MOUNT1"));
+
+		ComponentInfo activated = new ComponentInfo(1, "MOUNT1", "IDL:MOUNT:1.0", "mount", null);
+		registry.set(1, activated);
+		assertNull(registry.get("MOUNT1"));
+
+		registry.ackAllocation(1);
+		assertSame(activated, registry.get(1));
+		assertSame(activated, registry.get("MOUNT1"));
+
+		registry.deallocate(1);
+		assertNull(registry.get(1));
+		assertNull(registry.get("MOUNT1"));
+		assertEquals(0, registry.size());
+	}
+
+	/**
+	 * Deallocation of the old handle must not remove the name of the relocated component.
+	 */
+	public void testRelocation()
+	{
+		ComponentRegistry registry = new ComponentRegistry();
+
+		registry.allocated(1, false);
+		ComponentInfo old = new ComponentInfo(1, "MOUNT1", "IDL:MOUNT:1.0", "mount", null);
+		registry.set(1, old);
+		assertSame(old, registry.get("MOUNT1"));
+
+		registry.allocated(2, false);
+		ComponentInfo relocated = new ComponentInfo(2, "MOUNT1", "IDL:MOUNT:1.0", "mount", null);
+		registry.set(2, relocated);
+		registry.deallocate(1);
+
+		assertNull(registry.get(1));
+		assertSame(relocated, registry.get(2));
+		assertSame(relocated, registry.get("MOUNT1"));
+	}
+
+	/**
+	 * Registry rebuilt from the store has to mirror it.
+	 */
+	public void testRebuild()
+	{
+		HandleDataStore components = new HandleDataStore(4);
+		for (int i = 0; i < 10; i++)
+		{
+			int h = components.allocate();
+			components.set(h, new ComponentInfo(h, "COMPONENT" + i, "IDL:Type:1.0", "code", null));
+		}
+		int pending = components.preallocate();
+		components.set(pending, new ComponentInfo(pending, "PENDING", "IDL:Type:1.0", "code", null));
+		components.deallocate(3);
+
+		ComponentRegistry registry = new ComponentRegistry();
+		registry.rebuild(components);
+
+		assertEquals(components.size(), registry.size());
+		for (int h = 1; h <= components.capacity(); h++)
+		{
+			if (components.isAllocated(h))
+				assertSame(components.get(h), registry.get(h));
+			else
+				assertNull(registry.get(h));
+		}
+
+		int h = components.first();
+		while (h != 0)
+		{
+			ComponentInfo info = (ComponentInfo)components.get(h);
+			assertSame(info, registry.get(info.getName()));
+			h = components.next(h);
+		}
+		assertNull(registry.get("COMPONENT2"));
+		assertNull(registry.get("PENDING"));
+		assertNotNull(registry.get(pending));
+
+		// acknowledge
+		components.ackAllocation(pending);
+		registry.ackAllocation(pending);
+		assertSame(components.get(pending), registry.get("PENDING"));
+	}
+
+	/**
+	 * Indexed wildchar queries have to return the same components as a full scan.
+	 */
+	public void testFind()
+	{
+		ComponentRegistry registry = new ComponentRegistry();
+		final String[] types = { "IDL:alma/MOUNT_ACS/Mount:1.0", "IDL:alma/PS/PowerSupply:1.0", "IDL:alma/demo/HelloDemo:1.0" };
+		final String[] prefixes = { "MOUNT", "PS", "HELLODEMO" };
+		int h = 1;
+		for (int i = 0; i < types.length; i++)
+			for (int j = 0; j < 20; j++, h++)
+			{
+				registry.allocated(h, false);
+				registry.set(h, new ComponentInfo(h, prefixes[i] + j, types[i], "code", null));
+			}
+		// pending one must not be found
+		registry.allocated(h, true);
+		registry.set(h, new ComponentInfo(h, "MOUNT_PENDING", types[0], "code", null));
+
+		assertEquals(20, registry.find(WildcharPattern.compile("MOUNT*"), WildcharPattern.compile("*")).size());
+		assertEquals(11, registry.find(WildcharPattern.compile("MOUNT1*"), WildcharPattern.compile("*")).size());
+		assertEquals(1, registry.find(WildcharPattern.compile("PS3"), WildcharPattern.compile("*")).size());
+		assertEquals(0, registry.find(WildcharPattern.compile("PS3"), WildcharPattern.compile("IDL:alma/MOUNT*")).size());
+		assertEquals(20, registry.find(WildcharPattern.compile("*"), WildcharPattern.compile("IDL:alma/PS/*")).size());
+		assertEquals(30, registry.find(WildcharPattern.compile("*?1?"), WildcharPattern.compile("IDL:alma/*")).size());
+		assertEquals(10, registry.find(WildcharPattern.compile("*?1?"), WildcharPattern.compile("IDL:alma/P*")).size());
+		assertEquals(60, registry.find(WildcharPattern.compile("*"), WildcharPattern.compile("*")).size());
+		assertEquals(2, registry.find(WildcharPattern.compile("*1"), WildcharPattern.compile("IDL:alma/demo/*")).size());
+
+		// removed and replaced components
+		registry.deallocate(1);
+		assertEquals(19, registry.find(WildcharPattern.compile("*"), WildcharPattern.compile("IDL:alma/MOUNT*")).size());
+		registry.set(2, new ComponentInfo(2, "MOUNT1", types[1], "code", null));
+		assertEquals(18, registry.find(WildcharPattern.compile("*"), WildcharPattern.compile("IDL:alma/MOUNT*")).size());
+		assertEquals(21, registry.find(WildcharPattern.compile("*"), WildcharPattern.compile("IDL:alma/PS*")).size());
+	}
+
+	/**
+	 * Type index entry of a deallocated component must not resolve to the component that reused its handle.
+	 */
+	public void testReusedHandle()
+	{
+		ComponentRegistry registry = new ComponentRegistry();
+		registry.allocated(1, false);
+		registry.set(1, new ComponentInfo(1, "MOUNT1", "IDL:alma/MOUNT_ACS/Mount:1.0", "code", null));
+		registry.deallocate(1);
+
+		registry.allocated(1, false);
+		ComponentInfo reused = new ComponentInfo(1, "PS1", "IDL:alma/PS/PowerSupply:1.0", "code", null);
+		registry.set(1, reused);
+
+		assertSame(reused, registry.get(1));
+		assertEquals(0, registry.find(WildcharPattern.compile("*"), WildcharPattern.compile("IDL:alma/MOUNT*")).size());
+		assertEquals(1, registry.find(WildcharPattern.compile("*"), WildcharPattern.compile("IDL:alma/PS*")).size());
+	}
+
+	/**
+	 * The same name always maps to the same stripe.
+	 */
+	public void testStripes()
+	{
+		ComponentRegistry registry = new ComponentRegistry();
+		assertSame(registry.getStripe("MOUNT1"), registry.getStripe(new String("MOUNT1")));
+		assertNotNull(registry.getStripe(""));
+	}
+
+}
@@ -0,0 +1,219 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cosylab.acs.maci.manager.HandleTable;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for HandleTable.
+ *
+ * @version	@@VERSION@@
+ */
+public class HandleTableTest extends TestCase
+{
+
+	/**
+	 */
+	public HandleTableTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(HandleTableTest.class);
+	}
+
+	/**
+	 * Allocation, retrieval and stale handles.
+	 */
+	public void testAllocation()
+	{
+		HandleTable<String> table = new HandleTable<String>(1000);
+		assertEquals(0, table.size());
+		assertNull(table.get(0));
+
+		int[] handles = new int[1000];
+		for (int i = 0; i < handles.length; i++)
+		{
+			handles[i] = table.allocate();
+			assertTrue(handles[i] > 0);
+			assertEquals(i + 1, HandleTable.index(handles[i]));
+			assertTrue(table.set(handles[i], "E" + i));
+		}
+		// capacity exhausted
+		assertEquals(0, table.allocate());
+		assertEquals(1000, table.size());
+
+		for (int i = 0; i < handles.length; i++)
+			assertEquals("E" + i, table.get(handles[i]));
+
+		// stale handle
+		int h = handles[10];
+		assertTrue(table.deallocate(h));
+		assertFalse(table.deallocate(h));
+		assertFalse(table.isAllocated(h));
+		assertNull(table.get(h));
+		assertFalse(table.set(h, "X"));
+
+		int reused = table.allocate();
+		assertEquals(HandleTable.index(h), HandleTable.index(reused));
+		assertTrue(reused != h);
+		assertNull(table.get(reused));
+		assertNull(table.get(h));
+		assertEquals(reused, table.handle(HandleTable.index(h)));
+
+		// snapshot
+		assertTrue(table.deallocate(handles[0]));
+		int[] snapshot = table.handles();
+		assertEquals(999, snapshot.length);
+		assertEquals(handles[1], snapshot[0]);
+		assertEquals(reused, snapshot[9]);
+
+		table.clear();
+		assertEquals(0, table.size());
+		assertEquals(0, table.handles().length);
+	}
+
+	/**
+	 * Allocation of the given indices.
+	 */
+	public void testIndexAllocation()
+	{
+		HandleTable<String> table = new HandleTable<String>();
+		int h = table.allocate(5);
+		assertEquals(5, HandleTable.index(h));
+		assertEquals(0, table.allocate(5));
+		assertEquals(0, table.allocate(0));
+		assertEquals(0, table.allocate(HandleTable.INDEX_MASK + 1));
+
+		// skipped indices are reused
+		Set<Integer> indices = new HashSet<Integer>();
+		for (int i = 0; i < 5; i++)
+			indices.add(new Integer(HandleTable.index(table.allocate())));
+		assertEquals(5, indices.size());
+		assertFalse(indices.contains(new Integer(5)));
+		assertTrue(indices.contains(new Integer(6)));
+
+		// index allocated explicitly while in the free list
+		int h3 = table.handle(3);
+		assertTrue(table.deallocate(h3));
+		assertTrue(table.allocate(3) != 0);
+		int next = table.allocate();
+		assertTrue(HandleTable.index(next) != 3);
+		assertEquals(7, table.size());
+	}
+
+	/**
+	 * Concurrent allocations and deallocations have to yield unique handles.
+	 */
+	public void testConcurrency() throws InterruptedException
+	{
+		final HandleTable<Thread> table = new HandleTable<Thread>(1024);
+		final int THREADS = 8;
+		final int ITERATIONS = 20000;
+		final boolean[] failed = new boolean[1];
+
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++)
+		{
+			threads[t] = new Thread()
+			{
+				public void run()
+				{
+					int[] own = new int[64];
+					for (int i = 0; i < ITERATIONS; i++)
+					{
+						int slot = i % own.length;
+						if (own[slot] != 0)
+						{
+							if (table.get(own[slot]) != this || !table.deallocate(own[slot]))
+								failed[0] = true;
+						}
+						own[slot] = table.allocate();
+						if (own[slot] == 0 || !table.set(own[slot], this))
+							failed[0] = true;
+					}
+					for (int i = 0; i < own.length; i++)
+						if (!table.deallocate(own[i]))
+							failed[0] = true;
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < THREADS; t++)
+			threads[t].join();
+
+		assertFalse(failed[0]);
+		assertEquals(0, table.size());
+		assertEquals(0, table.handles().length);
+	}
+
+	/**
+	 * Elements set with a stale handle must never become the elements of the reallocated handle.
+	 */
+	public void testConcurrentSet() throws InterruptedException
+	{
+		final HandleTable<Integer> table = new HandleTable<Integer>(1);
+		final int ITERATIONS = 100000;
+		final AtomicInteger current = new AtomicInteger(table.allocate());
+		final AtomicBoolean done = new AtomicBoolean(false);
+		boolean failed = false;
+
+		// keep setting the elements with the handles that might already be stale
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++)
+		{
+			writers[t] = new Thread()
+			{
+				public void run()
+				{
+					while (!done.get())
+					{
+						int handle = current.get();
+						table.set(handle, Integer.valueOf(handle));
+					}
+				}
+			};
+			writers[t].start();
+		}
+
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			int handle = current.get();
+			Integer data = table.get(handle);
+			if (data != null && data.intValue() != handle)
+				failed = true;
+
+			assertTrue(table.deallocate(handle));
+			handle = table.allocate();
+			assertTrue(handle != 0);
+			current.set(handle);
+			// element of the new handle is empty or set by a writer with the new handle
+			for (int j = 0; j < 10; j++)
+			{
+				data = table.get(handle);
+				if (data != null && data.intValue() != handle)
+					failed = true;
+			}
+		}
+		done.set(true);
+		for (int t = 0; t < writers.length; t++)
+			writers[t].join();
+
+		assertFalse(failed);
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.prevayler.Command;
+import org.prevayler.PrevalentSystem;
+import org.prevayler.implementation.AbstractPrevalentSystem;
+import org.prevayler.implementation.SnapshotPrevayler;
+
+import com.cosylab.acs.maci.manager.ManagerImpl.WhyUnloadedReason;
+import com.cosylab.acs.maci.manager.recovery.CommandCodec;
+import com.cosylab.acs.maci.manager.recovery.CommandJournal;
+import com.cosylab.acs.maci.manager.recovery.CommandNotDurableException;
+import com.cosylab.acs.maci.manager.recovery.ComponentCommandAllocateHandle;
+import com.cosylab.acs.maci.manager.recovery.ComponentCommandClientAdd;
+import com.cosylab.acs.maci.manager.recovery.ComponentCommandDeallocate;
+import com.cosylab.acs.maci.manager.recovery.JournalPrevayler;
+import com.cosylab.acs.maci.manager.recovery.UnavailableComponentCommandRemove;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for JournalPrevayler and CommandCodec.
+ *
+ * @version	@@VERSION@@
+ */
+public class JournalPrevaylerTest extends TestCase
+{
+
+	/**
+	 * Simple prevalent system.
+	 */
+	static class Counter extends AbstractPrevalentSystem
+	{
+		private static final long serialVersionUID = 1L;
+		long value = 0;
+		int commands = 0;
+	}
+
+	/**
+	 * Command incrementing the counter (encoded by Java serialization).
+	 */
+	static class Add implements Command
+	{
+		private static final long serialVersionUID = 1L;
+		private final long delta;
+
+		public Add(long delta)
+		{
+			this.delta = delta;
+		}
+
+		public Serializable execute(PrevalentSystem system) throws Exception
+		{
+			Counter counter = (Counter)system;
+			counter.value += delta;
+			counter.commands++;
+			return new Long(counter.value);
+		}
+	}
+
+	private File directory;
+
+	/**
+	 */
+	public JournalPrevaylerTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		directory = new File(System.getProperty("java.io.tmpdir"), "JournalPrevaylerTest" + System.currentTimeMillis());
+		directory.mkdirs();
+	}
+
+	/**
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		File[] files = directory.listFiles();
+		for (int i = 0; files != null && i < files.length; i++)
+			files[i].delete();
+		directory.delete();
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(JournalPrevaylerTest.class);
+	}
+
+	/**
+	 * Commands executed concurrently have to be recovered from the journal.
+	 */
+	public void testRecovery() throws Exception
+	{
+		final JournalPrevayler prevayler = new JournalPrevayler(new Counter(), directory.getPath());
+
+		final int THREADS = 8;
+		final int COMMANDS = 200;
+		Thread[] threads = new Thread[THREADS];
+		final Exception[] failure = new Exception[1];
+		for (int i = 0; i < THREADS; i++)
+		{
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					try {
+						for (int j = 0; j < COMMANDS; j++)
+							prevayler.executeCommand(new Add(j));
+					} catch (Exception ex) {
+						failure[0] = ex;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < THREADS; i++)
+			threads[i].join();
+		assertNull(failure[0]);
+
+		Counter counter = (Counter)prevayler.system();
+		assertEquals(THREADS * COMMANDS, counter.commands);
+		prevayler.close();
+
+		Counter recovered = (Counter)new JournalPrevayler(new Counter(), directory.getPath()).system();
+		assertEquals(counter.commands, recovered.commands);
+		assertEquals(counter.value, recovered.value);
+	}
+
+	/**
+	 * Recovery from a snapshot and the journal that follows it.
+	 */
+	public void testSnapshot() throws Exception
+	{
+		JournalPrevayler prevayler = new JournalPrevayler(new Counter(), directory.getPath());
+		for (int i = 0; i < 10; i++)
+			prevayler.executeCommand(new Add(1));
+		prevayler.takeSnapshot();
+		for (int i = 0; i < 5; i++)
+			prevayler.executeCommand(new Add(10));
+
+		prevayler.takeSnapshot();
+
+		// no changes, no new snapshot
+		String[] before = directory.list();
+		Arrays.sort(before);
+		prevayler.takeSnapshot();
+		String[] after = directory.list();
+		Arrays.sort(after);
+		assertEquals(Arrays.asList(before).toString(), Arrays.asList(after).toString());
+		prevayler.close();
+
+		// only one snapshot is kept
+		int snapshots = 0;
+		for (int i = 0; i < after.length; i++)
+			if (after[i].endsWith("." + JournalPrevayler.SNAPSHOT_SUFFIX))
+				snapshots++;
+		assertEquals(1, snapshots);
+
+		Counter recovered = (Counter)new JournalPrevayler(new Counter(), directory.getPath()).system();
+		assertEquals(15, recovered.commands);
+		assertEquals(60, recovered.value);
+	}
+
+	/**
+	 * Recovery from the files of SnapshotPrevayler must not create any new file.
+	 */
+	public void testLegacyRecovery() throws Exception
+	{
+		SnapshotPrevayler legacy = new SnapshotPrevayler(new Counter(), directory.getPath());
+		for (int i = 0; i < 10; i++)
+			legacy.executeCommand(new Add(1));
+		legacy.takeSnapshot();
+		for (int i = 0; i < 5; i++)
+			legacy.executeCommand(new Add(10));
+
+		String[] before = directory.list();
+		Arrays.sort(before);
+		assertEquals(before.length, JournalPrevayler.listLegacyFiles(directory.getPath()).length);
+		assertFalse(JournalPrevayler.hasRecoveryFiles(directory.getPath()));
+
+		Counter recovered = (Counter)JournalPrevayler.recoverLegacySystem(new Counter(), directory.getPath());
+		assertEquals(15, recovered.commands);
+		assertEquals(60, recovered.value);
+
+		String[] after = directory.list();
+		Arrays.sort(after);
+		assertEquals(Arrays.asList(before).toString(), Arrays.asList(after).toString());
+	}
+
+	/**
+	 * A journal that cannot create its segment fails with an IOException before the command is executed
+	 * and continues in a new segment when the disk is available again.
+	 */
+	public void testJournalFailure() throws Exception
+	{
+		JournalPrevayler prevayler = new JournalPrevayler(new Counter(), directory.getPath());
+		prevayler.executeCommand(new Add(1));
+
+		// segments are preallocated, not sparse
+		File[] segments = directory.listFiles();
+		assertEquals(1, segments.length);
+		assertEquals(CommandJournal.DEFAULT_SEGMENT_SIZE, segments[0].length());
+
+		// the directory disappears, no new segment can be created
+		segments[0].delete();
+		directory.delete();
+		try {
+			prevayler.takeSnapshot();
+			fail("IOException expected");
+		} catch (IOException ioe) {
+			// expected
+		}
+		try {
+			prevayler.executeCommand(new Add(10));
+			fail("IOException expected");
+		} catch (CommandNotDurableException cnde) {
+			fail("command must not be executed");
+		} catch (IOException ioe) {
+			// expected
+		}
+		Counter counter = (Counter)prevayler.system();
+		assertEquals(1, counter.commands);
+
+		// the journal continues in a new segment
+		directory.mkdirs();
+		assertEquals(new Long(101), prevayler.executeCommand(new Add(100)));
+		prevayler.close();
+
+		Counter recovered = (Counter)new JournalPrevayler(new Counter(), directory.getPath()).system();
+		assertEquals(1, recovered.commands);
+		assertEquals(100, recovered.value);
+	}
+
+	/**
+	 * Encoding of the decoded command has to be the same.
+	 */
+	public void testCodec() throws Exception
+	{
+		Command[] commands = new Command[] {
+				new ComponentCommandAllocateHandle(12, true),
+				new ComponentCommandClientAdd(3, 0x05000001),
+				new ComponentCommandDeallocate(7, 0x05000007, WhyUnloadedReason.TIMEOUT, true),
+				new ComponentCommandDeallocate(7, 0x05000007, null),
+				new UnavailableComponentCommandRemove("MOUNT1"),
+				new Add(42)
+		};
+
+		for (int i = 0; i < commands.length; i++)
+		{
+			byte[] encoded = CommandCodec.encode(commands[i]);
+			Command decoded = CommandCodec.decode(encoded, 0, encoded.length);
+			assertSame(commands[i].getClass(), decoded.getClass());
+			assertTrue(Arrays.equals(encoded, CommandCodec.encode(decoded)));
+		}
+
+		// tagged commands are compact
+		assertTrue(CommandCodec.encode(commands[1]).length == 9);
+	}
+
+}
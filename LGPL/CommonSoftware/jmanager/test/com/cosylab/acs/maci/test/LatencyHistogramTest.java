@@ -0,0 +1,111 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import com.cosylab.acs.maci.manager.InstrumentedLock;
+import com.cosylab.acs.maci.manager.LatencyHistogram;
+import com.cosylab.acs.maci.manager.ManagerStatistics;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for LatencyHistogram and ManagerStatistics.
+ *
+ * @version	@@VERSION@@
+ */
+public class LatencyHistogramTest extends TestCase
+{
+
+	/**
+	 */
+	public LatencyHistogramTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(LatencyHistogramTest.class);
+	}
+
+	/**
+	 * Counts, max. and percentiles.
+	 */
+	public void testHistogram()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+
+		for (int i = 0; i < 990; i++)
+			histogram.record(1000);
+		for (int i = 0; i < 10; i++)
+			histogram.record(1000000);
+		histogram.record(-5);
+
+		assertEquals(1001, histogram.getCount());
+		assertEquals(990 * 1000L + 10 * 1000000L, histogram.getTotal());
+		assertEquals(1000000, histogram.getMax());
+
+		// upper bounds of the power-of-2 buckets
+		assertEquals(1024, histogram.getPercentile(50));
+		assertEquals(1024, histogram.getPercentile(98));
+		assertEquals(1L << 20, histogram.getPercentile(99.9));
+		assertEquals(1L << 20, histogram.getPercentile(100));
+		assertEquals(1, histogram.getPercentile(0));
+	}
+
+	/**
+	 * Lock waits and operation statistics.
+	 */
+	public void testStatistics() throws InterruptedException
+	{
+		Logger logger = Logger.getAnonymousLogger();
+		logger.setUseParentHandlers(false);
+		ManagerStatistics statistics = new ManagerStatistics(logger);
+
+		final InstrumentedLock lock = new InstrumentedLock(new ReentrantLock(),
+				statistics.getHistogram(ManagerStatistics.LockType.COMPONENTS));
+		lock.lock();
+		Thread waiter = new Thread()
+		{
+			public void run()
+			{
+				lock.lock();
+				lock.unlock();
+			}
+		};
+		waiter.start();
+		Thread.sleep(50);
+		lock.unlock();
+		waiter.join();
+
+		LatencyHistogram waits = statistics.getHistogram(ManagerStatistics.LockType.COMPONENTS);
+		assertEquals(2, waits.getCount());
+		assertTrue(waits.getMax() >= 40000000L);
+
+		long start = statistics.activationStarted();
+		assertEquals(1, statistics.getInFlightActivations());
+		statistics.activationFinished(start);
+		assertEquals(0, statistics.getInFlightActivations());
+		assertEquals(1, statistics.getHistogram(ManagerStatistics.Operation.ACTIVATION).getCount());
+
+		statistics.record(ManagerStatistics.Operation.LOGIN, System.nanoTime());
+		String[] lines = statistics.getOperationLatencies();
+		assertEquals(ManagerStatistics.Operation.values().length, lines.length);
+		assertTrue(lines[ManagerStatistics.Operation.LOGIN.ordinal()].startsWith("LOGIN: count = 1,"));
+		assertEquals("LOGOUT: count = 0", lines[ManagerStatistics.Operation.LOGOUT.ordinal()]);
+
+		statistics.logSummary();
+		assertNotNull(statistics.getSummary());
+	}
+
+}
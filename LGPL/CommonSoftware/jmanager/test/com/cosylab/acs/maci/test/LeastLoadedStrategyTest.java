@@ -0,0 +1,195 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cosylab.acs.maci.ContainerInfo;
+import com.cosylab.acs.maci.loadbalancing.ContainerLoad;
+import com.cosylab.acs.maci.loadbalancing.LeastLoadedStrategy;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for LeastLoadedStrategy.
+ *
+ * @version	@@VERSION@@
+ */
+public class LeastLoadedStrategyTest extends TestCase
+{
+
+	/**
+	 */
+	public LeastLoadedStrategyTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(LeastLoadedStrategyTest.class);
+	}
+
+	private ContainerInfo[] createContainers(int count)
+	{
+		ContainerInfo[] infos = new ContainerInfo[count];
+		for (int i = 0; i < count; i++)
+			infos[i] = new ContainerInfo(i + 1, "Container" + i, new TestContainer("Container" + i), 1000);
+		return infos;
+	}
+
+	private void addComponents(ContainerInfo info, int count)
+	{
+		for (int i = 0; i < count; i++)
+			info.getComponents().add(i + 1);
+	}
+
+	/**
+	 * Containers without a reference (not logged in) are not eligible.
+	 */
+	public void testEligibility()
+	{
+		LeastLoadedStrategy strategy = new LeastLoadedStrategy(1.0, 0.5, 0.05);
+		assertNull(strategy.selectContainer(null, null));
+		assertNull(strategy.selectContainer(null, new ContainerInfo[0]));
+
+		ContainerInfo[] infos = createContainers(2);
+		infos[0].setContainer(null);
+		assertEquals("Container1", strategy.selectContainer(null, infos));
+
+		infos[1].setContainer(null);
+		assertNull(strategy.selectContainer(null, infos));
+	}
+
+	/**
+	 * Component counts and observed latencies steer the selection.
+	 */
+	public void testMetrics()
+	{
+		LeastLoadedStrategy strategy = new LeastLoadedStrategy(1.0, 0.5, 0.05);
+		ContainerInfo[] infos = createContainers(3);
+		addComponents(infos[0], 10);
+		addComponents(infos[1], 2);
+		addComponents(infos[2], 5);
+		assertEquals("Container1", strategy.selectContainer(null, infos));
+		strategy.placementCompleted("Container1");
+
+		// slow activations on Container1
+		strategy.activationCompleted("Container0", 1000000);
+		strategy.activationCompleted("Container2", 1000000);
+		for (int i = 0; i < 10; i++)
+			strategy.activationCompleted("Container1", 5000000000L);
+		assertEquals("Container2", strategy.selectContainer(null, infos));
+	}
+
+	/**
+	 * Only completed placements (not any activation) release the pending placements,
+	 * logged out containers are forgotten.
+	 */
+	public void testPlacements()
+	{
+		LeastLoadedStrategy strategy = new LeastLoadedStrategy(1.0, 0.0, 0.0);
+		ContainerInfo[] infos = createContainers(2);
+
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+		assertEquals("Container1", strategy.selectContainer(null, infos));
+		assertEquals("Container1", strategy.selectContainer(null, infos));
+
+		// activations not placed by the strategy
+		for (int i = 0; i < 5; i++)
+			strategy.activationCompleted("Container1", 1000000);
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+
+		strategy.placementCompleted("Container0");
+		strategy.placementCompleted("Container0");
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+
+		// unknown and surplus completions are ignored
+		strategy.placementCompleted("Unknown");
+		for (int i = 0; i < 5; i++)
+			strategy.placementCompleted("Container1");
+		assertEquals("Container1", strategy.selectContainer(null, infos));
+
+		// logout drops the pending placements
+		strategy.containerLoggedOut("Container1");
+		strategy.containerLoggedOut("Container0");
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+	}
+
+	/**
+	 * Concurrent placements (not yet activated) spread evenly, small differences do not cause switching.
+	 */
+	public void testSpreading()
+	{
+		LeastLoadedStrategy strategy = new LeastLoadedStrategy(1.0, 0.5, 0.05);
+		ContainerInfo[] infos = createContainers(4);
+
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < 400; i++)
+		{
+			String name = strategy.selectContainer(null, infos);
+			Integer count = counts.get(name);
+			counts.put(name, new Integer(count == null ? 1 : count.intValue() + 1));
+		}
+
+		assertEquals(4, counts.size());
+		for (Integer count : counts.values())
+			assertTrue(count.toString(), Math.abs(count.intValue() - 100) <= 10);
+
+		// hysteresis: a marginally better container does not take over
+		strategy = new LeastLoadedStrategy(1.0, 0.0, 0.05);
+		infos = createContainers(4);
+		addComponents(infos[0], 50);
+		addComponents(infos[1], 60);
+		addComponents(infos[2], 60);
+		addComponents(infos[3], 60);
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+		strategy.placementCompleted("Container0");
+		infos[1].getComponents().clear();
+		addComponents(infos[1], 49);
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+		strategy.placementCompleted("Container0");
+		infos[1].getComponents().clear();
+		addComponents(infos[1], 40);
+		assertEquals("Container1", strategy.selectContainer(null, infos));
+	}
+
+	/**
+	 * Reported ping, heap and thread metrics steer the selection, unknown and expired metrics are neutral.
+	 */
+	public void testReportedLoad() throws InterruptedException
+	{
+		LeastLoadedStrategy strategy = new LeastLoadedStrategy(0.0, 0.0, 0.5, 1.0, 0.5, 0.0, 200);
+		ContainerInfo[] infos = createContainers(3);
+		long now = System.currentTimeMillis();
+
+		// slow pings (smoothed) of Container0
+		strategy.updateLoad("Container0", new ContainerLoad(-1, -1, 100, now));
+		strategy.updateLoad("Container0", new ContainerLoad(-1, -1, 100, now));
+		strategy.updateLoad("Container1", new ContainerLoad(-1, -1, 1, now));
+		strategy.updateLoad("Container2", new ContainerLoad(-1, -1, 1, now));
+
+		// full heap of Container1 (threads unknown), Container2 has many threads
+		strategy.updateLoad("Container1", new ContainerLoad(0.95, -1, -1, now));
+		strategy.updateLoad("Container2", new ContainerLoad(0.10, 10, -1, now));
+		strategy.updateLoad("Container0", new ContainerLoad(0.10, 10, -1, now));
+		assertEquals("Container2", strategy.selectContainer(null, infos));
+
+		// many threads on Container2, Container1 unknown (average of the others)
+		strategy.updateLoad("Container2", new ContainerLoad(0.10, 2000, -1, now));
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+
+		// expired metrics are ignored
+		Thread.sleep(400);
+		strategy.updateLoad("Container2", new ContainerLoad(-1, -1, 1000, System.currentTimeMillis()));
+		assertEquals("Container0", strategy.selectContainer(null, infos));
+		assertEquals("Container1", strategy.selectContainer(null, new ContainerInfo[] { infos[1], infos[2] }));
+	}
+
+}
@@ -0,0 +1,626 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alma.acs.concurrent.DaemonThreadFactory;
+
+import com.cosylab.acs.maci.ClientInfo;
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.ComponentSpec;
+import com.cosylab.acs.maci.HandleConstants;
+import com.cosylab.acs.maci.RemoteException;
+import com.cosylab.acs.maci.manager.CURLHelper;
+import com.cosylab.acs.maci.manager.LatencyHistogram;
+import com.cosylab.acs.maci.manager.ManagerImpl;
+import com.cosylab.acs.maci.manager.ManagerStatistics;
+
+/**
+ * In-process load test harness of the manager.
+ *
+ * Drives <code>ManagerImpl</code> directly through the <code>com.cosylab.acs.maci</code> interfaces
+ * using in-memory containers, clients and administrators (no ORB and no DAL are needed).
+ * The configuration (containers and components) is generated: every component is described by
+ * a fully specified <code>ComponentSpec</code> and requested as a dynamic component, which exercises
+ * the same activation path as the CDB configured components. The same configuration can be written
+ * as a CDB tree (<code>-cdb &lt;dir&gt;</code>) to be used with the <code>Benchmark/manager</code> test.
+ *
+ * The harness runs the following phases (each operation is run on a pool of <code>clients</code> threads)
+ * and reports throughput and latency percentiles of each of them:
+ * <ul>
+ * 	<li>container login,</li>
+ * 	<li>client login,</li>
+ * 	<li>component activation,</li>
+ * 	<li>queries (non-sticky component references, component and container info),</li>
+ * 	<li>component release,</li>
+ * 	<li>client and container logout.</li>
+ * </ul>
+ *
+ * Usage:
+ * <pre>
+ * acsStartJava com.cosylab.acs.maci.test.ManagerLoadHarness [-containers n] [-components n] [-clients n]
+ *                 [-administrators n] [-queries n] [-activationTime ms] [-cdb dir]
+ * </pre>
+ *
+ * @version	@@VERSION@@
+ */
+public class ManagerLoadHarness
+{
+
+	/**
+	 * Component type of the generated components.
+	 */
+	public static final String COMPONENT_TYPE = "IDL:alma/managertest/DummyComponent:1.0";
+
+	/**
+	 * Component code of the generated components.
+	 */
+	public static final String COMPONENT_CODE = "alma.managertest.DummyComponentImpl.DummyComponentHelper";
+
+	/**
+	 * Container that activates any component it is asked for.
+	 * Asynchronous activations are run on the shared executor instead of a thread per request.
+	 */
+	static class LoadContainer extends TestContainer
+	{
+		private final Executor executor;
+
+		public LoadContainer(String name, Executor executor)
+		{
+			super(name);
+			this.executor = executor;
+			setSupportedComponents(new ConcurrentHashMap());
+		}
+
+		/**
+		 * @see com.cosylab.acs.maci.test.TestContainer#activate_component(int, long, java.lang.String, java.lang.String, java.lang.String)
+		 */
+		public ComponentInfo activate_component(int handle, long executionId, String name, String exe, String type)
+			throws RemoteException
+		{
+			if (!supportedComponents.containsKey(name))
+				supportedComponents.put(name, new TestComponent(name));
+			return super.activate_component(handle, executionId, name, exe, type);
+		}
+
+		/**
+		 * @see com.cosylab.acs.maci.test.TestContainer#activate_component_async(int, long, java.lang.String, java.lang.String, java.lang.String, com.cosylab.acs.maci.Container.ComponentInfoCompletionCallback)
+		 */
+		public void activate_component_async(final int handle, final long executionId,
+				final String name, final String exe, final String type, final ComponentInfoCompletionCallback callback)
+		{
+			executor.execute(new Runnable()
+			{
+				public void run()
+				{
+					ComponentInfo ci = null;
+					try
+					{
+						ci = activate_component(handle, executionId, name, exe, type);
+						callback.done(ci);
+					}
+					catch (Throwable th)
+					{
+						callback.failed(ci, th);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Operation of a phase.
+	 */
+	interface Operation
+	{
+		/**
+		 * Executes <code>index</code>-th operation.
+		 * @param	index	operation index.
+		 */
+		void execute(int index) throws Throwable;
+	}
+
+	/**
+	 * Results of a phase.
+	 */
+	public static class Phase
+	{
+		final String name;
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final AtomicInteger failures = new AtomicInteger(0);
+		final AtomicReference<Throwable> firstFailure = new AtomicReference<Throwable>();
+		long elapsed;
+
+		Phase(String name)
+		{
+			this.name = name;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public LatencyHistogram getLatencies()
+		{
+			return latencies;
+		}
+
+		public int getFailures()
+		{
+			return failures.get();
+		}
+
+		public Throwable getFirstFailure()
+		{
+			return firstFailure.get();
+		}
+
+		/**
+		 * Returns the throughput (operations per second).
+		 * @return	the throughput.
+		 */
+		public double getThroughput()
+		{
+			return elapsed == 0 ? 0 : latencies.getCount() * 1e9 / elapsed;
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString()
+		{
+			return name + ": " + latencies.getCount() + " ops, " + failures.get() + " failed, " +
+				millis(elapsed) + " ms, " + Math.round(getThroughput()) + " ops/s, p50 < " +
+				millis(latencies.getPercentile(50)) + " ms, p99 < " +
+				millis(latencies.getPercentile(99)) + " ms, p99.9 < " +
+				millis(latencies.getPercentile(99.9)) + " ms, max = " +
+				millis(latencies.getMax()) + " ms";
+		}
+
+		private static String millis(long nanos)
+		{
+			return String.valueOf(Math.round(nanos / 1000.0) / 1000.0);
+		}
+	}
+
+	final int containers;
+	final int components;
+	final int clients;
+	final int administrators;
+	final int queries;
+	final long activationTime;
+
+	/**
+	 * Max. duration of a phase in ms, <code>0</code> for no limit.
+	 */
+	long phaseTimeout = 0;
+
+	/**
+	 * Phases run by the last {@link #run()}.
+	 */
+	Phase[] phases;
+
+	/**
+	 * Manager statistics summary of the last {@link #run()}.
+	 */
+	String managerStatistics;
+
+	/**
+	 * Cause of the abort of the last {@link #run()}, <code>null</code> if all the phases were run.
+	 */
+	Throwable abortCause;
+
+	/**
+	 * Constructor.
+	 * @param	containers		number of containers.
+	 * @param	components		number of components.
+	 * @param	clients			number of clients (and concurrent requests).
+	 * @param	administrators	number of administrators.
+	 * @param	queries			number of queries per client.
+	 * @param	activationTime	simulated activation time in ms.
+	 */
+	public ManagerLoadHarness(int containers, int components, int clients, int administrators, int queries, long activationTime)
+	{
+		this.containers = Math.max(1, containers);
+		this.components = Math.max(0, components);
+		this.clients = Math.max(1, clients);
+		this.administrators = Math.max(0, administrators);
+		this.queries = Math.max(0, queries);
+		this.activationTime = Math.max(0, activationTime);
+	}
+
+	/**
+	 * Sets the max. duration of a phase, the run is aborted if a phase does not complete in time.
+	 * @param	phaseTimeout	max. duration of a phase in ms, <code>0</code> for no limit.
+	 */
+	public void setPhaseTimeout(long phaseTimeout)
+	{
+		this.phaseTimeout = Math.max(0, phaseTimeout);
+	}
+
+	/**
+	 * Returns the cause of the abort of the last {@link #run()}.
+	 * @return	the cause of the abort, <code>null</code> if all the phases were run.
+	 */
+	public Throwable getAbortCause()
+	{
+		return abortCause;
+	}
+
+	/**
+	 * Returns the name of the <code>index</code>-th container.
+	 */
+	public static String containerName(int index)
+	{
+		return "loadContainer" + index;
+	}
+
+	/**
+	 * Returns the name of the <code>index</code>-th component.
+	 */
+	public static String componentName(int index)
+	{
+		return "LOAD_COMPONENT_" + index;
+	}
+
+	/**
+	 * Generates the component specifications, components are distributed among containers round-robin.
+	 * @return	the component specifications.
+	 */
+	public ComponentSpec[] generateComponentSpecs()
+	{
+		ComponentSpec[] specs = new ComponentSpec[components];
+		for (int i = 0; i < components; i++)
+			specs[i] = new ComponentSpec(componentName(i), COMPONENT_TYPE, COMPONENT_CODE, containerName(i % containers));
+		return specs;
+	}
+
+	/**
+	 * Writes the generated configuration as a CDB tree (<code>MACI/Components</code> and <code>MACI/Containers</code>).
+	 * @param	root	root directory of the CDB.
+	 */
+	public void writeCDB(File root) throws IOException
+	{
+		File componentsDir = new File(root, "MACI/Components");
+		if (!componentsDir.isDirectory() && !componentsDir.mkdirs())
+			throw new IOException("Failed to create '" + componentsDir + "'.");
+
+		PrintWriter writer = new PrintWriter(new FileWriter(new File(componentsDir, "Components.xml")));
+		try
+		{
+			writer.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+			writer.println("<Components xmlns=\"urn:schemas-cosylab-com:Components:1.0\">");
+			ComponentSpec[] specs = generateComponentSpecs();
+			for (int i = 0; i < specs.length; i++)
+				writer.println("  <_ Name=\"" + specs[i].getName() + "\" Code=\"" + specs[i].getCode() +
+						"\" Type=\"" + specs[i].getType() + "\" Container=\"" + specs[i].getContainer() + "\" ImplLang=\"java\" />");
+			writer.println("</Components>");
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		for (int i = 0; i < containers; i++)
+		{
+			String name = containerName(i);
+			File containerDir = new File(root, "MACI/Containers/" + name);
+			if (!containerDir.isDirectory() && !containerDir.mkdirs())
+				throw new IOException("Failed to create '" + containerDir + "'.");
+
+			writer = new PrintWriter(new FileWriter(new File(containerDir, name + ".xml")));
+			try
+			{
+				writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+				writer.println("<Container xmlns=\"urn:schemas-cosylab-com:Container:1.0\"");
+				writer.println("           xmlns:cdb=\"urn:schemas-cosylab-com:CDB:1.0\"");
+				writer.println("           xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+				writer.println("           xmlns:log=\"urn:schemas-cosylab-com:LoggingConfig:1.0\"");
+				writer.println("           Timeout=\"360\" UseIFR=\"1\" ManagerRetry=\"10\" Recovery=\"0\" ImplLang=\"java\">");
+				writer.println("  <Autoload>");
+				writer.println("    <cdb:_ string=\"baci\" />");
+				writer.println("  </Autoload>");
+				writer.println("  <DeployInfo Instance=\"0\" Flags=\"\" KeepAliveTime=\"-1\"/>");
+				writer.println("  <LoggingConfig/>");
+				writer.println("</Container>");
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Runs all the phases against a new manager instance.
+	 * @return	results of the phases.
+	 */
+	public Phase[] run() throws InterruptedException
+	{
+		// failures are collected per phase, the manager itself is kept quiet
+		Logger logger = Logger.getLogger("ManagerLoadHarness");
+		logger.setLevel(Level.OFF);
+
+		final ManagerImpl manager = new ManagerImpl();
+		manager.initialize(null, null, null, logger, null);
+		manager.setTransport(new TestTransport());
+
+		ExecutorService requestors = Executors.newFixedThreadPool(clients, new DaemonThreadFactory("loadClient"));
+		ExecutorService activators = Executors.newCachedThreadPool(new DaemonThreadFactory("loadContainer"));
+
+		final ComponentSpec[] specs = generateComponentSpecs();
+		final URI[] curls = new URI[components];
+		final LoadContainer[] containerObjs = new LoadContainer[containers];
+		final int[] containerHandles = new int[containers];
+		final int[] clientHandles = new int[clients];
+
+		Phase containerLogin = new Phase("container login");
+		Phase clientLogin = new Phase("client login");
+		Phase activation = new Phase("activation");
+		Phase query = new Phase("query");
+		Phase release = new Phase("release");
+		Phase logout = new Phase("logout");
+		phases = new Phase[] { containerLogin, clientLogin, activation, query, release, logout };
+		abortCause = null;
+		managerStatistics = null;
+
+		try
+		{
+			for (int i = 0; i < components; i++)
+				curls[i] = CURLHelper.createURI(specs[i].getName());
+
+			for (int i = 0; i < containers; i++)
+			{
+				containerObjs[i] = new LoadContainer(containerName(i), activators);
+				containerObjs[i].setActivationTime(activationTime);
+			}
+
+			final int[] administratorHandles = new int[administrators];
+			for (int i = 0; i < administrators; i++)
+				administratorHandles[i] = manager.login(new TestAdministrator("loadAdministrator" + i, false)).getHandle();
+
+			runPhase(requestors, phaseTimeout, containerLogin, containers, new Operation()
+			{
+				public void execute(int index) throws Throwable
+				{
+					ClientInfo info = manager.login(containerObjs[index]);
+					containerHandles[index] = info.getHandle();
+				}
+			});
+
+			runPhase(requestors, phaseTimeout, clientLogin, clients, new Operation()
+			{
+				public void execute(int index) throws Throwable
+				{
+					ClientInfo info = manager.login(new TestClient("loadClient" + index));
+					clientHandles[index] = info.getHandle();
+				}
+			});
+
+			runPhase(requestors, phaseTimeout, activation, components, new Operation()
+			{
+				public void execute(int index) throws Throwable
+				{
+					manager.getDynamicComponent(clientHandles[index % clients], specs[index], false);
+				}
+			});
+
+			runPhase(requestors, phaseTimeout, query, clients * queries, new Operation()
+			{
+				public void execute(int index) throws Throwable
+				{
+					int client = clientHandles[index % clients];
+					switch (index % 3)
+					{
+						case 0:
+							if (components > 0)
+								manager.getComponentNonSticky(client, curls[(index / 3) % components]);
+							break;
+						case 1:
+							manager.getComponentInfo(client, new int[0], componentName((index / 3) % Math.max(1, components)) + "*", "*", true);
+							break;
+						default:
+							manager.getContainerInfo(client, new int[0], containerName((index / 3) % containers));
+							break;
+					}
+				}
+			});
+
+			runPhase(requestors, phaseTimeout, release, components, new Operation()
+			{
+				public void execute(int index) throws Throwable
+				{
+					manager.releaseComponent(clientHandles[index % clients], curls[index]);
+				}
+			});
+
+			runPhase(requestors, phaseTimeout, logout, clients + containers, new Operation()
+			{
+				public void execute(int index) throws Throwable
+				{
+					if (index < clients)
+						manager.logout(clientHandles[index]);
+					else
+						manager.logout(containerHandles[index - clients]);
+				}
+			});
+
+			for (int i = 0; i < administrators; i++)
+				manager.logout(administratorHandles[i]);
+
+			ManagerStatistics statistics = manager.getStatistics();
+			managerStatistics = (statistics != null) ? statistics.getSummary() : null;
+		}
+		catch (Throwable th)
+		{
+			abortCause = th;
+		}
+		finally
+		{
+			try
+			{
+				manager.shutdown(HandleConstants.MANAGER_MASK, 0);
+			}
+			catch (Throwable th)
+			{
+				if (abortCause == null)
+					abortCause = th;
+			}
+			requestors.shutdownNow();
+			activators.shutdownNow();
+		}
+
+		return phases;
+	}
+
+	/**
+	 * Runs <code>count</code> operations on the executor and waits until all of them complete.
+	 * @throws	TimeoutException	if the operations do not complete within <code>timeout</code> ms (if non-zero).
+	 */
+	private static void runPhase(ExecutorService executor, long timeout, final Phase phase, int count, final Operation operation)
+		throws InterruptedException, TimeoutException
+	{
+		final CountDownLatch done = new CountDownLatch(count);
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+		{
+			final int index = i;
+			executor.execute(new Runnable()
+			{
+				public void run()
+				{
+					long opStart = System.nanoTime();
+					try
+					{
+						operation.execute(index);
+					}
+					catch (Throwable th)
+					{
+						phase.failures.incrementAndGet();
+						phase.firstFailure.compareAndSet(null, th);
+					}
+					finally
+					{
+						phase.latencies.recordSince(opStart);
+						done.countDown();
+					}
+				}
+			});
+		}
+		if (timeout == 0)
+			done.await();
+		else if (!done.await(timeout, TimeUnit.MILLISECONDS))
+			throw new TimeoutException("Phase '" + phase.name + "' did not complete in " + timeout + " ms, " + done.getCount() + " operation(s) pending.");
+		phase.elapsed = System.nanoTime() - start;
+	}
+
+	/**
+	 * Prints the results of the last {@link #run()}.
+	 * @param	out	print stream.
+	 */
+	public void report(PrintStream out)
+	{
+		out.println("Manager load test: " + containers + " containers, " + components + " components, " +
+				clients + " clients, " + administrators + " administrators, " + queries + " queries per client, " +
+				activationTime + " ms activation time.");
+		if (phases == null)
+			return;
+
+		if (abortCause != null)
+			out.println("\tload test aborted: " + abortCause);
+
+		for (int i = 0; i < phases.length; i++)
+		{
+			out.println("\t" + phases[i]);
+			if (phases[i].getFirstFailure() != null)
+				out.println("\t\tfirst failure: " + phases[i].getFirstFailure());
+		}
+		if (managerStatistics != null)
+			out.println("Manager statistics: " + managerStatistics);
+	}
+
+	/**
+	 * Entry point.
+	 * @param	args	see class description.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int containers = 100;
+		int components = 2000;
+		int clients = 20;
+		int administrators = 1;
+		int queries = 100;
+		long activationTime = 0;
+		File cdb = null;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (i + 1 >= args.length)
+			{
+				usage();
+				return;
+			}
+
+			String option = args[i];
+			String value = args[++i];
+			if (option.equals("-containers"))
+				containers = Integer.parseInt(value);
+			else if (option.equals("-components"))
+				components = Integer.parseInt(value);
+			else if (option.equals("-clients"))
+				clients = Integer.parseInt(value);
+			else if (option.equals("-administrators"))
+				administrators = Integer.parseInt(value);
+			else if (option.equals("-queries"))
+				queries = Integer.parseInt(value);
+			else if (option.equals("-activationTime"))
+				activationTime = Long.parseLong(value);
+			else if (option.equals("-cdb"))
+				cdb = new File(value);
+			else
+			{
+				usage();
+				return;
+			}
+		}
+
+		ManagerLoadHarness harness = new ManagerLoadHarness(containers, components, clients, administrators, queries, activationTime);
+		if (cdb != null)
+		{
+			harness.writeCDB(cdb);
+			System.out.println("Generated CDB written to '" + cdb + "'.");
+			return;
+		}
+
+		harness.run();
+		harness.report(System.out);
+		System.exit(0);
+	}
+
+	private static void usage()
+	{
+		System.out.println("Usage: " + ManagerLoadHarness.class.getName() +
+				" [-containers n] [-components n] [-clients n] [-administrators n] [-queries n] [-activationTime ms] [-cdb dir]");
+	}
+
+}
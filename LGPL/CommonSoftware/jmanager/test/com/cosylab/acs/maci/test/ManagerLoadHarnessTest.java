@@ -0,0 +1,85 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for ManagerLoadHarness (small scale run of the harness, every phase bounded by a timeout).
+ *
+ * @version	@@VERSION@@
+ */
+public class ManagerLoadHarnessTest extends TestCase
+{
+
+	/**
+	 */
+	public ManagerLoadHarnessTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(ManagerLoadHarnessTest.class);
+	}
+
+	/**
+	 * All phases have to complete without failures.
+	 */
+	public void testLoad() throws Exception
+	{
+		ManagerLoadHarness harness = new ManagerLoadHarness(5, 100, 4, 1, 10, 0);
+		// a hanging manager fails the test instead of blocking the regression
+		harness.setPhaseTimeout(30000);
+		ManagerLoadHarness.Phase[] phases = harness.run();
+		assertNull(harness.getAbortCause());
+
+		assertEquals(6, phases.length);
+		int[] expected = new int[] { 5, 4, 100, 40, 100, 9 };
+		for (int i = 0; i < phases.length; i++)
+		{
+			assertEquals(phases[i].getName(), 0, phases[i].getFailures());
+			assertEquals(phases[i].getName(), expected[i], phases[i].getLatencies().getCount());
+		}
+	}
+
+	/**
+	 * Generated CDB.
+	 */
+	public void testGeneratedCDB() throws Exception
+	{
+		File root = new File(System.getProperty("java.io.tmpdir"), "ManagerLoadHarnessTest" + System.currentTimeMillis());
+		try
+		{
+			new ManagerLoadHarness(3, 10, 1, 0, 0, 0).writeCDB(root);
+			assertTrue(new File(root, "MACI/Components/Components.xml").isFile());
+			for (int i = 0; i < 3; i++)
+			{
+				String name = ManagerLoadHarness.containerName(i);
+				assertTrue(new File(root, "MACI/Containers/" + name + "/" + name + ".xml").isFile());
+			}
+		}
+		finally
+		{
+			delete(root);
+		}
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+			for (int i = 0; i < children.length; i++)
+				delete(children[i]);
+		file.delete();
+	}
+
+}
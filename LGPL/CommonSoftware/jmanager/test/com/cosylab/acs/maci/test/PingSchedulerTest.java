@@ -0,0 +1,224 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import com.cosylab.acs.maci.ClientInfo;
+import com.cosylab.acs.maci.manager.ManagerImpl;
+import com.cosylab.acs.maci.manager.ManagerStatistics;
+import com.cosylab.acs.maci.manager.PingScheduler;
+import com.cosylab.acs.maci.manager.PingTimerTask;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for PingScheduler (timeout and skip logic, round-trip time statistics).
+ *
+ * @version	@@VERSION@@
+ */
+public class PingSchedulerTest extends TestCase
+{
+
+	/**
+	 * Period of the pings in ms.
+	 */
+	private static final long PERIOD = 50;
+
+	/**
+	 * Ping task with a ping of the given duration, counting the pings and the time-outs.
+	 */
+	static class TestPingTask extends PingTimerTask
+	{
+		final long duration;
+		CountDownLatch block = null;
+		int pings = 0;
+		int timeouts = 0;
+
+		TestPingTask(Logger logger, int handle, long duration)
+		{
+			super(new ManagerImpl(), logger, new ClientInfo(handle, "client" + handle, null), null);
+			this.duration = duration;
+		}
+
+		public void run()
+		{
+			CountDownLatch latch;
+			synchronized (this)
+			{
+				pings++;
+				latch = block;
+			}
+			try {
+				if (latch != null)
+					latch.await();
+				else
+					Thread.sleep(duration);
+			} catch (InterruptedException ie) {
+				// noop
+			}
+		}
+
+		public synchronized void timedOut()
+		{
+			timeouts++;
+		}
+
+		synchronized int getPings()
+		{
+			return pings;
+		}
+
+		synchronized int getTimeouts()
+		{
+			return timeouts;
+		}
+	}
+
+	private Logger logger;
+	private PingScheduler scheduler;
+
+	/**
+	 */
+	public PingSchedulerTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(PingSchedulerTest.class);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		// keep the test output clean
+		logger = Logger.getAnonymousLogger();
+		logger.setUseParentHandlers(false);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		if (scheduler != null)
+			scheduler.cancel();
+	}
+
+	/**
+	 * Ping in progress when the next one is due (but within the deadline) is not a failure.
+	 */
+	public void testSlowPing() throws Exception
+	{
+		scheduler = new PingScheduler(4, 10000, logger);
+		TestPingTask task = new TestPingTask(logger, 1, 4 * PERIOD);
+		scheduler.schedule(task, 0, PERIOD);
+
+		Thread.sleep(30 * PERIOD);
+		task.cancel();
+
+		// due pings were skipped, not issued concurrently
+		assertTrue(task.getPings() > 1);
+		assertTrue(task.getPings() < 15);
+		assertEquals(0, task.getTimeouts());
+	}
+
+	/**
+	 * Ping in progress for longer than the deadline is counted as timed-out at every due ping.
+	 */
+	public void testHungPing() throws Exception
+	{
+		scheduler = new PingScheduler(4, 4 * PERIOD, logger);
+		TestPingTask task = new TestPingTask(logger, 1, 0);
+		task.block = new CountDownLatch(1);
+		scheduler.schedule(task, 0, PERIOD);
+
+		Thread.sleep(20 * PERIOD);
+		int timeouts = task.getTimeouts();
+		task.cancel();
+		task.block.countDown();
+
+		assertEquals(1, task.getPings());
+		assertTrue(timeouts > 1);
+	}
+
+	/**
+	 * Ping waiting for a free ping thread is skipped, neither issued again nor counted as timed-out.
+	 */
+	public void testQueuedPing() throws Exception
+	{
+		scheduler = new PingScheduler(1, 10000, logger);
+		TestPingTask hung = new TestPingTask(logger, 1, 0);
+		hung.block = new CountDownLatch(1);
+		scheduler.schedule(hung, 0, PERIOD);
+
+		// let the hung ping take the only ping thread
+		long start = System.currentTimeMillis();
+		while (scheduler.getInFlight() == 0 && System.currentTimeMillis() - start < 10000)
+			Thread.sleep(10);
+		assertEquals(1, scheduler.getInFlight());
+
+		TestPingTask waiting = new TestPingTask(logger, 2, 0);
+		scheduler.schedule(waiting, 0, PERIOD);
+		Thread.sleep(10 * PERIOD);
+
+		assertEquals(1, scheduler.getQueued());
+		assertEquals(0, waiting.getPings());
+		assertEquals(0, waiting.getTimeouts());
+		assertEquals(0, hung.getTimeouts());
+
+		// queued ping is issued once the thread is free
+		hung.cancel();
+		hung.block.countDown();
+		start = System.currentTimeMillis();
+		while (waiting.getPings() == 0 && System.currentTimeMillis() - start < 10000)
+			Thread.sleep(10);
+		waiting.cancel();
+		assertTrue(waiting.getPings() > 0);
+	}
+
+	/**
+	 * Round-trip times of the scheduled pings are exposed by the manager statistics.
+	 */
+	public void testStatistics() throws Exception
+	{
+		scheduler = new PingScheduler(4, 10000, logger);
+		ManagerStatistics statistics = new ManagerStatistics(logger);
+		statistics.setPingScheduler(scheduler);
+		assertEquals(0, statistics.getPingRoundTripTimes().length);
+		assertEquals(-1.0, statistics.getMaxAveragePingRoundTripTime(), 0.0);
+
+		PingTimerTask task = new PingTimerTask(new ManagerImpl(), logger,
+				new ClientInfo(1, "pinged", new TestClient("pinged")), null);
+		scheduler.schedule(task, 0, PERIOD);
+		long start = System.currentTimeMillis();
+		while (task.getPingCount() < 3 && System.currentTimeMillis() - start < 10000)
+			Thread.sleep(10);
+		assertTrue(task.getPingCount() >= 3);
+
+		String[] lines = statistics.getPingRoundTripTimes();
+		assertEquals(1, lines.length);
+		assertTrue(lines[0], lines[0].startsWith("pinged ["));
+		assertTrue(lines[0], lines[0].indexOf(" ms, max ") > 0);
+		assertTrue(statistics.getMaxAveragePingRoundTripTime() >= 0);
+		assertTrue(statistics.getSummary().indexOf("max. average ping round-trip time") > 0);
+
+		// cancelled task is removed at its next due ping
+		task.cancel();
+		start = System.currentTimeMillis();
+		while (scheduler.getTasks().length > 0 && System.currentTimeMillis() - start < 10000)
+			Thread.sleep(10);
+		assertEquals(0, statistics.getPingRoundTripTimes().length);
+	}
+
+}
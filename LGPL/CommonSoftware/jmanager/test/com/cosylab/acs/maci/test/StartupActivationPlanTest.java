@@ -0,0 +1,179 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cosylab.acs.maci.manager.StartupActivationPlan;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for StartupActivationPlan.
+ *
+ * @version	@@VERSION@@
+ */
+public class StartupActivationPlanTest extends TestCase
+{
+
+	/**
+	 * Activator recording the order of activations, activations with non-zero duration
+	 * are completed by a separate thread.
+	 */
+	static class RecordingActivator implements StartupActivationPlan.Activator
+	{
+		final List<String> activated = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicInteger maxRunning = new AtomicInteger(0);
+		final long sleep;
+
+		RecordingActivator(long sleep)
+		{
+			this.sleep = sleep;
+		}
+
+		public void activate(final String name, final StartupActivationPlan.ActivationCallback callback)
+		{
+			int r = running.incrementAndGet();
+			synchronized (maxRunning)
+			{
+				if (r > maxRunning.get())
+					maxRunning.set(r);
+			}
+
+			if (sleep == 0)
+			{
+				complete(name, callback);
+				return;
+			}
+
+			new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try {
+						Thread.sleep(sleep);
+					} catch (InterruptedException ie) {
+						// noop
+					}
+					complete(name, callback);
+				}
+			}).start();
+		}
+
+		void complete(String name, StartupActivationPlan.ActivationCallback callback)
+		{
+			activated.add(name);
+			running.decrementAndGet();
+			callback.done(!name.startsWith("FAIL"));
+		}
+	}
+
+	/**
+	 */
+	public StartupActivationPlanTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(StartupActivationPlanTest.class);
+	}
+
+	/**
+	 * Without dependencies and parallelism the listed order is kept.
+	 */
+	public void testSequential() throws InterruptedException
+	{
+		List<String> names = Arrays.asList(new String[] { "A", "B", "FAIL1", "C", "D" });
+		StartupActivationPlan plan = new StartupActivationPlan(names);
+		RecordingActivator activator = new RecordingActivator(0);
+
+		assertEquals(4, plan.execute(activator, 1));
+		assertEquals(names, activator.activated);
+		assertEquals(1, activator.maxRunning.get());
+	}
+
+	/**
+	 * Dependencies are activated first, independent components in parallel.
+	 */
+	public void testDependencies() throws InterruptedException
+	{
+		List<String> names = Arrays.asList(new String[] { "APP1", "APP2", "APP3", "DB", "LOG", "X" });
+		StartupActivationPlan plan = new StartupActivationPlan(names);
+		assertTrue(plan.addDependency("APP1", "DB"));
+		assertTrue(plan.addDependency("APP2", "DB"));
+		assertTrue(plan.addDependency("APP3", "DB"));
+		assertTrue(plan.addDependency("DB", "LOG"));
+		assertFalse(plan.addDependency("DB", "LOG"));
+		assertFalse(plan.addDependency("APP1", "NOT_IN_PLAN"));
+		assertFalse(plan.addDependency("X", "X"));
+
+		RecordingActivator activator = new RecordingActivator(50);
+		assertEquals(6, plan.execute(activator, 4));
+
+		List<String> order = activator.activated;
+		assertEquals(6, order.size());
+		assertTrue(order.indexOf("LOG") < order.indexOf("DB"));
+		assertTrue(order.indexOf("DB") < order.indexOf("APP1"));
+		assertTrue(order.indexOf("DB") < order.indexOf("APP2"));
+		assertTrue(order.indexOf("DB") < order.indexOf("APP3"));
+		// APPs in parallel
+		assertTrue(activator.maxRunning.get() >= 2);
+		assertTrue(activator.maxRunning.get() <= 4);
+	}
+
+	/**
+	 * Dependency cycle must not block the plan.
+	 */
+	public void testCycle() throws InterruptedException
+	{
+		List<String> names = Arrays.asList(new String[] { "A", "B", "C" });
+		StartupActivationPlan plan = new StartupActivationPlan(names);
+		plan.addDependency("A", "B");
+		plan.addDependency("B", "A");
+		plan.addDependency("C", "B");
+
+		RecordingActivator activator = new RecordingActivator(0);
+		assertEquals(3, plan.execute(activator, 2));
+		assertEquals(Arrays.asList(new String[] { "A", "B", "C" }), activator.activated);
+	}
+
+	/**
+	 * Failing activators and repeated completions must not break the plan.
+	 */
+	public void testMisbehavingActivator() throws InterruptedException
+	{
+		List<String> names = Arrays.asList(new String[] { "A", "THROW", "TWICE", "B" });
+		StartupActivationPlan plan = new StartupActivationPlan(names);
+		plan.addDependency("B", "THROW");
+		plan.addDependency("B", "TWICE");
+
+		final List<String> activated = Collections.synchronizedList(new ArrayList<String>());
+		assertEquals(3, plan.execute(new StartupActivationPlan.Activator()
+		{
+			public void activate(String name, StartupActivationPlan.ActivationCallback callback)
+			{
+				if (name.equals("THROW"))
+					throw new RuntimeException("test");
+
+				activated.add(name);
+				callback.done(true);
+				if (name.equals("TWICE"))
+					callback.done(true);
+			}
+		}, 2));
+		assertEquals(Arrays.asList(new String[] { "A", "TWICE", "B" }), activated);
+	}
+
+}
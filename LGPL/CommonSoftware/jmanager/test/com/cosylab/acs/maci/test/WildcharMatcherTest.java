@@ -4,6 +4,7 @@
 
 package com.cosylab.acs.maci.test;
 
+import com.cosylab.acs.maci.manager.WildcharPattern;
 import com.cosylab.util.WildcharMatcher;
 
 import junit.framework.TestCase;
@@ -71,4 +72,33 @@ public class WildcharMatcherTest extends TestCase
 		assertTrue(!WildcharMatcher.match("*.*", "/var/etc"));
 		assertTrue(WildcharMatcher.match("**?*x*[abh-]*Q", "XYZxabbauuZQ"));
 	}
+
+	/**
+	 * Compiled pattern has to match exactly as <code>WildcharMatcher</code>.
+	 */
+	public void testWildcharPattern()
+	{
+		final String[] patterns = {
+				"", "*", "**", "?", "MOUNT1", "MOUNT*", "MOUNT**", "MOUNT?", "MOUNT*1", "*1", 
+				"MOUNT[0-9]", "MOUNT[!1]*", "[A-M]OUNT*", "some*thing", "*.*", "[[[*?", "[]"
+		};
+		final String[] strings = {
+				"", "M", "MOUNT", "MOUNT1", "MOUNT2", "MOUNT12", "MOUNTAIN", "POWER1",
+				"something", "command.com", "a"
+		};
+
+		for (int i = 0; i < patterns.length; i++)
+		{
+			WildcharPattern compiled = WildcharPattern.compile(patterns[i]);
+			assertSame(compiled, WildcharPattern.compile(patterns[i]));
+			for (int j = 0; j < strings.length; j++)
+				assertEquals(patterns[i] + " == " + strings[j],
+						WildcharMatcher.match(patterns[i], strings[j]), compiled.matches(strings[j]));
+		}
+
+		assertEquals("MOUNT", WildcharPattern.compile("MOUNT[0-9]*").getPrefix());
+		assertTrue(WildcharPattern.compile("MOUNT1").isLiteral());
+		assertTrue(WildcharPattern.compile("**").matchesAll());
+		assertFalse(WildcharPattern.compile("MOUNT*").matchesAll());
+	}
 }